@@ -25,6 +25,12 @@ public interface BitLogItem {
 
     public String getSpaceId();
 
+    /**
+     * @return the id of the bit integrity run which logged the item, or 0 if
+     * it was not logged by a run
+     */
+    public long getRunId();
+
     public String getContentId();
 
     public StorageProviderType getStoreType();
@@ -0,0 +1,34 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.bitlog;
+
+/**
+ * The successful checks of a bit integrity run which were summarized rather
+ * than logged as BitLogItems.
+ *
+ * @author Daniel Bernstein
+ */
+public interface BitLogRunSummary {
+
+    /**
+     * @return the number of successful checks
+     */
+    public long getSuccessCount();
+
+    /**
+     * @return the total size in bytes of the content items successfully checked
+     */
+    public long getSuccessBytes();
+
+    /**
+     * @return a digest of the content ids and checksums of the content items
+     * successfully checked, which does not depend on the order of the checks
+     */
+    public long getSuccessDigest();
+
+}
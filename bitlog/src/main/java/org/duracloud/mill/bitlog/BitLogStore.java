@@ -7,8 +7,11 @@
  */
 package org.duracloud.mill.bitlog;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 import org.duracloud.mill.db.model.BitIntegrityReport;
 import org.duracloud.reportdata.bitintegrity.BitIntegrityReportResult;
@@ -19,12 +22,33 @@ import org.duracloud.storage.domain.StorageProviderType;
  * Date: Apr 25, 2014
  */
 public interface BitLogStore {
+
+    /**
+     * The run id of items not logged by a run: for instance, items logged for
+     * tasks added before runs were started.
+     */
+    public static final long NO_RUN = 0;
+
     /**
-     * Creates a new BitLogItem and writes it to the store.
+     * Starts a bit integrity run of a space. Items logged by the run are kept
+     * apart from those of any other run until the run is deleted.
+     *
+     * @param account
+     * @param storeId
+     * @param spaceId
+     * @return the run id, or NO_RUN if a run could not be started
+     */
+    public long startRun(String account, String storeId, String spaceId);
+
+    /**
+     * Creates a new BitLogItem and writes it to the store. An item of a run
+     * which has already been reported on is logged by the space's latest run
+     * instead, or without a run if the space has none.
      *
      * @param accountId
      * @param storeId
      * @param spaceId
+     * @param runId
      * @param contentId
      * @param timestamp
      * @param storeType
@@ -38,6 +62,7 @@ public interface BitLogStore {
     public BitLogItem write(String accountId,
                             String storeId,
                             String spaceId,
+                            long runId,
                             String contentId,
                             Date timestamp,
                             StorageProviderType storeType,
@@ -48,22 +73,121 @@ public interface BitLogStore {
                             String details) throws ItemWriteFailedException;
 
     /**
-     * Returns a iterator of BitLogItems in chronological order. If no matches are found, the
+     * Adds a successful check to its run's summary rather than logging a
+     * BitLogItem for it, if the store summarizes successes.
+     *
+     * @param accountId
+     * @param storeId
+     * @param spaceId
+     * @param runId
+     * @param contentId
+     * @param checksum
+     * @param size      the size of the content item in bytes
+     * @return true if the check was summarized, or dropped because its run has
+     * already been reported on; if not, it should be written as a BitLogItem.
+     */
+    public boolean summarizeSuccess(String accountId,
+                                    String storeId,
+                                    String spaceId,
+                                    long runId,
+                                    String contentId,
+                                    String checksum,
+                                    long size) throws ItemWriteFailedException;
+
+    /**
+     * Writes a number of BitLogItems to the store in a single transaction: either
+     * all of them are written or none is.
+     *
+     * @param items
+     * @return the newly created BitLogItems
+     */
+    public List<BitLogItem> writeAll(List<? extends BitLogItem> items) throws ItemWriteFailedException;
+
+    /**
+     * Returns a iterator of a run's BitLogItems in chronological order. If no matches are found, the
      * iterator's hasNext() method will return false.
      *
      * @param account
      * @param storeId
      * @param spaceId
+     * @param runId
      * @return
      */
-    public Iterator<BitLogItem> getBitLogItems(String account, String storeId, String spaceId);
+    public Iterator<BitLogItem> getBitLogItems(String account, String storeId, String spaceId, long runId);
 
     /**
+     * Returns the number of BitLogItems currently logged by a run, including
+     * the successes summarized rather than logged.
+     *
+     * @param account
+     * @param storeId
+     * @param spaceId
+     * @param runId
+     * @return
+     */
+    public long countBitLogItems(String account, String storeId, String spaceId, long runId);
+
+    /**
+     * Records the time at which a content item passed a check, if the store
+     * records verification times.
+     *
+     * @param account
+     * @param storeId
+     * @param spaceId
+     * @param contentId
+     * @param verified
+     */
+    public void recordVerified(String account,
+                               String storeId,
+                               String spaceId,
+                               String contentId,
+                               Date verified) throws ItemWriteFailedException;
+
+    /**
+     * @param account
+     * @param storeId
+     * @param spaceId
+     * @param contentIds
+     * @return the times at which those of the content items which have passed
+     * a check last did so, by content id
+     */
+    public Map<String, Date> getVerifiedDates(String account,
+                                              String storeId,
+                                              String spaceId,
+                                              Collection<String> contentIds);
+
+    /**
+     * Deletes the verification times of a space's content items which have
+     * not passed a check since the given time: those of items which have been
+     * deleted from the space, or which keep failing their checks.
+     *
+     * @param account
+     * @param storeId
+     * @param spaceId
+     * @param before
+     * @return the number of verification times deleted
+     */
+    public long deleteVerifiedBefore(String account, String storeId, String spaceId, Date before);
+
+    /**
+     * @param account
+     * @param storeId
+     * @param spaceId
+     * @param runId
+     * @return the summary of the successes of a run, or null if the run has
+     * none (e.g. it is NO_RUN)
+     */
+    public BitLogRunSummary getRunSummary(String account, String storeId, String spaceId, long runId);
+
+    /**
+     * Deletes a run along with its BitLogItems.
+     *
      * @param account
      * @param storeId
      * @param spaceId
+     * @param runId
      */
-    public void delete(String account, String storeId, String spaceId);
+    public void delete(String account, String storeId, String spaceId, long runId);
 
     /**
      * @param account
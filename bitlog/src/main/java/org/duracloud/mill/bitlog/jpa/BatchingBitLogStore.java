@@ -0,0 +1,601 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.bitlog.jpa;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+
+import org.duracloud.mill.bitlog.BitIntegrityResult;
+import org.duracloud.mill.bitlog.BitLogItem;
+import org.duracloud.mill.bitlog.ItemWriteFailedException;
+import org.duracloud.mill.db.repo.JpaBitIntegrityReportRepo;
+import org.duracloud.storage.domain.StorageProviderType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * A JpaBitLogStore which writes bit log items in batches using group commit:
+ * a single writer inserts items in one transaction at a time. An item written
+ * while no transaction is in progress is inserted right away; items written
+ * (by different task workers) while one is in progress wait for it and are
+ * then inserted together in the next, up to the batch size. The maximum delay
+ * only bounds how long the writer keeps collecting items which keep arriving.
+ *
+ * write() blocks until the transaction holding the item has committed and
+ * fails if it could not be committed. An item returned by write() is therefore
+ * as durable as one written by the JpaBitLogStore, and the task which produced
+ * it is never completed before its result is stored.
+ *
+ * When a data source is set, the items of a batch are inserted with a single
+ * JDBC batch rather than through JPA, which sends one INSERT statement per
+ * item in order to read back its generated id. Connections of the data source
+ * should have rewriteBatchedStatements=true so that the MySQL driver sends the
+ * batch as a multi-row INSERT. Items returned by write() then carry no id.
+ *
+ * Successes which are summarized are batched the same way: those of a batch
+ * are added to their run's summary with a single update per run. So are the
+ * verification times of content items which passed their checks: those of a
+ * batch are updated with a single statement (see
+ * JpaBitLogStore.saveVerified()).
+ *
+ * If a batch fails, its items are written one at a time so that only the
+ * writes of items which cannot be stored fail. Should writing a batch fail
+ * unexpectedly, its writes fail and the writer moves on to the next batch; if
+ * the writer stops nonetheless, the writes waiting for it fail and later
+ * writes are written one at a time. Items waiting when the store is shut down
+ * are written before shutdown() returns; items written afterwards are written
+ * one at a time.
+ *
+ * @author Daniel Bernstein
+ */
+public class BatchingBitLogStore extends JpaBitLogStore {
+
+    private static Logger log = LoggerFactory.getLogger(BatchingBitLogStore.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final long DEFAULT_MAX_DELAY_MS = 50;
+
+    private static final long IDLE_POLL_MS = 1000;
+
+    private static final String INSERT_ITEM_SQL =
+        "insert into bit_log_item (modified, account, store_id, space_id, run_id, content_id, " +
+        "content_checksum, storage_provider_checksum, manifest_checksum, storage_provider_type, " +
+        "result, details) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static class PendingWrite {
+        private JpaBitLogItem item;
+        private Exception error;
+        private CountDownLatch written = new CountDownLatch(1);
+
+        // set for successes to be summarized
+        private boolean summary = false;
+        private long size;
+        private long digest;
+        private boolean summarized;
+
+        // set for verification times to be recorded
+        private JpaBitVerifiedItem verifiedItem;
+        private Date verified;
+
+        PendingWrite(JpaBitLogItem item) {
+            this.item = item;
+        }
+
+        PendingWrite(JpaBitVerifiedItem verifiedItem, Date verified) {
+            this.verifiedItem = verifiedItem;
+            this.verified = verified;
+        }
+
+        PendingWrite(JpaBitLogItem item, long size, long digest) {
+            this(item);
+            this.summary = true;
+            this.size = size;
+            this.digest = digest;
+        }
+
+        void succeeded(JpaBitLogItem item) {
+            this.item = item;
+            written.countDown();
+        }
+
+        void summarized(boolean summarized) {
+            this.summarized = summarized;
+            written.countDown();
+        }
+
+        void recorded() {
+            written.countDown();
+        }
+
+        void failed(Exception error) {
+            this.error = error;
+            written.countDown();
+        }
+
+        boolean isDone() {
+            return written.getCount() == 0;
+        }
+    }
+
+    private int batchSize;
+    private long maxDelayMs;
+    private BlockingQueue<PendingWrite> pending = new LinkedBlockingQueue<>();
+    private volatile boolean shutdown = false;
+    private Thread writer;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+
+    public BatchingBitLogStore(JpaBitLogItemRepo bitLogItemRepo,
+                               JpaBitIntegrityReportRepo bitReportRepo,
+                               JpaBitLogRunRepo bitLogRunRepo,
+                               JpaBitVerifiedItemRepo bitVerifiedItemRepo) {
+        this(bitLogItemRepo, bitReportRepo, bitLogRunRepo, bitVerifiedItemRepo, DEFAULT_BATCH_SIZE,
+             DEFAULT_MAX_DELAY_MS);
+    }
+
+    /**
+     * @param batchSize  the maximum number of items inserted in one transaction
+     * @param maxDelayMs the maximum time in milliseconds spent collecting
+     *                   the items of a batch
+     */
+    public BatchingBitLogStore(JpaBitLogItemRepo bitLogItemRepo,
+                               JpaBitIntegrityReportRepo bitReportRepo,
+                               JpaBitLogRunRepo bitLogRunRepo,
+                               JpaBitVerifiedItemRepo bitVerifiedItemRepo,
+                               int batchSize,
+                               long maxDelayMs) {
+        super(bitLogItemRepo, bitReportRepo, bitLogRunRepo, bitVerifiedItemRepo);
+        this.batchSize = batchSize;
+        this.maxDelayMs = maxDelayMs;
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeBatches();
+            }
+        }, "bit-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Has the items of a batch inserted with a JDBC batch on the given data
+     * source rather than saved through the item repository.
+     *
+     * @param dataSource of the bit log database
+     */
+    public void setDataSource(DataSource dataSource) {
+        setJdbcTemplate(new JdbcTemplate(dataSource), new DataSourceTransactionManager(dataSource));
+    }
+
+    void setJdbcTemplate(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /* (non-Javadoc)
+     * @see org.duracloud.mill.bitlog.jpa.JpaBitLogStore#write(java.lang.String, java.lang.String,
+     * java.lang.String, long, java.lang.String, java.util.Date, org.duracloud.storage.domain.StorageProviderType,
+     * org.duracloud.mill.bitlog.BitIntegrityResult, java.lang.String, java.lang.String, java.lang.String,
+     * java.lang.String)
+     */
+    @Override
+    public BitLogItem write(String accountId,
+                            String storeId,
+                            String spaceId,
+                            long runId,
+                            String contentId,
+                            Date timestamp,
+                            StorageProviderType storeType,
+                            BitIntegrityResult result,
+                            String contentCheckSum,
+                            String storageProviderChecksum,
+                            String manifestChecksum,
+                            String details) throws ItemWriteFailedException {
+        PendingWrite write = new PendingWrite(createItem(accountId,
+                                                         storeId,
+                                                         spaceId,
+                                                         runId,
+                                                         contentId,
+                                                         timestamp,
+                                                         storeType,
+                                                         result,
+                                                         contentCheckSum,
+                                                         storageProviderChecksum,
+                                                         manifestChecksum,
+                                                         details));
+        if (!addPending(write)) {
+            return super.write(accountId, storeId, spaceId, runId, contentId, timestamp, storeType, result,
+                               contentCheckSum, storageProviderChecksum, manifestChecksum, details);
+        }
+
+        await(write);
+        return write.item;
+    }
+
+    /* (non-Javadoc)
+     * @see org.duracloud.mill.bitlog.jpa.JpaBitLogStore#summarizeSuccess(java.lang.String, java.lang.String,
+     * java.lang.String, long, java.lang.String, java.lang.String, long)
+     */
+    @Override
+    public boolean summarizeSuccess(String accountId,
+                                    String storeId,
+                                    String spaceId,
+                                    long runId,
+                                    String contentId,
+                                    String checksum,
+                                    long size) throws ItemWriteFailedException {
+        if (!isSummarizingSuccesses() || runId == NO_RUN) {
+            return false;
+        }
+
+        PendingWrite write = new PendingWrite(createItem(accountId,
+                                                         storeId,
+                                                         spaceId,
+                                                         runId,
+                                                         contentId,
+                                                         new Date(),
+                                                         null,
+                                                         BitIntegrityResult.SUCCESS,
+                                                         null,
+                                                         checksum,
+                                                         null,
+                                                         null),
+                                              size,
+                                              digest(contentId, checksum));
+        if (!addPending(write)) {
+            return super.summarizeSuccess(accountId, storeId, spaceId, runId, contentId, checksum, size);
+        }
+
+        await(write);
+        return write.summarized;
+    }
+
+    /* (non-Javadoc)
+     * @see org.duracloud.mill.bitlog.jpa.JpaBitLogStore#recordVerified(java.lang.String, java.lang.String,
+     * java.lang.String, java.lang.String, java.util.Date)
+     */
+    @Override
+    public void recordVerified(String account,
+                               String storeId,
+                               String spaceId,
+                               String contentId,
+                               Date verified) throws ItemWriteFailedException {
+        if (!isRecordingVerification()) {
+            return;
+        }
+
+        PendingWrite write = new PendingWrite(createVerifiedItem(account, storeId, spaceId, contentId), verified);
+        if (!addPending(write)) {
+            super.recordVerified(account, storeId, spaceId, contentId, verified);
+            return;
+        }
+
+        await(write);
+    }
+
+    /**
+     * @return false if the store has been shut down
+     */
+    private boolean addPending(PendingWrite write) {
+        synchronized (pending) {
+            if (!shutdown) {
+                pending.add(write);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private void await(PendingWrite write) throws ItemWriteFailedException {
+        try {
+            // the writer fails what is left when it stops, so this only
+            // guards against a write it never got to.
+            while (!write.written.await(IDLE_POLL_MS, TimeUnit.MILLISECONDS)) {
+                if (!writer.isAlive() && !write.isDone()) {
+                    throw new ItemWriteFailedException(
+                        new IllegalStateException("the bit log writer is not running"));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // the item may still be written, in which case a retry will
+            // write it a second time.
+            throw new ItemWriteFailedException(e);
+        }
+
+        if (write.error != null) {
+            throw new ItemWriteFailedException(write.error);
+        }
+    }
+
+    /**
+     * Writes the items which are waiting and stops batching.
+     */
+    public void shutdown() {
+        synchronized (pending) {
+            shutdown = true;
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("bit log writer shut down");
+    }
+
+    private void writeBatches() {
+        try {
+            while (true) {
+                PendingWrite first = pending.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    // nothing is added once shutdown is set
+                    if (shutdown && pending.isEmpty()) {
+                        return;
+                    }
+                    continue;
+                }
+
+                // the batch holds what was written while the last one was
+                // being committed; it is written as soon as nothing more is
+                // waiting rather than waiting for more to arrive.
+                List<PendingWrite> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                long deadline = System.currentTimeMillis() + maxDelayMs;
+                while (batch.size() < batchSize && System.currentTimeMillis() < deadline) {
+                    if (pending.drainTo(batch, batchSize - batch.size()) == 0) {
+                        break;
+                    }
+                }
+
+                try {
+                    writeBatch(batch);
+                } catch (Throwable t) {
+                    log.error("failed to write batch of {} bit log writes: {}", batch.size(), t.getMessage(), t);
+                    failAll(batch, t);
+                }
+            }
+        } catch (InterruptedException e) {
+            log.error("bit log writer interrupted: {} writes left waiting", pending.size());
+        } finally {
+            // later writes are written one at a time by the task workers
+            synchronized (pending) {
+                shutdown = true;
+            }
+            List<PendingWrite> left = new ArrayList<>();
+            pending.drainTo(left);
+            if (!left.isEmpty()) {
+                log.error("bit log writer stopped, failing {} writes left waiting", left.size());
+                failAll(left, new IllegalStateException("the bit log writer stopped"));
+            }
+        }
+    }
+
+    private void failAll(List<PendingWrite> writes, Throwable t) {
+        Exception error = t instanceof Exception ? (Exception) t : new RuntimeException(t);
+        for (PendingWrite write : writes) {
+            if (!write.isDone()) {
+                write.failed(error);
+            }
+        }
+    }
+
+    /**
+     * @return the number of writes waiting for the writer
+     */
+    int getPendingCount() {
+        return pending.size();
+    }
+
+    private void writeBatch(List<PendingWrite> batch) {
+        List<PendingWrite> itemWrites = new ArrayList<>(batch.size());
+        List<PendingWrite> verifications = new ArrayList<>();
+        Map<Long, List<PendingWrite>> summaries = new HashMap<>();
+        for (PendingWrite write : batch) {
+            if (write.verifiedItem != null) {
+                verifications.add(write);
+            } else if (write.summary) {
+                Long runId = write.item.getRunId();
+                if (!summaries.containsKey(runId)) {
+                    summaries.put(runId, new ArrayList<PendingWrite>());
+                }
+                summaries.get(runId).add(write);
+            } else {
+                itemWrites.add(write);
+            }
+        }
+
+        if (!itemWrites.isEmpty()) {
+            writeItems(itemWrites);
+        }
+        for (Map.Entry<Long, List<PendingWrite>> summary : summaries.entrySet()) {
+            writeSummary(summary.getKey(), summary.getValue());
+        }
+        if (!verifications.isEmpty()) {
+            writeVerifications(verifications);
+        }
+    }
+
+    /*
+     * The items of a batch were verified within moments of each other, so they
+     * are all recorded as verified at the latest of their times.
+     */
+    private void writeVerifications(List<PendingWrite> batch) {
+        List<JpaBitVerifiedItem> items = new ArrayList<>(batch.size());
+        Date verified = batch.get(0).verified;
+        for (PendingWrite write : batch) {
+            items.add(write.verifiedItem);
+            if (write.verified.after(verified)) {
+                verified = write.verified;
+            }
+        }
+
+        try {
+            saveVerified(items, verified);
+        } catch (Exception ex) {
+            log.warn("failed to record the verification of {} content items: {}", batch.size(), ex.getMessage());
+            for (PendingWrite write : batch) {
+                write.failed(ex);
+            }
+            return;
+        }
+
+        for (PendingWrite write : batch) {
+            write.recorded();
+        }
+        log.debug("recorded the verification of {} content items", batch.size());
+    }
+
+    private void writeSummary(Long runId, List<PendingWrite> batch) {
+        long bytes = 0;
+        long digest = 0;
+        for (PendingWrite write : batch) {
+            bytes += write.size;
+            digest = addDigests(digest, write.digest);
+        }
+
+        try {
+            if (getBitLogRunRepo().addSuccesses(runId, batch.size(), bytes, digest) == 0) {
+                logLateSuccesses(runId, batch.size());
+            }
+        } catch (Exception ex) {
+            log.warn("failed to add {} successes to the summary of bit log run {}: {}",
+                     batch.size(), runId, ex.getMessage());
+            for (PendingWrite write : batch) {
+                write.failed(ex);
+            }
+            return;
+        }
+
+        for (PendingWrite write : batch) {
+            write.summarized(true);
+        }
+        log.debug("added {} successes to the summary of bit log run {}", batch.size(), runId);
+    }
+
+    private void writeItems(List<PendingWrite> batch) {
+        List<JpaBitLogItem> items = new ArrayList<>(batch.size());
+        for (PendingWrite write : batch) {
+            items.add(write.item);
+        }
+
+        try {
+            moveItemsOfReportedRuns(items);
+        } catch (Exception ex) {
+            log.warn("failed to look up the runs of a batch of {} bit log items: {}", batch.size(), ex.getMessage());
+            for (PendingWrite write : batch) {
+                write.failed(ex);
+            }
+            return;
+        }
+
+        List<JpaBitLogItem> saved;
+        try {
+            if (jdbcTemplate != null) {
+                insertItems(items);
+                saved = items;
+            } else {
+                // saving the list is a single transaction (of one insert per item).
+                saved = getBitLogItemRepo().save(items);
+            }
+        } catch (Exception ex) {
+            log.warn("failed to write batch of {} bit log items, writing them one at a time: {}",
+                     batch.size(), ex.getMessage());
+            for (PendingWrite write : batch) {
+                try {
+                    write.succeeded(getBitLogItemRepo().saveAndFlush(copy(write.item)));
+                } catch (Exception e) {
+                    write.failed(e);
+                }
+            }
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).succeeded(saved.get(i));
+        }
+        log.debug("wrote batch of {} bit log items", batch.size());
+    }
+
+    private void insertItems(final List<JpaBitLogItem> items) {
+        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                jdbcTemplate.batchUpdate(INSERT_ITEM_SQL, new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        JpaBitLogItem item = items.get(i);
+                        Date modified = item.getModified() != null ? item.getModified() : new Date();
+                        ps.setTimestamp(1, new Timestamp(modified.getTime()));
+                        ps.setString(2, item.getAccount());
+                        ps.setString(3, item.getStoreId());
+                        ps.setString(4, item.getSpaceId());
+                        ps.setLong(5, item.getRunId());
+                        ps.setString(6, item.getContentId());
+                        ps.setString(7, item.getContentChecksum());
+                        ps.setString(8, item.getStorageProviderChecksum());
+                        ps.setString(9, item.getManifestChecksum());
+                        setEnum(ps, 10, item.getStorageProviderType());
+                        setEnum(ps, 11, item.getResult());
+                        ps.setString(12, item.getDetails());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return items.size();
+                    }
+                });
+            }
+        });
+    }
+
+    private static void setEnum(PreparedStatement ps, int index, Enum<?> value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.VARCHAR);
+        } else {
+            ps.setString(index, value.name());
+        }
+    }
+
+    /*
+     * Items of a rolled back batch may have been assigned ids, so they are
+     * written as new items.
+     */
+    private JpaBitLogItem copy(JpaBitLogItem item) {
+        return createItem(item.getAccount(),
+                          item.getStoreId(),
+                          item.getSpaceId(),
+                          item.getRunId(),
+                          item.getContentId(),
+                          item.getModified(),
+                          item.getStorageProviderType(),
+                          item.getResult(),
+                          item.getContentChecksum(),
+                          item.getStorageProviderChecksum(),
+                          item.getManifestChecksum(),
+                          item.getDetails());
+    }
+}
@@ -31,6 +31,8 @@ public class JpaBitLogItem extends BaseEntity implements BitLogItem {
     private String storeId;
     @Column(nullable = false)
     private String spaceId;
+    @Column(nullable = false)
+    private long runId;
     @Column(nullable = false, length = 1024)
     private String contentId;
     private String contentChecksum;
@@ -63,6 +65,10 @@ public class JpaBitLogItem extends BaseEntity implements BitLogItem {
         this.spaceId = spaceId;
     }
 
+    public void setRunId(long runId) {
+        this.runId = runId;
+    }
+
     public void setContentId(String contentId) {
         this.contentId = contentId;
     }
@@ -111,6 +117,14 @@ public class JpaBitLogItem extends BaseEntity implements BitLogItem {
         return spaceId;
     }
 
+    /* (non-Javadoc)
+     * @see org.duracloud.mill.bitlog.BitLogItem#getRunId()
+     */
+    @Override
+    public long getRunId() {
+        return runId;
+    }
+
     /* (non-Javadoc)
      * @see org.duracloud.mill.bitlog.BitLogItem#getContentId()
      */
@@ -10,12 +10,13 @@ package org.duracloud.mill.bitlog.jpa;
 import java.util.List;
 
 import org.duracloud.mill.bitlog.BitLogItem;
-import org.springframework.data.domain.Page;
+import org.duracloud.mill.db.repo.MillJpaRepoConfig;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * @author Daniel Bernstein
@@ -28,25 +29,73 @@ public interface JpaBitLogItemRepo extends JpaRepository<JpaBitLogItem, Long> {
      * @param account
      * @param storeId
      * @param spaceId
+     * @param runId
+     * @param id       the id after which to start (0 for the first page)
+     * @param pageable the page size (the page number should be 0)
+     * @return the run's next items in id order
+     */
+    public List<JpaBitLogItem> findByAccountAndStoreIdAndSpaceIdAndRunIdAndIdGreaterThanOrderByIdAsc(
+        String account,
+        String storeId,
+        String spaceId,
+        long runId,
+        Long id,
+        Pageable pageable);
+
+    /**
+     * Finds the ids of a run's items after the given one, in id order. With
+     * a page size of 1, the page number selects the id that many items along.
+     *
+     * @param account
+     * @param storeId
+     * @param spaceId
+     * @param runId
+     * @param id
      * @param pageable
      * @return
      */
-    public Page<JpaBitLogItem> findByAccountAndStoreIdAndSpaceId(String account,
-                                                                 String storeId,
-                                                                 String spaceId,
-                                                                 Pageable pageable);
+    @Query("select b.id from JpaBitLogItem b where b.account = ?1 and b.storeId = ?2 and b.spaceId = ?3 " +
+           "and b.runId = ?4 and b.id > ?5 order by b.id")
+    public List<Long> findIdsAfter(String account,
+                                   String storeId,
+                                   String spaceId,
+                                   long runId,
+                                   Long id,
+                                   Pageable pageable);
+
+    /**
+     * @param account
+     * @param storeId
+     * @param spaceId
+     * @param runId
+     * @return the number of items logged by the run
+     */
+    public long countByAccountAndStoreIdAndSpaceIdAndRunId(String account,
+                                                           String storeId,
+                                                           String spaceId,
+                                                           long runId);
 
     /**
+     * Deletes a run's items in a range of ids, in a transaction of its own.
+     *
      * @param account
      * @param storeId
      * @param spaceId
+     * @param runId
+     * @param fromIdExclusive
+     * @param toIdInclusive
+     * @return the number of items deleted
      */
     @Modifying
-    @Query(nativeQuery = true,
-           value = "delete from bit_log_item where account=?1 and store_id=?2 and space_id=?3 limit 50000")
-    public int deleteFirst50000ByAccountAndStoreIdAndSpaceId(String account,
-                                                             String storeId,
-                                                             String spaceId);
+    @Transactional(MillJpaRepoConfig.TRANSACTION_MANAGER_BEAN)
+    @Query("delete from JpaBitLogItem b where b.account = ?1 and b.storeId = ?2 and b.spaceId = ?3 " +
+           "and b.runId = ?4 and b.id > ?5 and b.id <= ?6")
+    public int deleteByIdRange(String account,
+                               String storeId,
+                               String spaceId,
+                               long runId,
+                               Long fromIdExclusive,
+                               Long toIdInclusive);
 
     /**
      * @param account
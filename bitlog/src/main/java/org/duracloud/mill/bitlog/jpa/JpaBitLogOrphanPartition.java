@@ -0,0 +1,36 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.bitlog.jpa;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+
+import org.duracloud.mill.db.model.BaseEntity;
+
+/**
+ * The partition of a deleted bit integrity run which could not be dropped
+ * along with the run. Its items have been deleted, and dropping the partition
+ * is retried when a run is started.
+ *
+ * @author Daniel Bernstein
+ */
+@Entity
+@Table(name = "bit_log_orphan_partition")
+public class JpaBitLogOrphanPartition extends BaseEntity {
+    @Column(nullable = false, unique = true)
+    private long runId;
+
+    public long getRunId() {
+        return runId;
+    }
+
+    public void setRunId(long runId) {
+        this.runId = runId;
+    }
+}
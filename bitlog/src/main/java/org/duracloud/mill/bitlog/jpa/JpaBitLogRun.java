@@ -0,0 +1,100 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.bitlog.jpa;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+
+import org.duracloud.mill.bitlog.BitLogRunSummary;
+import org.duracloud.mill.db.model.BaseEntity;
+
+/**
+ * A bit integrity run of a space. The bit log items of a run carry its id, so
+ * that a run's items can be read and removed apart from those of any other.
+ * Successful checks which are summarized rather than logged as items are
+ * added to the run's summary.
+ *
+ * @author Daniel Bernstein
+ */
+@Entity
+@Table(name = "bit_log_run")
+public class JpaBitLogRun extends BaseEntity implements BitLogRunSummary {
+    @Column(nullable = false)
+    private String account;
+    @Column(nullable = false)
+    private String storeId;
+    @Column(nullable = false)
+    private String spaceId;
+    @Column(nullable = false)
+    private long successCount;
+    @Column(nullable = false)
+    private long successBytes;
+    @Column(nullable = false)
+    private long successDigest;
+
+    public String getAccount() {
+        return account;
+    }
+
+    public void setAccount(String account) {
+        this.account = account;
+    }
+
+    public String getStoreId() {
+        return storeId;
+    }
+
+    public void setStoreId(String storeId) {
+        this.storeId = storeId;
+    }
+
+    public String getSpaceId() {
+        return spaceId;
+    }
+
+    public void setSpaceId(String spaceId) {
+        this.spaceId = spaceId;
+    }
+
+    /* (non-Javadoc)
+     * @see org.duracloud.mill.bitlog.BitLogRunSummary#getSuccessCount()
+     */
+    @Override
+    public long getSuccessCount() {
+        return successCount;
+    }
+
+    public void setSuccessCount(long successCount) {
+        this.successCount = successCount;
+    }
+
+    /* (non-Javadoc)
+     * @see org.duracloud.mill.bitlog.BitLogRunSummary#getSuccessBytes()
+     */
+    @Override
+    public long getSuccessBytes() {
+        return successBytes;
+    }
+
+    public void setSuccessBytes(long successBytes) {
+        this.successBytes = successBytes;
+    }
+
+    /* (non-Javadoc)
+     * @see org.duracloud.mill.bitlog.BitLogRunSummary#getSuccessDigest()
+     */
+    @Override
+    public long getSuccessDigest() {
+        return successDigest;
+    }
+
+    public void setSuccessDigest(long successDigest) {
+        this.successDigest = successDigest;
+    }
+}
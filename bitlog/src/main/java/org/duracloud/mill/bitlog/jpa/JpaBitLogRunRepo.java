@@ -0,0 +1,107 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.bitlog.jpa;
+
+import java.util.List;
+
+import org.duracloud.mill.db.repo.MillJpaRepoConfig;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * The partition procedures are created by
+ * resources/mill-schema-upgrade-bit-log-runs.sql along with the partitioning
+ * of the bit_log_item table by run id.
+ *
+ * @author Daniel Bernstein
+ */
+@Repository(value = "bitLogRunRepo")
+public interface JpaBitLogRunRepo extends JpaRepository<JpaBitLogRun, Long> {
+
+    /**
+     * @param account
+     * @param storeId
+     * @param spaceId
+     * @return the space's latest run, or null if it has none
+     */
+    public JpaBitLogRun findFirstByAccountAndStoreIdAndSpaceIdOrderByIdDesc(String account,
+                                                                           String storeId,
+                                                                           String spaceId);
+
+    /**
+     * Adds successful checks to a run's summary. Digests are added modulo
+     * 2^62 (see JpaBitLogStore.addDigests()).
+     *
+     * @param runId
+     * @param count
+     * @param bytes
+     * @param digest
+     * @return the number of runs updated: 0 if the run does not exist
+     */
+    @Modifying
+    @Transactional(MillJpaRepoConfig.TRANSACTION_MANAGER_BEAN)
+    @Query("update JpaBitLogRun r set r.successCount = r.successCount + ?2, " +
+           "r.successBytes = r.successBytes + ?3, " +
+           "r.successDigest = mod(r.successDigest + ?4, 4611686018427387904) where r.id = ?1")
+    public int addSuccesses(Long runId, long count, long bytes, long digest);
+
+    /**
+     * Adds a partition of the bit_log_item table for a run's items.
+     *
+     * @param runId
+     * @return
+     */
+    @Modifying
+    @Transactional(MillJpaRepoConfig.TRANSACTION_MANAGER_BEAN)
+    @Query(nativeQuery = true, value = "call add_bit_log_run_partition(?1)")
+    public int addPartition(Long runId);
+
+    /**
+     * Drops the partition of the bit_log_item table holding a run's items,
+     * and the items with it.
+     *
+     * @param runId
+     * @return
+     */
+    @Modifying
+    @Transactional(MillJpaRepoConfig.TRANSACTION_MANAGER_BEAN)
+    @Query(nativeQuery = true, value = "call drop_bit_log_run_partition(?1)")
+    public int dropPartition(Long runId);
+
+    /**
+     * Records the partition of a deleted run which could not be dropped, so
+     * that dropping it may be retried.
+     *
+     * @param runId
+     * @return
+     */
+    @Modifying
+    @Transactional(MillJpaRepoConfig.TRANSACTION_MANAGER_BEAN)
+    @Query(nativeQuery = true,
+           value = "insert ignore into bit_log_orphan_partition (modified, run_id, version) values (now(3), ?1, 0)")
+    public int addOrphanPartition(Long runId);
+
+    /**
+     * @return the run ids of the partitions which could not be dropped along
+     * with their runs
+     */
+    @Query("select o.runId from JpaBitLogOrphanPartition o order by o.runId")
+    public List<Long> findOrphanPartitionRunIds();
+
+    /**
+     * @param runId
+     * @return
+     */
+    @Modifying
+    @Transactional(MillJpaRepoConfig.TRANSACTION_MANAGER_BEAN)
+    @Query("delete from JpaBitLogOrphanPartition o where o.runId = ?1")
+    public int deleteOrphanPartition(Long runId);
+}
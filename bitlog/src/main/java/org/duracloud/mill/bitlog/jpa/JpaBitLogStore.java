@@ -7,13 +7,26 @@
  */
 package org.duracloud.mill.bitlog.jpa;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
-import org.duracloud.common.collection.StreamingIterator;
-import org.duracloud.common.collection.jpa.JpaIteratorSource;
+import org.duracloud.common.error.DuraCloudRuntimeException;
+import org.duracloud.common.util.ChecksumUtil;
+import org.duracloud.common.util.ChecksumUtil.Algorithm;
 import org.duracloud.mill.bitlog.BitIntegrityResult;
 import org.duracloud.mill.bitlog.BitLogItem;
+import org.duracloud.mill.bitlog.BitLogRunSummary;
 import org.duracloud.mill.bitlog.BitLogStore;
 import org.duracloud.mill.bitlog.ItemWriteFailedException;
 import org.duracloud.mill.db.model.BitIntegrityReport;
@@ -23,8 +36,7 @@ import org.duracloud.reportdata.bitintegrity.BitIntegrityReportResult;
 import org.duracloud.storage.domain.StorageProviderType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -34,15 +46,260 @@ import org.springframework.transaction.annotation.Transactional;
 public class JpaBitLogStore implements BitLogStore {
 
     private static Logger log = LoggerFactory.getLogger(JpaBitLogStore.class);
+
+    private static final int PAGE_SIZE = 50000;
+    private static final int DELETE_CHUNK_SIZE = 50000;
+    private static final long DIGEST_MASK = (1L << 62) - 1;
+
     private JpaBitLogItemRepo bitLogItemRepo;
     private JpaBitIntegrityReportRepo bitReportRepo;
+    private JpaBitLogRunRepo bitLogRunRepo;
+    private JpaBitVerifiedItemRepo bitVerifiedItemRepo;
+    private boolean partitionByRun = false;
+    private boolean summarizeSuccesses = false;
+    private boolean recordVerification = false;
 
     /**
      *
      */
-    public JpaBitLogStore(JpaBitLogItemRepo bitLogItemRepo, JpaBitIntegrityReportRepo bitReportRepo) {
+    public JpaBitLogStore(JpaBitLogItemRepo bitLogItemRepo,
+                          JpaBitIntegrityReportRepo bitReportRepo,
+                          JpaBitLogRunRepo bitLogRunRepo,
+                          JpaBitVerifiedItemRepo bitVerifiedItemRepo) {
         this.bitLogItemRepo = bitLogItemRepo;
         this.bitReportRepo = bitReportRepo;
+        this.bitLogRunRepo = bitLogRunRepo;
+        this.bitVerifiedItemRepo = bitVerifiedItemRepo;
+    }
+
+    /**
+     * Keeps the items of each run in a partition of the bit_log_item table of
+     * its own, which is dropped when the run is deleted, rather than deleting
+     * the items row by row. A partition which cannot be dropped is emptied
+     * and dropped when a later run is started. Requires the table to be
+     * partitioned by run id (see resources/mill-schema-upgrade-bit-log-runs.sql).
+     * The default is false.
+     *
+     * @param partitionByRun
+     */
+    public void setPartitionByRun(boolean partitionByRun) {
+        this.partitionByRun = partitionByRun;
+    }
+
+    /**
+     * Adds successful checks of a run to the run's summary rather than logging
+     * an item for each of them, so that only anomalies are logged as items.
+     * Successes which are not logged by a run are still logged as items. The
+     * default is false.
+     *
+     * @param summarizeSuccesses
+     */
+    public void setSummarizeSuccesses(boolean summarizeSuccesses) {
+        this.summarizeSuccesses = summarizeSuccesses;
+    }
+
+    protected boolean isSummarizingSuccesses() {
+        return summarizeSuccesses;
+    }
+
+    /**
+     * Records the time at which each content item last passed a check, so
+     * that items can be checked when they are due rather than all at once.
+     * The default is false.
+     *
+     * @param recordVerification
+     */
+    public void setRecordVerification(boolean recordVerification) {
+        this.recordVerification = recordVerification;
+    }
+
+    protected boolean isRecordingVerification() {
+        return recordVerification;
+    }
+
+    /* (non-Javadoc)
+     * @see org.duracloud.mill.bitlog.BitLogStore#recordVerified(java.lang.String, java.lang.String,
+     * java.lang.String, java.lang.String, java.util.Date)
+     */
+    @Override
+    public void recordVerified(String account,
+                               String storeId,
+                               String spaceId,
+                               String contentId,
+                               Date verified) throws ItemWriteFailedException {
+        if (!recordVerification) {
+            return;
+        }
+
+        try {
+            saveVerified(Collections.singletonList(createVerifiedItem(account, storeId, spaceId, contentId)),
+                         verified);
+        } catch (Exception ex) {
+            throw new ItemWriteFailedException(ex);
+        }
+    }
+
+    protected JpaBitVerifiedItem createVerifiedItem(String account,
+                                                    String storeId,
+                                                    String spaceId,
+                                                    String contentId) {
+        JpaBitVerifiedItem item = new JpaBitVerifiedItem();
+        item.setAccount(account);
+        item.setStoreId(storeId);
+        item.setSpaceId(spaceId);
+        item.setContentId(contentId);
+        item.setUniqueKey(getVerifiedItemKey(account, storeId, spaceId, contentId));
+        return item;
+    }
+
+    /**
+     * @param account
+     * @param storeId
+     * @param spaceId
+     * @param contentId
+     * @return the unique key of a content item's verification time: the MD5
+     * of its account, store id, space id and content id.
+     */
+    protected static String getVerifiedItemKey(String account, String storeId, String spaceId, String contentId) {
+        return new ChecksumUtil(Algorithm.MD5).generateChecksum(account + "/" + storeId + "/" + spaceId + "/" +
+                                                                contentId);
+    }
+
+    /**
+     * Records that content items passed their checks at the given time. Those
+     * which have passed a check before are updated with a single statement and
+     * the others are inserted in a single transaction. Should some of them
+     * have been inserted in the meantime (by a concurrent check of the same
+     * item), they are upserted one at a time instead.
+     *
+     * @param items
+     * @param verified
+     */
+    protected void saveVerified(List<JpaBitVerifiedItem> items, Date verified) {
+        Map<String, JpaBitVerifiedItem> missing = new LinkedHashMap<>();
+        for (JpaBitVerifiedItem item : items) {
+            missing.put(item.getUniqueKey(), item);
+        }
+
+        if (bitVerifiedItemRepo.updateVerified(new ArrayList<>(missing.keySet()), verified) >= missing.size()) {
+            return;
+        }
+
+        for (JpaBitVerifiedItem existing : bitVerifiedItemRepo.findByUniqueKeyIn(new ArrayList<>(missing.keySet()))) {
+            missing.remove(existing.getUniqueKey());
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        for (JpaBitVerifiedItem item : missing.values()) {
+            item.setVerified(verified);
+            item.setModified(verified);
+        }
+
+        try {
+            bitVerifiedItemRepo.save(new ArrayList<>(missing.values()));
+        } catch (Exception ex) {
+            log.info("failed to insert {} verified items, upserting them one at a time: {}",
+                     missing.size(), ex.getMessage());
+            for (JpaBitVerifiedItem item : missing.values()) {
+                bitVerifiedItemRepo.upsertVerified(item.getAccount(),
+                                                   item.getStoreId(),
+                                                   item.getSpaceId(),
+                                                   item.getContentId(),
+                                                   item.getUniqueKey(),
+                                                   verified);
+            }
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.duracloud.mill.bitlog.BitLogStore#getVerifiedDates(java.lang.String, java.lang.String,
+     * java.lang.String, java.util.Collection)
+     */
+    @Override
+    public Map<String, Date> getVerifiedDates(String account,
+                                              String storeId,
+                                              String spaceId,
+                                              Collection<String> contentIds) {
+        Map<String, Date> verified = new HashMap<>();
+        if (contentIds.isEmpty()) {
+            return verified;
+        }
+
+        List<String> uniqueKeys = new ArrayList<>(contentIds.size());
+        for (String contentId : contentIds) {
+            uniqueKeys.add(getVerifiedItemKey(account, storeId, spaceId, contentId));
+        }
+
+        for (JpaBitVerifiedItem item : bitVerifiedItemRepo.findByUniqueKeyIn(uniqueKeys)) {
+            verified.put(item.getContentId(), item.getVerified());
+        }
+        return verified;
+    }
+
+    /* (non-Javadoc)
+     * @see org.duracloud.mill.bitlog.BitLogStore#deleteVerifiedBefore(java.lang.String, java.lang.String,
+     * java.lang.String, java.util.Date)
+     */
+    @Override
+    public long deleteVerifiedBefore(String account, String storeId, String spaceId, Date before) {
+        // deletes a chunk at a time, each in its own transaction, so that the
+        // times of a space whose content has been deleted are not deleted in
+        // a single large transaction.
+        long deleted = 0;
+        int chunk;
+        do {
+            chunk = bitVerifiedItemRepo.deleteVerifiedBefore(account, storeId, spaceId, before, DELETE_CHUNK_SIZE);
+            deleted += chunk;
+        } while (chunk >= DELETE_CHUNK_SIZE);
+
+        if (deleted > 0) {
+            log.info("deleted {} verification times not renewed since {} where account = {}, store_id = {}, " +
+                     "space_id = {}", deleted, before, account, storeId, spaceId);
+        }
+        return deleted;
+    }
+
+    /* (non-Javadoc)
+     * @see org.duracloud.mill.bitlog.BitLogStore#startRun(java.lang.String, java.lang.String, java.lang.String)
+     */
+    @Override
+    public long startRun(String account, String storeId, String spaceId) {
+        if (partitionByRun) {
+            dropOrphanPartitions();
+        }
+
+        JpaBitLogRun run = new JpaBitLogRun();
+        run.setAccount(account);
+        run.setStoreId(storeId);
+        run.setSpaceId(spaceId);
+        run.setModified(new Date());
+
+        try {
+            run = bitLogRunRepo.saveAndFlush(run);
+        } catch (Exception ex) {
+            log.warn("failed to start bit log run where account = {}, store_id = {}, space_id = {}: " +
+                     "items will be logged without a run: {}", account, storeId, spaceId, ex.getMessage());
+            return NO_RUN;
+        }
+
+        if (partitionByRun) {
+            try {
+                bitLogRunRepo.addPartition(run.getId());
+            } catch (Exception ex) {
+                // items cannot be inserted for a run which has no partition
+                log.warn("failed to add bit log partition for run {} where account = {}, store_id = {}, " +
+                         "space_id = {}: items will be logged without a run: {}",
+                         run.getId(), account, storeId, spaceId, ex.getMessage());
+                deleteRun(run.getId());
+                return NO_RUN;
+            }
+        }
+
+        log.info("started bit log run {} where account = {}, store_id = {}, space_id = {}",
+                 run.getId(), account, storeId, spaceId);
+        return run.getId();
     }
 
     /*
@@ -59,6 +316,7 @@ public class JpaBitLogStore implements BitLogStore {
     public BitLogItem write(String accountId,
                             String storeId,
                             String spaceId,
+                            long runId,
                             String contentId,
                             Date timestamp,
                             StorageProviderType storeType,
@@ -67,69 +325,335 @@ public class JpaBitLogStore implements BitLogStore {
                             String storageProviderChecksum,
                             String manifestChecksum,
                             String details) throws ItemWriteFailedException {
+        JpaBitLogItem item = createItem(accountId,
+                                        storeId,
+                                        spaceId,
+                                        runId,
+                                        contentId,
+                                        timestamp,
+                                        storeType,
+                                        result,
+                                        contentCheckSum,
+                                        storageProviderChecksum,
+                                        manifestChecksum,
+                                        details);
         try {
-            JpaBitLogItem item = new JpaBitLogItem();
-
-            item.setAccount(accountId);
-            item.setStoreId(storeId);
-            item.setStorageProviderType(storeType);
-            item.setSpaceId(spaceId);
-            item.setContentId(contentId);
-            item.setContentChecksum(contentCheckSum);
-            item.setStorageProviderChecksum(storageProviderChecksum);
-            item.setManifestChecksum(manifestChecksum);
-            item.setDetails(details);
-            item.setResult(result);
-            item.setModified(timestamp);
+            moveItemsOfReportedRuns(Collections.singletonList(item));
             return this.bitLogItemRepo.saveAndFlush(item);
+        } catch (Exception ex) {
+            throw new ItemWriteFailedException(ex);
+        }
+    }
 
+    /* (non-Javadoc)
+     * @see org.duracloud.mill.bitlog.BitLogStore#summarizeSuccess(java.lang.String, java.lang.String,
+     * java.lang.String, long, java.lang.String, java.lang.String, long)
+     */
+    @Override
+    public boolean summarizeSuccess(String accountId,
+                                    String storeId,
+                                    String spaceId,
+                                    long runId,
+                                    String contentId,
+                                    String checksum,
+                                    long size) throws ItemWriteFailedException {
+        if (!summarizeSuccesses || runId == NO_RUN) {
+            return false;
+        }
+
+        try {
+            if (bitLogRunRepo.addSuccesses(runId, 1, size, digest(contentId, checksum)) == 0) {
+                logLateSuccesses(runId, 1);
+            }
+            return true;
         } catch (Exception ex) {
             throw new ItemWriteFailedException(ex);
         }
     }
 
+    /**
+     * The run is gone once it has been reported on: successes checked after
+     * its report (for instance, by a duplicate check task) are dropped rather
+     * than logged, since the run's summary has already been reported.
+     *
+     * @param runId
+     * @param count
+     */
+    protected void logLateSuccesses(long runId, int count) {
+        log.info("dropped {} successes of bit log run {}, which has already been reported on", count, runId);
+    }
+
+    /**
+     * Moves items of runs which have already been reported on (and deleted)
+     * to the latest run of their space, to be reported along with it, or to
+     * NO_RUN if the space has no run. Such items come from checks which
+     * finished after their run's report, or which were repeated: with
+     * partitioning, their run's partition is gone and they could not be
+     * inserted, and without it, they would never be reported nor deleted.
+     *
+     * An item written while its run is being deleted may still miss the
+     * check: with partitioning, its insert fails, and the item is moved when
+     * its write is retried.
+     *
+     * @param items
+     */
+    protected void moveItemsOfReportedRuns(List<JpaBitLogItem> items) {
+        Map<Long, Long> runIds = new HashMap<>();
+        for (JpaBitLogItem item : items) {
+            Long runId = item.getRunId();
+            if (!runIds.containsKey(runId)) {
+                runIds.put(runId, getCurrentRunId(item.getAccount(), item.getStoreId(), item.getSpaceId(), runId));
+            }
+            item.setRunId(runIds.get(runId));
+        }
+    }
+
+    private long getCurrentRunId(String account, String storeId, String spaceId, long runId) {
+        if (runId == NO_RUN || bitLogRunRepo.exists(runId)) {
+            return runId;
+        }
+
+        JpaBitLogRun latest = bitLogRunRepo.findFirstByAccountAndStoreIdAndSpaceIdOrderByIdDesc(account,
+                                                                                               storeId,
+                                                                                               spaceId);
+        long currentRunId = latest == null ? NO_RUN : latest.getId();
+        log.warn("bit log run {} where account = {}, store_id = {}, space_id = {} has already been reported " +
+                 "on: its late items are logged by run {}", runId, account, storeId, spaceId, currentRunId);
+        return currentRunId;
+    }
+
+    /**
+     * @param contentId
+     * @param checksum
+     * @return the digest of a successful check: 62 bits of the MD5 of the
+     * content id and checksum
+     */
+    protected static long digest(String contentId, String checksum) {
+        try {
+            byte[] md5 = MessageDigest.getInstance("MD5")
+                                      .digest((contentId + "\t" + checksum).getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(md5).getLong() & DIGEST_MASK;
+        } catch (NoSuchAlgorithmException e) {
+            throw new DuraCloudRuntimeException(e);
+        }
+    }
+
+    /**
+     * Digests are combined by adding them modulo 2^62, which gives the same
+     * digest whatever the order in which checks are summarized.
+     *
+     * @param digest
+     * @param other
+     * @return
+     */
+    protected static long addDigests(long digest, long other) {
+        return (digest + other) & DIGEST_MASK;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.duracloud.mill.bitlog.BitLogStore#writeAll(java.util.List)
+     */
+    @Transactional(MillJpaRepoConfig.TRANSACTION_MANAGER_BEAN)
+    @Override
+    public List<BitLogItem> writeAll(List<? extends BitLogItem> items) throws ItemWriteFailedException {
+        List<JpaBitLogItem> jpaItems = new ArrayList<>(items.size());
+        for (BitLogItem item : items) {
+            jpaItems.add(createItem(item.getAccount(),
+                                    item.getStoreId(),
+                                    item.getSpaceId(),
+                                    item.getRunId(),
+                                    item.getContentId(),
+                                    item.getModified(),
+                                    item.getStoreType(),
+                                    item.getResult(),
+                                    item.getContentChecksum(),
+                                    item.getStorageProviderChecksum(),
+                                    item.getManifestChecksum(),
+                                    item.getDetails()));
+        }
+
+        try {
+            moveItemsOfReportedRuns(jpaItems);
+            List<BitLogItem> written = new ArrayList<BitLogItem>(this.bitLogItemRepo.save(jpaItems));
+            this.bitLogItemRepo.flush();
+            return written;
+        } catch (Exception ex) {
+            throw new ItemWriteFailedException(ex);
+        }
+    }
+
+    protected JpaBitLogItem createItem(String accountId,
+                                       String storeId,
+                                       String spaceId,
+                                       long runId,
+                                       String contentId,
+                                       Date timestamp,
+                                       StorageProviderType storeType,
+                                       BitIntegrityResult result,
+                                       String contentCheckSum,
+                                       String storageProviderChecksum,
+                                       String manifestChecksum,
+                                       String details) {
+        JpaBitLogItem item = new JpaBitLogItem();
+
+        item.setAccount(accountId);
+        item.setStoreId(storeId);
+        item.setStorageProviderType(storeType);
+        item.setSpaceId(spaceId);
+        item.setRunId(runId);
+        item.setContentId(contentId);
+        item.setContentChecksum(contentCheckSum);
+        item.setStorageProviderChecksum(storageProviderChecksum);
+        item.setManifestChecksum(manifestChecksum);
+        item.setDetails(details);
+        item.setResult(result);
+        item.setModified(timestamp);
+        return item;
+    }
+
+    protected JpaBitLogItemRepo getBitLogItemRepo() {
+        return bitLogItemRepo;
+    }
+
+    protected JpaBitLogRunRepo getBitLogRunRepo() {
+        return bitLogRunRepo;
+    }
+
     /*
      * (non-Javadoc)
      *
      * @see
      * org.duracloud.mill.bitlog.BitLogStore#getBitLogItems(java.lang.String,
-     * java.lang.String, java.lang.String)
+     * java.lang.String, java.lang.String, long)
      */
     @Override
     public Iterator<BitLogItem> getBitLogItems(final String account,
                                                final String storeId,
-                                               final String spaceId) {
+                                               final String spaceId,
+                                               final long runId) {
+
+        return new KeysetBitLogItemIterator(bitLogItemRepo, account, storeId, spaceId, runId, PAGE_SIZE);
+    }
 
-        return (Iterator) new StreamingIterator<JpaBitLogItem>(
-            new JpaIteratorSource<JpaBitLogItemRepo, JpaBitLogItem>(bitLogItemRepo, 50000) {
-                @Override
-                protected Page<JpaBitLogItem> getNextPage(Pageable pageable, JpaBitLogItemRepo repo) {
-                    return repo.findByAccountAndStoreIdAndSpaceId(account, storeId, spaceId, pageable);
-                }
-            });
+    /* (non-Javadoc)
+     * @see org.duracloud.mill.bitlog.BitLogStore#countBitLogItems(java.lang.String, java.lang.String,
+     * java.lang.String, long)
+     */
+    @Override
+    public long countBitLogItems(String account, String storeId, String spaceId, long runId) {
+        long count = bitLogItemRepo.countByAccountAndStoreIdAndSpaceIdAndRunId(account, storeId, spaceId, runId);
+        BitLogRunSummary summary = getRunSummary(account, storeId, spaceId, runId);
+        return summary == null ? count : count + summary.getSuccessCount();
+    }
 
+    /* (non-Javadoc)
+     * @see org.duracloud.mill.bitlog.BitLogStore#getRunSummary(java.lang.String, java.lang.String,
+     * java.lang.String, long)
+     */
+    @Override
+    public BitLogRunSummary getRunSummary(String account, String storeId, String spaceId, long runId) {
+        if (runId == NO_RUN) {
+            return null;
+        }
+        return bitLogRunRepo.findOne(runId);
     }
 
     /*
      * (non-Javadoc)
      *
      * @see org.duracloud.mill.bitlog.BitLogStore#delete(java.lang.String,
-     * java.lang.String, java.lang.String)
+     * java.lang.String, java.lang.String, long)
      */
     @Override
-    @Transactional(MillJpaRepoConfig.TRANSACTION_MANAGER_BEAN)
-    public void delete(String account, String storeId, String spaceId) {
-        int deleted = 0;
-        while ((deleted = bitLogItemRepo.deleteFirst50000ByAccountAndStoreIdAndSpaceId(account,
-                                                                                       storeId,
-                                                                                       spaceId)) > 0) {
-            log.info("deleted {} bit log items where account = {}, store_id = {}, space_id = {}",
+    public void delete(String account, String storeId, String spaceId, long runId) {
+        if (runId != NO_RUN && partitionByRun) {
+            try {
+                bitLogRunRepo.dropPartition(runId);
+                log.info("dropped bit log partition of run {} where account = {}, store_id = {}, space_id = {}",
+                         runId, account, storeId, spaceId);
+            } catch (Exception ex) {
+                // the run is deleted all the same, so that late items are not
+                // logged by it, and its emptied partition is recorded so that
+                // dropping it is retried rather than the partition being kept
+                // for good.
+                log.warn("failed to drop bit log partition of run {}: deleting its items instead: {}",
+                         runId, ex.getMessage());
+                deleteItems(account, storeId, spaceId, runId);
+                addOrphanPartition(runId);
+            }
+        } else {
+            deleteItems(account, storeId, spaceId, runId);
+        }
+
+        if (runId != NO_RUN) {
+            deleteRun(runId);
+        }
+    }
+
+    private void deleteItems(String account, String storeId, String spaceId, long runId) {
+        // deletes the items a range of ids at a time, each range in its own
+        // transaction: the end of each range is found by seeking along the
+        // run's ids, so no range is found by scanning rows already deleted.
+        Long fromId = 0L;
+        while (true) {
+            List<Long> toIds = bitLogItemRepo.findIdsAfter(account,
+                                                           storeId,
+                                                           spaceId,
+                                                           runId,
+                                                           fromId,
+                                                           new PageRequest(DELETE_CHUNK_SIZE - 1, 1));
+            Long toId = toIds.isEmpty() ? Long.MAX_VALUE : toIds.get(0);
+            int deleted = bitLogItemRepo.deleteByIdRange(account, storeId, spaceId, runId, fromId, toId);
+            log.info("deleted {} bit log items where account = {}, store_id = {}, space_id = {}, run_id = {}",
                      deleted,
                      account,
                      storeId,
-                     spaceId);
+                     spaceId,
+                     runId);
 
-            this.bitLogItemRepo.flush();
+            if (toIds.isEmpty()) {
+                return;
+            }
+            fromId = toId;
+        }
+    }
+
+    private void addOrphanPartition(long runId) {
+        try {
+            bitLogRunRepo.addOrphanPartition(runId);
+        } catch (Exception ex) {
+            log.error("failed to record the orphaned bit log partition of run {}: it must be dropped by hand " +
+                      "(call drop_bit_log_run_partition({})): {}", runId, runId, ex.getMessage());
+        }
+    }
+
+    /**
+     * Retries dropping the partitions of deleted runs which could not be
+     * dropped along with their runs, since every partition counts towards the
+     * table's limit on partitions. Stops at the first which still cannot be
+     * dropped, as the others are likely to fail for the same reason.
+     */
+    protected void dropOrphanPartitions() {
+        try {
+            for (Long runId : bitLogRunRepo.findOrphanPartitionRunIds()) {
+                bitLogRunRepo.dropPartition(runId);
+                bitLogRunRepo.deleteOrphanPartition(runId);
+                log.info("dropped orphaned bit log partition of run {}", runId);
+            }
+        } catch (Exception ex) {
+            log.warn("failed to drop orphaned bit log partitions: {}", ex.getMessage());
+        }
+    }
+
+    private void deleteRun(long runId) {
+        try {
+            if (bitLogRunRepo.exists(runId)) {
+                bitLogRunRepo.delete(runId);
+            }
+        } catch (Exception ex) {
+            log.warn("failed to delete bit log run {}: {}", runId, ex.getMessage());
         }
     }
 
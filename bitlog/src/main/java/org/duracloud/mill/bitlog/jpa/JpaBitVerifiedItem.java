@@ -0,0 +1,89 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.bitlog.jpa;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+import org.duracloud.mill.db.model.BaseEntity;
+
+/**
+ * The time at which a content item last passed a bit integrity check.
+ *
+ * @author Daniel Bernstein
+ */
+@Entity
+@Table(name = "bit_verified_item")
+public class JpaBitVerifiedItem extends BaseEntity {
+    @Column(nullable = false)
+    private String account;
+    @Column(nullable = false)
+    private String storeId;
+    @Column(nullable = false)
+    private String spaceId;
+    @Column(nullable = false, length = 1024)
+    private String contentId;
+    @Column(nullable = false, length = 32, unique = true)
+    private String uniqueKey;
+    @Column(nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date verified;
+
+    public String getAccount() {
+        return account;
+    }
+
+    public void setAccount(String account) {
+        this.account = account;
+    }
+
+    public String getStoreId() {
+        return storeId;
+    }
+
+    public void setStoreId(String storeId) {
+        this.storeId = storeId;
+    }
+
+    public String getSpaceId() {
+        return spaceId;
+    }
+
+    public void setSpaceId(String spaceId) {
+        this.spaceId = spaceId;
+    }
+
+    public String getContentId() {
+        return contentId;
+    }
+
+    public void setContentId(String contentId) {
+        this.contentId = contentId;
+    }
+
+    public String getUniqueKey() {
+        return uniqueKey;
+    }
+
+    public void setUniqueKey(String uniqueKey) {
+        this.uniqueKey = uniqueKey;
+    }
+
+    public Date getVerified() {
+        return verified;
+    }
+
+    public void setVerified(Date verified) {
+        this.verified = verified;
+    }
+}
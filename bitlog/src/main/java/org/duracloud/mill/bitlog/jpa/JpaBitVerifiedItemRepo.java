@@ -0,0 +1,90 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.bitlog.jpa;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import org.duracloud.mill.db.repo.MillJpaRepoConfig;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * @author Daniel Bernstein
+ */
+@Repository(value = "bitVerifiedItemRepo")
+public interface JpaBitVerifiedItemRepo extends JpaRepository<JpaBitVerifiedItem, Long> {
+
+    /**
+     * @param uniqueKeys
+     * @return those of the content items which have passed a check
+     */
+    public List<JpaBitVerifiedItem> findByUniqueKeyIn(Collection<String> uniqueKeys);
+
+    /**
+     * Updates the verification time of many content items with a single
+     * statement.
+     *
+     * @param uniqueKeys
+     * @param verified
+     * @return the number of items updated: fewer than the number of keys if
+     * some of the content items have not passed a check before
+     */
+    @Modifying
+    @Transactional(MillJpaRepoConfig.TRANSACTION_MANAGER_BEAN)
+    @Query("update JpaBitVerifiedItem v set v.verified = ?2, v.modified = ?2 where v.uniqueKey in ?1")
+    public int updateVerified(Collection<String> uniqueKeys, Date verified);
+
+    /**
+     * Inserts the verification time of a content item, or updates it if the
+     * item has a row already.
+     *
+     * @param account
+     * @param storeId
+     * @param spaceId
+     * @param contentId
+     * @param uniqueKey
+     * @param verified
+     * @return
+     */
+    @Modifying
+    @Transactional(MillJpaRepoConfig.TRANSACTION_MANAGER_BEAN)
+    @Query(nativeQuery = true,
+           value = "insert into bit_verified_item (modified, account, store_id, space_id, content_id, " +
+                   "unique_key, verified, version) values (?6, ?1, ?2, ?3, ?4, ?5, ?6, 0) " +
+                   "on duplicate key update verified = greatest(verified, values(verified)), " +
+                   "modified = values(modified)")
+    public int upsertVerified(String account,
+                              String storeId,
+                              String spaceId,
+                              String contentId,
+                              String uniqueKey,
+                              Date verified);
+
+    /**
+     * Deletes up to a limited number of the verification times of a space's
+     * content items which have not passed a check since the given time.
+     *
+     * @param account
+     * @param storeId
+     * @param spaceId
+     * @param before
+     * @param limit
+     * @return the number of items deleted
+     */
+    @Modifying
+    @Transactional(MillJpaRepoConfig.TRANSACTION_MANAGER_BEAN)
+    @Query(nativeQuery = true,
+           value = "delete from bit_verified_item where account = ?1 and store_id = ?2 and space_id = ?3 " +
+                   "and verified < ?4 limit ?5")
+    public int deleteVerifiedBefore(String account, String storeId, String spaceId, Date before, int limit);
+}
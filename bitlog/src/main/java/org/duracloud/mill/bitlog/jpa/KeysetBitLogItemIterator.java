@@ -0,0 +1,85 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.bitlog.jpa;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.duracloud.mill.bitlog.BitLogItem;
+import org.springframework.data.domain.PageRequest;
+
+/**
+ * Iterates through the bit log items of a run in id (that is, chronological)
+ * order, a page at a time. Each page is read starting after the last id of the
+ * previous one rather than at an offset, so reading a page costs the same
+ * however far into the run it is.
+ *
+ * @author Daniel Bernstein
+ */
+class KeysetBitLogItemIterator implements Iterator<BitLogItem> {
+
+    private JpaBitLogItemRepo repo;
+    private String account;
+    private String storeId;
+    private String spaceId;
+    private long runId;
+    private int pageSize;
+
+    private List<JpaBitLogItem> page;
+    private int index = 0;
+
+    public KeysetBitLogItemIterator(JpaBitLogItemRepo repo,
+                                    String account,
+                                    String storeId,
+                                    String spaceId,
+                                    long runId,
+                                    int pageSize) {
+        this.repo = repo;
+        this.account = account;
+        this.storeId = storeId;
+        this.spaceId = spaceId;
+        this.runId = runId;
+        this.pageSize = pageSize;
+        this.page = readPage(0L);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (index < page.size()) {
+            return true;
+        }
+
+        // a short page is the last one
+        if (page.size() < pageSize) {
+            return false;
+        }
+
+        page = readPage(page.get(page.size() - 1).getId());
+        index = 0;
+        return !page.isEmpty();
+    }
+
+    @Override
+    public BitLogItem next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.get(index++);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private List<JpaBitLogItem> readPage(Long afterId) {
+        return repo.findByAccountAndStoreIdAndSpaceIdAndRunIdAndIdGreaterThanOrderByIdAsc(
+            account, storeId, spaceId, runId, afterId, new PageRequest(0, pageSize));
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.bitlog.jpa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.duracloud.mill.bitlog.BitIntegrityResult;
+import org.duracloud.mill.bitlog.BitLogItem;
+import org.duracloud.mill.bitlog.ItemWriteFailedException;
+import org.duracloud.mill.db.repo.JpaBitIntegrityReportRepo;
+import org.duracloud.storage.domain.StorageProviderType;
+import org.easymock.EasyMock;
+import org.easymock.EasyMockRunner;
+import org.easymock.EasyMockSupport;
+import org.easymock.IAnswer;
+import org.easymock.Mock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+/**
+ * @author Daniel Bernstein
+ */
+@RunWith(EasyMockRunner.class)
+public class BatchingBitLogStoreTest extends EasyMockSupport {
+
+    @Mock
+    private JpaBitLogItemRepo bitLogItemRepo;
+
+    @Mock
+    private JpaBitIntegrityReportRepo bitReportRepo;
+
+    @Mock
+    private JpaBitLogRunRepo bitLogRunRepo;
+
+    @Mock
+    private JpaBitVerifiedItemRepo bitVerifiedItemRepo;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private BatchingBitLogStore store;
+
+    private ExecutorService executor = Executors.newCachedThreadPool();
+
+    @Before
+    public void setup() {
+        // the items' run has not been reported on
+        EasyMock.expect(bitLogRunRepo.exists(1L)).andReturn(true).anyTimes();
+    }
+
+    @After
+    public void tearDown() {
+        store.shutdown();
+        executor.shutdownNow();
+        verifyAll();
+    }
+
+    @Test
+    public void testWriteIsNotDelayed() throws Exception {
+        expectSaveReturnsItems();
+        replayAll();
+
+        store = new BatchingBitLogStore(bitLogItemRepo, bitReportRepo, bitLogRunRepo, bitVerifiedItemRepo,
+                                        10, 10000);
+        long start = System.currentTimeMillis();
+        assertNotNull(write(0));
+        // the item is written without waiting for others to join it
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    @Test
+    public void testWritesQueuedDuringWriteShareTransaction() throws Exception {
+        int writers = 10;
+        final CountDownLatch saving = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+        EasyMock.expect(bitLogItemRepo.save(EasyMock.<List<JpaBitLogItem>>anyObject()))
+                .andAnswer(new IAnswer<List<JpaBitLogItem>>() {
+                    @Override
+                    public List<JpaBitLogItem> answer() throws Throwable {
+                        List<JpaBitLogItem> items = (List<JpaBitLogItem>) EasyMock.getCurrentArguments()[0];
+                        batchSizes.add(items.size());
+                        saving.countDown();
+                        release.await();
+                        return items;
+                    }
+                }).times(2);
+        replayAll();
+
+        store = new BatchingBitLogStore(bitLogItemRepo, bitReportRepo, bitLogRunRepo, bitVerifiedItemRepo,
+                                        writers, 10000);
+        List<Future<BitLogItem>> futures = writeConcurrently(0, 1);
+        saving.await();
+
+        // the others are written while the first is being committed
+        futures.addAll(writeConcurrently(1, writers - 1));
+        while (store.getPendingCount() < writers - 1) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+
+        for (Future<BitLogItem> future : futures) {
+            assertNotNull(future.get());
+        }
+        assertEquals(Arrays.asList(1, writers - 1), batchSizes);
+    }
+
+    @Test
+    public void testFailedBatchWrittenOneAtATime() throws Exception {
+        EasyMock.expect(bitLogItemRepo.save(EasyMock.<List<JpaBitLogItem>>anyObject()))
+                .andThrow(new RuntimeException("batch failed")).atLeastOnce();
+        EasyMock.expect(bitLogItemRepo.saveAndFlush(EasyMock.isA(JpaBitLogItem.class)))
+                .andAnswer(new IAnswer<JpaBitLogItem>() {
+                    @Override
+                    public JpaBitLogItem answer() throws Throwable {
+                        JpaBitLogItem item = (JpaBitLogItem) EasyMock.getCurrentArguments()[0];
+                        if (item.getContentId().equals("content0")) {
+                            throw new RuntimeException("item failed");
+                        }
+                        return item;
+                    }
+                }).times(2);
+        replayAll();
+
+        store = new BatchingBitLogStore(bitLogItemRepo, bitReportRepo, bitLogRunRepo, bitVerifiedItemRepo,
+                                        2, 10000);
+        List<Future<BitLogItem>> futures = writeConcurrently(0, 2);
+
+        try {
+            futures.get(0).get();
+            fail("write of content0 should have failed");
+        } catch (ExecutionException e) {
+            assertEquals(ItemWriteFailedException.class, e.getCause().getClass());
+        }
+        assertEquals("content1", futures.get(1).get().getContentId());
+    }
+
+    @Test
+    public void testUnexpectedBatchFailureFailsItsWrites() throws Exception {
+        EasyMock.expect(bitLogItemRepo.save(EasyMock.<List<JpaBitLogItem>>anyObject()))
+                .andThrow(new AssertionError("unexpected"));
+        expectSaveReturnsItems();
+        replayAll();
+
+        store = new BatchingBitLogStore(bitLogItemRepo, bitReportRepo, bitLogRunRepo, bitVerifiedItemRepo,
+                                        10, 10000);
+        try {
+            write(0);
+            fail("write of content0 should have failed");
+        } catch (ItemWriteFailedException e) {
+            // expected
+        }
+
+        // the writer keeps writing batches
+        assertEquals("content1", write(1).getContentId());
+    }
+
+    @Test
+    public void testBatchInsertedWithJdbc() throws Exception {
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+        EasyMock.expect(jdbcTemplate.batchUpdate(EasyMock.isA(String.class),
+                                                 EasyMock.isA(BatchPreparedStatementSetter.class)))
+                .andAnswer(new IAnswer<int[]>() {
+                    @Override
+                    public int[] answer() throws Throwable {
+                        BatchPreparedStatementSetter setter =
+                            (BatchPreparedStatementSetter) EasyMock.getCurrentArguments()[1];
+                        batchSizes.add(setter.getBatchSize());
+                        return new int[setter.getBatchSize()];
+                    }
+                });
+        TransactionStatus status = new SimpleTransactionStatus();
+        EasyMock.expect(transactionManager.getTransaction(EasyMock.<TransactionDefinition>anyObject()))
+                .andReturn(status);
+        transactionManager.commit(status);
+        EasyMock.expectLastCall();
+        replayAll();
+
+        store = new BatchingBitLogStore(bitLogItemRepo, bitReportRepo, bitLogRunRepo, bitVerifiedItemRepo,
+                                        10, 10000);
+        store.setJdbcTemplate(jdbcTemplate, transactionManager);
+        assertEquals("content0", write(0).getContentId());
+        assertEquals(Arrays.asList(1), batchSizes);
+    }
+
+    @Test
+    public void testConcurrentSuccessesAddedToSummary() throws Exception {
+        int writers = 10;
+        long digest = 0;
+        for (int i = 0; i < writers; i++) {
+            digest = JpaBitLogStore.addDigests(digest, JpaBitLogStore.digest("content" + i, "checksum"));
+        }
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+        final AtomicLong digests = new AtomicLong();
+        EasyMock.expect(bitLogRunRepo.addSuccesses(EasyMock.eq(1L),
+                                                   EasyMock.anyLong(),
+                                                   EasyMock.anyLong(),
+                                                   EasyMock.anyLong()))
+                .andAnswer(new IAnswer<Integer>() {
+                    @Override
+                    public Integer answer() throws Throwable {
+                        Object[] args = EasyMock.getCurrentArguments();
+                        count.addAndGet((Long) args[1]);
+                        bytes.addAndGet((Long) args[2]);
+                        synchronized (digests) {
+                            digests.set(JpaBitLogStore.addDigests(digests.get(), (Long) args[3]));
+                        }
+                        return 1;
+                    }
+                }).atLeastOnce();
+        replayAll();
+
+        store = new BatchingBitLogStore(bitLogItemRepo, bitReportRepo, bitLogRunRepo, bitVerifiedItemRepo,
+                                        writers, 10000);
+        store.setSummarizeSuccesses(true);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            final int index = i;
+            futures.add(executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    return store.summarizeSuccess("account", "store-id", "space-id", 1L,
+                                                  "content" + index, "checksum", 100L);
+                }
+            }));
+        }
+        for (Future<Boolean> future : futures) {
+            assertTrue(future.get());
+        }
+        assertEquals(writers, count.get());
+        assertEquals(writers * 100L, bytes.get());
+        assertEquals(digest, digests.get());
+    }
+
+    @Test
+    public void testConcurrentVerificationsRecordedTogether() throws Exception {
+        int writers = 10;
+        final AtomicLong recorded = new AtomicLong();
+        EasyMock.expect(bitVerifiedItemRepo.updateVerified(EasyMock.<Collection<String>>anyObject(),
+                                                           EasyMock.isA(Date.class)))
+                .andAnswer(new IAnswer<Integer>() {
+                    @Override
+                    public Integer answer() throws Throwable {
+                        int count = ((Collection<?>) EasyMock.getCurrentArguments()[0]).size();
+                        recorded.addAndGet(count);
+                        return count;
+                    }
+                }).atLeastOnce();
+        replayAll();
+
+        store = new BatchingBitLogStore(bitLogItemRepo, bitReportRepo, bitLogRunRepo, bitVerifiedItemRepo,
+                                        writers, 10000);
+        store.setRecordVerification(true);
+        List<Future<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            final int index = i;
+            futures.add(executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    store.recordVerified("account", "store-id", "space-id", "content" + index, new Date());
+                    return null;
+                }
+            }));
+        }
+        for (Future<Object> future : futures) {
+            future.get();
+        }
+        assertEquals(writers, recorded.get());
+    }
+
+    @Test
+    public void testSuccessesOfReportedRunDropped() throws Exception {
+        EasyMock.expect(bitLogRunRepo.addSuccesses(2L, 1L, 100L, JpaBitLogStore.digest("content", "checksum")))
+                .andReturn(0);
+        replayAll();
+
+        store = new BatchingBitLogStore(bitLogItemRepo, bitReportRepo, bitLogRunRepo, bitVerifiedItemRepo,
+                                        10, 10000);
+        store.setSummarizeSuccesses(true);
+        assertTrue(store.summarizeSuccess("account", "store-id", "space-id", 2L, "content", "checksum", 100L));
+    }
+
+    @Test
+    public void testWriteAfterShutdown() throws Exception {
+        EasyMock.expect(bitLogItemRepo.saveAndFlush(EasyMock.isA(JpaBitLogItem.class)))
+                .andReturn(new JpaBitLogItem());
+        replayAll();
+
+        store = new BatchingBitLogStore(bitLogItemRepo, bitReportRepo, bitLogRunRepo, bitVerifiedItemRepo,
+                                        10, 10000);
+        store.shutdown();
+        assertNotNull(write(0));
+    }
+
+    private void expectSaveReturnsItems() {
+        EasyMock.expect(bitLogItemRepo.save(EasyMock.<List<JpaBitLogItem>>anyObject()))
+                .andAnswer(new IAnswer<List<JpaBitLogItem>>() {
+                    @Override
+                    public List<JpaBitLogItem> answer() throws Throwable {
+                        return (List<JpaBitLogItem>) EasyMock.getCurrentArguments()[0];
+                    }
+                });
+    }
+
+    private List<Future<BitLogItem>> writeConcurrently(int first, int count) {
+        List<Future<BitLogItem>> futures = new ArrayList<>();
+        for (int i = first; i < first + count; i++) {
+            final int index = i;
+            futures.add(executor.submit(new Callable<BitLogItem>() {
+                @Override
+                public BitLogItem call() throws Exception {
+                    return write(index);
+                }
+            }));
+        }
+        return futures;
+    }
+
+    private BitLogItem write(int index) {
+        return store.write("account",
+                           "store-id",
+                           "space-id",
+                           1L,
+                           "content" + index,
+                           new Date(),
+                           StorageProviderType.AMAZON_S3,
+                           BitIntegrityResult.SUCCESS,
+                           "checksum",
+                           "checksum",
+                           "checksum",
+                           null);
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.bitlog.jpa;
+
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.isA;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import org.duracloud.mill.bitlog.BitIntegrityResult;
+import org.duracloud.mill.bitlog.BitLogItem;
+import org.duracloud.mill.bitlog.BitLogStore;
+import org.duracloud.mill.db.repo.JpaBitIntegrityReportRepo;
+import org.duracloud.storage.domain.StorageProviderType;
+import org.easymock.Capture;
+import org.easymock.EasyMock;
+import org.easymock.EasyMockRunner;
+import org.easymock.EasyMockSupport;
+import org.easymock.Mock;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * @author Daniel Bernstein
+ */
+@RunWith(EasyMockRunner.class)
+public class JpaBitLogStoreTest extends EasyMockSupport {
+
+    private static final String account = "account";
+    private static final String storeId = "store-id";
+    private static final String spaceId = "space-id";
+    private static final long runId = 7L;
+
+    @Mock
+    private JpaBitLogItemRepo bitLogItemRepo;
+
+    @Mock
+    private JpaBitIntegrityReportRepo bitReportRepo;
+
+    @Mock
+    private JpaBitLogRunRepo bitLogRunRepo;
+
+    @Mock
+    private JpaBitVerifiedItemRepo bitVerifiedItemRepo;
+
+    @After
+    public void tearDown() {
+        verifyAll();
+    }
+
+    @Test
+    public void testIteratorSeeksById() throws Exception {
+        JpaBitLogItem item1 = createItem(10L);
+        JpaBitLogItem item2 = createItem(20L);
+        JpaBitLogItem item3 = createItem(30L);
+        expectPage(0L, item1, item2);
+        expectPage(20L, item3);
+        replayAll();
+
+        Iterator<BitLogItem> it = new KeysetBitLogItemIterator(bitLogItemRepo, account, storeId, spaceId, runId, 2);
+        assertSame(item1, it.next());
+        assertSame(item2, it.next());
+        assertSame(item3, it.next());
+        // the short page was the last one
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testDeleteByIdRanges() throws Exception {
+        long noRun = BitLogStore.NO_RUN;
+        expect(bitLogItemRepo.findIdsAfter(eq(account), eq(storeId), eq(spaceId), eq(noRun), eq(0L),
+                                           EasyMock.<Pageable>anyObject()))
+            .andReturn(Arrays.asList(50000L));
+        expect(bitLogItemRepo.deleteByIdRange(account, storeId, spaceId, noRun, 0L, 50000L)).andReturn(50000);
+        expect(bitLogItemRepo.findIdsAfter(eq(account), eq(storeId), eq(spaceId), eq(noRun), eq(50000L),
+                                           EasyMock.<Pageable>anyObject()))
+            .andReturn(Collections.<Long>emptyList());
+        expect(bitLogItemRepo.deleteByIdRange(account, storeId, spaceId, noRun, 50000L, Long.MAX_VALUE))
+            .andReturn(10);
+        replayAll();
+
+        createStore(true).delete(account, storeId, spaceId, noRun);
+    }
+
+    @Test
+    public void testStartRunAddsPartition() throws Exception {
+        expect(bitLogRunRepo.findOrphanPartitionRunIds()).andReturn(Collections.<Long>emptyList());
+        expectRunSaved();
+        expect(bitLogRunRepo.addPartition(runId)).andReturn(0);
+        replayAll();
+
+        assertEquals(runId, createStore(true).startRun(account, storeId, spaceId));
+    }
+
+    @Test
+    public void testStartRunDropsOrphanPartitions() throws Exception {
+        expect(bitLogRunRepo.findOrphanPartitionRunIds()).andReturn(Arrays.asList(3L, 5L));
+        expect(bitLogRunRepo.dropPartition(3L)).andReturn(0);
+        expect(bitLogRunRepo.deleteOrphanPartition(3L)).andReturn(1);
+        // the remaining orphans are left for the next run
+        expect(bitLogRunRepo.dropPartition(5L)).andThrow(new RuntimeException("not dropped"));
+        expectRunSaved();
+        expect(bitLogRunRepo.addPartition(runId)).andReturn(0);
+        replayAll();
+
+        assertEquals(runId, createStore(true).startRun(account, storeId, spaceId));
+    }
+
+    @Test
+    public void testStartRunWithoutPartition() throws Exception {
+        expect(bitLogRunRepo.findOrphanPartitionRunIds()).andReturn(Collections.<Long>emptyList());
+        expectRunSaved();
+        expect(bitLogRunRepo.addPartition(runId)).andThrow(new RuntimeException("no partition"));
+        expect(bitLogRunRepo.exists(runId)).andReturn(true);
+        bitLogRunRepo.delete(runId);
+        expectLastCall();
+        replayAll();
+
+        assertEquals(BitLogStore.NO_RUN, createStore(true).startRun(account, storeId, spaceId));
+    }
+
+    @Test
+    public void testDeleteRunDropsPartition() throws Exception {
+        expect(bitLogRunRepo.dropPartition(runId)).andReturn(0);
+        expect(bitLogRunRepo.exists(runId)).andReturn(true);
+        bitLogRunRepo.delete(runId);
+        expectLastCall();
+        replayAll();
+
+        createStore(true).delete(account, storeId, spaceId, runId);
+    }
+
+    @Test
+    public void testDeleteRunWhenPartitionNotDropped() throws Exception {
+        expect(bitLogRunRepo.dropPartition(runId)).andThrow(new RuntimeException("not dropped"));
+        expect(bitLogItemRepo.findIdsAfter(eq(account), eq(storeId), eq(spaceId), eq(runId), eq(0L),
+                                           EasyMock.<Pageable>anyObject()))
+            .andReturn(Collections.<Long>emptyList());
+        expect(bitLogItemRepo.deleteByIdRange(account, storeId, spaceId, runId, 0L, Long.MAX_VALUE))
+            .andReturn(10);
+        // the emptied partition is recorded to be dropped later on
+        expect(bitLogRunRepo.addOrphanPartition(runId)).andReturn(1);
+        expect(bitLogRunRepo.exists(runId)).andReturn(true);
+        bitLogRunRepo.delete(runId);
+        expectLastCall();
+        replayAll();
+
+        createStore(true).delete(account, storeId, spaceId, runId);
+    }
+
+    @Test
+    public void testDeleteRunWithoutPartitions() throws Exception {
+        expect(bitLogItemRepo.findIdsAfter(eq(account), eq(storeId), eq(spaceId), eq(runId), eq(0L),
+                                           EasyMock.<Pageable>anyObject()))
+            .andReturn(Collections.<Long>emptyList());
+        expect(bitLogItemRepo.deleteByIdRange(account, storeId, spaceId, runId, 0L, Long.MAX_VALUE))
+            .andReturn(10);
+        expect(bitLogRunRepo.exists(runId)).andReturn(true);
+        bitLogRunRepo.delete(runId);
+        expectLastCall();
+        replayAll();
+
+        createStore(false).delete(account, storeId, spaceId, runId);
+    }
+
+    @Test
+    public void testSummarizeSuccess() throws Exception {
+        expect(bitLogRunRepo.addSuccesses(runId, 1L, 100L, JpaBitLogStore.digest("content", "checksum")))
+            .andReturn(1);
+        replayAll();
+
+        JpaBitLogStore store = createStore(false);
+        store.setSummarizeSuccesses(true);
+        assertTrue(store.summarizeSuccess(account, storeId, spaceId, runId, "content", "checksum", 100L));
+        // successes logged without a run are written as items
+        assertFalse(store.summarizeSuccess(account, storeId, spaceId, BitLogStore.NO_RUN, "content", "checksum",
+                                           100L));
+    }
+
+    @Test
+    public void testSummarizeSuccessOfReportedRun() throws Exception {
+        expect(bitLogRunRepo.addSuccesses(runId, 1L, 100L, JpaBitLogStore.digest("content", "checksum")))
+            .andReturn(0);
+        replayAll();
+
+        JpaBitLogStore store = createStore(false);
+        store.setSummarizeSuccesses(true);
+        // the success is dropped rather than written as an item of a run
+        // which is gone
+        assertTrue(store.summarizeSuccess(account, storeId, spaceId, runId, "content", "checksum", 100L));
+    }
+
+    @Test
+    public void testWriteMovesItemOfReportedRun() throws Exception {
+        long latestRunId = runId + 1;
+        expect(bitLogRunRepo.exists(runId)).andReturn(false);
+        JpaBitLogRun latest = createMock(JpaBitLogRun.class);
+        expect(latest.getId()).andReturn(latestRunId);
+        expect(bitLogRunRepo.findFirstByAccountAndStoreIdAndSpaceIdOrderByIdDesc(account, storeId, spaceId))
+            .andReturn(latest);
+        Capture<JpaBitLogItem> saved = new Capture<>();
+        expect(bitLogItemRepo.saveAndFlush(capture(saved))).andReturn(new JpaBitLogItem());
+        replayAll();
+
+        createStore(true).write(account, storeId, spaceId, runId, "content", new Date(),
+                                StorageProviderType.AMAZON_S3, BitIntegrityResult.FAILURE, "checksum",
+                                "other-checksum", "checksum", null);
+        assertEquals(latestRunId, saved.getValue().getRunId());
+    }
+
+    @Test
+    public void testWriteAllMovesItemsOfReportedRunWithoutRun() throws Exception {
+        // the run is looked up once for all of its items
+        expect(bitLogRunRepo.exists(runId)).andReturn(false);
+        expect(bitLogRunRepo.findFirstByAccountAndStoreIdAndSpaceIdOrderByIdDesc(account, storeId, spaceId))
+            .andReturn(null);
+        Capture<List<JpaBitLogItem>> saved = new Capture<>();
+        expect(bitLogItemRepo.save(capture(saved))).andReturn(new ArrayList<JpaBitLogItem>());
+        bitLogItemRepo.flush();
+        expectLastCall();
+        replayAll();
+
+        JpaBitLogStore store = createStore(false);
+        store.writeAll(Arrays.asList(createLogItem("content1"), createLogItem("content2")));
+        assertEquals(2, saved.getValue().size());
+        for (JpaBitLogItem item : saved.getValue()) {
+            assertEquals(BitLogStore.NO_RUN, item.getRunId());
+        }
+    }
+
+    @Test
+    public void testCountIncludesSummarizedSuccesses() throws Exception {
+        expect(bitLogItemRepo.countByAccountAndStoreIdAndSpaceIdAndRunId(account, storeId, spaceId, runId))
+            .andReturn(2L);
+        JpaBitLogRun run = new JpaBitLogRun();
+        run.setSuccessCount(10L);
+        expect(bitLogRunRepo.findOne(runId)).andReturn(run);
+        replayAll();
+
+        assertEquals(12L, createStore(false).countBitLogItems(account, storeId, spaceId, runId));
+    }
+
+    @Test
+    public void testDigestIndependentOfOrder() throws Exception {
+        long a = JpaBitLogStore.digest("a", "checksum-a");
+        long b = JpaBitLogStore.digest("b", "checksum-b");
+        long c = JpaBitLogStore.digest("c", "checksum-c");
+        assertEquals(JpaBitLogStore.addDigests(JpaBitLogStore.addDigests(a, b), c),
+                     JpaBitLogStore.addDigests(JpaBitLogStore.addDigests(c, a), b));
+        replayAll();
+    }
+
+    @Test
+    public void testRecordVerified() throws Exception {
+        Date verified = new Date();
+        String checkedKey = JpaBitLogStore.getVerifiedItemKey(account, storeId, spaceId, "checked");
+        String newKey = JpaBitLogStore.getVerifiedItemKey(account, storeId, spaceId, "new");
+        expect(bitVerifiedItemRepo.updateVerified(Arrays.asList(checkedKey), verified)).andReturn(1);
+        // an item verified for the first time is inserted
+        expect(bitVerifiedItemRepo.updateVerified(Arrays.asList(newKey), verified)).andReturn(0);
+        expect(bitVerifiedItemRepo.findByUniqueKeyIn(Arrays.asList(newKey)))
+            .andReturn(Collections.<JpaBitVerifiedItem>emptyList());
+        Capture<List<JpaBitVerifiedItem>> inserted = new Capture<>();
+        expect(bitVerifiedItemRepo.save(capture(inserted))).andReturn(new ArrayList<JpaBitVerifiedItem>());
+        replayAll();
+
+        JpaBitLogStore store = createStore(false);
+        store.setRecordVerification(true);
+        store.recordVerified(account, storeId, spaceId, "checked", verified);
+        store.recordVerified(account, storeId, spaceId, "new", verified);
+        assertEquals(1, inserted.getValue().size());
+        assertEquals("new", inserted.getValue().get(0).getContentId());
+        assertEquals(newKey, inserted.getValue().get(0).getUniqueKey());
+        assertEquals(verified, inserted.getValue().get(0).getVerified());
+    }
+
+    @Test
+    public void testRecordVerifiedConcurrentlyInserted() throws Exception {
+        Date verified = new Date();
+        String key = JpaBitLogStore.getVerifiedItemKey(account, storeId, spaceId, "content");
+        expect(bitVerifiedItemRepo.updateVerified(Arrays.asList(key), verified)).andReturn(0);
+        expect(bitVerifiedItemRepo.findByUniqueKeyIn(Arrays.asList(key)))
+            .andReturn(Collections.<JpaBitVerifiedItem>emptyList());
+        // another check of the item inserted it first
+        expect(bitVerifiedItemRepo.save(EasyMock.<List<JpaBitVerifiedItem>>anyObject()))
+            .andThrow(new RuntimeException("duplicate key"));
+        expect(bitVerifiedItemRepo.upsertVerified(account, storeId, spaceId, "content", key, verified))
+            .andReturn(2);
+        replayAll();
+
+        JpaBitLogStore store = createStore(false);
+        store.setRecordVerification(true);
+        store.recordVerified(account, storeId, spaceId, "content", verified);
+    }
+
+    @Test
+    public void testRecordVerifiedDisabled() throws Exception {
+        replayAll();
+        createStore(false).recordVerified(account, storeId, spaceId, "content", new Date());
+    }
+
+    @Test
+    public void testDeleteVerifiedBeforeInChunks() throws Exception {
+        Date before = new Date();
+        expect(bitVerifiedItemRepo.deleteVerifiedBefore(account, storeId, spaceId, before, 50000)).andReturn(50000);
+        expect(bitVerifiedItemRepo.deleteVerifiedBefore(account, storeId, spaceId, before, 50000)).andReturn(3);
+        replayAll();
+
+        assertEquals(50003L, createStore(false).deleteVerifiedBefore(account, storeId, spaceId, before));
+    }
+
+    private JpaBitLogStore createStore(boolean partitionByRun) {
+        JpaBitLogStore store = new JpaBitLogStore(bitLogItemRepo, bitReportRepo, bitLogRunRepo, bitVerifiedItemRepo);
+        store.setPartitionByRun(partitionByRun);
+        return store;
+    }
+
+    private JpaBitLogItem createLogItem(String contentId) {
+        JpaBitLogItem item = new JpaBitLogItem();
+        item.setAccount(account);
+        item.setStoreId(storeId);
+        item.setSpaceId(spaceId);
+        item.setRunId(runId);
+        item.setContentId(contentId);
+        item.setResult(BitIntegrityResult.ERROR);
+        item.setModified(new Date());
+        return item;
+    }
+
+    private void expectRunSaved() {
+        JpaBitLogRun run = createMock(JpaBitLogRun.class);
+        expect(run.getId()).andReturn(runId).anyTimes();
+        expect(bitLogRunRepo.saveAndFlush(isA(JpaBitLogRun.class))).andReturn(run);
+    }
+
+    private JpaBitLogItem createItem(Long id) {
+        JpaBitLogItem item = createMock(JpaBitLogItem.class);
+        expect(item.getId()).andReturn(id).anyTimes();
+        return item;
+    }
+
+    private void expectPage(Long afterId, JpaBitLogItem... items) {
+        expect(bitLogItemRepo.findByAccountAndStoreIdAndSpaceIdAndRunIdAndIdGreaterThanOrderByIdAsc(
+            account, storeId, spaceId, runId, afterId, new PageRequest(0, 2)))
+            .andReturn(Arrays.asList(items));
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.bit;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.duracloud.common.error.DuraCloudRuntimeException;
+import org.duracloud.common.queue.task.SpaceCentricTypedTask;
+import org.duracloud.common.queue.task.Task;
+
+/**
+ * Provides the information necessary to complete bit integrity checks on a
+ * number of content items in the same space. Like a BitIntegrityCheckTask it
+ * is a BIT task; the two are told apart by the content ids property.
+ *
+ * @author Daniel Bernstein
+ */
+public class BitIntegrityCheckBatchTask extends SpaceCentricTypedTask {
+
+    public static final String CONTENT_IDS_KEY = "contentIds";
+
+    /**
+     * The most bytes taken by the content ids of one task in a queue message.
+     * SQS limits a message to 256 KB; the rest is left for the other
+     * properties of the task.
+     */
+    public static final int MAX_CONTENT_IDS_BYTES = 200 * 1024;
+
+    private static ObjectMapper mapper = new ObjectMapper();
+
+    private List<String> contentIds = new ArrayList<>();
+
+    private long runId = 0;
+
+    /**
+     * @param task
+     * @return true if the task is a BitIntegrityCheckBatchTask
+     */
+    public static boolean isBatch(Task task) {
+        return task.getType().equals(Task.Type.BIT) && task.getProperty(CONTENT_IDS_KEY) != null;
+    }
+
+    @Override
+    public Task writeTask() {
+        Task task = super.writeTask();
+        task.setType(Task.Type.BIT);
+        writeContentIds(task, contentIds);
+        BitIntegrityCheckTask.writeRunId(task, runId);
+        return task;
+    }
+
+    /* (non-Javadoc)
+     * @see org.duracloud.common.queue.task.SpaceCentricTypedTask#readTask(org.duracloud.common.queue.task.Task)
+     */
+    @Override
+    public void readTask(Task task) {
+        super.readTask(task);
+        try {
+            this.contentIds = new ArrayList<>(Arrays.asList(
+                mapper.readValue(task.getProperty(CONTENT_IDS_KEY), String[].class)));
+        } catch (IOException e) {
+            throw new DuraCloudRuntimeException("failed to read content ids of " + task, e);
+        }
+        this.runId = BitIntegrityCheckTask.readRunId(task);
+    }
+
+    /**
+     * Replaces the content ids of a task which has already been written, for
+     * instance so that only the unfinished items are retried.
+     *
+     * @param task
+     * @param contentIds
+     */
+    public static void writeContentIds(Task task, List<String> contentIds) {
+        try {
+            task.addProperty(CONTENT_IDS_KEY, mapper.writeValueAsString(contentIds));
+        } catch (IOException e) {
+            throw new DuraCloudRuntimeException("failed to write content ids to " + task, e);
+        }
+    }
+
+    /**
+     * Splits content ids into batches of at most maxCount ids whose content
+     * ids each fit in MAX_CONTENT_IDS_BYTES once written to a task. Content
+     * ids may be up to 1024 bytes long, so a batch of many long ids would
+     * otherwise exceed the message size limit of the queue.
+     *
+     * @param contentIds
+     * @param maxCount
+     * @return the batches, in the order of the content ids
+     */
+    public static List<List<String>> split(List<String> contentIds, int maxCount) {
+        List<List<String>> batches = new ArrayList<>();
+        List<String> batch = new ArrayList<>();
+        int batchBytes = 2;
+        for (String contentId : contentIds) {
+            int bytes = getWrittenLength(contentId) + 1;
+            if (!batch.isEmpty() && (batch.size() >= maxCount || batchBytes + bytes > MAX_CONTENT_IDS_BYTES)) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchBytes = 2;
+            }
+            batch.add(contentId);
+            batchBytes += bytes;
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /*
+     * The length of the content id in the JSON array of content ids, counting
+     * the escaping of its quotes and backslashes when the array itself is
+     * written as a string in the queue message.
+     */
+    private static int getWrittenLength(String contentId) {
+        try {
+            String json = mapper.writeValueAsString(contentId);
+            int length = json.getBytes(StandardCharsets.UTF_8).length;
+            for (int i = 0; i < json.length(); i++) {
+                char c = json.charAt(i);
+                if (c == '"' || c == '\\') {
+                    length++;
+                }
+            }
+            return length;
+        } catch (IOException e) {
+            throw new DuraCloudRuntimeException("failed to write content id " + contentId, e);
+        }
+    }
+
+    /**
+     * @return the contentIds
+     */
+    public List<String> getContentIds() {
+        return contentIds;
+    }
+
+    /**
+     * @param contentIds the contentIds to set
+     */
+    public void setContentIds(List<String> contentIds) {
+        this.contentIds = contentIds;
+    }
+
+    /**
+     * @return the id of the bit log run to which the results are written
+     */
+    public long getRunId() {
+        return runId;
+    }
+
+    /**
+     * @param runId the runId to set
+     */
+    public void setRunId(long runId) {
+        this.runId = runId;
+    }
+}
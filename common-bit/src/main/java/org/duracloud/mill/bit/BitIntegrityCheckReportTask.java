@@ -16,11 +16,37 @@ import org.duracloud.common.queue.task.Task;
  */
 public class BitIntegrityCheckReportTask extends SpaceCentricTypedTask {
 
+    private long runId = 0;
+
     @Override
     public Task writeTask() {
         Task task = super.writeTask();
         task.setType(Task.Type.BIT_REPORT);
+        BitIntegrityCheckTask.writeRunId(task, runId);
         return task;
     }
 
+    /* (non-Javadoc)
+     * @see org.duracloud.common.queue.task.SpaceCentricTypedTask#readTask(org.duracloud.common.queue.task.Task)
+     */
+    @Override
+    public void readTask(Task task) {
+        super.readTask(task);
+        this.runId = BitIntegrityCheckTask.readRunId(task);
+    }
+
+    /**
+     * @return the id of the bit log run to report on
+     */
+    public long getRunId() {
+        return runId;
+    }
+
+    /**
+     * @param runId the runId to set
+     */
+    public void setRunId(long runId) {
+        this.runId = runId;
+    }
+
 }
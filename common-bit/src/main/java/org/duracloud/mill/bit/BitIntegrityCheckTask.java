@@ -19,11 +19,61 @@ import org.duracloud.common.queue.task.TypedTask;
  */
 public class BitIntegrityCheckTask extends TypedTask {
 
+    public static final String RUN_ID_KEY = "runId";
+
+    private long runId = 0;
+
     @Override
     public Task writeTask() {
         Task task = super.writeTask();
         task.setType(Task.Type.BIT);
+        writeRunId(task, runId);
         return task;
     }
 
+    /* (non-Javadoc)
+     * @see org.duracloud.common.queue.task.TypedTask#readTask(org.duracloud.common.queue.task.Task)
+     */
+    @Override
+    public void readTask(Task task) {
+        super.readTask(task);
+        this.runId = readRunId(task);
+    }
+
+    /**
+     * Writes the bit log run id to a task unless it is 0.
+     *
+     * @param task
+     * @param runId
+     */
+    static void writeRunId(Task task, long runId) {
+        if (runId != 0) {
+            task.addProperty(RUN_ID_KEY, String.valueOf(runId));
+        }
+    }
+
+    /**
+     * @param task
+     * @return the bit log run id of a task, or 0 if it has none (e.g. it was
+     * added before bit log items were kept by run)
+     */
+    static long readRunId(Task task) {
+        String runId = task.getProperty(RUN_ID_KEY);
+        return runId == null ? 0 : Long.parseLong(runId);
+    }
+
+    /**
+     * @return the id of the bit log run to which the result is written
+     */
+    public long getRunId() {
+        return runId;
+    }
+
+    /**
+     * @param runId the runId to set
+     */
+    public void setRunId(long runId) {
+        this.runId = runId;
+    }
+
 }
@@ -0,0 +1,205 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.common.storageprovider;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.duracloud.mill.credentials.StorageProviderCredentials;
+import org.duracloud.storage.provider.StorageProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A <code>StorageProviderFactory</code> which reuses <code>StorageProvider</code>
+ * instances (and with them their underlying http clients and connection pools)
+ * rather than building a new one for every request. Providers are cached by
+ * store id and are replaced when the credentials for a store change. Providers
+ * which have not been used for the idle timeout are evicted.
+ *
+ * Store ids are the database ids of the storage provider accounts and are
+ * therefore unique across DuraCloud accounts.
+ *
+ * @author Daniel Bernstein
+ */
+public class CachingStorageProviderFactory extends StorageProviderFactory {
+
+    private static final Logger log = LoggerFactory.getLogger(CachingStorageProviderFactory.class);
+
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 30 * 60 * 1000;
+
+    private Map<String, CachedProvider> cache = new ConcurrentHashMap<>();
+    private long idleTimeoutMs;
+    private volatile long lastEvictionCheck = System.currentTimeMillis();
+
+    private AtomicLong hits = new AtomicLong(0);
+    private AtomicLong misses = new AtomicLong(0);
+    private AtomicLong evictions = new AtomicLong(0);
+
+    public CachingStorageProviderFactory() {
+        this(DEFAULT_IDLE_TIMEOUT_MS);
+    }
+
+    /**
+     * @param idleTimeoutMs the time after which an unused provider is evicted.
+     */
+    public CachingStorageProviderFactory(long idleTimeoutMs) {
+        if (idleTimeoutMs <= 0) {
+            throw new IllegalArgumentException("idleTimeoutMs must be greater than 0");
+        }
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    /**
+     * Returns a cached StorageProvider for the credentials if one exists,
+     * otherwise creates and caches a new one.
+     *
+     * @param credentials
+     * @return
+     */
+    @Override
+    public StorageProvider create(StorageProviderCredentials credentials) {
+        evictIdleProviders();
+
+        String storeId = credentials.getProviderId();
+        String fingerprint = fingerprint(credentials);
+
+        CachedProvider cached = cache.get(storeId);
+        if (cached != null && cached.fingerprint.equals(fingerprint)) {
+            hits.incrementAndGet();
+            cached.touch();
+            return cached.provider;
+        }
+
+        synchronized (this) {
+            cached = cache.get(storeId);
+            if (cached != null && cached.fingerprint.equals(fingerprint)) {
+                hits.incrementAndGet();
+                cached.touch();
+                return cached.provider;
+            }
+
+            if (cached != null) {
+                evictions.incrementAndGet();
+                log.info("credentials changed for storeId={}: replacing cached storage provider", storeId);
+            }
+
+            misses.incrementAndGet();
+            StorageProvider provider = createProvider(credentials);
+            cache.put(storeId, new CachedProvider(fingerprint, provider));
+            log.debug("cached new storage provider for storeId={} (type={}): hits={} misses={}",
+                      new Object[] {storeId, credentials.getProviderType(), hits.get(), misses.get()});
+            return provider;
+        }
+    }
+
+    /**
+     * Builds a new, uncached StorageProvider.
+     *
+     * @param credentials
+     * @return
+     */
+    protected StorageProvider createProvider(StorageProviderCredentials credentials) {
+        return super.create(credentials);
+    }
+
+    private void evictIdleProviders() {
+        long now = System.currentTimeMillis();
+        //no need to check more often than a fraction of the timeout
+        if (now - lastEvictionCheck < Math.min(idleTimeoutMs / 2, 60 * 1000)) {
+            return;
+        }
+
+        lastEvictionCheck = now;
+        Iterator<Map.Entry<String, CachedProvider>> it = cache.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, CachedProvider> entry = it.next();
+            if (now - entry.getValue().lastAccess > idleTimeoutMs) {
+                it.remove();
+                evictions.incrementAndGet();
+                log.debug("evicted idle storage provider for storeId={}", entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Produces a digest of everything used to build a provider so that
+     * credential changes can be detected without retaining the secret key
+     * in the cache key. Also used by other caches of objects built from
+     * storage provider credentials.
+     */
+    public static String fingerprint(StorageProviderCredentials credentials) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(credentials.getProviderType()).append('\n');
+        builder.append(credentials.getAccessKey()).append('\n');
+        builder.append(credentials.getSecretKey()).append('\n');
+        if (credentials.getOptions() != null) {
+            for (Map.Entry<String, String> option : new TreeMap<>(credentials.getOptions()).entrySet()) {
+                builder.append(option.getKey()).append('=').append(option.getValue()).append('\n');
+            }
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = digest.digest(builder.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : bytes) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Removes all cached providers.
+     */
+    public void clear() {
+        evictions.addAndGet(cache.size());
+        cache.clear();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    private static class CachedProvider {
+        private String fingerprint;
+        private StorageProvider provider;
+        private volatile long lastAccess;
+
+        CachedProvider(String fingerprint, StorageProvider provider) {
+            this.fingerprint = fingerprint;
+            this.provider = provider;
+            touch();
+        }
+
+        void touch() {
+            this.lastAccess = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.common.storageprovider;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which spaces are known to exist in which stores so that callers
+ * can skip a remote existence check (or a create attempt) for spaces they
+ * have already seen. Entries are keyed by account, store id and space id and
+ * expire after a time to live so that spaces removed outside of the mill are
+ * eventually noticed. Callers should invalidate an entry when they delete
+ * a space or when a store reports that a space could not be found.
+ *
+ * A single instance is meant to be shared by all processors in a JVM.
+ *
+ * @author Daniel Bernstein
+ */
+public class SpaceExistenceCache {
+
+    public static final long DEFAULT_TIME_TO_LIVE_MS = 60 * 60 * 1000;
+
+    private Map<String, Long> spaces = new ConcurrentHashMap<>();
+    private long timeToLiveMs;
+
+    public SpaceExistenceCache() {
+        this(DEFAULT_TIME_TO_LIVE_MS);
+    }
+
+    /**
+     * @param timeToLiveMs how long a space is assumed to exist after it was
+     *                     last confirmed
+     */
+    public SpaceExistenceCache(long timeToLiveMs) {
+        this.timeToLiveMs = timeToLiveMs;
+    }
+
+    /**
+     * @return true if the space was confirmed to exist within the time to live
+     */
+    public boolean exists(String account, String storeId, String spaceId) {
+        String key = key(account, storeId, spaceId);
+        Long confirmed = spaces.get(key);
+        if (confirmed == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - confirmed > timeToLiveMs) {
+            spaces.remove(key);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records that the space exists.
+     */
+    public void markExists(String account, String storeId, String spaceId) {
+        spaces.put(key(account, storeId, spaceId), System.currentTimeMillis());
+    }
+
+    /**
+     * Forgets the space, so that the next caller will check on it.
+     */
+    public void invalidate(String account, String storeId, String spaceId) {
+        spaces.remove(key(account, storeId, spaceId));
+    }
+
+    public int size() {
+        return spaces.size();
+    }
+
+    private String key(String account, String storeId, String spaceId) {
+        return account + "/" + storeId + "/" + spaceId;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.common.storageprovider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.duracloud.mill.credentials.StorageProviderCredentials;
+import org.duracloud.storage.domain.StorageProviderType;
+import org.duracloud.storage.provider.StorageProvider;
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+/**
+ * @author Daniel Bernstein
+ */
+public class CachingStorageProviderFactoryTest {
+
+    private static class TestFactory extends CachingStorageProviderFactory {
+        private int created = 0;
+
+        TestFactory(long idleTimeoutMs) {
+            super(idleTimeoutMs);
+        }
+
+        @Override
+        protected StorageProvider createProvider(StorageProviderCredentials credentials) {
+            created++;
+            return EasyMock.createMock(StorageProvider.class);
+        }
+    }
+
+    private StorageProviderCredentials createCredentials(String storeId, String secretKey) {
+        Map<String, String> options = new HashMap<>();
+        options.put("region", "us-east-1");
+        return new StorageProviderCredentials(storeId,
+                                              "access",
+                                              secretKey,
+                                              StorageProviderType.AMAZON_S3,
+                                              options,
+                                              true);
+    }
+
+    @Test
+    public void testProviderIsReused() {
+        TestFactory factory = new TestFactory(CachingStorageProviderFactory.DEFAULT_IDLE_TIMEOUT_MS);
+        StorageProvider first = factory.create(createCredentials("1", "secret"));
+        StorageProvider second = factory.create(createCredentials("1", "secret"));
+        StorageProvider other = factory.create(createCredentials("2", "secret"));
+
+        assertSame(first, second);
+        assertNotSame(first, other);
+        assertEquals(2, factory.created);
+        assertEquals(1, factory.getHitCount());
+        assertEquals(2, factory.getMissCount());
+        assertEquals(2, factory.size());
+    }
+
+    @Test
+    public void testCredentialChangeReplacesProvider() {
+        TestFactory factory = new TestFactory(CachingStorageProviderFactory.DEFAULT_IDLE_TIMEOUT_MS);
+        StorageProvider first = factory.create(createCredentials("1", "secret"));
+        StorageProvider second = factory.create(createCredentials("1", "new-secret"));
+
+        assertNotSame(first, second);
+        assertEquals(1, factory.getEvictionCount());
+        assertEquals(1, factory.size());
+        assertSame(second, factory.create(createCredentials("1", "new-secret")));
+    }
+
+    @Test
+    public void testIdleProviderIsEvicted() throws Exception {
+        TestFactory factory = new TestFactory(10);
+        StorageProvider first = factory.create(createCredentials("1", "secret"));
+        Thread.sleep(50);
+        StorageProvider second = factory.create(createCredentials("1", "secret"));
+
+        assertNotSame(first, second);
+        assertEquals(1, factory.getEvictionCount());
+        assertEquals(2, factory.getMissCount());
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.common.storageprovider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author Daniel Bernstein
+ */
+public class SpaceExistenceCacheTest {
+
+    @Test
+    public void testMarkAndInvalidate() {
+        SpaceExistenceCache cache = new SpaceExistenceCache();
+        assertFalse(cache.exists("account", "1", "space"));
+
+        cache.markExists("account", "1", "space");
+        assertTrue(cache.exists("account", "1", "space"));
+        assertFalse(cache.exists("account", "2", "space"));
+        assertFalse(cache.exists("other", "1", "space"));
+
+        cache.invalidate("account", "1", "space");
+        assertFalse(cache.exists("account", "1", "space"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        SpaceExistenceCache cache = new SpaceExistenceCache(1);
+        cache.markExists("account", "1", "space");
+        Thread.sleep(10);
+        assertFalse(cache.exists("account", "1", "space"));
+        assertEquals(0, cache.size());
+    }
+}
@@ -52,6 +52,9 @@ public class ConfigConstants {
     public static final String NOTIFICATION_USER = "notification.user";
     public static final String NOTIFICATION_PASS = "notification.pass";
 
+    public static final String CREDENTIALS_CACHE_TTL_MS = "credentials-cache.ttl-ms";
+    public static final String CREDENTIALS_CACHE_NEGATIVE_TTL_MS = "credentials-cache.negative-ttl-ms";
+
     /*
      * AUDIT LOG GENERATOR
      */
@@ -73,12 +76,25 @@ public class ConfigConstants {
      */
 
     public static final String MAX_WORKERS = "max-workers";
+    public static final String WORKER_EXECUTION_MODE = "worker-execution-mode";
+    public static final String BIT_LOG_BATCH_SIZE = "bit-log.batch-size";
+    public static final String BIT_LOG_BATCH_DELAY_MS = "bit-log.batch-delay-ms";
+    public static final String BIT_LOG_PARTITION_BY_RUN = "bit-log.partition-by-run";
+    public static final String BIT_LOG_SUMMARIZE_SUCCESSES = "bit-log.summarize-successes";
+    public static final String BIT_LOG_VERIFICATION_INTERVAL_DAYS = "bit-log.verification-interval-days";
+    public static final String SPACE_COMPARISON_BATCH_SIZE = "space-comparison.batch-size";
+    public static final String BIT_REPORT_GZIP = "bit-report.gzip";
 
     /*
      * LOOPING BIT TASK PRODUCER
      */
     public static final String LOOPING_BIT_MAX_TASK_QUEUE_SIZE = "looping.bit.max-task-queue-size";
     public static final String LOOPING_BIT_FREQUENCY = "looping.bit.frequency";
+    public static final String LOOPING_BIT_PREFETCH_DEPTH = "looping.bit.prefetch-depth";
+    public static final String LOOPING_BIT_CHECK_BATCH_SIZE = "looping.bit.check-batch-size";
+    public static final String LOOPING_BIT_CHECK_TIMEOUT_HOURS = "looping.bit.check-timeout-hours";
+    public static final String LOOPING_BIT_SPACE_COMPARISON_INTERVAL_DAYS =
+        "looping.bit.space-comparison-interval-days";
 
     public static final String LOOPING_BIT_EXCLUSION_LIST_KEY = "looping.bit.exclusion-list-file";
     public static final String LOOPING_BIT_INCLUSION_LIST_KEY = "looping.bit.inclusion-list-file";
@@ -89,12 +105,20 @@ public class ConfigConstants {
     public static final String DUPLICATION_POLICY_REFRESH_FREQUENCY = "duplication-policy.refresh-frequency";
     public static final String DUPLICATION_POLICY_BUCKET_SUFFIX = "duplication-policy.bucket-suffix";
     public static final String LOCAL_DUPLICATION_DIR = "local-duplication-dir";
+    public static final String DUPLICATION_MAX_IN_MEMORY_SIZE = "duplication.max-in-memory-size";
+    public static final String DUPLICATION_MAX_IN_MEMORY_TOTAL = "duplication.max-in-memory-total";
+    public static final String DUPLICATION_PARALLEL_DOWNLOAD_THRESHOLD = "duplication.parallel-download-threshold";
+    public static final String DUPLICATION_SERVER_SIDE_COPY = "duplication.server-side-copy";
+    public static final String DUPLICATION_METADATA_THREADS = "duplication.metadata-threads";
 
     /*
      * LOOPING DUPLICATION
      */
     public static final String LOOPING_DUP_FREQUENCY = "looping.dup.frequency";
     public static final String LOOPING_DUP_MAX_TASK_QUEUE_SIZE = "looping.dup.max-task-queue-size";
+    public static final String LOOPING_DUP_MANIFEST_FILTER = "looping.dup.manifest-filter";
+    public static final String LOOPING_DUP_NIBBLE_THREADS = "looping.dup.nibble-threads";
+    public static final String LOOPING_DUP_PREFETCH_DEPTH = "looping.dup.prefetch-depth";
 
     /*
      * LOOPING STORAGE STATS
@@ -15,6 +15,7 @@ import java.util.List;
 public class AccountCredentials {
     private String account;
     private List<StorageProviderCredentials> providerCredentials;
+    private boolean active = true;
 
     public AccountCredentials() {
 
@@ -29,6 +30,16 @@ public class AccountCredentials {
         this.providerCredentials = creds;
     }
 
+    /**
+     * @param account
+     * @param creds
+     * @param active  true if the account was active when the credentials were read
+     */
+    public AccountCredentials(String account, List<StorageProviderCredentials> creds, boolean active) {
+        this(account, creds);
+        this.active = active;
+    }
+
     /**
      * @return the account
      */
@@ -40,4 +51,11 @@ public class AccountCredentials {
         return providerCredentials;
     }
 
+    /**
+     * @return true if the account was active when the credentials were read
+     */
+    public boolean isActive() {
+        return active;
+    }
+
 }
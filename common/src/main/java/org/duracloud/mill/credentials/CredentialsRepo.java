@@ -43,6 +43,15 @@ public interface CredentialsRepo {
      */
     public AccountCredentials getAccountCredentials(String account) throws AccountCredentialsNotFoundException;
 
+    /**
+     * Returns the storage provider credentials of all active accounts using
+     * as few lookups as possible.
+     *
+     * @return
+     * @throws CredentialsRepoException
+     */
+    public List<AccountCredentials> getActiveAccountCredentials() throws CredentialsRepoException;
+
     /**
      * Returns true if the account is active.
      *
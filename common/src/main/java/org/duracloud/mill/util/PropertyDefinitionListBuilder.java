@@ -63,6 +63,12 @@ public class PropertyDefinitionListBuilder {
         return this;
     }
 
+    public PropertyDefinitionListBuilder addCredentialsCacheTtl() {
+        add(ConfigConstants.CREDENTIALS_CACHE_TTL_MS, false);
+        add(ConfigConstants.CREDENTIALS_CACHE_NEGATIVE_TTL_MS, false);
+        return this;
+    }
+
     public PropertyDefinitionListBuilder addDeadLetterQueue() {
         add(ConfigConstants.QUEUE_NAME_DEAD_LETTER, true);
         return this;
@@ -103,6 +109,65 @@ public class PropertyDefinitionListBuilder {
         return this;
     }
 
+    public PropertyDefinitionListBuilder addDuplicationMaxInMemorySize() {
+        add(ConfigConstants.DUPLICATION_MAX_IN_MEMORY_SIZE, false);
+        add(ConfigConstants.DUPLICATION_MAX_IN_MEMORY_TOTAL, false);
+        return this;
+    }
+
+    public PropertyDefinitionListBuilder addDuplicationParallelDownloadThreshold() {
+        add(ConfigConstants.DUPLICATION_PARALLEL_DOWNLOAD_THRESHOLD, false);
+        return this;
+    }
+
+    public PropertyDefinitionListBuilder addDuplicationServerSideCopy() {
+        definitions.add(new PropertyDefinition(ConfigConstants.DUPLICATION_SERVER_SIDE_COPY,
+                                               new String[] {"true", "false"},
+                                               false,
+                                               false));
+        return this;
+    }
+
+    public PropertyDefinitionListBuilder addDuplicationMetadataThreads() {
+        add(ConfigConstants.DUPLICATION_METADATA_THREADS, false);
+        return this;
+    }
+
+    public PropertyDefinitionListBuilder addBitLogBatchSize() {
+        add(ConfigConstants.BIT_LOG_BATCH_SIZE, false);
+        return this;
+    }
+
+    public PropertyDefinitionListBuilder addBitLogBatchDelayMs() {
+        add(ConfigConstants.BIT_LOG_BATCH_DELAY_MS, false);
+        return this;
+    }
+
+    public PropertyDefinitionListBuilder addBitLogPartitionByRun() {
+        add(ConfigConstants.BIT_LOG_PARTITION_BY_RUN, false);
+        return this;
+    }
+
+    public PropertyDefinitionListBuilder addBitLogSummarizeSuccesses() {
+        add(ConfigConstants.BIT_LOG_SUMMARIZE_SUCCESSES, false);
+        return this;
+    }
+
+    public PropertyDefinitionListBuilder addBitLogVerificationIntervalDays() {
+        add(ConfigConstants.BIT_LOG_VERIFICATION_INTERVAL_DAYS, false);
+        return this;
+    }
+
+    public PropertyDefinitionListBuilder addSpaceComparisonBatchSize() {
+        add(ConfigConstants.SPACE_COMPARISON_BATCH_SIZE, false);
+        return this;
+    }
+
+    public PropertyDefinitionListBuilder addBitReportGzip() {
+        add(ConfigConstants.BIT_REPORT_GZIP, false);
+        return this;
+    }
+
     public PropertyDefinitionListBuilder addDuplicationPolicyBucketSuffix() {
         add(ConfigConstants.DUPLICATION_POLICY_BUCKET_SUFFIX, false);
         return this;
@@ -183,6 +248,14 @@ public class PropertyDefinitionListBuilder {
         return this;
     }
 
+    public PropertyDefinitionListBuilder addWorkerExecutionMode() {
+        definitions.add(new PropertyDefinition(ConfigConstants.WORKER_EXECUTION_MODE,
+                                               new String[] {"pooled", "virtual"},
+                                               false,
+                                               false));
+        return this;
+    }
+
     public PropertyDefinitionListBuilder addDuracloudAuditSpace() {
         add(ConfigConstants.AUDIT_LOG_GENERATOR_AUDIT_LOG_SPACE_ID, true);
         return this;
@@ -198,6 +271,26 @@ public class PropertyDefinitionListBuilder {
         return this;
     }
 
+    public PropertyDefinitionListBuilder addLoopingBitPrefetchDepth() {
+        add(ConfigConstants.LOOPING_BIT_PREFETCH_DEPTH, false);
+        return this;
+    }
+
+    public PropertyDefinitionListBuilder addLoopingBitCheckBatchSize() {
+        add(ConfigConstants.LOOPING_BIT_CHECK_BATCH_SIZE, false);
+        return this;
+    }
+
+    public PropertyDefinitionListBuilder addLoopingBitCheckTimeout() {
+        add(ConfigConstants.LOOPING_BIT_CHECK_TIMEOUT_HOURS, false);
+        return this;
+    }
+
+    public PropertyDefinitionListBuilder addLoopingBitSpaceComparisonInterval() {
+        add(ConfigConstants.LOOPING_BIT_SPACE_COMPARISON_INTERVAL_DAYS, false);
+        return this;
+    }
+
     public PropertyDefinitionListBuilder addLoopingDupFrequency() {
         add(ConfigConstants.LOOPING_DUP_FREQUENCY, false);
         return this;
@@ -208,6 +301,24 @@ public class PropertyDefinitionListBuilder {
         return this;
     }
 
+    public PropertyDefinitionListBuilder addLoopingDupManifestFilter() {
+        definitions.add(new PropertyDefinition(ConfigConstants.LOOPING_DUP_MANIFEST_FILTER,
+                                               new String[] {"true", "false"},
+                                               false,
+                                               false));
+        return this;
+    }
+
+    public PropertyDefinitionListBuilder addLoopingDupNibbleThreads() {
+        add(ConfigConstants.LOOPING_DUP_NIBBLE_THREADS, false);
+        return this;
+    }
+
+    public PropertyDefinitionListBuilder addLoopingDupPrefetchDepth() {
+        add(ConfigConstants.LOOPING_DUP_PREFETCH_DEPTH, false);
+        return this;
+    }
+
     /**
      * @return
      */
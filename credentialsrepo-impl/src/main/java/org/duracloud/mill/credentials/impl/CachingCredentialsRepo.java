@@ -0,0 +1,255 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.credentials.impl;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.duracloud.mill.credentials.AccountCredentials;
+import org.duracloud.mill.credentials.AccountCredentialsNotFoundException;
+import org.duracloud.mill.credentials.CredentialsRepo;
+import org.duracloud.mill.credentials.CredentialsRepoException;
+import org.duracloud.mill.credentials.StorageProviderCredentials;
+import org.duracloud.mill.credentials.StorageProviderCredentialsNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A <code>CredentialsRepo</code> decorator which caches account lookups for a
+ * configurable time to live. Accounts which could not be found are cached as
+ * well (for a shorter period) so that tasks belonging to removed accounts do
+ * not hit the account database on every attempt. On initialization the cache is
+ * warmed with all active accounts in a single lookup and from then on it is
+ * refreshed in the background.
+ *
+ * @author Daniel Bernstein
+ */
+public class CachingCredentialsRepo implements CredentialsRepo {
+
+    private static final Logger log = LoggerFactory.getLogger(CachingCredentialsRepo.class);
+
+    public static final long DEFAULT_TIME_TO_LIVE_MS = 10 * 60 * 1000;
+    public static final long DEFAULT_NEGATIVE_TIME_TO_LIVE_MS = 60 * 1000;
+
+    private CredentialsRepo delegate;
+    private long timeToLiveMs;
+    private long negativeTimeToLiveMs;
+    private ConcurrentMap<String, CachedAccount> cache = new ConcurrentHashMap<>();
+    private ScheduledExecutorService refresher;
+
+    public CachingCredentialsRepo(CredentialsRepo delegate) {
+        this(delegate, DEFAULT_TIME_TO_LIVE_MS, DEFAULT_NEGATIVE_TIME_TO_LIVE_MS);
+    }
+
+    /**
+     * @param delegate             the repo which performs the actual lookups
+     * @param timeToLiveMs         how long a found account is cached
+     * @param negativeTimeToLiveMs how long a missing account or store is cached
+     */
+    public CachingCredentialsRepo(CredentialsRepo delegate,
+                                  long timeToLiveMs,
+                                  long negativeTimeToLiveMs) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate must be non-null");
+        }
+        this.delegate = delegate;
+        this.timeToLiveMs = timeToLiveMs;
+        this.negativeTimeToLiveMs = negativeTimeToLiveMs;
+    }
+
+    /**
+     * Warms the cache and starts refreshing it in the background at half
+     * the time to live so that entries are normally replaced before they expire.
+     */
+    public void init() {
+        warm();
+
+        this.refresher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "credentials-cache-refresher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        long period = Math.max(timeToLiveMs / 2, 1000);
+        this.refresher.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                warm();
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public void destroy() {
+        if (this.refresher != null) {
+            this.refresher.shutdownNow();
+        }
+    }
+
+    /**
+     * Loads all active accounts with a single lookup. Cached accounts that
+     * are no longer active are dropped so that they will be looked up
+     * individually on next use. Entries loaded individually while the lookup
+     * was running are newer than its results, so they are kept.
+     */
+    protected void warm() {
+        try {
+            long start = System.currentTimeMillis();
+            List<AccountCredentials> accounts = delegate.getActiveAccountCredentials();
+            Map<String, CachedAccount> loaded = new HashMap<>();
+            for (AccountCredentials account : accounts) {
+                loaded.put(account.getAccount(), new CachedAccount(account, true, start));
+            }
+
+            for (Map.Entry<String, CachedAccount> entry : cache.entrySet()) {
+                if (!loaded.containsKey(entry.getKey()) && entry.getValue().loadedAt < start) {
+                    cache.remove(entry.getKey(), entry.getValue());
+                }
+            }
+            for (Map.Entry<String, CachedAccount> entry : loaded.entrySet()) {
+                putIfNewer(entry.getKey(), entry.getValue());
+            }
+
+            log.info("loaded credentials for {} active accounts in {} ms",
+                     accounts.size(),
+                     System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("failed to load active account credentials: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public StorageProviderCredentials getStorageProviderCredentials(String account, String storeId)
+        throws CredentialsRepoException {
+        CachedAccount cached = getCachedAccount(account);
+        StorageProviderCredentials creds = cached.find(storeId);
+        if (creds == null && cached.isOlderThan(negativeTimeToLiveMs)) {
+            //the store may have been added since the account was loaded.
+            cached = load(account);
+            creds = cached.find(storeId);
+        }
+
+        if (creds == null) {
+            throw new StorageProviderCredentialsNotFoundException(
+                "No storage provider on subdomain " + account + " with storeId " + storeId + " found.");
+        }
+        return creds;
+    }
+
+    @Override
+    public List<String> getActiveAccounts() throws CredentialsRepoException {
+        return delegate.getActiveAccounts();
+    }
+
+    @Override
+    public AccountCredentials getAccountCredentials(String account) throws AccountCredentialsNotFoundException {
+        return getCachedAccount(account).credentials;
+    }
+
+    @Override
+    public List<AccountCredentials> getActiveAccountCredentials() throws CredentialsRepoException {
+        return delegate.getActiveAccountCredentials();
+    }
+
+    @Override
+    public boolean isAccountActive(String account) throws AccountCredentialsNotFoundException {
+        return getCachedAccount(account).active;
+    }
+
+    /**
+     * Removes an account from the cache so that it will be reloaded on next use.
+     *
+     * @param account
+     */
+    public void invalidate(String account) {
+        cache.remove(account);
+    }
+
+    private CachedAccount getCachedAccount(String account) throws AccountCredentialsNotFoundException {
+        CachedAccount cached = cache.get(account);
+        if (cached == null || cached.isExpired()) {
+            cached = load(account);
+        }
+
+        if (cached.credentials == null) {
+            throw new AccountCredentialsNotFoundException("no account found for subdomain " + account);
+        }
+        return cached;
+    }
+
+    private CachedAccount load(String account) {
+        long start = System.currentTimeMillis();
+        CachedAccount cached;
+        try {
+            //the credentials carry the account's status, so a single lookup is made
+            AccountCredentials credentials = delegate.getAccountCredentials(account);
+            cached = new CachedAccount(credentials, credentials.isActive(), start);
+        } catch (AccountCredentialsNotFoundException e) {
+            log.debug("no account found for subdomain {}: caching for {} ms", account, negativeTimeToLiveMs);
+            cached = new CachedAccount(null, false, start);
+        }
+        putIfNewer(account, cached);
+        return cached;
+    }
+
+    /**
+     * Caches the entry unless the account has since been cached from a more
+     * recent lookup.
+     */
+    private void putIfNewer(String account, CachedAccount cached) {
+        while (true) {
+            CachedAccount existing = cache.get(account);
+            if (existing == null) {
+                if (cache.putIfAbsent(account, cached) == null) {
+                    return;
+                }
+            } else if (existing.loadedAt > cached.loadedAt ||
+                       cache.replace(account, existing, cached)) {
+                return;
+            }
+        }
+    }
+
+    private class CachedAccount {
+        private AccountCredentials credentials;
+        private boolean active;
+        private long loadedAt;
+
+        CachedAccount(AccountCredentials credentials, boolean active, long loadedAt) {
+            this.credentials = credentials;
+            this.active = active;
+            this.loadedAt = loadedAt;
+        }
+
+        StorageProviderCredentials find(String storeId) {
+            for (StorageProviderCredentials creds : credentials.getProviderCredentials()) {
+                if (creds.getProviderId().equals(storeId)) {
+                    return creds;
+                }
+            }
+            return null;
+        }
+
+        boolean isOlderThan(long ms) {
+            return System.currentTimeMillis() - loadedAt > ms;
+        }
+
+        boolean isExpired() {
+            return isOlderThan(credentials == null ? negativeTimeToLiveMs : timeToLiveMs);
+        }
+    }
+}
@@ -46,18 +46,29 @@ public class DefaultCredentialsRepoImpl implements CredentialsRepo {
     @Override
     public AccountCredentials getAccountCredentials(String account)
         throws AccountCredentialsNotFoundException {
-        List<StorageProviderCredentials> creds = new ArrayList<>();
         AccountInfo accountInfo = accountRepo.findBySubdomain(account);
         if (accountInfo == null) {
             throw new AccountCredentialsNotFoundException("no account found for subdomain " + account);
-        } else {
-            creds.add(createStorageProviderCredentials(accountInfo.getPrimaryStorageProviderAccount(), true));
-            for (StorageProviderAccount sp : accountInfo.getSecondaryStorageProviderAccounts()) {
-                creds.add(createStorageProviderCredentials(sp, false));
-            }
         }
-        AccountCredentials accountCreds = new AccountCredentials(account, creds);
-        return accountCreds;
+        return createAccountCredentials(account, accountInfo);
+    }
+
+    @Override
+    public List<AccountCredentials> getActiveAccountCredentials() throws CredentialsRepoException {
+        List<AccountCredentials> accounts = new ArrayList<>();
+        for (AccountInfo accountInfo : accountRepo.findByStatus(AccountStatus.ACTIVE)) {
+            accounts.add(createAccountCredentials(accountInfo.getSubdomain(), accountInfo));
+        }
+        return accounts;
+    }
+
+    private AccountCredentials createAccountCredentials(String account, AccountInfo accountInfo) {
+        List<StorageProviderCredentials> creds = new ArrayList<>();
+        creds.add(createStorageProviderCredentials(accountInfo.getPrimaryStorageProviderAccount(), true));
+        for (StorageProviderAccount sp : accountInfo.getSecondaryStorageProviderAccounts()) {
+            creds.add(createStorageProviderCredentials(sp, false));
+        }
+        return new AccountCredentials(account, creds, accountInfo.getStatus().equals(AccountStatus.ACTIVE));
     }
 
     private StorageProviderCredentials createStorageProviderCredentials(StorageProviderAccount sp,
@@ -0,0 +1,179 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.credentials.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.duracloud.mill.credentials.AccountCredentials;
+import org.duracloud.mill.credentials.AccountCredentialsNotFoundException;
+import org.duracloud.mill.credentials.CredentialsRepo;
+import org.duracloud.mill.credentials.StorageProviderCredentials;
+import org.duracloud.mill.credentials.StorageProviderCredentialsNotFoundException;
+import org.duracloud.storage.domain.StorageProviderType;
+import org.easymock.EasyMock;
+import org.easymock.EasyMockRunner;
+import org.easymock.EasyMockSupport;
+import org.easymock.IAnswer;
+import org.easymock.Mock;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * @author Daniel Bernstein
+ */
+@RunWith(EasyMockRunner.class)
+public class CachingCredentialsRepoTest extends EasyMockSupport {
+
+    private CachingCredentialsRepo repo;
+    private String account = "test";
+
+    @Mock
+    private CredentialsRepo delegate;
+
+    @After
+    public void tearDown() {
+        verifyAll();
+        if (repo != null) {
+            repo.destroy();
+        }
+    }
+
+    private AccountCredentials createAccount(String account, String... storeIds) {
+        return createAccount(account, true, storeIds);
+    }
+
+    private AccountCredentials createAccount(String account, boolean active, String... storeIds) {
+        List<StorageProviderCredentials> creds = new ArrayList<>();
+        for (String storeId : storeIds) {
+            creds.add(new StorageProviderCredentials(storeId,
+                                                     "username",
+                                                     "password",
+                                                     StorageProviderType.AMAZON_S3,
+                                                     null,
+                                                     creds.isEmpty()));
+        }
+        return new AccountCredentials(account, creds, active);
+    }
+
+    @Test
+    public void testWarmedCacheIsUsed() throws Exception {
+        EasyMock.expect(delegate.getActiveAccountCredentials())
+                .andReturn(Arrays.asList(createAccount(account, "1", "2")));
+        replayAll();
+
+        repo = new CachingCredentialsRepo(delegate);
+        repo.init();
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals("2", repo.getStorageProviderCredentials(account, "2").getProviderId());
+            Assert.assertTrue(repo.isAccountActive(account));
+        }
+    }
+
+    @Test
+    public void testLoadOnMiss() throws Exception {
+        //the account's status comes with its credentials
+        EasyMock.expect(delegate.getAccountCredentials(account))
+                .andReturn(createAccount(account, false, "1"));
+        replayAll();
+
+        repo = new CachingCredentialsRepo(delegate);
+
+        Assert.assertEquals(account, repo.getAccountCredentials(account).getAccount());
+        Assert.assertFalse(repo.isAccountActive(account));
+        Assert.assertEquals("1", repo.getStorageProviderCredentials(account, "1").getProviderId());
+    }
+
+    @Test
+    public void testMissingAccountIsCached() throws Exception {
+        EasyMock.expect(delegate.getAccountCredentials(account))
+                .andThrow(new AccountCredentialsNotFoundException("not found"));
+        replayAll();
+
+        repo = new CachingCredentialsRepo(delegate);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                repo.getAccountCredentials(account);
+                Assert.fail("expected exception");
+            } catch (AccountCredentialsNotFoundException e) {
+                Assert.assertTrue(true);
+            }
+        }
+    }
+
+    @Test
+    public void testExpiredEntriesAreReloaded() throws Exception {
+        EasyMock.expect(delegate.getAccountCredentials(account))
+                .andReturn(createAccount(account, "1")).times(2);
+        replayAll();
+
+        repo = new CachingCredentialsRepo(delegate, 0, 0);
+
+        repo.getAccountCredentials(account);
+        Thread.sleep(5);
+        repo.getAccountCredentials(account);
+    }
+
+    @Test
+    public void testMissingStoreReloadsStaleAccount() throws Exception {
+        EasyMock.expect(delegate.getAccountCredentials(account))
+                .andReturn(createAccount(account, "1"));
+        EasyMock.expect(delegate.getAccountCredentials(account))
+                .andReturn(createAccount(account, "1", "2"));
+        replayAll();
+
+        repo = new CachingCredentialsRepo(delegate, 60000, 0);
+
+        repo.getAccountCredentials(account);
+        Thread.sleep(5);
+        Assert.assertEquals("2", repo.getStorageProviderCredentials(account, "2").getProviderId());
+    }
+
+    @Test
+    public void testWarmKeepsNewerEntries() throws Exception {
+        EasyMock.expect(delegate.getActiveAccountCredentials()).andAnswer(new IAnswer<List<AccountCredentials>>() {
+            @Override
+            public List<AccountCredentials> answer() throws Throwable {
+                //the account is reloaded while the active accounts are being read
+                Thread.sleep(5);
+                repo.invalidate(account);
+                repo.getAccountCredentials(account);
+                return Arrays.asList(createAccount(account, "1"));
+            }
+        });
+        EasyMock.expect(delegate.getAccountCredentials(account))
+                .andReturn(createAccount(account, "1", "2"));
+        replayAll();
+
+        repo = new CachingCredentialsRepo(delegate, 60000, 60000);
+        repo.warm();
+
+        Assert.assertEquals("2", repo.getStorageProviderCredentials(account, "2").getProviderId());
+    }
+
+    @Test
+    public void testMissingStore() throws Exception {
+        EasyMock.expect(delegate.getAccountCredentials(account))
+                .andReturn(createAccount(account, "1"));
+        replayAll();
+
+        repo = new CachingCredentialsRepo(delegate);
+
+        try {
+            repo.getStorageProviderCredentials(account, "2");
+            Assert.fail("expected exception");
+        } catch (StorageProviderCredentialsNotFoundException e) {
+            Assert.assertTrue(true);
+        }
+    }
+}
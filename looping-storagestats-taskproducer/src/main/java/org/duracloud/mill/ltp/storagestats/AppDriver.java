@@ -16,6 +16,7 @@ import org.duracloud.common.queue.QueueType;
 import org.duracloud.common.queue.TaskQueue;
 import org.duracloud.common.queue.aws.SQSTaskQueue;
 import org.duracloud.common.queue.rabbitmq.RabbitMQTaskQueue;
+import org.duracloud.mill.common.storageprovider.CachingStorageProviderFactory;
 import org.duracloud.mill.common.storageprovider.StorageProviderFactory;
 import org.duracloud.mill.config.ConfigConstants;
 import org.duracloud.mill.credentials.CredentialsRepo;
@@ -89,6 +90,7 @@ public class AppDriver extends LoopingTaskProducerDriverSupport {
                                                .addNotificationConfig()
                                                .addNotifications()
                                                .addMcDb()
+                                               .addCredentialsCacheTtl()
                                                .addRabbitMQConfig()
                                                .addLoopingStorageStatsFrequency()
                                                .addLoopingStorageStatsMaxQueueSize()
@@ -106,9 +108,9 @@ public class AppDriver extends LoopingTaskProducerDriverSupport {
             new LoopingStorageStatsTaskProducerConfigurationManager();
 
         ApplicationContext ctx = ApplicationContextLocator.get();
-        CredentialsRepo credentialsRepo = ctx.getBean(CredentialsRepo.class);
+        CredentialsRepo credentialsRepo = getCachingCredentialsRepo(ctx.getBean(CredentialsRepo.class));
 
-        StorageProviderFactory storageProviderFactory = new StorageProviderFactory();
+        StorageProviderFactory storageProviderFactory = new CachingStorageProviderFactory();
 
         NotificationManager notificationMananger = null;
         if (config.getEmailerType() == EmailerType.SMTP) {
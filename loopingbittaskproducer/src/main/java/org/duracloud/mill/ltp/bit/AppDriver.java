@@ -16,6 +16,11 @@ import org.duracloud.common.queue.QueueType;
 import org.duracloud.common.queue.TaskQueue;
 import org.duracloud.common.queue.aws.SQSTaskQueue;
 import org.duracloud.common.queue.rabbitmq.RabbitMQTaskQueue;
+import org.duracloud.mill.bitlog.jpa.JpaBitLogItemRepo;
+import org.duracloud.mill.bitlog.jpa.JpaBitLogRunRepo;
+import org.duracloud.mill.bitlog.jpa.JpaBitLogStore;
+import org.duracloud.mill.bitlog.jpa.JpaBitVerifiedItemRepo;
+import org.duracloud.mill.common.storageprovider.CachingStorageProviderFactory;
 import org.duracloud.mill.common.storageprovider.StorageProviderFactory;
 import org.duracloud.mill.config.ConfigConstants;
 import org.duracloud.mill.credentials.CredentialsRepo;
@@ -33,6 +38,7 @@ import org.duracloud.mill.util.PropertyDefinitionListBuilder;
 import org.duracloud.mill.util.PropertyVerifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 import org.springframework.context.ApplicationContext;
 
 /**
@@ -93,10 +99,17 @@ public class AppDriver extends LoopingTaskProducerDriverSupport {
                                                .addNotificationConfig()
                                                .addNotifications()
                                                .addMcDb()
+                                               .addCredentialsCacheTtl()
                                                .addRabbitMQConfig()
                                                .addBitIntegrityQueue()
                                                .addLoopingBitFrequency()
                                                .addLoopingBitMaxQueueSize()
+                                               .addLoopingBitPrefetchDepth()
+                                               .addLoopingBitCheckBatchSize()
+                                               .addLoopingBitCheckTimeout()
+                                               .addLoopingBitSpaceComparisonInterval()
+                                               .addBitLogPartitionByRun()
+                                               .addBitLogVerificationIntervalDays()
                                                .addBitIntegrityReportQueue()
                                                .addWorkDir()
                                                .build();
@@ -109,9 +122,9 @@ public class AppDriver extends LoopingTaskProducerDriverSupport {
         LoopingBitTaskProducerConfigurationManager config = new LoopingBitTaskProducerConfigurationManager();
 
         ApplicationContext ctx = ApplicationContextLocator.get();
-        CredentialsRepo credentialsRepo = ctx.getBean(CredentialsRepo.class);
+        CredentialsRepo credentialsRepo = getCachingCredentialsRepo(ctx.getBean(CredentialsRepo.class));
         JpaBitIntegrityReportRepo bitReportRepo = ctx.getBean(JpaBitIntegrityReportRepo.class);
-        StorageProviderFactory storageProviderFactory = new StorageProviderFactory();
+        StorageProviderFactory storageProviderFactory = new CachingStorageProviderFactory();
 
         NotificationManager notificationMananger = null;
         if (config.getEmailerType() == EmailerType.SMTP) {
@@ -166,6 +179,44 @@ public class AppDriver extends LoopingTaskProducerDriverSupport {
                                                 notificationMananger,
                                                 config.getPathFilterManager(),
                                                 config);
+        producer.setListingPrefetcher(getListingPrefetcher(ConfigConstants.LOOPING_BIT_PREFETCH_DEPTH));
+
+        String checkBatchSize = System.getProperty(ConfigConstants.LOOPING_BIT_CHECK_BATCH_SIZE);
+        if (checkBatchSize != null) {
+            producer.setCheckBatchSize(Integer.parseInt(checkBatchSize));
+            log.info("check batch size: {}", checkBatchSize);
+        }
+
+        try {
+            JpaBitLogStore bitLogStore = new JpaBitLogStore(ctx.getBean(JpaBitLogItemRepo.class),
+                                                            bitReportRepo,
+                                                            ctx.getBean(JpaBitLogRunRepo.class),
+                                                            ctx.getBean(JpaBitVerifiedItemRepo.class));
+            bitLogStore.setPartitionByRun(Boolean.getBoolean(ConfigConstants.BIT_LOG_PARTITION_BY_RUN));
+            producer.setBitLogStore(bitLogStore);
+
+            String checkTimeoutHours = System.getProperty(ConfigConstants.LOOPING_BIT_CHECK_TIMEOUT_HOURS);
+            if (checkTimeoutHours != null) {
+                producer.setCheckTimeoutHours(Integer.parseInt(checkTimeoutHours));
+                log.info("check timeout: {} hours", checkTimeoutHours);
+            }
+
+            String comparisonIntervalDays =
+                System.getProperty(ConfigConstants.LOOPING_BIT_SPACE_COMPARISON_INTERVAL_DAYS);
+            if (comparisonIntervalDays != null) {
+                producer.setSpaceComparisonIntervalDays(Integer.parseInt(comparisonIntervalDays));
+                log.info("space comparison interval: {} days", comparisonIntervalDays);
+            }
+
+            int verificationIntervalDays = Integer.getInteger(ConfigConstants.BIT_LOG_VERIFICATION_INTERVAL_DAYS, 0);
+            if (verificationIntervalDays > 0) {
+                producer.setVerificationIntervalDays(verificationIntervalDays);
+                log.info("verification interval: {} days", verificationIntervalDays);
+            }
+        } catch (NoSuchBeanDefinitionException ex) {
+            log.warn("bit log repository not available: report tasks will be added once the bit " +
+                     "integrity queue is empty.");
+        }
         return producer;
     }
 
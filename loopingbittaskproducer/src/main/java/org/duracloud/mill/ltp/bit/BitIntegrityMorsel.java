@@ -7,6 +7,7 @@
  */
 package org.duracloud.mill.ltp.bit;
 
+import org.apache.commons.lang.ArrayUtils;
 import org.duracloud.mill.ltp.Morsel;
 
 /**
@@ -14,8 +15,18 @@ import org.duracloud.mill.ltp.Morsel;
  * Date: Apr 28, 2014
  */
 public class BitIntegrityMorsel extends Morsel {
+    private static final String[] BIT_EXCLUSIONS =
+        (String[]) ArrayUtils.addAll(EXCLUSIONS, new String[] {"expectedCheckCount", "runId",
+                                                         "loggedCheckCount", "loggedCheckCountDate",
+                                                         "completionTracked"});
+
     private String storeId;
     private String storageProviderType;
+    private volatile long expectedCheckCount = 0;
+    private long runId = 0;
+    private long loggedCheckCount = 0;
+    private long loggedCheckCountDate = 0;
+    private boolean completionTracked = false;
 
     public BitIntegrityMorsel() {
         super();
@@ -63,4 +74,89 @@ public class BitIntegrityMorsel extends Morsel {
     public void setStoreId(String storeId) {
         this.storeId = storeId;
     }
+
+    /**
+     * @return the number of bit log items expected for the space once all
+     * check tasks added for this morsel so far have been processed, or 0 if
+     * no tasks have been counted.
+     */
+    public long getExpectedCheckCount() {
+        return expectedCheckCount;
+    }
+
+    /**
+     * @param expectedCheckCount the expectedCheckCount to set
+     */
+    public void setExpectedCheckCount(long expectedCheckCount) {
+        this.expectedCheckCount = expectedCheckCount;
+    }
+
+    /**
+     * @return the id of the bit log run to which the checks of this morsel
+     * are logged, or 0 if none has been started.
+     */
+    public long getRunId() {
+        return runId;
+    }
+
+    /**
+     * @param runId the runId to set
+     */
+    public void setRunId(long runId) {
+        this.runId = runId;
+    }
+
+    /**
+     * @return the number of bit log items last counted for the space once all
+     * check tasks had been added for this morsel.
+     */
+    public long getLoggedCheckCount() {
+        return loggedCheckCount;
+    }
+
+    /**
+     * @param loggedCheckCount the loggedCheckCount to set
+     */
+    public void setLoggedCheckCount(long loggedCheckCount) {
+        this.loggedCheckCount = loggedCheckCount;
+    }
+
+    /**
+     * @return the time in milliseconds at which the logged check count was
+     * first counted or last went up, or 0 if it has not been counted.
+     */
+    public long getLoggedCheckCountDate() {
+        return loggedCheckCountDate;
+    }
+
+    /**
+     * @param loggedCheckCountDate the loggedCheckCountDate to set
+     */
+    public void setLoggedCheckCountDate(long loggedCheckCountDate) {
+        this.loggedCheckCountDate = loggedCheckCountDate;
+    }
+
+    /**
+     * @return true if the check tasks of this morsel have been counted since
+     * its listing started, so that the completion of its checks can be told
+     * from the bit log.
+     */
+    public boolean isCompletionTracked() {
+        return completionTracked;
+    }
+
+    /**
+     * @param completionTracked the completionTracked to set
+     */
+    public void setCompletionTracked(boolean completionTracked) {
+        this.completionTracked = completionTracked;
+    }
+
+    /* (non-Javadoc)
+     * @see org.duracloud.mill.ltp.Morsel#getExclusions()
+     */
+    @Override
+    protected String[] getExclusions() {
+        return BIT_EXCLUSIONS;
+    }
 }
@@ -8,6 +8,8 @@
 package org.duracloud.mill.ltp.bit;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -21,8 +23,10 @@ import org.duracloud.common.queue.TaskQueue;
 import org.duracloud.common.queue.task.Task;
 import org.duracloud.common.retry.Retriable;
 import org.duracloud.common.retry.Retrier;
+import org.duracloud.mill.bit.BitIntegrityCheckBatchTask;
 import org.duracloud.mill.bit.BitIntegrityCheckReportTask;
 import org.duracloud.mill.bit.BitIntegrityCheckTask;
+import org.duracloud.mill.bitlog.BitLogStore;
 import org.duracloud.mill.common.storageprovider.StorageProviderFactory;
 import org.duracloud.mill.credentials.AccountCredentials;
 import org.duracloud.mill.credentials.CredentialsRepo;
@@ -30,6 +34,7 @@ import org.duracloud.mill.credentials.CredentialsRepoException;
 import org.duracloud.mill.credentials.StorageProviderCredentials;
 import org.duracloud.mill.db.model.BitIntegrityReport;
 import org.duracloud.mill.db.repo.JpaBitIntegrityReportRepo;
+import org.duracloud.mill.ltp.ChunkPrefetcher.ChunkLister;
 import org.duracloud.mill.ltp.Frequency;
 import org.duracloud.mill.ltp.LoopingTaskProducer;
 import org.duracloud.mill.ltp.PathFilterManager;
@@ -47,11 +52,27 @@ import org.slf4j.LoggerFactory;
  */
 public class LoopingBitIntegrityTaskProducer extends LoopingTaskProducer<BitIntegrityMorsel> {
     private static Logger log = LoggerFactory.getLogger(LoopingBitIntegrityTaskProducer.class);
+    private static final long ONE_DAY_IN_MS = 24 * 60 * 60 * 1000L;
+    private static final long ONE_HOUR_IN_MS = 60 * 60 * 1000L;
+    public static final int DEFAULT_CHECK_TIMEOUT_HOURS = 12;
+    public static final int DEFAULT_SPACE_COMPARISON_INTERVAL_DAYS = 30;
+    /**
+     * The number of verification intervals after which the verification time
+     * of an item which has not passed a check since is deleted.
+     */
+    public static final int STALE_VERIFICATION_INTERVALS = 3;
     private PathFilterManager exclusionManager;
     private int waitTimeInMsBeforeQueueSizeCheck = 10000;
     private TaskQueue bitReportTaskQueue;
     private JpaBitIntegrityReportRepo bitReportRepo;
     private int waitBetweenRetriesMs = 5000;
+    private BitLogStore bitLogStore;
+    private int checkBatchSize = 1;
+    private int verificationIntervalDays = 0;
+    private int checkTimeoutHours = DEFAULT_CHECK_TIMEOUT_HOURS;
+    private int spaceComparisonIntervalDays = DEFAULT_SPACE_COMPARISON_INTERVAL_DAYS;
+    private Set<BitIntegrityMorsel> awaitingChecks =
+        Collections.synchronizedSet(new HashSet<BitIntegrityMorsel>());
 
     public LoopingBitIntegrityTaskProducer(CredentialsRepo credentialsRepo,
                                            JpaBitIntegrityReportRepo bitReportRepo,
@@ -78,6 +99,82 @@ public class LoopingBitIntegrityTaskProducer extends LoopingTaskProducer<BitInte
         this.bitReportRepo = bitReportRepo;
     }
 
+    /**
+     * Sets the number of content items covered by each bit integrity check
+     * task. Batches of more than one item require workers which process
+     * BitIntegrityCheckBatchTasks. The default is 1.
+     *
+     * @param checkBatchSize
+     */
+    public void setCheckBatchSize(int checkBatchSize) {
+        this.checkBatchSize = checkBatchSize;
+    }
+
+    /**
+     * Sets the bit log store used to tell when all checks of a space have been
+     * logged. Without one, the report task for a space is only added once the
+     * bit integrity queue is empty.
+     *
+     * @param bitLogStore
+     */
+    public void setBitLogStore(BitLogStore bitLogStore) {
+        this.bitLogStore = bitLogStore;
+    }
+
+    /**
+     * Sets the number of days after which a content item which passed its
+     * last check is due to be checked again. When it is greater than 0 (and a
+     * bit log store is set), each space is listed on every run but check tasks
+     * are only added for the items which are due, so that items are checked
+     * continuously rather than a space at a time every so often. Items which
+     * have never passed a check are spread across the interval. The
+     * verification times of items which have not passed a check for
+     * STALE_VERIFICATION_INTERVALS intervals (deleted items, or items which
+     * keep failing) are deleted at the start of each run of their space. The
+     * default is 0, which checks every item of a space unless the space's last
+     * report was a success less than 60 days ago.
+     *
+     * @param verificationIntervalDays
+     */
+    public void setVerificationIntervalDays(int verificationIntervalDays) {
+        this.verificationIntervalDays = verificationIntervalDays;
+    }
+
+    /**
+     * Sets the number of hours during which no further checks of a completely
+     * nibbled space must be logged before its remaining checks are taken to
+     * have been ignored or to have exhausted their attempts, and its report
+     * task is added anyway. The default is 12.
+     *
+     * @param checkTimeoutHours
+     */
+    public void setCheckTimeoutHours(int checkTimeoutHours) {
+        this.checkTimeoutHours = checkTimeoutHours;
+    }
+
+    /**
+     * Sets the number of days after which a space for which no checks were
+     * added is compared with the manifest again. A report task (which compares
+     * the space before writing its report) is added for such a space only if
+     * the space's last report is older than this; otherwise the space is done
+     * without one. Spaces for which checks were added are reported on (and so
+     * compared) every time. The default is 30.
+     *
+     * @param spaceComparisonIntervalDays
+     */
+    public void setSpaceComparisonIntervalDays(int spaceComparisonIntervalDays) {
+        this.spaceComparisonIntervalDays = spaceComparisonIntervalDays;
+    }
+
+    /* (non-Javadoc)
+     * @see org.duracloud.mill.ltp.LoopingTaskProducer#run()
+     */
+    @Override
+    public void run() {
+        awaitingChecks.clear();
+        super.run();
+    }
+
     /* (non-Javadoc)
      * @see org.duracloud.mill.ltp.LoopingTaskProducer#loadMorselQueueFromSource(java.util.Queue)
      */
@@ -111,7 +208,7 @@ public class LoopingBitIntegrityTaskProducer extends LoopingTaskProducer<BitInte
                         if (!exclusionManager.isExcluded(spacePath)) {
 
                             //check if most recent
-                            BitIntegrityReport report = bitReportRepo
+                            BitIntegrityReport report = isVerifiedIncrementally() ? null : bitReportRepo
                                 .findFirstByAccountAndStoreIdAndSpaceIdOrderByCompletionDateDesc(account,
                                                                                                  storeId,
                                                                                                  spaceId);
@@ -199,22 +296,10 @@ public class LoopingBitIntegrityTaskProducer extends LoopingTaskProducer<BitInte
                              morsel.getAccount(), storeId, morsel.getSpaceId(), getTaskQueue().size());
                     log.info("{} completely nibbled.", morsel);
 
-                    // check if queue is empty after waiting a few moments: It is possible that AWS will not have
-                    // registered a new task that was added in the previous step (or even is pending). I observed
-                    // this problem while debugging this code.
-                    // If I put the breakpoint on the if statement and I ran the task producer against a space with a
-                    // single content item then size would be reported as 0.  However if I put the breakpoint a line
-                    // above on "long size = ..." then the size variable was evaluating to 1. At 5 seconds, I was
-                    // still seeing the inconsistency.  At 10 seconds the matter seems to be resolved.
-                    // Makes me a little nervous.  --dbernstein
-                    log.debug("delay before checking the queue size in ms: {}", waitTimeInMsBeforeQueueSizeCheck);
-                    sleep(waitTimeInMsBeforeQueueSizeCheck);
-                    long size = getTaskQueue().sizeIncludingInvisibleAndDelayed();
-                    if (size == 0) {
-                        addReportTaskProcessorTask(queue.poll());
+                    if (isCompletionTracked(morsel)) {
+                        addReportTaskWhenChecksLogged(queue);
                     } else {
-                        log.info("{} (queue) is not empty: {} items remain to be processed before " +
-                                 "creating report generation task.", getTaskQueue().getName(), size);
+                        addReportTaskWhenQueueEmpty(queue);
                     }
 
                     break;
@@ -228,6 +313,125 @@ public class LoopingBitIntegrityTaskProducer extends LoopingTaskProducer<BitInte
         }
     }
 
+    /**
+     * Completion of a morsel's checks is tracked through the bit log if a bit
+     * log store is available and the morsel's tasks were counted as they were
+     * added, however many there were. Morsels whose listing was started before
+     * the tasks were counted (e.g. read from an older state file) are not
+     * tracked.
+     *
+     * @param morsel
+     * @return
+     */
+    private boolean isCompletionTracked(BitIntegrityMorsel morsel) {
+        return bitLogStore != null && morsel.isCompletionTracked();
+    }
+
+    /**
+     * Adds the report task once the bit log holds an item for each check task
+     * added for the morsel. A morsel whose checks are still in progress is
+     * moved to the reload list so that the other morsels can be nibbled in the
+     * meantime; if it comes around again during the same session still short
+     * of items, it is kept for the next session. Checks which are ignored or
+     * which exhaust their attempts do not log an item, so once no further item
+     * has been logged for the check timeout, the report task is added anyway.
+     *
+     * @param queue
+     */
+    private void addReportTaskWhenChecksLogged(Queue<BitIntegrityMorsel> queue) {
+        BitIntegrityMorsel morsel = queue.peek();
+        if (morsel.getExpectedCheckCount() == 0 && !isSpaceComparisonDue(morsel)) {
+            log.info("no bit integrity checks were added for {} and its last report is less than {} days old: " +
+                     "no report task is added.", morsel, spaceComparisonIntervalDays);
+            deleteRun(queue.poll());
+            return;
+        }
+
+        long logged = bitLogStore.countBitLogItems(morsel.getAccount(),
+                                                   morsel.getStoreId(),
+                                                   morsel.getSpaceId(),
+                                                   morsel.getRunId());
+        long expected = morsel.getExpectedCheckCount();
+        long now = System.currentTimeMillis();
+        if (morsel.getLoggedCheckCountDate() == 0 || logged > morsel.getLoggedCheckCount()) {
+            morsel.setLoggedCheckCount(logged);
+            morsel.setLoggedCheckCountDate(now);
+        }
+
+        if (logged >= expected) {
+            addReportTaskProcessorTask(queue.poll());
+        } else if (now - morsel.getLoggedCheckCountDate() >= checkTimeoutHours * ONE_HOUR_IN_MS) {
+            log.warn("{} of {} bit integrity checks have been logged for {} and none for {} hours: adding the " +
+                     "report task without the remaining checks.", logged, expected, morsel, checkTimeoutHours);
+            addReportTaskProcessorTask(queue.poll());
+        } else if (awaitingChecks.add(morsel)) {
+            log.info("{} of {} bit integrity checks have been logged for {}: checking again once the other " +
+                     "morsels have been nibbled.", logged, expected, morsel);
+            addToReloadList(queue.poll());
+        } else {
+            log.info("{} of {} bit integrity checks have been logged for {}: checking again next session.",
+                     logged, expected, morsel);
+            addToNextSession(queue.poll());
+        }
+    }
+
+    /**
+     * @param morsel
+     * @return true if the morsel's space has no report younger than the space
+     * comparison interval
+     */
+    private boolean isSpaceComparisonDue(BitIntegrityMorsel morsel) {
+        BitIntegrityReport report =
+            bitReportRepo.findFirstByAccountAndStoreIdAndSpaceIdOrderByCompletionDateDesc(morsel.getAccount(),
+                                                                                          morsel.getStoreId(),
+                                                                                          morsel.getSpaceId());
+        return report == null ||
+               report.getCompletionDate().before(
+                   new Date(System.currentTimeMillis() - spaceComparisonIntervalDays * ONE_DAY_IN_MS));
+    }
+
+    /**
+     * Deletes the (empty) run of a morsel which is done without a report.
+     *
+     * @param morsel
+     */
+    private void deleteRun(BitIntegrityMorsel morsel) {
+        if (morsel.getRunId() == BitLogStore.NO_RUN) {
+            return;
+        }
+
+        try {
+            bitLogStore.delete(morsel.getAccount(), morsel.getStoreId(), morsel.getSpaceId(), morsel.getRunId());
+        } catch (Exception ex) {
+            log.warn("failed to delete bit log run {} of {}: {}", morsel.getRunId(), morsel, ex.getMessage());
+        }
+    }
+
+    /**
+     * Adds the report task if the task queue is empty.
+     *
+     * @param queue
+     */
+    private void addReportTaskWhenQueueEmpty(Queue<BitIntegrityMorsel> queue) {
+        // check if queue is empty after waiting a few moments: It is possible that AWS will not have
+        // registered a new task that was added in the previous step (or even is pending). I observed
+        // this problem while debugging this code.
+        // If I put the breakpoint on the if statement and I ran the task producer against a space with a
+        // single content item then size would be reported as 0.  However if I put the breakpoint a line
+        // above on "long size = ..." then the size variable was evaluating to 1. At 5 seconds, I was
+        // still seeing the inconsistency.  At 10 seconds the matter seems to be resolved.
+        // Makes me a little nervous.  --dbernstein
+        log.debug("delay before checking the queue size in ms: {}", waitTimeInMsBeforeQueueSizeCheck);
+        sleep(waitTimeInMsBeforeQueueSizeCheck);
+        long size = getTaskQueue().sizeIncludingInvisibleAndDelayed();
+        if (size == 0) {
+            addReportTaskProcessorTask(queue.poll());
+        } else {
+            log.info("{} (queue) is not empty: {} items remain to be processed before " +
+                     "creating report generation task.", getTaskQueue().getName(), size);
+        }
+    }
+
     /**
      * @param ms
      */
@@ -247,6 +451,7 @@ public class LoopingBitIntegrityTaskProducer extends LoopingTaskProducer<BitInte
         task.setAccount(morsel.getAccount());
         task.setStoreId(morsel.getStoreId());
         task.setSpaceId(morsel.getSpaceId());
+        task.setRunId(morsel.getRunId());
         Task t = task.writeTask();
         this.bitReportTaskQueue.put(t);
         log.info("added report task {} to {}", t, this.bitReportTaskQueue);
@@ -266,27 +471,58 @@ public class LoopingBitIntegrityTaskProducer extends LoopingTaskProducer<BitInte
         final String spaceId = morsel.getSpaceId();
         final String marker = morsel.getMarker();
 
+        final String listingKey = account + "/" + storeId + "/" + spaceId;
+
         //load in next maxContentIdsToAdd or however many remain
         List<String> contentIds = null;
 
         try {
 
-            contentIds = (List<String>) new Retrier(3, waitBetweenRetriesMs, 2).execute(new Retriable() {
-                /* (non-Javadoc)
-                 * @see org.duracloud.common.retry.Retriable#retry()
-                 */
+            contentIds = listChunk(listingKey, marker, new ChunkLister() {
                 @Override
-                public Object retry() throws Exception {
-                    return store.getSpaceContentsChunked(spaceId, null, biteSize, marker);
+                public List<String> list(final String chunkMarker) throws Exception {
+                    return (List<String>) new Retrier(3, waitBetweenRetriesMs, 2).execute(new Retriable() {
+                        /* (non-Javadoc)
+                         * @see org.duracloud.common.retry.Retriable#retry()
+                         */
+                        @Override
+                        public Object retry() throws Exception {
+                            return store.getSpaceContentsChunked(spaceId, null, biteSize, chunkMarker);
+                        }
+                    });
                 }
             });
 
-            int added = addToTaskQueue(account, storeId, spaceId, contentIds);
+            long expected = morsel.getExpectedCheckCount();
+            if (marker == null && bitLogStore != null) {
+                if (morsel.getRunId() == BitLogStore.NO_RUN) {
+                    morsel.setRunId(bitLogStore.startRun(account, storeId, spaceId));
+                }
+                // items already logged by the run (or, without a run, by an
+                // interrupted run) are counted as well until the space's
+                // report deletes them.
+                expected = bitLogStore.countBitLogItems(account, storeId, spaceId, morsel.getRunId());
+                morsel.setCompletionTracked(true);
+
+                if (isVerifiedIncrementally()) {
+                    deleteStaleVerifiedDates(account, storeId, spaceId);
+                }
+            }
+
+            List<String> dueContentIds = contentIds;
+            if (isVerifiedIncrementally()) {
+                dueContentIds = filterDue(account, storeId, spaceId, contentIds);
+                log.debug("{} of {} content items listed for {} are due to be checked",
+                          dueContentIds.size(), contentIds.size(), listingKey);
+            }
+
+            int added = addToTaskQueue(account, storeId, spaceId, morsel.getRunId(), dueContentIds);
+            morsel.setExpectedCheckCount(expected + added);
 
             ((BitIntegrityRunStats) getStats(account)).add(added);
-            //if no tasks were added, it means that all contentIds in this morsel
+            //if no content ids were listed, it means that all contentIds in this morsel
             //have been touched in this run.
-            if (added == 0) {
+            if (contentIds.isEmpty()) {
                 return true;
             } else {
                 String newMarker = contentIds.get(contentIds.size() - 1);
@@ -301,32 +537,135 @@ public class LoopingBitIntegrityTaskProducer extends LoopingTaskProducer<BitInte
             log.error(message, ex);
 
             sendEmail(message, ex);
+            discardListing(listingKey);
             return true;
         }
     }
 
+    private boolean isVerifiedIncrementally() {
+        return verificationIntervalDays > 0 && bitLogStore != null;
+    }
+
     /**
+     * Deletes the verification times of the space's items which have not
+     * passed a check for STALE_VERIFICATION_INTERVALS verification intervals
+     * (plus the run window, by which a check may be late). An item which is
+     * still in the space and keeps passing its checks has its time renewed
+     * every interval, so only the times of deleted items, or of items which
+     * keep failing their checks, are deleted: the latter are due to be checked
+     * all the same, since an item without a time is due once in every interval.
+     *
      * @param account
      * @param storeId
+     * @param spaceId
+     */
+    private void deleteStaleVerifiedDates(String account, String storeId, String spaceId) {
+        long staleDays = (long) STALE_VERIFICATION_INTERVALS * verificationIntervalDays + getRunWindowDays();
+        Date before = new Date(System.currentTimeMillis() - staleDays * ONE_DAY_IN_MS);
+        try {
+            bitLogStore.deleteVerifiedBefore(account, storeId, spaceId, before);
+        } catch (Exception ex) {
+            log.warn("failed to delete stale verification times where account = {}, store_id = {}, " +
+                     "space_id = {}: {}", account, storeId, spaceId, ex.getMessage());
+        }
+    }
+
+    /**
+     * An item which has passed a check is due once the verification interval
+     * has passed since the day of that check. An item which has never passed
+     * one is due on the days given by its hash, one in every interval, so
+     * that the first checks of a space's items are spread across the interval
+     * rather than made all at once; the window of days covered by a run keeps
+     * runs which are more than a day apart from skipping those days.
+     *
+     * @param account
+     * @param storeId
+     * @param spaceId
      * @param contentIds
-     * @return
+     * @return the content ids which are due to be checked
+     */
+    private List<String> filterDue(String account,
+                                   String storeId,
+                                   String spaceId,
+                                   List<String> contentIds) {
+        Map<String, Date> verifiedDates = bitLogStore.getVerifiedDates(account, storeId, spaceId, contentIds);
+        long today = System.currentTimeMillis() / ONE_DAY_IN_MS;
+        long windowDays = getRunWindowDays();
+
+        List<String> due = new ArrayList<>();
+        for (String contentId : contentIds) {
+            Date verified = verifiedDates.get(contentId);
+            if (verified != null) {
+                if (verified.getTime() / ONE_DAY_IN_MS + verificationIntervalDays <= today) {
+                    due.add(contentId);
+                }
+            } else {
+                String path = account + "/" + storeId + "/" + spaceId + "/" + contentId;
+                long firstDay = (path.hashCode() & 0x7fffffff) % verificationIntervalDays;
+                if ((((today - firstDay) % verificationIntervalDays) + verificationIntervalDays)
+                    % verificationIntervalDays < windowDays) {
+                    due.add(contentId);
+                }
+            }
+        }
+        return due;
+    }
+
+    /**
+     * @return the number of days between the start of one run and the next,
+     * at least 1.
+     */
+    private long getRunWindowDays() {
+        Frequency frequency = getFrequency();
+        String unit = frequency.getTimeUnitAsString();
+        long days = 1;
+        if (unit.equals("d")) {
+            days = frequency.getValue();
+        } else if (unit.equals("m")) {
+            days = frequency.getValue() * 30L;
+        }
+        return Math.max(1, days);
+    }
+
+    /**
+     * @param account
+     * @param storeId
+     * @param spaceId
+     * @param runId
+     * @param contentIds
+     * @return the number of content items for which checks were added
      */
     private int addToTaskQueue(String account,
                                String storeId,
                                String spaceId,
+                               long runId,
                                List<String> contentIds) {
         Set<Task> tasks = new HashSet<>();
         int addedCount = 0;
 
-        for (String contentId : contentIds) {
-            BitIntegrityCheckTask bitIntegrityTask = new BitIntegrityCheckTask();
-            bitIntegrityTask.setAccount(account);
-            bitIntegrityTask.setContentId(contentId);
-            bitIntegrityTask.setSpaceId(spaceId);
-            bitIntegrityTask.setStoreId(storeId);
-            Task task = bitIntegrityTask.writeTask();
-            tasks.add(task);
-            addedCount++;
+        if (checkBatchSize > 1) {
+            for (List<String> batch : BitIntegrityCheckBatchTask.split(contentIds, checkBatchSize)) {
+                BitIntegrityCheckBatchTask batchTask = new BitIntegrityCheckBatchTask();
+                batchTask.setAccount(account);
+                batchTask.setSpaceId(spaceId);
+                batchTask.setStoreId(storeId);
+                batchTask.setRunId(runId);
+                batchTask.setContentIds(batch);
+                tasks.add(batchTask.writeTask());
+                addedCount += batchTask.getContentIds().size();
+            }
+        } else {
+            for (String contentId : contentIds) {
+                BitIntegrityCheckTask bitIntegrityTask = new BitIntegrityCheckTask();
+                bitIntegrityTask.setAccount(account);
+                bitIntegrityTask.setContentId(contentId);
+                bitIntegrityTask.setSpaceId(spaceId);
+                bitIntegrityTask.setStoreId(storeId);
+                bitIntegrityTask.setRunId(runId);
+                Task task = bitIntegrityTask.writeTask();
+                tasks.add(task);
+                addedCount++;
+            }
         }
 
         getTaskQueue().put(tasks);
@@ -14,19 +14,26 @@ import static org.easymock.EasyMock.isA;
 import java.io.File;
 import java.text.ParseException;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.duracloud.common.queue.TaskQueue;
 import org.duracloud.common.queue.TimeoutException;
 import org.duracloud.common.queue.local.LocalTaskQueue;
 import org.duracloud.common.util.WaitUtil;
+import org.duracloud.mill.bit.BitIntegrityCheckTask;
+import org.duracloud.mill.bitlog.BitLogStore;
 import org.duracloud.mill.common.storageprovider.StorageProviderFactory;
 import org.duracloud.mill.credentials.AccountCredentials;
 import org.duracloud.mill.credentials.CredentialsRepo;
 import org.duracloud.mill.credentials.CredentialsRepoException;
 import org.duracloud.mill.credentials.StorageProviderCredentials;
+import org.duracloud.mill.db.model.BitIntegrityReport;
 import org.duracloud.mill.db.repo.JpaBitIntegrityReportRepo;
 import org.duracloud.mill.ltp.Frequency;
 import org.duracloud.mill.ltp.LoopingTaskProducer;
@@ -36,6 +43,7 @@ import org.duracloud.mill.notification.NotificationManager;
 import org.duracloud.storage.domain.StorageProviderType;
 import org.duracloud.storage.error.NotFoundException;
 import org.duracloud.storage.provider.StorageProvider;
+import org.easymock.Capture;
 import org.easymock.EasyMock;
 import org.easymock.EasyMockRunner;
 import org.easymock.EasyMockSupport;
@@ -54,6 +62,8 @@ import org.junit.runner.RunWith;
 @RunWith(EasyMockRunner.class)
 public class LoopingBitIntegrityTaskProducerTest extends EasyMockSupport {
 
+    private static final long ONE_DAY_IN_MS = 24 * 60 * 60 * 1000L;
+
     @Mock
     private CredentialsRepo credentialsRepo;
     @Mock
@@ -76,6 +86,9 @@ public class LoopingBitIntegrityTaskProducerTest extends EasyMockSupport {
 
     private TaskQueue bitReportQueue;
 
+    @Mock
+    private BitLogStore bitLogStore;
+
     /**
      * @throws java.lang.Exception
      */
@@ -156,6 +169,224 @@ public class LoopingBitIntegrityTaskProducerTest extends EasyMockSupport {
         Assert.assertEquals(morselCount, bitReportQueue.size().intValue());
     }
 
+    @Test
+    public void testRunWithCompletionTracking() throws CredentialsRepoException, ParseException, TimeoutException {
+
+        int morselCount = 1;
+        int sourceCount = 2000;
+
+        setupStore(morselCount, sourceCount);
+        setupStorageProviderFactory(morselCount);
+        setupCredentialsRepo();
+        setupNotificationManager(1);
+        setupLoopingTaskProducerConfig(1);
+        setupBitReportRepo(1);
+
+        expect(bitLogStore.startRun("test-account", "id", "space0")).andReturn(5L);
+        // nothing logged when the first chunk is added nor on either check in the first run
+        expect(bitLogStore.countBitLogItems("test-account", "id", "space0", 5L))
+            .andReturn(0L).times(3)
+            .andReturn((long) sourceCount);
+        replayAll();
+
+        LoopingBitIntegrityTaskProducer ltp = createTaskProducer(sourceCount + 1000);
+        ltp.setBitLogStore(bitLogStore);
+
+        ltp.run();
+
+        //the checks are still in the queue, so no report task is added.
+        Assert.assertEquals(sourceCount, bitQueue.size().intValue());
+        Assert.assertEquals(0, bitReportQueue.size().intValue());
+        Assert.assertEquals(sourceCount, stateManager.getMorsels().iterator().next().getExpectedCheckCount());
+        Assert.assertEquals(5L, stateManager.getMorsels().iterator().next().getRunId());
+        //the morsel is kept for the next session rather than waiting for the queue to drain.
+        Assert.assertTrue(stateManager.getMorsels().iterator().next().getLoggedCheckCountDate() > 0);
+
+        //the report task is added once every check has been logged, without waiting for the
+        //queue to drain.
+        ltp.run();
+        Assert.assertEquals(sourceCount, bitQueue.size().intValue());
+        Assert.assertEquals(1, bitReportQueue.size().intValue());
+        Assert.assertEquals("5", bitReportQueue.take().getProperty(BitIntegrityCheckTask.RUN_ID_KEY));
+        Assert.assertTrue(stateManager.getMorsels().isEmpty());
+    }
+
+    @Test
+    public void testRunWithCheckTimeout() throws CredentialsRepoException, ParseException, TimeoutException {
+
+        int morselCount = 1;
+        int sourceCount = 2000;
+
+        setupStore(morselCount, sourceCount);
+        setupStorageProviderFactory(morselCount);
+        setupCredentialsRepo();
+        setupNotificationManager(1);
+        setupLoopingTaskProducerConfig(1);
+        setupBitReportRepo(1);
+
+        expect(bitLogStore.startRun("test-account", "id", "space0")).andReturn(5L);
+        // one of the checks is never logged
+        expect(bitLogStore.countBitLogItems("test-account", "id", "space0", 5L))
+            .andReturn(0L)
+            .andReturn((long) sourceCount - 1);
+        replayAll();
+
+        LoopingBitIntegrityTaskProducer ltp = createTaskProducer(sourceCount + 1000);
+        ltp.setBitLogStore(bitLogStore);
+        ltp.setCheckTimeoutHours(0);
+
+        ltp.run();
+
+        //the report task is added without waiting for the missing check.
+        Assert.assertEquals(1, bitReportQueue.size().intValue());
+        Assert.assertTrue(stateManager.getMorsels().isEmpty());
+    }
+
+    @Test
+    public void testRunWithVerificationInterval() throws CredentialsRepoException, ParseException {
+
+        int morselCount = 1;
+        int sourceCount = 2000;
+
+        setupStore(morselCount, sourceCount);
+        setupStorageProviderFactory(morselCount);
+        setupCredentialsRepo();
+        setupNotificationManager(1);
+        setupLoopingTaskProducerConfig(1);
+
+        expect(bitLogStore.startRun("test-account", "id", "space0")).andReturn(5L);
+        expect(bitLogStore.countBitLogItems("test-account", "id", "space0", 5L)).andReturn(0L).atLeastOnce();
+        Capture<Date> staleBefore = new Capture<>();
+        expect(bitLogStore.deleteVerifiedBefore(EasyMock.eq("test-account"),
+                                                EasyMock.eq("id"),
+                                                EasyMock.eq("space0"),
+                                                EasyMock.capture(staleBefore))).andReturn(0L);
+
+        // every other item passed its last check more than 30 days ago
+        final long oneDayInMs = 24 * 60 * 60 * 1000L;
+        expect(bitLogStore.getVerifiedDates(EasyMock.eq("test-account"),
+                                            EasyMock.eq("id"),
+                                            EasyMock.eq("space0"),
+                                            EasyMock.<Collection<String>>anyObject()))
+            .andAnswer(new IAnswer<Map<String, Date>>() {
+                @Override
+                public Map<String, Date> answer() throws Throwable {
+                    Map<String, Date> verified = new HashMap<>();
+                    int i = 0;
+                    for (Object contentId : (Collection<?>) EasyMock.getCurrentArguments()[3]) {
+                        int days = i++ % 2 == 0 ? 1 : 31;
+                        verified.put((String) contentId, new Date(System.currentTimeMillis() - days * oneDayInMs));
+                    }
+                    return verified;
+                }
+            }).atLeastOnce();
+        replayAll();
+
+        LoopingBitIntegrityTaskProducer ltp = createTaskProducer(sourceCount + 1000);
+        ltp.setBitLogStore(bitLogStore);
+        ltp.setVerificationIntervalDays(30);
+
+        ltp.run();
+
+        //the space's last report is not looked up and the space is listed in full, but
+        //only the items which are due are checked.
+        Assert.assertEquals(sourceCount / 2, bitQueue.size().intValue());
+        Assert.assertEquals(0, bitReportQueue.size().intValue());
+        Assert.assertEquals(sourceCount / 2,
+                            stateManager.getMorsels().iterator().next().getExpectedCheckCount());
+        //the verification times not renewed for three intervals were deleted.
+        Assert.assertTrue(staleBefore.getValue().getTime() <= System.currentTimeMillis() - 90 * oneDayInMs);
+    }
+
+    @Test
+    public void testRunWithNothingDue() throws CredentialsRepoException, ParseException, TimeoutException {
+        setupNothingDue();
+        //the space has not been reported on, so its comparison is due
+        setupBitReportRepo(1);
+        expect(bitLogStore.countBitLogItems("test-account", "id", "space0", 5L)).andReturn(0L);
+        replayAll();
+
+        LoopingBitIntegrityTaskProducer ltp = createNothingDueTaskProducer();
+        ltp.run();
+
+        //no checks were added, so the report task does not wait for the queue to drain.
+        Assert.assertEquals(1, bitQueue.size().intValue());
+        Assert.assertEquals(1, bitReportQueue.size().intValue());
+        Assert.assertTrue(stateManager.getMorsels().isEmpty());
+    }
+
+    @Test
+    public void testRunWithNothingDueAndRecentReport()
+        throws CredentialsRepoException, ParseException, TimeoutException {
+        setupNothingDue();
+        BitIntegrityReport report = createMock(BitIntegrityReport.class);
+        expect(report.getCompletionDate()).andReturn(new Date(System.currentTimeMillis() - ONE_DAY_IN_MS));
+        expect(bitReportRepo.findFirstByAccountAndStoreIdAndSpaceIdOrderByCompletionDateDesc("test-account",
+                                                                                            "id",
+                                                                                            "space0"))
+            .andReturn(report);
+        // the space is done without a report, so its empty run is deleted
+        bitLogStore.delete("test-account", "id", "space0", 5L);
+        expectLastCall();
+        replayAll();
+
+        LoopingBitIntegrityTaskProducer ltp = createNothingDueTaskProducer();
+        ltp.run();
+
+        Assert.assertEquals(1, bitQueue.size().intValue());
+        Assert.assertEquals(0, bitReportQueue.size().intValue());
+        Assert.assertTrue(stateManager.getMorsels().isEmpty());
+    }
+
+    private void setupNothingDue() throws CredentialsRepoException {
+        int morselCount = 1;
+        int sourceCount = 2000;
+
+        setupStore(morselCount, sourceCount);
+        setupStorageProviderFactory(morselCount);
+        setupCredentialsRepo();
+        setupNotificationManager(1);
+        setupLoopingTaskProducerConfig(1);
+
+        expect(bitLogStore.startRun("test-account", "id", "space0")).andReturn(5L);
+        expect(bitLogStore.countBitLogItems("test-account", "id", "space0", 5L)).andReturn(0L);
+        expect(bitLogStore.deleteVerifiedBefore(EasyMock.eq("test-account"),
+                                                EasyMock.eq("id"),
+                                                EasyMock.eq("space0"),
+                                                EasyMock.isA(Date.class))).andReturn(0L);
+
+        // every item passed its last check yesterday
+        expect(bitLogStore.getVerifiedDates(EasyMock.eq("test-account"),
+                                            EasyMock.eq("id"),
+                                            EasyMock.eq("space0"),
+                                            EasyMock.<Collection<String>>anyObject()))
+            .andAnswer(new IAnswer<Map<String, Date>>() {
+                @Override
+                public Map<String, Date> answer() throws Throwable {
+                    Map<String, Date> verified = new HashMap<>();
+                    for (Object contentId : (Collection<?>) EasyMock.getCurrentArguments()[3]) {
+                        verified.put((String) contentId, new Date(System.currentTimeMillis() - ONE_DAY_IN_MS));
+                    }
+                    return verified;
+                }
+            }).atLeastOnce();
+    }
+
+    private LoopingBitIntegrityTaskProducer createNothingDueTaskProducer() throws ParseException {
+        LoopingBitIntegrityTaskProducer ltp = createTaskProducer(3000);
+        ltp.setBitLogStore(bitLogStore);
+        ltp.setVerificationIntervalDays(30);
+
+        //a check of another space is still in the queue
+        BitIntegrityCheckTask other = new BitIntegrityCheckTask();
+        other.setAccount("test-account");
+        other.setStoreId("id");
+        other.setSpaceId("other-space");
+        other.setContentId("item");
+        bitQueue.put(other.writeTask());
+        return ltp;
+    }
+
     @Test
     public void testRunWithZeroFrequency() throws CredentialsRepoException, ParseException {
 
@@ -19,6 +19,7 @@ import org.duracloud.common.queue.QueueType;
 import org.duracloud.common.queue.TaskQueue;
 import org.duracloud.common.queue.aws.SQSTaskQueue;
 import org.duracloud.common.queue.rabbitmq.RabbitMQTaskQueue;
+import org.duracloud.mill.common.storageprovider.CachingStorageProviderFactory;
 import org.duracloud.mill.common.storageprovider.StorageProviderFactory;
 import org.duracloud.mill.common.taskproducer.TaskProducerConfigurationManager;
 import org.duracloud.mill.config.ConfigConstants;
@@ -72,10 +73,14 @@ public class AppDriver extends LoopingTaskProducerDriverSupport {
                                                .addNotificationConfig()
                                                .addNotifications()
                                                .addMcDb()
+                                               .addCredentialsCacheTtl()
                                                .addRabbitMQConfig()
                                                .addDuplicationLowPriorityQueue()
                                                .addLoopingDupFrequency()
                                                .addLoopingDupMaxQueueSize()
+                                               .addLoopingDupManifestFilter()
+                                               .addLoopingDupNibbleThreads()
+                                               .addLoopingDupPrefetchDepth()
                                                .addDuplicationPolicyBucketSuffix()
                                                .addLocalDuplicationDir()
                                                .addWorkDir()
@@ -86,9 +91,10 @@ public class AppDriver extends LoopingTaskProducerDriverSupport {
         LoopingTaskProducerConfigurationManager config = new LoopingTaskProducerConfigurationManager();
         processLocalDuplicationDirOption(config);
 
-        CredentialsRepo credentialsRepo = ApplicationContextLocator.get().getBean(CredentialsRepo.class);
+        CredentialsRepo credentialsRepo =
+            getCachingCredentialsRepo(ApplicationContextLocator.get().getBean(CredentialsRepo.class));
 
-        StorageProviderFactory storageProviderFactory = new StorageProviderFactory();
+        StorageProviderFactory storageProviderFactory = new CachingStorageProviderFactory();
 
         DuplicationPolicyManager policyManager;
         String policyDir = config.getDuplicationPolicyDir();
@@ -160,6 +166,13 @@ public class AppDriver extends LoopingTaskProducerDriverSupport {
                     new SESNotificationManager(config.getNotificationRecipients());
         }
 
+        ManifestDuplicationFilter duplicationFilter = null;
+        if (Boolean.parseBoolean(System.getProperty(ConfigConstants.LOOPING_DUP_MANIFEST_FILTER))) {
+            duplicationFilter =
+                new ManifestDuplicationFilter(ApplicationContextLocator.get().getBean(JpaDupManifestItemRepo.class));
+            log.info("in sync content items will be filtered using the manifests");
+        }
+
         LoopingDuplicationTaskProducer producer =
             new LoopingDuplicationTaskProducer(credentialsRepo,
                                                storageProviderFactory,
@@ -170,7 +183,15 @@ public class AppDriver extends LoopingTaskProducerDriverSupport {
                                                getMaxQueueSize(ConfigConstants.LOOPING_DUP_MAX_TASK_QUEUE_SIZE),
                                                getFrequency(ConfigConstants.LOOPING_DUP_FREQUENCY),
                                                notificationMananger,
-                                               config);
+                                               config,
+                                               duplicationFilter);
+        producer.setListingPrefetcher(getListingPrefetcher(ConfigConstants.LOOPING_DUP_PREFETCH_DEPTH));
+
+        String nibbleThreads = System.getProperty(ConfigConstants.LOOPING_DUP_NIBBLE_THREADS);
+        if (nibbleThreads != null) {
+            producer.setNibbleThreads(Integer.parseInt(nibbleThreads));
+            log.info("nibble threads: {}", nibbleThreads);
+        }
         return producer;
     }
 
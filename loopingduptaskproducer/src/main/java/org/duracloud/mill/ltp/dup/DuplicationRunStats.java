@@ -14,55 +14,73 @@ import org.duracloud.mill.ltp.RunStats;
 public class DuplicationRunStats extends RunStats {
     private int deletes = 0;
     private int dups = 0;
+    private int inSync = 0;
 
     @Override
-    public void reset() {
+    public synchronized void reset() {
         deletes = 0;
         dups = 0;
+        inSync = 0;
     }
 
     /**
      * @return the dups
      */
-    public int getDups() {
+    public synchronized int getDups() {
         return dups;
     }
 
     /**
      * @return the deletes
      */
-    public int getDeletes() {
+    public synchronized int getDeletes() {
         return deletes;
     }
 
+    /**
+     * @return the number of content items skipped because they were already in sync
+     */
+    public synchronized int getInSync() {
+        return inSync;
+    }
+
     @Override
-    public void copyValuesFrom(RunStats runstats) {
+    public synchronized void copyValuesFrom(RunStats runstats) {
         DuplicationRunStats dstats = (DuplicationRunStats) runstats;
         this.deletes = dstats.deletes;
         this.dups = dstats.dups;
+        this.inSync = dstats.inSync;
     }
 
     /**
      * @param stats
      */
     @Override
-    public void add(RunStats stats) {
+    public synchronized void add(RunStats stats) {
         DuplicationRunStats dstats = (DuplicationRunStats) stats;
         addToDeletes(dstats.deletes);
         addToDups(dstats.dups);
+        addToInSync(dstats.inSync);
     }
 
     /**
      * @param dupsToAdd
      */
-    public void addToDups(int dupsToAdd) {
+    public synchronized void addToDups(int dupsToAdd) {
         this.dups += dupsToAdd;
     }
 
+    /**
+     * @param inSyncToAdd
+     */
+    public synchronized void addToInSync(int inSyncToAdd) {
+        this.inSync += inSyncToAdd;
+    }
+
     /**
      * @param deletesToAdd
      */
-    public void addToDeletes(int deletesToAdd) {
+    public synchronized void addToDeletes(int deletesToAdd) {
         this.deletes += deletesToAdd;
 
     }
@@ -72,6 +90,7 @@ public class DuplicationRunStats extends RunStats {
      */
     @Override
     public String toString() {
-        return MessageFormat.format("delete_messages={0} duplication_messages={1}", this.deletes, dups);
+        return MessageFormat.format("delete_messages={0} duplication_messages={1} in_sync={2}",
+                                    this.deletes, dups, inSync);
     }
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.ltp.dup;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.duracloud.mill.db.model.ManifestItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Looks up the manifest items of many content items in both stores of a
+ * duplication policy at once.
+ *
+ * @author Daniel Bernstein
+ */
+@Repository(value = "dupManifestItemRepo")
+public interface JpaDupManifestItemRepo extends JpaRepository<ManifestItem, Long> {
+
+    /**
+     * @param account
+     * @param storeIds
+     * @param spaceId
+     * @param contentIds
+     * @return the manifest items (including those flagged as deleted) of those
+     * content items which are in the manifests of the stores
+     */
+    public List<ManifestItem> findByAccountAndStoreIdInAndSpaceIdAndContentIdIn(String account,
+                                                                                 Collection<String> storeIds,
+                                                                                 String spaceId,
+                                                                                 Collection<String> contentIds);
+}
@@ -18,6 +18,7 @@ import java.util.concurrent.PriorityBlockingQueue;
 
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.Element;
+import org.duracloud.common.error.DuraCloudRuntimeException;
 import org.duracloud.common.queue.TaskQueue;
 import org.duracloud.common.queue.task.Task;
 import org.duracloud.mill.common.storageprovider.StorageProviderFactory;
@@ -28,6 +29,7 @@ import org.duracloud.mill.credentials.StorageProviderCredentials;
 import org.duracloud.mill.dup.DuplicationPolicy;
 import org.duracloud.mill.dup.DuplicationPolicyManager;
 import org.duracloud.mill.dup.DuplicationStorePolicy;
+import org.duracloud.mill.ltp.ChunkPrefetcher.ChunkLister;
 import org.duracloud.mill.ltp.Frequency;
 import org.duracloud.mill.ltp.LoopingTaskProducer;
 import org.duracloud.mill.ltp.LoopingTaskProducerConfigurationManager;
@@ -52,6 +54,8 @@ public class LoopingDuplicationTaskProducer extends LoopingTaskProducer<Duplicat
 
     private Cache cache;
 
+    private ManifestDuplicationFilter duplicationFilter;
+
     public LoopingDuplicationTaskProducer(CredentialsRepo credentialsRepo,
                                           StorageProviderFactory storageProviderFactory,
                                           DuplicationPolicyManager policyManager,
@@ -62,6 +66,34 @@ public class LoopingDuplicationTaskProducer extends LoopingTaskProducer<Duplicat
                                           Frequency frequency,
                                           NotificationManager notificationManager,
                                           LoopingTaskProducerConfigurationManager config) {
+        this(credentialsRepo,
+             storageProviderFactory,
+             policyManager,
+             taskQueue,
+             cache,
+             state,
+             maxTaskQueueSize,
+             frequency,
+             notificationManager,
+             config,
+             null);
+    }
+
+    /**
+     * @param duplicationFilter if not null, content items which the manifests
+     *                          show to be in sync are not added to the task queue
+     */
+    public LoopingDuplicationTaskProducer(CredentialsRepo credentialsRepo,
+                                          StorageProviderFactory storageProviderFactory,
+                                          DuplicationPolicyManager policyManager,
+                                          TaskQueue taskQueue,
+                                          Cache cache,
+                                          StateManager<DuplicationMorsel> state,
+                                          int maxTaskQueueSize,
+                                          Frequency frequency,
+                                          NotificationManager notificationManager,
+                                          LoopingTaskProducerConfigurationManager config,
+                                          ManifestDuplicationFilter duplicationFilter) {
         super(credentialsRepo,
               storageProviderFactory,
               taskQueue,
@@ -73,6 +105,7 @@ public class LoopingDuplicationTaskProducer extends LoopingTaskProducer<Duplicat
               config);
         this.cache = cache;
         this.policyManager = policyManager;
+        this.duplicationFilter = duplicationFilter;
     }
 
     /**
@@ -170,28 +203,37 @@ public class LoopingDuplicationTaskProducer extends LoopingTaskProducer<Duplicat
      * @return true if morsel exhausted, false if morsel needs to be requeued.
      */
     private boolean addDuplicationTasksFromSource(DuplicationMorsel morsel,
-                                                  StorageProvider sourceProvider,
-                                                  int maxContentIdsToAdd) {
+                                                  final StorageProvider sourceProvider,
+                                                  final int maxContentIdsToAdd) {
 
         String account = morsel.getAccount();
-        String spaceId = morsel.getSpaceId();
+        final String spaceId = morsel.getSpaceId();
         String marker = morsel.getMarker();
         DuplicationStorePolicy storePolicy = morsel.getStorePolicy();
+        String listingKey = account + "/" + spaceId + "/" + storePolicy.getSrcStoreId() + "/" +
+                            storePolicy.getDestStoreId();
 
         //load in next maxContentIdsToAdd or however many remain
         List<String> contentIds = null;
 
         try {
-            contentIds = sourceProvider.getSpaceContentsChunked(spaceId,
-                                                                null,
-                                                                maxContentIdsToAdd,
-                                                                marker);
+            contentIds = listChunk(listingKey, marker, new ChunkLister() {
+                @Override
+                public List<String> list(String chunkMarker) {
+                    return sourceProvider.getSpaceContentsChunked(spaceId,
+                                                                  null,
+                                                                  maxContentIdsToAdd,
+                                                                  chunkMarker);
+                }
+            });
         } catch (NotFoundException ex) {
             log.info("space not found on source provider: account={}, spaceId={}, storeId={}",
                      account, spaceId, sourceProvider);
 
             addDeleteSpaceTaskToQueue(account, spaceId, storePolicy, sourceProvider);
             return true;
+        } catch (Exception ex) {
+            throw new DuraCloudRuntimeException(ex);
         }
         //add to queue
         int contentIdCount = contentIds.size();
@@ -199,78 +241,191 @@ public class LoopingDuplicationTaskProducer extends LoopingTaskProducer<Duplicat
         if (contentIdCount == 0) {
             return true;
         } else {
-            int added = addToTaskQueue(account, spaceId, storePolicy, contentIds);
-            ((DuplicationRunStats) getStats(account)).addToDups(added);
-            //if no tasks were added, it means that all contentIds in this morsel
-            //have been touched in this run.
-            if (added == 0) {
-                return true;
-            } else {
-                marker = contentIds.get(contentIds.size() - 1);
-                morsel.setMarker(marker);
+            List<String> toDuplicate = contentIds;
+            if (duplicationFilter != null) {
+                toDuplicate = duplicationFilter.filter(account, spaceId, storePolicy, contentIds);
             }
+
+            int added = addToTaskQueue(account, spaceId, storePolicy, toDuplicate);
+            DuplicationRunStats stats = (DuplicationRunStats) getStats(account);
+            stats.addToDups(added);
+            stats.addToInSync(contentIdCount - added);
+            marker = contentIds.get(contentIds.size() - 1);
+            morsel.setMarker(marker);
         }
 
         return false;
     }
 
+    /**
+     * Adds deletion tasks for content which is in the destination but not in
+     * the source. Since the providers list space contents in lexicographic
+     * order, the two listings are merged as they stream in rather than being
+     * loaded into memory. Should a listing turn out not to be ordered, the
+     * comparison is redone by way of the cache.
+     */
     private void addDuplicationTasksForContentNotInSource(String account,
                                                           String spaceId,
                                                           DuplicationStorePolicy storePolicy,
                                                           StorageProvider sourceProvider,
                                                           StorageProvider destProvider) {
-        Cache cache = getCache();
+        Iterator<String> sourceContentIds = getSourceContentIds(account, spaceId, sourceProvider);
+
+        //get all items from dest
+        Iterator<String> destContentIds = getDestContentIds(account, spaceId, destProvider);
+        if (destContentIds == null) {
+            return;
+        }
+
+        MissingContentIdIterator missingContentIds =
+            new MissingContentIdIterator(sourceContentIds, destContentIds);
+        int deletionTaskCount = addDeletionTasks(account, spaceId, storePolicy, missingContentIds);
+
+        if (missingContentIds.isOutOfOrder()) {
+            // deletion tasks already added are harmless: the task processor
+            // checks the source before deleting anything from the destination.
+            log.warn("content listing is not in lexicographic order, falling back to cache " +
+                     "based comparison: account={}, spaceId={}, sourceStoreId={}, destStoreId={}",
+                     account, spaceId, storePolicy.getSrcStoreId(), storePolicy.getDestStoreId());
+            // the cache is shared by all nibbling threads
+            synchronized (getCache()) {
+                deletionTaskCount += addDuplicationTasksForContentNotInSourceUsingCache(account,
+                                                                                        spaceId,
+                                                                                        storePolicy,
+                                                                                        sourceProvider,
+                                                                                        destProvider);
+            }
+        }
+
+        ((DuplicationRunStats) getStats(account)).addToDeletes(deletionTaskCount);
+
+        log.info("added {} deletion tasks: account={}, spaceId={}, sourceStoreId={}, destStoreId={}",
+                 deletionTaskCount,
+                 account,
+                 spaceId,
+                 storePolicy.getSrcStoreId(),
+                 storePolicy.getDestStoreId());
+    }
+
+    /**
+     * Loads all source content ids into the cache and probes it for each
+     * destination content id. Unlike the merge this does not depend on the
+     * order of the listings.
+     *
+     * @return the number of deletion tasks added
+     */
+    private int addDuplicationTasksForContentNotInSourceUsingCache(String account,
+                                                                   String spaceId,
+                                                                   DuplicationStorePolicy storePolicy,
+                                                                   StorageProvider sourceProvider,
+                                                                   StorageProvider destProvider) {
+        final Cache cache = getCache();
         try {
             //load all source into ehcache
-            Iterator<String> sourceContentIds = sourceProvider.getSpaceContents(spaceId, null);
+            Iterator<String> sourceContentIds = getSourceContentIds(account, spaceId, sourceProvider);
             while (sourceContentIds.hasNext()) {
                 cache.put(new Element(sourceContentIds.next(), null));
             }
+
+            Iterator<String> destContentIds = getDestContentIds(account, spaceId, destProvider);
+            if (destContentIds == null) {
+                return 0;
+            }
+
+            final Iterator<String> allDestContentIds = destContentIds;
+            Iterator<String> missingContentIds = new Iterator<String>() {
+                private String next = findNext();
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public String next() {
+                    String result = next;
+                    next = findNext();
+                    return result;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+
+                private String findNext() {
+                    while (allDestContentIds.hasNext()) {
+                        String destContentId = allDestContentIds.next();
+                        //if not in cache
+                        if (!cache.isKeyInCache(destContentId)) {
+                            return destContentId;
+                        }
+                    }
+                    return null;
+                }
+            };
+
+            return addDeletionTasks(account, spaceId, storePolicy, missingContentIds);
+        } finally {
+            cache.removeAll();
+        }
+    }
+
+    /**
+     * @return the source content ids, which are empty if the space does not
+     * exist in the source
+     */
+    private Iterator<String> getSourceContentIds(String account,
+                                                 String spaceId,
+                                                 StorageProvider sourceProvider) {
+        try {
+            return sourceProvider.getSpaceContents(spaceId, null);
         } catch (NotFoundException ex) {
             log.info("space not found on source provider: account={}, spaceId={}, storeId={}",
                      account, spaceId, sourceProvider);
+            return new LinkedList<String>().iterator();
         }
+    }
 
-        //get all items from dest
-        Iterator<String> destContentIds = null;
-
+    /**
+     * @return the destination content ids or null if the space does not
+     * exist in the destination
+     */
+    private Iterator<String> getDestContentIds(String account,
+                                               String spaceId,
+                                               StorageProvider destProvider) {
         try {
-            destContentIds = destProvider.getSpaceContents(spaceId, null);
+            return destProvider.getSpaceContents(spaceId, null);
         } catch (NotFoundException ex) {
             log.info("space not found on destination provider: account={}, spaceId={}, storeId={}",
                      account, spaceId, destProvider);
-            return;
+            return null;
         }
+    }
 
+    /**
+     * @return the number of deletion tasks added
+     */
+    private int addDeletionTasks(String account,
+                                 String spaceId,
+                                 DuplicationStorePolicy storePolicy,
+                                 Iterator<String> contentIdsToDelete) {
         int deletionTaskCount = 0;
-        //for each one
         List<String> deletions = new LinkedList<String>();
-        while (destContentIds.hasNext()) {
-            String destContentId = destContentIds.next();
-            //if not in cache
-            if (!cache.isKeyInCache(destContentId)) {
-                deletions.add(destContentId);
-                //periodically add deletions to prevent OOM
-                //in case that there are millions of content ids to delete
-                if (deletions.size() == 10000) {
-                    //create dup task
-                    deletionTaskCount += addToTaskQueue(account, spaceId, storePolicy, deletions);
-                    deletions.clear();
-                }
+        while (contentIdsToDelete.hasNext()) {
+            deletions.add(contentIdsToDelete.next());
+            //periodically add deletions to prevent OOM
+            //in case that there are millions of content ids to delete
+            if (deletions.size() == 10000) {
+                //create dup task
+                deletionTaskCount += addToTaskQueue(account, spaceId, storePolicy, deletions);
+                deletions.clear();
             }
         }
 
         //add any remaining deletions
         deletionTaskCount += addToTaskQueue(account, spaceId, storePolicy, deletions);
-        ((DuplicationRunStats) getStats(account)).addToDeletes(deletionTaskCount);
-
-        log.info("added {} deletion tasks: account={}, spaceId={}, sourceStoreId={}, destStoreId={}",
-                 deletionTaskCount,
-                 account,
-                 spaceId,
-                 storePolicy.getSrcStoreId(),
-                 storePolicy.getDestStoreId());
-        cache.removeAll();
+        return deletionTaskCount;
     }
 
     /**
@@ -298,6 +453,10 @@ public class LoopingDuplicationTaskProducer extends LoopingTaskProducer<Duplicat
 
     private int addToTaskQueue(String account, String spaceId,
                                DuplicationStorePolicy storePolicy, List<String> contentIds) {
+        if (contentIds.isEmpty()) {
+            return 0;
+        }
+
         Set<Task> tasks = new HashSet<>();
         int addedCount = 0;
 
@@ -327,8 +486,8 @@ public class LoopingDuplicationTaskProducer extends LoopingTaskProducer<Duplicat
     @Override
     protected void logIncrementalStatsByAccount(String account, RunStats stats) {
         DuplicationRunStats dstats = (DuplicationRunStats) stats;
-        log.info("Session stats by account (incremental): account={} dups={} deletes={}",
-                 account, dstats.getDups(), dstats.getDeletes());
+        log.info("Session stats by account (incremental): account={} dups={} deletes={} in_sync={}",
+                 account, dstats.getDups(), dstats.getDeletes(), dstats.getInSync());
 
     }
 
@@ -338,8 +497,9 @@ public class LoopingDuplicationTaskProducer extends LoopingTaskProducer<Duplicat
     @Override
     protected void logCumulativeSessionStats(Map<String, RunStats> runstats, RunStats cumulativeTotals) {
         DuplicationRunStats dCumulativeTotals = (DuplicationRunStats) cumulativeTotals;
-        log.info("session stats (global cumulative): domains={} dups={}  deletes={}",
-                 runstats.keySet().size(), dCumulativeTotals.getDups(), dCumulativeTotals.getDeletes());
+        log.info("session stats (global cumulative): domains={} dups={}  deletes={} in_sync={}",
+                 runstats.keySet().size(), dCumulativeTotals.getDups(), dCumulativeTotals.getDeletes(),
+                 dCumulativeTotals.getInSync());
 
     }
 
@@ -350,8 +510,8 @@ public class LoopingDuplicationTaskProducer extends LoopingTaskProducer<Duplicat
     protected void logGlobalncrementalStats(RunStats incrementalTotals) {
         DuplicationRunStats dIncrementalTotals = (DuplicationRunStats) incrementalTotals;
 
-        log.info("Session stats (global incremental): dups={} deletes={}",
-                 dIncrementalTotals.getDups(), dIncrementalTotals.getDeletes());
+        log.info("Session stats (global incremental): dups={} deletes={} in_sync={}",
+                 dIncrementalTotals.getDups(), dIncrementalTotals.getDeletes(), dIncrementalTotals.getInSync());
 
     }
 
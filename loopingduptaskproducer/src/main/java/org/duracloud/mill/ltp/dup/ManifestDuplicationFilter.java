@@ -0,0 +1,100 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.ltp.dup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.duracloud.mill.db.model.ManifestItem;
+import org.duracloud.mill.dup.DuplicationStorePolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Filters out content items which the source and destination manifests show
+ * to be in sync, so that duplication tasks are only created for items which
+ * may need work. An item is considered in sync when both manifests hold a
+ * live (neither deleted nor missing) entry for it with the same checksum and
+ * size. Items without a manifest entry on either side are never filtered.
+ * The manifests of both stores are read with a single query per list of
+ * content ids.
+ *
+ * Since the manifests record neither content properties nor changes which
+ * were not audited, items whose properties alone differ, or whose manifest
+ * entries do not reflect the stores, are filtered out and are not repaired
+ * by the looping duplication.
+ *
+ * @author Daniel Bernstein
+ */
+public class ManifestDuplicationFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(ManifestDuplicationFilter.class);
+
+    private JpaDupManifestItemRepo manifestItemRepo;
+
+    public ManifestDuplicationFilter(JpaDupManifestItemRepo manifestItemRepo) {
+        this.manifestItemRepo = manifestItemRepo;
+    }
+
+    /**
+     * @param account
+     * @param spaceId
+     * @param storePolicy
+     * @param contentIds  content ids listed from the source store
+     * @return the content ids which are not known to be in sync
+     */
+    public List<String> filter(String account,
+                               String spaceId,
+                               DuplicationStorePolicy storePolicy,
+                               List<String> contentIds) {
+        String srcStoreId = storePolicy.getSrcStoreId();
+        String destStoreId = storePolicy.getDestStoreId();
+        Map<String, ManifestItem> sourceItems = new HashMap<>();
+        Map<String, ManifestItem> destItems = new HashMap<>();
+        if (!contentIds.isEmpty()) {
+            List<String> storeIds = Arrays.asList(srcStoreId, destStoreId);
+            List<ManifestItem> items =
+                manifestItemRepo.findByAccountAndStoreIdInAndSpaceIdAndContentIdIn(account,
+                                                                                    storeIds,
+                                                                                    spaceId,
+                                                                                    contentIds);
+            for (ManifestItem item : items) {
+                if (item.isDeleted() || item.isMissingFromStorageProvider()) {
+                    continue;
+                }
+                if (srcStoreId.equals(item.getStoreId())) {
+                    sourceItems.put(item.getContentId(), item);
+                } else if (destStoreId.equals(item.getStoreId())) {
+                    destItems.put(item.getContentId(), item);
+                }
+            }
+        }
+
+        List<String> outOfSync = new ArrayList<>(contentIds.size());
+        for (String contentId : contentIds) {
+            if (!isInSync(sourceItems.get(contentId), destItems.get(contentId))) {
+                outOfSync.add(contentId);
+            }
+        }
+
+        log.debug("{} of {} content items are out of sync: account={}, spaceId={}, storePolicy={}",
+                  outOfSync.size(), contentIds.size(), account, spaceId, storePolicy);
+        return outOfSync;
+    }
+
+    private boolean isInSync(ManifestItem source, ManifestItem dest) {
+        return source != null && dest != null &&
+               source.getContentChecksum() != null &&
+               source.getContentChecksum().equals(dest.getContentChecksum()) &&
+               source.getContentSize() != null &&
+               source.getContentSize().equals(dest.getContentSize());
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.ltp.dup;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Walks a source and a destination content id listing side by side and
+ * returns the destination content ids which do not appear in the source.
+ * Both listings must be in ascending lexicographic order, which is how the
+ * storage providers list space contents; in exchange only the current id
+ * of each listing is held in memory.
+ *
+ * If either listing turns out not to be in order, iteration stops and
+ * {@link #isOutOfOrder()} returns true. In that case the ids returned up to
+ * that point may include ids which do exist in the source, and the caller
+ * should fall back to a comparison which does not depend on ordering.
+ *
+ * @author Daniel Bernstein
+ */
+class MissingContentIdIterator implements Iterator<String> {
+
+    private Iterator<String> sourceIds;
+    private Iterator<String> destIds;
+
+    private String currentSourceId;
+    private String previousSourceId;
+    private String previousDestId;
+    private String next;
+    private boolean outOfOrder = false;
+
+    /**
+     * @param sourceIds the ordered source listing
+     * @param destIds   the ordered destination listing
+     */
+    public MissingContentIdIterator(Iterator<String> sourceIds, Iterator<String> destIds) {
+        this.sourceIds = sourceIds;
+        this.destIds = destIds;
+        this.currentSourceId = nextSourceId();
+        this.next = findNext();
+    }
+
+    /**
+     * @return true if one of the listings was found not to be in ascending
+     * order
+     */
+    public boolean isOutOfOrder() {
+        return outOfOrder;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public String next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        String result = next;
+        next = findNext();
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private String findNext() {
+        while (!outOfOrder && destIds.hasNext()) {
+            String destId = destIds.next();
+            if (previousDestId != null && previousDestId.compareTo(destId) > 0) {
+                outOfOrder = true;
+                return null;
+            }
+            previousDestId = destId;
+
+            // skip past source ids which sort before the destination id
+            while (currentSourceId != null && currentSourceId.compareTo(destId) < 0) {
+                currentSourceId = nextSourceId();
+            }
+
+            if (outOfOrder) {
+                return null;
+            }
+
+            if (currentSourceId == null || currentSourceId.compareTo(destId) > 0) {
+                return destId;
+            }
+        }
+        return null;
+    }
+
+    private String nextSourceId() {
+        if (!sourceIds.hasNext()) {
+            return null;
+        }
+        String sourceId = sourceIds.next();
+        if (previousSourceId != null && previousSourceId.compareTo(sourceId) > 0) {
+            outOfOrder = true;
+            return null;
+        }
+        previousSourceId = sourceId;
+        return sourceId;
+    }
+}
@@ -140,6 +140,29 @@ public class LoopingDuplicationTaskProducerTest extends EasyMockSupport {
         Assert.assertEquals(maxTaskQueueSize, taskQueue.size().intValue());
     }
 
+    @Test
+    public void testRunConcurrently() throws CredentialsRepoException, ParseException {
+
+        int morselCount = 3;
+        int sourceCount = 2000;
+        int destCount = 100;
+
+        setupSourceStore(morselCount, sourceCount);
+        setupDestStore(morselCount, destCount);
+        setupStorageProviderFactory(morselCount * 2);
+        setupCredentialsRepo(4 * morselCount);
+        setupPolicyManager(morselCount);
+        setupStateManager(morselCount, sourceCount);
+        setupDatesOnRunCompletion();
+        setupLoopingTaskProducerConfig(1);
+        setupNotificationManager();
+        setupCache();
+        int maxTaskQueueSize = calculateMaxQueueSize(morselCount, sourceCount, destCount);
+        replayAll();
+        runLoopingTaskProducer(maxTaskQueueSize + 1, 2);
+        Assert.assertEquals(maxTaskQueueSize, taskQueue.size().intValue());
+    }
+
     @SuppressWarnings("unchecked")
     @Test
     public void testNonExistentSpace() throws CredentialsRepoException, ParseException {
@@ -160,6 +183,8 @@ public class LoopingDuplicationTaskProducerTest extends EasyMockSupport {
         setupLoopingTaskProducerConfig(1);
 
         stateManager.setMorsels(EasyMock.isA(LinkedHashSet.class));
+        EasyMock.expectLastCall().once();
+        stateManager.removeMorsel(EasyMock.isA(DuplicationMorsel.class));
         EasyMock.expectLastCall().times(morselCount);
 
         setupCheckDatesFirstTimeRun();
@@ -232,7 +257,6 @@ public class LoopingDuplicationTaskProducerTest extends EasyMockSupport {
         expectGetMorsels(new LinkedHashSet<DuplicationMorsel>(), 1);
         expectGetMorsels(morsels, 1);
         setupLoopingTaskProducerConfig(1);
-        stateManager.setMorsels(EasyMock.isA(LinkedHashSet.class));
         StateManager<DuplicationMorsel> stateManagerDelegate =
             new StateManager<DuplicationMorsel>("fakepath", DuplicationMorsel.class) {
                 @Override
@@ -240,8 +264,23 @@ public class LoopingDuplicationTaskProducerTest extends EasyMockSupport {
                     morsels.clear();
                     morsels.addAll(morsels2);
                 }
+
+                @Override
+                public void updateMorsel(DuplicationMorsel morsel) {
+                    morsels.add(morsel);
+                }
+
+                @Override
+                public void removeMorsel(DuplicationMorsel morsel) {
+                    morsels.remove(morsel);
+                }
             };
-        EasyMock.expectLastCall().andDelegateTo(stateManagerDelegate).times(2);
+        stateManager.setMorsels(EasyMock.isA(LinkedHashSet.class));
+        EasyMock.expectLastCall().andDelegateTo(stateManagerDelegate).once();
+        stateManager.updateMorsel(EasyMock.isA(DuplicationMorsel.class));
+        EasyMock.expectLastCall().andDelegateTo(stateManagerDelegate).once();
+        stateManager.removeMorsel(EasyMock.isA(DuplicationMorsel.class));
+        EasyMock.expectLastCall().andDelegateTo(stateManagerDelegate).once();
 
         setupDestStore(1, destCount);
         setupStorageProviderFactory(2);
@@ -299,6 +338,10 @@ public class LoopingDuplicationTaskProducerTest extends EasyMockSupport {
      * @throws ParseException
      */
     private void runLoopingTaskProducer(int maxQueueSize) throws ParseException {
+        runLoopingTaskProducer(maxQueueSize, 1);
+    }
+
+    private void runLoopingTaskProducer(int maxQueueSize, int nibbleThreads) throws ParseException {
 
         LoopingDuplicationTaskProducer producer =
             new LoopingDuplicationTaskProducer(credentialsRepo,
@@ -311,6 +354,7 @@ public class LoopingDuplicationTaskProducerTest extends EasyMockSupport {
                                                new Frequency("1d"),
                                                notificationManager,
                                                config);
+        producer.setNibbleThreads(nibbleThreads);
         producer.run();
     }
 
@@ -413,7 +457,7 @@ public class LoopingDuplicationTaskProducerTest extends EasyMockSupport {
         final List<String> destContentItems = new LinkedList<>();
 
         for (int i = 0; i < destCount; i++) {
-            destContentItems.add("tobedeleted" + i);
+            destContentItems.add(String.format("tobedeleted%05d", i));
         }
 
         EasyMock.expect(
@@ -447,8 +491,9 @@ public class LoopingDuplicationTaskProducerTest extends EasyMockSupport {
 
         final List<String> sourceContentItems = new LinkedList<>();
 
+        // providers list space contents in lexicographic order
         for (int i = 0; i < sourceCount; i++) {
-            sourceContentItems.add("item" + i);
+            sourceContentItems.add(String.format("item%05d", i));
         }
 
         EasyMock.expect(sourceStore.getSpaceContentsChunked(EasyMock.isA(String.class),
@@ -496,7 +541,12 @@ public class LoopingDuplicationTaskProducerTest extends EasyMockSupport {
     private void setupStateManager(int morselCount, int sourceCount) {
         expectGetMorsels(new LinkedHashSet<DuplicationMorsel>(), 1);
         stateManager.setMorsels(EasyMock.isA(LinkedHashSet.class));
-        EasyMock.expectLastCall().times(morselCount * sourceCount / 1000);
+        EasyMock.expectLastCall().once();
+        // the first chunk lists the whole space and the second finishes the morsel
+        stateManager.updateMorsel(EasyMock.isA(DuplicationMorsel.class));
+        EasyMock.expectLastCall().times(morselCount);
+        stateManager.removeMorsel(EasyMock.isA(DuplicationMorsel.class));
+        EasyMock.expectLastCall().times(morselCount);
         setupCheckDatesFirstTimeRun();
     }
 
@@ -0,0 +1,105 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.ltp.dup;
+
+import static org.easymock.EasyMock.expect;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.duracloud.mill.db.model.ManifestItem;
+import org.duracloud.mill.dup.DuplicationStorePolicy;
+import org.easymock.EasyMockRunner;
+import org.easymock.EasyMockSupport;
+import org.easymock.Mock;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * @author Daniel Bernstein
+ */
+@RunWith(EasyMockRunner.class)
+public class ManifestDuplicationFilterTest extends EasyMockSupport {
+
+    private String account = "account";
+    private String spaceId = "space";
+    private String srcStoreId = "0";
+    private String destStoreId = "1";
+
+    @Mock
+    private JpaDupManifestItemRepo manifestItemRepo;
+
+    @After
+    public void tearDown() {
+        verifyAll();
+    }
+
+    private ManifestItem createItem(String storeId,
+                                    String contentId,
+                                    String checksum,
+                                    String size,
+                                    boolean deleted) {
+        ManifestItem item = new ManifestItem();
+        item.setStoreId(storeId);
+        item.setContentId(contentId);
+        item.setContentChecksum(checksum);
+        item.setContentSize(size);
+        item.setDeleted(deleted);
+        return item;
+    }
+
+    private DuplicationStorePolicy createStorePolicy() {
+        DuplicationStorePolicy storePolicy = new DuplicationStorePolicy();
+        storePolicy.setSrcStoreId(srcStoreId);
+        storePolicy.setDestStoreId(destStoreId);
+        return storePolicy;
+    }
+
+    @Test
+    public void testFilter() throws Exception {
+        List<String> contentIds = Arrays.asList("a", "b", "c", "d", "e", "f");
+        List<ManifestItem> items = new ArrayList<>();
+        // in sync
+        items.add(createItem(srcStoreId, "a", "checksum", "10", false));
+        items.add(createItem(destStoreId, "a", "checksum", "10", false));
+        // checksum differs
+        items.add(createItem(srcStoreId, "b", "checksum", "10", false));
+        items.add(createItem(destStoreId, "b", "other", "10", false));
+        // size differs
+        items.add(createItem(srcStoreId, "c", "checksum", "10", false));
+        items.add(createItem(destStoreId, "c", "checksum", "11", false));
+        // deleted from dest
+        items.add(createItem(srcStoreId, "d", "checksum", "10", false));
+        items.add(createItem(destStoreId, "d", "checksum", "10", true));
+        // missing from dest manifest
+        items.add(createItem(srcStoreId, "e", "checksum", "10", false));
+        // "f" is missing from the source manifest
+        items.add(createItem(destStoreId, "f", "checksum", "10", false));
+
+        expect(manifestItemRepo.findByAccountAndStoreIdInAndSpaceIdAndContentIdIn(
+            account, Arrays.asList(srcStoreId, destStoreId), spaceId, contentIds)).andReturn(items);
+        replayAll();
+
+        List<String> result = new ManifestDuplicationFilter(manifestItemRepo)
+            .filter(account, spaceId, createStorePolicy(), contentIds);
+        Assert.assertEquals(Arrays.asList("b", "c", "d", "e", "f"), result);
+    }
+
+    @Test
+    public void testFilterNoContentIds() throws Exception {
+        replayAll();
+
+        List<String> result = new ManifestDuplicationFilter(manifestItemRepo)
+            .filter(account, spaceId, createStorePolicy(), Collections.<String>emptyList());
+        Assert.assertTrue(result.isEmpty());
+    }
+}
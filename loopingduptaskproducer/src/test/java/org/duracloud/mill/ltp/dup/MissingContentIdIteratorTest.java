@@ -0,0 +1,86 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.ltp.dup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @author Daniel Bernstein
+ */
+public class MissingContentIdIteratorTest {
+
+    private MissingContentIdIterator createIterator(List<String> sourceIds, List<String> destIds) {
+        return new MissingContentIdIterator(sourceIds.iterator(), destIds.iterator());
+    }
+
+    private List<String> drain(MissingContentIdIterator iterator) {
+        List<String> result = new ArrayList<>();
+        while (iterator.hasNext()) {
+            result.add(iterator.next());
+        }
+        return result;
+    }
+
+    @Test
+    public void testMerge() {
+        MissingContentIdIterator iterator =
+            createIterator(Arrays.asList("b", "c", "e", "g"),
+                           Arrays.asList("a", "b", "d", "e", "f", "h", "i"));
+        assertEquals(Arrays.asList("a", "d", "f", "h", "i"), drain(iterator));
+        assertFalse(iterator.isOutOfOrder());
+    }
+
+    @Test
+    public void testEmptySource() {
+        MissingContentIdIterator iterator =
+            createIterator(Collections.<String>emptyList(), Arrays.asList("a", "b"));
+        assertEquals(Arrays.asList("a", "b"), drain(iterator));
+        assertFalse(iterator.isOutOfOrder());
+    }
+
+    @Test
+    public void testEmptyDest() {
+        MissingContentIdIterator iterator =
+            createIterator(Arrays.asList("a", "b"), Collections.<String>emptyList());
+        assertFalse(iterator.hasNext());
+        assertFalse(iterator.isOutOfOrder());
+    }
+
+    @Test
+    public void testInSync() {
+        MissingContentIdIterator iterator =
+            createIterator(Arrays.asList("a", "b", "c"), Arrays.asList("a", "b", "c"));
+        assertFalse(iterator.hasNext());
+        assertFalse(iterator.isOutOfOrder());
+    }
+
+    @Test
+    public void testDestOutOfOrder() {
+        MissingContentIdIterator iterator =
+            createIterator(Arrays.asList("a", "b", "c"), Arrays.asList("b", "a", "d"));
+        drain(iterator);
+        assertTrue(iterator.isOutOfOrder());
+    }
+
+    @Test
+    public void testSourceOutOfOrder() {
+        MissingContentIdIterator iterator =
+            createIterator(Arrays.asList("a", "c", "b", "d"), Arrays.asList("d"));
+        drain(iterator);
+        assertTrue(iterator.isOutOfOrder());
+    }
+}
@@ -8,6 +8,10 @@
 package org.duracloud.mill.ltp.dup;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 
@@ -49,6 +53,15 @@ public class StateManagerTest {
     @After
     public void tearDown() throws Exception {
         file.delete();
+        getJournalFile().delete();
+    }
+
+    private File getJournalFile() {
+        return new File(file.getAbsolutePath() + ".journal");
+    }
+
+    private StateManager<DuplicationMorsel> reload() {
+        return new StateManager<DuplicationMorsel>(file.getAbsolutePath(), DuplicationMorsel.class);
     }
 
     /**
@@ -84,4 +97,84 @@ public class StateManagerTest {
 
     }
 
+    @Test
+    public void testJournalReplay() throws Exception {
+        LinkedHashSet<DuplicationMorsel> morsels = new LinkedHashSet<>();
+        DuplicationMorsel morsel1 = new DuplicationMorsel(testdomain + "1", testspace, null, testpolicy);
+        DuplicationMorsel morsel2 = new DuplicationMorsel(testdomain + "2", testspace, null, testpolicy);
+        morsels.add(morsel1);
+        morsels.add(morsel2);
+        stateManager.setMorsels(morsels);
+        long snapshotLength = file.length();
+
+        morsel1.setMarker(testmarker);
+        stateManager.updateMorsel(morsel1);
+        morsel2.setDeletePerformed(true);
+        stateManager.updateMorsel(morsel2);
+        stateManager.removeMorsel(morsel2);
+
+        // changes go to the journal rather than the snapshot
+        Assert.assertEquals(snapshotLength, file.length());
+        Assert.assertTrue(getJournalFile().length() > 0);
+
+        // simulate a crash in the middle of appending a record
+        try (FileOutputStream out = new FileOutputStream(getJournalFile(), true)) {
+            out.write("{\"op\":\"put\",\"mor".getBytes(StandardCharsets.UTF_8));
+        }
+
+        stateManager = reload();
+        morsels = stateManager.getMorsels();
+        Assert.assertEquals(1, morsels.size());
+        DuplicationMorsel morsel = morsels.iterator().next();
+        Assert.assertEquals(testdomain + "1", morsel.getAccount());
+        Assert.assertEquals(testmarker, morsel.getMarker());
+
+        // the replayed journal is compacted into the snapshot
+        Assert.assertFalse(getJournalFile().exists());
+        stateManager = reload();
+        Assert.assertEquals(testmarker, stateManager.getMorsels().iterator().next().getMarker());
+    }
+
+    @Test
+    public void testStaleJournalIgnored() throws Exception {
+        LinkedHashSet<DuplicationMorsel> morsels = new LinkedHashSet<>();
+        DuplicationMorsel morsel1 = new DuplicationMorsel(testdomain + "1", testspace, null, testpolicy);
+        morsels.add(morsel1);
+        stateManager.setMorsels(morsels);
+        morsel1.setMarker(testmarker);
+        stateManager.updateMorsel(morsel1);
+        byte[] journal = Files.readAllBytes(getJournalFile().toPath());
+
+        // a snapshot is written, then the old journal reappears as if the
+        // process had died before removing it
+        morsel1.setMarker(testmarker + "2");
+        stateManager.setCurrentRunStartDate(new Date());
+        Files.write(getJournalFile().toPath(), journal);
+
+        stateManager = reload();
+        Assert.assertEquals(testmarker + "2", stateManager.getMorsels().iterator().next().getMarker());
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        stateManager = new StateManager<DuplicationMorsel>(file.getAbsolutePath(), DuplicationMorsel.class, 2);
+        LinkedHashSet<DuplicationMorsel> morsels = new LinkedHashSet<>();
+        DuplicationMorsel morsel1 = new DuplicationMorsel(testdomain + "1", testspace, null, testpolicy);
+        morsels.add(morsel1);
+        stateManager.setMorsels(morsels);
+
+        morsel1.setMarker("a");
+        stateManager.updateMorsel(morsel1);
+        morsel1.setMarker("b");
+        stateManager.updateMorsel(morsel1);
+        Assert.assertTrue(getJournalFile().exists());
+
+        morsel1.setMarker("c");
+        stateManager.updateMorsel(morsel1);
+        Assert.assertFalse(getJournalFile().exists());
+
+        stateManager = reload();
+        Assert.assertEquals("c", stateManager.getMorsels().iterator().next().getMarker());
+    }
+
 }
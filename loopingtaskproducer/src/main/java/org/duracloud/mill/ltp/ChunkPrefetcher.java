@@ -0,0 +1,201 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.ltp;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lists the contents of a space chunk by chunk while fetching the following
+ * chunks in the background, so that listing a chunk overlaps with turning the
+ * previous one into tasks. Each listing (identified by a key, typically one per
+ * morsel) has up to depth chunks fetched ahead of the chunk last handed out;
+ * each prefetch uses the last content id of the chunk before it as its
+ * marker. The total number of chunks held ahead for all listings is also
+ * bounded; listings beyond that bound are simply not prefetched.
+ *
+ * A prefetched chunk is only used if it was listed from the marker the
+ * caller asks for; otherwise, or if the prefetch failed, the chunk is
+ * listed on the calling thread.
+ *
+ * @author Daniel Bernstein
+ */
+public class ChunkPrefetcher {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkPrefetcher.class);
+
+    public static final int DEFAULT_DEPTH = 1;
+    public static final int DEFAULT_MAX_PREFETCHED_CHUNKS = 100;
+
+    /**
+     * Lists a single chunk of content ids following the marker.
+     */
+    public interface ChunkLister {
+        List<String> list(String marker) throws Exception;
+    }
+
+    private static class Chunk {
+        private String marker;
+        private List<String> contentIds;
+
+        Chunk(String marker, List<String> contentIds) {
+            this.marker = marker;
+            this.contentIds = contentIds;
+        }
+    }
+
+    private int depth;
+    private int maxPrefetchedChunks;
+    private int prefetchedChunks = 0;
+    private Map<String, LinkedList<Future<Chunk>>> prefetches = new HashMap<>();
+    private ExecutorService executor;
+
+    public ChunkPrefetcher() {
+        this(DEFAULT_DEPTH, DEFAULT_MAX_PREFETCHED_CHUNKS);
+    }
+
+    /**
+     * @param depth               the number of chunks to fetch ahead of each
+     *                            listing
+     * @param maxPrefetchedChunks the number of chunks which may be fetched
+     *                            ahead for all listings together
+     */
+    public ChunkPrefetcher(int depth, int maxPrefetchedChunks) {
+        this.depth = depth;
+        this.maxPrefetchedChunks = maxPrefetchedChunks;
+        this.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            private AtomicInteger count = new AtomicInteger(0);
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "listing-prefetch-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Returns the chunk following the marker and starts fetching the chunks
+     * after it.
+     *
+     * @param key    identifies the listing
+     * @param marker the last content id of the previous chunk or null for
+     *               the first chunk
+     * @param lister lists a chunk
+     * @return the content ids following the marker; an empty list marks the
+     * end of the listing
+     * @throws Exception if listing on the calling thread fails
+     */
+    public List<String> next(String key, String marker, ChunkLister lister) throws Exception {
+        List<String> contentIds = takePrefetched(key, marker);
+        if (contentIds == null) {
+            contentIds = lister.list(marker);
+        }
+
+        if (contentIds.isEmpty()) {
+            discard(key);
+        } else {
+            prefetch(key, contentIds.get(contentIds.size() - 1), lister);
+        }
+        return contentIds;
+    }
+
+    /**
+     * Drops anything fetched ahead for the listing. Callers should discard a
+     * listing they stop reading before reaching its end.
+     */
+    public synchronized void discard(String key) {
+        LinkedList<Future<Chunk>> chain = prefetches.remove(key);
+        if (chain != null) {
+            for (Future<Chunk> future : chain) {
+                future.cancel(true);
+            }
+            prefetchedChunks -= chain.size();
+        }
+    }
+
+    /**
+     * Stops all background fetching.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /*
+     * Returns null if there is no usable prefetched chunk.
+     */
+    private List<String> takePrefetched(String key, String marker) {
+        Future<Chunk> future;
+        synchronized (this) {
+            LinkedList<Future<Chunk>> chain = prefetches.get(key);
+            if (chain == null || chain.isEmpty()) {
+                return null;
+            }
+            future = chain.removeFirst();
+            prefetchedChunks--;
+        }
+
+        try {
+            Chunk chunk = future.get();
+            if (chunk.marker != null && chunk.marker.equals(marker)) {
+                return chunk.contentIds;
+            }
+            log.debug("prefetched chunk of {} does not follow marker {}, discarding", key, marker);
+        } catch (ExecutionException e) {
+            log.debug("failed to prefetch chunk of {} following marker {}: {}",
+                      key, marker, e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        discard(key);
+        return null;
+    }
+
+    private synchronized void prefetch(String key, final String marker, final ChunkLister lister) {
+        LinkedList<Future<Chunk>> chain = prefetches.get(key);
+        if (chain == null) {
+            chain = new LinkedList<>();
+            prefetches.put(key, chain);
+        }
+
+        while (chain.size() < depth && prefetchedChunks < maxPrefetchedChunks) {
+            final Future<Chunk> previous = chain.isEmpty() ? null : chain.getLast();
+            chain.add(executor.submit(new Callable<Chunk>() {
+                @Override
+                public Chunk call() throws Exception {
+                    String chunkMarker = marker;
+                    if (previous != null) {
+                        Chunk previousChunk = previous.get();
+                        if (previousChunk.contentIds.isEmpty()) {
+                            // the listing ended, there is nothing to fetch
+                            return new Chunk(null, previousChunk.contentIds);
+                        }
+                        List<String> previousIds = previousChunk.contentIds;
+                        chunkMarker = previousIds.get(previousIds.size() - 1);
+                    }
+                    return new Chunk(chunkMarker, lister.list(chunkMarker));
+                }
+            }));
+            prefetchedChunks++;
+        }
+    }
+}
@@ -24,6 +24,15 @@ import java.util.Queue;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.duracloud.common.queue.TaskQueue;
 import org.duracloud.mill.common.storageprovider.StorageProviderFactory;
@@ -63,13 +72,17 @@ public abstract class LoopingTaskProducer<T extends Morsel> implements Runnable
     private StateManager<T> stateManager;
     private int maxTaskQueueSize;
     private StorageProviderFactory storageProviderFactory;
-    private List<T> morselsToReload = new LinkedList<>();
+    private Set<T> morselsToReload = new LinkedHashSet<>();
+    private Set<T> morselsForNextSession = new LinkedHashSet<>();
     private Frequency frequency;
     private LocalTime startTime;
     private RunStats cumulativeTotals;
     private NotificationManager notificationManager;
     private LoopingTaskProducerConfigurationManager config;
     private Map<String, RunStats> runstats = new HashMap<>();
+    private Object reloadLock = new Object();
+    private int nibbleThreads = 1;
+    private ChunkPrefetcher listingPrefetcher;
 
     public LoopingTaskProducer(CredentialsRepo credentialsRepo,
                                StorageProviderFactory storageProviderFactory,
@@ -110,6 +123,55 @@ public abstract class LoopingTaskProducer<T extends Morsel> implements Runnable
         return maxTaskQueueSize;
     }
 
+    /**
+     * Sets the number of morsels which may be nibbled at the same time. When
+     * greater than one, nibble(), the task queue and the run stats returned
+     * by createRunStats() must be safe for use by several threads.
+     *
+     * @param nibbleThreads defaults to 1
+     */
+    public void setNibbleThreads(int nibbleThreads) {
+        this.nibbleThreads = Math.max(nibbleThreads, 1);
+    }
+
+    /**
+     * @param listingPrefetcher if not null, listChunk() fetches chunks ahead
+     */
+    public void setListingPrefetcher(ChunkPrefetcher listingPrefetcher) {
+        this.listingPrefetcher = listingPrefetcher;
+    }
+
+    /**
+     * Lists the chunk of a space's contents following the marker, using the
+     * listing prefetcher if there is one.
+     *
+     * @param key    identifies the listing, e.g. the morsel
+     * @param marker
+     * @param lister
+     * @return
+     * @throws Exception
+     */
+    protected List<String> listChunk(String key,
+                                     String marker,
+                                     ChunkPrefetcher.ChunkLister lister) throws Exception {
+        if (listingPrefetcher == null) {
+            return lister.list(marker);
+        }
+        return listingPrefetcher.next(key, marker, lister);
+    }
+
+    /**
+     * Drops any chunks fetched ahead for a listing which will not be read to
+     * its end.
+     *
+     * @param key
+     */
+    protected void discardListing(String key) {
+        if (listingPrefetcher != null) {
+            listingPrefetcher.discard(key);
+        }
+    }
+
     public void run() {
 
         Timer timer = new Timer();
@@ -128,64 +190,25 @@ public abstract class LoopingTaskProducer<T extends Morsel> implements Runnable
             }
 
             log.info("Starting run...");
+            synchronized (reloadLock) {
+                // morsels kept for this session are read back from the state
+                morselsForNextSession.clear();
+            }
             Queue<T> morselQueue = loadMorselQueue();
 
-            while (!morselQueue.isEmpty() && this.taskQueue.size() < maxTaskQueueSize) {
-                T morsel = morselQueue.peek();
-
-                if (morsel != null) {
-                    //check that account is still active
-                    //if not remove from list, but only if
-                    //it has not yet been started.  If an account becomes
-                    //inactive in the middle of processing a morsel,  then
-                    //allow to finish even if it results in errors.
-                    String account = morsel.getAccount();
-                    try {
-                        if (!this.credentialsRepo.isAccountActive(account)) {
-                            if (morsel.getMarker() == null) {
-                                log.info("account {} has become inactive.  Abandonning morsel {}.", account, morsel);
-                                morselQueue.poll();
-                                continue;
-                            } else {
-                                String message = MessageFormat
-                                    .format("account {0} has become inactive in the middle of processing {1}. "
-                                            + "  Allowing this morsel to continue but failure is likely.  "
-                                            + "\nExpect items to appear in the dead letter queue shortly.",
-                                            account, morsel);
-                                log.warn(message);
-                                sendEmail(getSimpleName() +
-                                          " attempting into account after start of morsel processing.",
-                                          message);
-                            }
-                        }
-                    } catch (AccountCredentialsNotFoundException ex) {
-                        String message =
-                            MessageFormat.format("account {0} does not exist.  Abandonning morsel {1}.",
-                                                 account, morsel);
-                        log.warn(message);
-                        sendEmail(getSimpleName() + " attempted to access into non-existent account", message);
-
-                    }
-                }
-                nibble(morselQueue);
-                persistMorsels(morselQueue, morselsToReload);
-
-                if (morselQueue.isEmpty()) {
-                    morselQueue = reloadMorselQueue();
-                } else {
-                    //break if nothing was removed from the queue
-                    //if nothing was removed from the queue we can assume
-                    //that the for whatever reason the morsel could not be processed
-                    //at this time, so the process should wait for the next run.
-                    if (morsel.equals(morselQueue.peek())) {
-                        break;
-                    }
-                }
-
+            if (nibbleThreads > 1) {
+                morselQueue = nibbleConcurrently(morselQueue);
+            } else {
+                morselQueue = nibbleSequentially(morselQueue);
             }
 
             logSessionStats();
 
+            synchronized (reloadLock) {
+                morselQueue.addAll(morselsForNextSession);
+                morselsForNextSession.clear();
+            }
+
             if (morselQueue.isEmpty()) {
                 scheduleNextRun();
                 writeCompletionFile();
@@ -201,6 +224,168 @@ public abstract class LoopingTaskProducer<T extends Morsel> implements Runnable
         }
     }
 
+    /**
+     * Nibbles one morsel at a time until the morsels are exhausted or the
+     * task queue is full.
+     *
+     * @return the remaining morsels
+     */
+    private Queue<T> nibbleSequentially(Queue<T> morselQueue) {
+        while (!morselQueue.isEmpty() && this.taskQueue.size() < maxTaskQueueSize) {
+            T morsel = morselQueue.peek();
+
+            if (morsel != null && isAbandoned(morsel)) {
+                stateManager.removeMorsel(morselQueue.poll());
+                continue;
+            }
+
+            nibble(morselQueue);
+            persistMorsel(morsel, morsel.equals(morselQueue.peek()));
+
+            if (morselQueue.isEmpty()) {
+                morselQueue = reloadMorselQueue();
+            } else {
+                //break if nothing was removed from the queue
+                //if nothing was removed from the queue we can assume
+                //that the for whatever reason the morsel could not be processed
+                //at this time, so the process should wait for the next run.
+                if (morsel.equals(morselQueue.peek())) {
+                    break;
+                }
+            }
+        }
+
+        return morselQueue;
+    }
+
+    /**
+     * Nibbles up to nibbleThreads morsels at a time. Each morsel is handed to
+     * nibble() in a queue of its own, so a given morsel (and its marker) is
+     * only ever touched by one thread. No new morsels are started once the
+     * task queue is full, but morsels in progress may each still add a chunk
+     * of tasks, so the task queue may exceed its maximum size by up to
+     * nibbleThreads - 1 chunks.
+     *
+     * @return the remaining morsels
+     */
+    private Queue<T> nibbleConcurrently(Queue<T> morselQueue) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(nibbleThreads, new ThreadFactory() {
+            private AtomicInteger count = new AtomicInteger(0);
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, getLoopingProducerTypePrefix() + "-nibbler-" +
+                                              count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        CompletionService<Queue<T>> completionService = new ExecutorCompletionService<>(executor);
+        Map<Future<Queue<T>>, T> inProgress = new HashMap<>();
+        boolean stalled = false;
+
+        try {
+            while (true) {
+                while (!stalled &&
+                       inProgress.size() < nibbleThreads &&
+                       !morselQueue.isEmpty() &&
+                       this.taskQueue.size() < maxTaskQueueSize) {
+                    final T morsel = morselQueue.poll();
+                    if (isAbandoned(morsel)) {
+                        stateManager.removeMorsel(morsel);
+                        continue;
+                    }
+
+                    final Queue<T> single = createQueue();
+                    single.add(morsel);
+                    Future<Queue<T>> future = completionService.submit(new Callable<Queue<T>>() {
+                        @Override
+                        public Queue<T> call() throws Exception {
+                            nibble(single);
+                            return single;
+                        }
+                    });
+                    inProgress.put(future, morsel);
+                }
+
+                if (inProgress.isEmpty()) {
+                    if (morselQueue.isEmpty()) {
+                        morselQueue = reloadMorselQueue();
+                        if (!morselQueue.isEmpty() && !stalled &&
+                            this.taskQueue.size() < maxTaskQueueSize) {
+                            continue;
+                        }
+                    }
+                    break;
+                }
+
+                Future<Queue<T>> done = completionService.take();
+                T morsel = inProgress.remove(done);
+                Queue<T> remaining;
+                try {
+                    remaining = done.get();
+                } catch (ExecutionException e) {
+                    // the morsel is kept so that it is picked up again next session
+                    morselQueue.add(morsel);
+                    stateManager.updateMorsel(morsel);
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+
+                if (!remaining.isEmpty()) {
+                    //the morsel could not be finished at this time, so
+                    //let the morsels in progress finish and wait for the
+                    //next session.
+                    morselQueue.addAll(remaining);
+                    stalled = true;
+                }
+
+                persistMorsel(morsel, !remaining.isEmpty());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return morselQueue;
+    }
+
+    /**
+     * Checks that the morsel's account is still active. If not, the morsel
+     * is abandoned, but only if it has not yet been started. If an account
+     * becomes inactive in the middle of processing a morsel, then it is
+     * allowed to finish even if it results in errors.
+     *
+     * @return true if the morsel should be dropped
+     */
+    private boolean isAbandoned(T morsel) {
+        String account = morsel.getAccount();
+        try {
+            if (!this.credentialsRepo.isAccountActive(account)) {
+                if (morsel.getMarker() == null) {
+                    log.info("account {} has become inactive.  Abandonning morsel {}.", account, morsel);
+                    return true;
+                } else {
+                    String message = MessageFormat
+                        .format("account {0} has become inactive in the middle of processing {1}. "
+                                + "  Allowing this morsel to continue but failure is likely.  "
+                                + "\nExpect items to appear in the dead letter queue shortly.",
+                                account, morsel);
+                    log.warn(message);
+                    sendEmail(getSimpleName() +
+                              " attempting into account after start of morsel processing.",
+                              message);
+                }
+            }
+        } catch (AccountCredentialsNotFoundException ex) {
+            String message =
+                MessageFormat.format("account {0} does not exist.  Abandonning morsel {1}.",
+                                     account, morsel);
+            log.warn(message);
+            sendEmail(getSimpleName() + " attempted to access into non-existent account", message);
+
+        }
+        return false;
+    }
+
     private String getSimpleName() {
         return getClass().getSimpleName();
     }
@@ -419,8 +604,11 @@ public abstract class LoopingTaskProducer<T extends Morsel> implements Runnable
      * @return
      */
     private MorselQueue<T> reloadMorselQueue() {
-        List<T> morsels = morselsToReload;
-        morselsToReload = new LinkedList<>();
+        Set<T> morsels;
+        synchronized (reloadLock) {
+            morsels = morselsToReload;
+            morselsToReload = new LinkedHashSet<>();
+        }
         MorselQueue<T> queue = new MorselQueue<>();
         queue.addAll(morsels);
         return queue;
@@ -442,6 +630,9 @@ public abstract class LoopingTaskProducer<T extends Morsel> implements Runnable
 
         if (morselQueue.isEmpty()) {
             loadMorselQueueFromSource(morselQueue);
+            if (!morselQueue.isEmpty()) {
+                stateManager.setMorsels(new LinkedHashSet<>(morselQueue));
+            }
         }
 
         return morselQueue;
@@ -454,11 +645,23 @@ public abstract class LoopingTaskProducer<T extends Morsel> implements Runnable
         return new LinkedList<T>();
     }
 
-    private void persistMorsels(Queue<T> queue, List<T> morselsToReload) {
-        LinkedHashSet<T> morsels = new LinkedHashSet<>();
-        morsels.addAll(queue);
-        morsels.addAll(morselsToReload);
-        stateManager.setMorsels(morsels);
+    /**
+     * Saves the state of a morsel which has just been nibbled, or removes it
+     * from the state if it is finished.
+     *
+     * @param morsel
+     * @param queued true if the morsel is still in the nibbled queue
+     */
+    private void persistMorsel(T morsel, boolean queued) {
+        boolean kept;
+        synchronized (reloadLock) {
+            kept = queued || morselsToReload.contains(morsel) || morselsForNextSession.contains(morsel);
+        }
+        if (kept) {
+            stateManager.updateMorsel(morsel);
+        } else {
+            stateManager.removeMorsel(morsel);
+        }
     }
 
     /**
@@ -466,7 +669,22 @@ public abstract class LoopingTaskProducer<T extends Morsel> implements Runnable
      */
     protected void addToReloadList(T morsel) {
         log.info("adding morsel to reload list: {}", morsel);
-        morselsToReload.add(morsel);
+        synchronized (reloadLock) {
+            morselsToReload.add(morsel);
+        }
+    }
+
+    /**
+     * Keeps a morsel which cannot be finished in this session for the next
+     * one without holding up the other morsels of this session.
+     *
+     * @param morsel
+     */
+    protected void addToNextSession(T morsel) {
+        log.info("keeping morsel for the next session: {}", morsel);
+        synchronized (reloadLock) {
+            morselsForNextSession.add(morsel);
+        }
     }
 
     /**
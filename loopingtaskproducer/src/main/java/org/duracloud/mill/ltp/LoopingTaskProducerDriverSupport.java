@@ -11,6 +11,9 @@ import java.time.LocalTime;
 import java.time.format.DateTimeParseException;
 
 import org.apache.commons.cli.CommandLine;
+import org.duracloud.mill.config.ConfigConstants;
+import org.duracloud.mill.credentials.CredentialsRepo;
+import org.duracloud.mill.credentials.impl.CachingCredentialsRepo;
 import org.duracloud.mill.util.CommonCommandLineOptions;
 import org.duracloud.mill.util.DriverSupport;
 import org.slf4j.Logger;
@@ -26,6 +29,8 @@ import org.slf4j.LoggerFactory;
 public abstract class LoopingTaskProducerDriverSupport extends DriverSupport {
     private static Logger log = LoggerFactory.getLogger(LoopingTaskProducerDriverSupport.class);
 
+    private CachingCredentialsRepo cachingCredentialsRepo;
+
     /**
      *
      */
@@ -44,13 +49,22 @@ public abstract class LoopingTaskProducerDriverSupport extends DriverSupport {
         } catch (Exception ex) {
             ex.printStackTrace();
             log.error(ex.getMessage(), ex);
+            destroyCachingCredentialsRepo();
             System.exit(1);
         }
 
+        destroyCachingCredentialsRepo();
         log.info("looping task producer completed successfully.");
         System.exit(0);
     }
 
+    private void destroyCachingCredentialsRepo() {
+        if (cachingCredentialsRepo != null) {
+            cachingCredentialsRepo.destroy();
+            cachingCredentialsRepo = null;
+        }
+    }
+
     /**
      * @return
      */
@@ -73,6 +87,48 @@ public abstract class LoopingTaskProducerDriverSupport extends DriverSupport {
         return maxTaskQueueSize;
     }
 
+    /**
+     * @param key
+     * @return a listing prefetcher or null if prefetching is disabled
+     */
+    protected ChunkPrefetcher getListingPrefetcher(String key) {
+        String depthOption = System.getProperty(key);
+        int depth = ChunkPrefetcher.DEFAULT_DEPTH;
+
+        if (depthOption != null) {
+            depth = Integer.valueOf(depthOption);
+        }
+
+        log.info("listing prefetch depth: {}", depth);
+
+        if (depth <= 0) {
+            return null;
+        }
+        return new ChunkPrefetcher(depth, ChunkPrefetcher.DEFAULT_MAX_PREFETCHED_CHUNKS);
+    }
+
+    /**
+     * Wraps the credentials repo in a cache so that accounts and storage
+     * providers are not looked up in the account database for every morsel.
+     * The cache is warmed and its background refresh started here; the
+     * refresh is stopped once the producer has run.
+     *
+     * @param credentialsRepo
+     * @return
+     */
+    protected CredentialsRepo getCachingCredentialsRepo(CredentialsRepo credentialsRepo) {
+        long timeToLiveMs = Long.getLong(ConfigConstants.CREDENTIALS_CACHE_TTL_MS,
+                                         CachingCredentialsRepo.DEFAULT_TIME_TO_LIVE_MS);
+        long negativeTimeToLiveMs = Long.getLong(ConfigConstants.CREDENTIALS_CACHE_NEGATIVE_TTL_MS,
+                                                 CachingCredentialsRepo.DEFAULT_NEGATIVE_TIME_TO_LIVE_MS);
+        log.info("credentials cache time to live: {} ms (missing accounts: {} ms)",
+                 timeToLiveMs, negativeTimeToLiveMs);
+        destroyCachingCredentialsRepo();
+        cachingCredentialsRepo = new CachingCredentialsRepo(credentialsRepo, timeToLiveMs, negativeTimeToLiveMs);
+        cachingCredentialsRepo.init();
+        return cachingCredentialsRepo;
+    }
+
     /**
      * @param cmd
      */
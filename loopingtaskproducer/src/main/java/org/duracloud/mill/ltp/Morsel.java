@@ -22,8 +22,8 @@ public class Morsel {
     protected static final String[] EXCLUSIONS = {"marker", "deletePerformed"};
     private String account;
     private String spaceId;
-    private String marker;
-    private boolean deletePerformed = false;
+    private volatile String marker;
+    private volatile boolean deletePerformed = false;
 
     public Morsel() {
 
@@ -59,9 +59,11 @@ public class Morsel {
     }
 
     /**
-     * @return
+     * @return the names of the fields which record how far the morsel has
+     * been nibbled rather than which morsel it is; they are ignored by
+     * equals and hashCode.
      */
-    private String[] getExclusions() {
+    protected String[] getExclusions() {
         return EXCLUSIONS;
     }
 
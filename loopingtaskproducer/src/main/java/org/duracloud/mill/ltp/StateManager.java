@@ -7,41 +7,96 @@
  */
 package org.duracloud.mill.ltp;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 
 import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.duracloud.common.util.ChecksumUtil;
+import org.duracloud.common.util.ChecksumUtil.Algorithm;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * This class is responsible for serializing the state to and from disk.
  *
+ * The state is kept in a snapshot file along with a journal file (the
+ * snapshot path plus ".journal"). Each morsel reported through
+ * updateMorsel() or removeMorsel() is appended to the journal as one small
+ * record, so the cost of saving a morsel does not depend on the number of
+ * morsels. Once the journal holds more than a maximum number of records,
+ * whenever the run dates change and whenever all morsels are replaced through
+ * setMorsels(), the full state is written to a new snapshot which atomically
+ * replaces the old one, and the journal is cleared.
+ *
+ * On startup the journal is replayed on top of the snapshot it was started
+ * against; a journal left behind by an older snapshot is ignored, and an
+ * incomplete last record (from a crash mid-append) is dropped. Note that the
+ * journal restores the content of the morsels but not changes to their order.
+ *
  * @author Daniel Bernstein
  * Date: Nov 5, 2013
  */
 public class StateManager<T extends Morsel> {
     private static Logger log = LoggerFactory.getLogger(StateManager.class);
+
+    public static final int DEFAULT_MAX_JOURNAL_RECORDS = 1000;
+
+    private static final String JOURNAL_SUFFIX = ".journal";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String PUT = "put";
+    private static final String REMOVE = "remove";
+
     private File stateFile;
+    private File journalFile;
     private State<T> state = new State<>();
     private Class<T> klazz;
+    private ObjectMapper mapper = new ObjectMapper();
+    private int maxJournalRecords;
+    private int journalRecords = 0;
+    private String snapshotChecksum;
+    private Map<T, T> morsels = new LinkedHashMap<>();
 
     /**
      *
      */
     public StateManager(String path, Class<T> klazz) {
-        stateFile = new File(path);
+        this(path, klazz, DEFAULT_MAX_JOURNAL_RECORDS);
+    }
+
+    /**
+     * @param maxJournalRecords the number of journal records after which
+     *                          the state is compacted into a new snapshot
+     */
+    public StateManager(String path, Class<T> klazz, int maxJournalRecords) {
+        this.stateFile = new File(path);
+        this.journalFile = new File(path + JOURNAL_SUFFIX);
+        this.klazz = klazz;
+        this.maxJournalRecords = maxJournalRecords;
+
         final boolean exists = stateFile.exists();
         final long length = stateFile.length();
 
-        if (stateFile.exists() && stateFile.length() > 0) {
-            ObjectMapper m = new ObjectMapper();
-            JavaType type = m.getTypeFactory().constructParametricType(State.class, klazz);
+        if (exists && length > 0) {
+            JavaType type = mapper.getTypeFactory().constructParametricType(State.class, klazz);
 
             try {
-                this.state = m.readValue(stateFile, type);
+                byte[] snapshot = Files.readAllBytes(stateFile.toPath());
+                this.state = mapper.readValue(snapshot, type);
+                this.snapshotChecksum = checksum(snapshot);
                 log.info("State file ( {} ) successfully read.", path);
             } catch (Exception e) {
                 e.printStackTrace();
@@ -52,12 +107,120 @@ public class StateManager<T extends Morsel> {
                      path, exists, length);
             state = new State<>();
         }
+
+        for (T morsel : state.getMorsels()) {
+            morsels.put(morsel, morsel);
+        }
+
+        if (replayJournal()) {
+            flush();
+        }
     }
 
+    /**
+     * Applies the journal to the state read from the snapshot.
+     *
+     * @return true if any records were replayed
+     */
+    private boolean replayJournal() {
+        if (!journalFile.exists()) {
+            return false;
+        }
+
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(journalFile.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("failed to read " + journalFile.getAbsolutePath(), e);
+        }
+
+        if (lines.isEmpty() || snapshotChecksum == null ||
+            !snapshotChecksum.equals(readJournalHeader(lines.get(0)))) {
+            log.info("Ignoring journal ( {} ) which does not belong to the current state file.",
+                     journalFile.getAbsolutePath());
+            journalFile.delete();
+            return false;
+        }
+
+        int replayed = 0;
+        for (int i = 1; i < lines.size(); i++) {
+            JsonNode record = readRecord(lines.get(i));
+            if (record == null) {
+                if (i == lines.size() - 1) {
+                    log.warn("Ignoring incomplete last record of journal ( {} ).",
+                             journalFile.getAbsolutePath());
+                    break;
+                }
+                throw new RuntimeException("journal " + journalFile.getAbsolutePath() +
+                                           " is corrupt at line " + (i + 1));
+            }
+
+            try {
+                T morsel = mapper.treeToValue(record.get("morsel"), klazz);
+                if (REMOVE.equals(record.get("op").asText())) {
+                    morsels.remove(morsel);
+                } else {
+                    morsels.put(morsel, morsel);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("failed to replay journal " + journalFile.getAbsolutePath(), e);
+            }
+            replayed++;
+        }
+
+        log.info("Replayed {} records from journal ( {} ).", replayed, journalFile.getAbsolutePath());
+        return replayed > 0;
+    }
+
+    private String readJournalHeader(String line) {
+        JsonNode header = readRecord(line);
+        if (header == null || !header.has("snapshot")) {
+            return null;
+        }
+        return header.get("snapshot").asText();
+    }
+
+    /*
+     * Returns null if the line is not a complete record.
+     */
+    private JsonNode readRecord(String line) {
+        try {
+            JsonNode record = mapper.readTree(line);
+            if (record == null || !record.isObject()) {
+                return null;
+            }
+            if (!record.has("snapshot") && (!record.has("op") || !record.has("morsel"))) {
+                return null;
+            }
+            return record;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the complete state to a new snapshot which replaces the current
+     * one and starts a new journal.
+     */
     private void flush() {
-        ObjectMapper mapper = new ObjectMapper();
+        File tempFile = new File(stateFile.getAbsolutePath() + TEMP_SUFFIX);
+        this.state.setMorsels(new LinkedHashSet<>(morsels.values()));
         try {
-            mapper.writeValue(this.stateFile, this.state);
+            byte[] snapshot = mapper.writeValueAsBytes(this.state);
+            try (FileOutputStream out = new FileOutputStream(tempFile)) {
+                out.write(snapshot);
+                out.getFD().sync();
+            }
+            Files.move(tempFile.toPath(),
+                       stateFile.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+
+            // a journal which survives a crash at this point is recognized
+            // as stale since its header names the previous snapshot.
+            Files.deleteIfExists(journalFile.toPath());
+            this.snapshotChecksum = checksum(snapshot);
+            this.journalRecords = 0;
             log.debug("saved {} to {}", this.state, this.stateFile.getAbsolutePath());
         } catch (Exception e) {
             throw new RuntimeException("failed to save " + this.state + " to "
@@ -65,21 +228,95 @@ public class StateManager<T extends Morsel> {
         }
     }
 
+    /**
+     * Appends a record to the journal, or writes a new snapshot in its place
+     * if there is no snapshot yet or the journal is full.
+     */
+    private void journal(String op, T morsel) {
+        if (snapshotChecksum == null || journalRecords >= maxJournalRecords) {
+            flush();
+            return;
+        }
+
+        try {
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            if (!journalFile.exists() || journalFile.length() == 0) {
+                ObjectNode header = mapper.createObjectNode();
+                header.put("snapshot", snapshotChecksum);
+                writeRecord(records, header);
+            }
+            writeRecord(records, createRecord(op, morsel));
+
+            try (FileOutputStream out = new FileOutputStream(journalFile, true)) {
+                out.write(records.toByteArray());
+                out.getFD().sync();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("failed to append to " + journalFile.getAbsolutePath(), e);
+        }
+
+        journalRecords++;
+        log.debug("journaled {} of {} to {}", op, morsel, journalFile.getAbsolutePath());
+    }
+
+    private ObjectNode createRecord(String op, T morsel) {
+        ObjectNode record = mapper.createObjectNode();
+        record.put("op", op);
+        record.set("morsel", mapper.valueToTree(morsel));
+        return record;
+    }
+
+    private void writeRecord(ByteArrayOutputStream records, JsonNode record) throws IOException {
+        records.write(mapper.writeValueAsBytes(record));
+        records.write('\n');
+    }
+
+    private String checksum(byte[] bytes) throws IOException {
+        return new ChecksumUtil(Algorithm.MD5).generateChecksum(new ByteArrayInputStream(bytes));
+    }
+
     /**
      * @return
      */
     public LinkedHashSet<T> getMorsels() {
-        return state.getMorsels();
+        return new LinkedHashSet<>(morsels.values());
     }
 
     /**
+     * Replaces all morsels and writes a new snapshot.
+     *
      * @param morsels
      */
     public void setMorsels(LinkedHashSet<T> morsels) {
-        this.state.setMorsels(morsels);
+        this.morsels.clear();
+        for (T morsel : morsels) {
+            this.morsels.put(morsel, morsel);
+        }
         flush();
     }
 
+    /**
+     * Saves the given morsel, adding it if it is not already part of the
+     * state.
+     *
+     * @param morsel
+     */
+    public void updateMorsel(T morsel) {
+        this.morsels.put(morsel, morsel);
+        journal(PUT, morsel);
+    }
+
+    /**
+     * Removes the given morsel from the state.
+     *
+     * @param morsel
+     */
+    public void removeMorsel(T morsel) {
+        if (this.morsels.remove(morsel) != null) {
+            journal(REMOVE, morsel);
+        }
+    }
+
     /**
      * @return
      */
@@ -0,0 +1,118 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.ltp;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * @author Daniel Bernstein
+ */
+public class ChunkPrefetcherTest {
+
+    private ChunkPrefetcher prefetcher;
+
+    @After
+    public void tearDown() {
+        prefetcher.shutdown();
+    }
+
+    /**
+     * Lists ids "0".."n-1" (zero padded) in chunks and records the markers
+     * it was asked to list from.
+     */
+    private static class CountingLister implements ChunkPrefetcher.ChunkLister {
+        private List<String> ids = new ArrayList<>();
+        private List<String> markers = Collections.synchronizedList(new ArrayList<String>());
+        private int chunkSize;
+        private volatile boolean failAfterFirst = false;
+
+        CountingLister(int count, int chunkSize) {
+            for (int i = 0; i < count; i++) {
+                ids.add(String.format("%03d", i));
+            }
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public List<String> list(String marker) throws Exception {
+            markers.add(marker);
+            if (failAfterFirst && marker != null) {
+                throw new Exception("listing failed");
+            }
+            int start = marker == null ? 0 : ids.indexOf(marker) + 1;
+            return new ArrayList<>(ids.subList(start, Math.min(start + chunkSize, ids.size())));
+        }
+    }
+
+    private List<String> readAll(String key, CountingLister lister) throws Exception {
+        List<String> all = new ArrayList<>();
+        String marker = null;
+        while (true) {
+            List<String> chunk = prefetcher.next(key, marker, lister);
+            if (chunk.isEmpty()) {
+                return all;
+            }
+            all.addAll(chunk);
+            marker = chunk.get(chunk.size() - 1);
+        }
+    }
+
+    @Test
+    public void testListsEachChunkOnce() throws Exception {
+        prefetcher = new ChunkPrefetcher(2, 10);
+        CountingLister lister = new CountingLister(25, 10);
+
+        assertEquals(lister.ids, readAll("key", lister));
+        // three chunks plus the empty one marking the end
+        assertEquals(Arrays.asList(null, "009", "019", "024"), lister.markers);
+    }
+
+    @Test
+    public void testMarkerMismatch() throws Exception {
+        prefetcher = new ChunkPrefetcher(1, 10);
+        CountingLister lister = new CountingLister(30, 10);
+
+        prefetcher.next("key", null, lister);
+        // skip ahead instead of following the prefetched chunk
+        List<String> chunk = prefetcher.next("key", "014", lister);
+        assertEquals("015", chunk.get(0));
+        assertEquals(10, chunk.size());
+    }
+
+    @Test
+    public void testPrefetchFailure() throws Exception {
+        prefetcher = new ChunkPrefetcher(1, 10);
+        CountingLister lister = new CountingLister(30, 10);
+        lister.failAfterFirst = true;
+
+        prefetcher.next("key", null, lister);
+        Thread.sleep(100);
+        lister.failAfterFirst = false;
+
+        // the failed prefetch is retried on the calling thread
+        assertEquals("010", prefetcher.next("key", "009", lister).get(0));
+        assertEquals(Arrays.asList(null, "009", "009"), lister.markers.subList(0, 3));
+    }
+
+    @Test
+    public void testNoPrefetchBeyondMaximum() throws Exception {
+        prefetcher = new ChunkPrefetcher(2, 0);
+        CountingLister lister = new CountingLister(25, 10);
+
+        assertEquals(lister.ids, readAll("key", lister));
+        assertEquals(Arrays.asList(null, "009", "019", "024"), lister.markers);
+    }
+}
@@ -1,5 +1,9 @@
 --
 -- Server version	5.6.34-log
+--
+-- The generated columns of manifest_item require MySQL 5.7 or later. The
+-- bit_log_item table is not partitioned by run here: see Part 2 of
+-- mill-schema-upgrade-bit-log-runs.sql for bit-log.partition-by-run=true.
 
 /*!40101 SET @OLD_CHARACTER_SET_CLIENT=@@CHARACTER_SET_CLIENT */;
 /*!40101 SET @OLD_CHARACTER_SET_RESULTS=@@CHARACTER_SET_RESULTS */;
@@ -63,6 +67,7 @@ CREATE TABLE `bit_log_item` (
   `manifest_checksum` varchar(255) DEFAULT NULL,
   `result` varchar(255) DEFAULT NULL,
   `space_id` varchar(255) NOT NULL,
+  `run_id` bigint(20) NOT NULL DEFAULT '0',
   `storage_provider_checksum` varchar(255) DEFAULT NULL,
   `storage_provider_type` varchar(255) DEFAULT NULL,
   `store_id` varchar(255) NOT NULL,
@@ -70,7 +75,46 @@ CREATE TABLE `bit_log_item` (
   PRIMARY KEY (`id`),
   KEY `idx_content_id` (`account`,`store_id`,`space_id`,`content_id`(150)),
   KEY `idx_space_id` (`account`,`store_id`,`space_id`),
-  KEY `idx_result_id` (`account`,`store_id`,`space_id`,`result`)
+  KEY `idx_result_id` (`account`,`store_id`,`space_id`,`result`),
+  KEY `idx_run_id` (`account`,`store_id`,`space_id`,`run_id`)
+) ENGINE=InnoDB AUTO_INCREMENT=1 DEFAULT CHARSET=utf8;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Table structure for table `bit_log_orphan_partition`
+--
+
+DROP TABLE IF EXISTS `bit_log_orphan_partition`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `bit_log_orphan_partition` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT,
+  `modified` datetime(3) NOT NULL,
+  `run_id` bigint(20) NOT NULL,
+  `version` int(11) NOT NULL DEFAULT '0',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `idx_run_id` (`run_id`)
+) ENGINE=InnoDB AUTO_INCREMENT=1 DEFAULT CHARSET=utf8;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Table structure for table `bit_log_run`
+--
+
+DROP TABLE IF EXISTS `bit_log_run`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `bit_log_run` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT,
+  `modified` datetime(3) NOT NULL,
+  `account` varchar(255) NOT NULL,
+  `space_id` varchar(255) NOT NULL,
+  `store_id` varchar(255) NOT NULL,
+  `success_bytes` bigint(20) NOT NULL DEFAULT '0',
+  `success_count` bigint(20) NOT NULL DEFAULT '0',
+  `success_digest` bigint(20) NOT NULL DEFAULT '0',
+  `version` int(11) NOT NULL DEFAULT '0',
+  PRIMARY KEY (`id`)
 ) ENGINE=InnoDB AUTO_INCREMENT=1 DEFAULT CHARSET=utf8;
 /*!40101 SET character_set_client = @saved_cs_client */;
 
@@ -97,6 +141,29 @@ CREATE TABLE `bit_report` (
 ) ENGINE=InnoDB AUTO_INCREMENT=1 DEFAULT CHARSET=utf8;
 /*!40101 SET character_set_client = @saved_cs_client */;
 
+--
+-- Table structure for table `bit_verified_item`
+--
+
+DROP TABLE IF EXISTS `bit_verified_item`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `bit_verified_item` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT,
+  `modified` datetime(3) NOT NULL,
+  `account` varchar(255) NOT NULL,
+  `content_id` varchar(1024) CHARACTER SET utf8 COLLATE utf8_bin NOT NULL,
+  `space_id` varchar(255) NOT NULL,
+  `store_id` varchar(255) NOT NULL,
+  `unique_key` char(32) NOT NULL,
+  `verified` datetime NOT NULL,
+  `version` int(11) NOT NULL DEFAULT '0',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `idx_unique_key` (`unique_key`),
+  KEY `idx_space_verified` (`account`,`store_id`,`space_id`,`verified`)
+) ENGINE=InnoDB AUTO_INCREMENT=1 DEFAULT CHARSET=utf8;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
 --
 -- Table structure for table `manifest_item`
 --
@@ -118,11 +185,16 @@ CREATE TABLE `manifest_item` (
   `store_id` varchar(255) NOT NULL,
   `unique_key` char(32) NOT NULL,
   `version` int(11) NOT NULL DEFAULT '0',
+  `space_key` binary(16)
+    GENERATED ALWAYS AS (unhex(md5(concat_ws('/', `account`, `store_id`, `space_id`)))) VIRTUAL,
+  `content_key` varbinary(1024)
+    GENERATED ALWAYS AS (cast(`content_id` as binary)) VIRTUAL,
   PRIMARY KEY (`id`),
   UNIQUE KEY `idx_unique_key` (`unique_key`),
   KEY `idx_account_id` (`deleted`,`account`),
   KEY `idx_space_id_2` (`account`,`store_id`,`space_id`,`deleted`),
-  KEY `idx_content_id_2` (`account`,`store_id`,`space_id`,`content_id`(255))
+  KEY `idx_content_id_2` (`account`,`store_id`,`space_id`,`content_id`(255)),
+  KEY `idx_content_order` (`space_key`,`deleted`,`content_key`)
 ) ENGINE=InnoDB AUTO_INCREMENT=1 DEFAULT CHARSET=utf8;
 /*!40101 SET character_set_client = @saved_cs_client */;
 
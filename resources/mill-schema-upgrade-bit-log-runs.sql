@@ -0,0 +1,94 @@
+--
+-- Keeps bit log items by bit integrity run.
+--
+-- Part 1 is required: each bit log item carries the id of the run which
+-- logged it (0 for items logged without a run) and runs are registered in the
+-- bit_log_run table, along with the summary of their successful checks if
+-- bit-log.summarize-successes=true.
+--
+-- Part 2 is needed only with bit-log.partition-by-run=true: the bit_log_item
+-- table is partitioned by run id so that a run's items are removed by dropping
+-- its partition rather than deleting them row by row. Since partition names
+-- cannot be bound as statement parameters, partitions are added and dropped
+-- through the stored procedures below. The partitioning of an existing table
+-- copies it, so apply it while the bit integrity task producer and workers
+-- are stopped.
+--
+
+--
+-- Part 1
+--
+
+ALTER TABLE `bit_log_item`
+  ADD COLUMN `run_id` bigint(20) NOT NULL DEFAULT '0' AFTER `space_id`,
+  ADD KEY `idx_run_id` (`account`,`store_id`,`space_id`,`run_id`);
+
+DROP TABLE IF EXISTS `bit_log_run`;
+CREATE TABLE `bit_log_run` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT,
+  `modified` datetime(3) NOT NULL,
+  `account` varchar(255) NOT NULL,
+  `space_id` varchar(255) NOT NULL,
+  `store_id` varchar(255) NOT NULL,
+  `success_bytes` bigint(20) NOT NULL DEFAULT '0',
+  `success_count` bigint(20) NOT NULL DEFAULT '0',
+  `success_digest` bigint(20) NOT NULL DEFAULT '0',
+  `version` int(11) NOT NULL DEFAULT '0',
+  PRIMARY KEY (`id`)
+) ENGINE=InnoDB AUTO_INCREMENT=1 DEFAULT CHARSET=utf8;
+
+--
+-- Part 2
+--
+
+-- every unique key of a partitioned table must include the partitioning column
+ALTER TABLE `bit_log_item`
+  DROP PRIMARY KEY,
+  ADD PRIMARY KEY (`id`,`run_id`);
+
+-- p0 holds the items logged without a run
+ALTER TABLE `bit_log_item`
+  PARTITION BY LIST (`run_id`) (PARTITION `p0` VALUES IN (0));
+
+-- partitions of deleted runs which could not be dropped along with their runs:
+-- dropping them is retried whenever a run is started.
+DROP TABLE IF EXISTS `bit_log_orphan_partition`;
+CREATE TABLE `bit_log_orphan_partition` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT,
+  `modified` datetime(3) NOT NULL,
+  `run_id` bigint(20) NOT NULL,
+  `version` int(11) NOT NULL DEFAULT '0',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `idx_run_id` (`run_id`)
+) ENGINE=InnoDB AUTO_INCREMENT=1 DEFAULT CHARSET=utf8;
+
+DROP PROCEDURE IF EXISTS `add_bit_log_run_partition`;
+DROP PROCEDURE IF EXISTS `drop_bit_log_run_partition`;
+
+DELIMITER //
+
+CREATE PROCEDURE `add_bit_log_run_partition`(IN `run` bigint)
+BEGIN
+  SET @bit_log_sql = CONCAT('ALTER TABLE `bit_log_item` ADD PARTITION (PARTITION `p', `run`,
+                            '` VALUES IN (', `run`, '))');
+  PREPARE bit_log_stmt FROM @bit_log_sql;
+  EXECUTE bit_log_stmt;
+  DEALLOCATE PREPARE bit_log_stmt;
+END //
+
+-- does nothing if the partition has already been dropped, so that a report
+-- task which is retried may call it again.
+CREATE PROCEDURE `drop_bit_log_run_partition`(IN `run` bigint)
+BEGIN
+  IF `run` > 0 AND EXISTS (SELECT 1 FROM information_schema.partitions
+                           WHERE table_schema = DATABASE()
+                             AND table_name = 'bit_log_item'
+                             AND partition_name = CONCAT('p', `run`)) THEN
+    SET @bit_log_sql = CONCAT('ALTER TABLE `bit_log_item` DROP PARTITION `p', `run`, '`');
+    PREPARE bit_log_stmt FROM @bit_log_sql;
+    EXECUTE bit_log_stmt;
+    DEALLOCATE PREPARE bit_log_stmt;
+  END IF;
+END //
+
+DELIMITER ;
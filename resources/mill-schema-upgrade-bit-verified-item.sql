@@ -0,0 +1,32 @@
+--
+-- Records the time at which each content item last passed its bit integrity
+-- check. Needed only with bit-log.verification-interval-days greater than 0,
+-- with which the looping bit task producer adds check tasks only for the items
+-- which are due. Each content item has a single row, found by its unique key:
+-- the MD5 of its account, store id, space id and content id, separated by
+-- slashes (see JpaBitLogStore.getVerifiedItemKey()).
+--
+-- Retention: an item which is still in its space and keeps passing its checks
+-- has its row renewed once every interval. At the start of each run of a
+-- space, the producer deletes the space's rows which have not been renewed for
+-- three intervals (plus the days between runs): those of items which have
+-- been deleted, or which keep failing their checks. The latter are still
+-- checked, since an item without a row is due once in every interval. The
+-- idx_space_verified key serves those deletes.
+--
+
+DROP TABLE IF EXISTS `bit_verified_item`;
+CREATE TABLE `bit_verified_item` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT,
+  `modified` datetime(3) NOT NULL,
+  `account` varchar(255) NOT NULL,
+  `content_id` varchar(1024) CHARACTER SET utf8 COLLATE utf8_bin NOT NULL,
+  `space_id` varchar(255) NOT NULL,
+  `store_id` varchar(255) NOT NULL,
+  `unique_key` char(32) NOT NULL,
+  `verified` datetime NOT NULL,
+  `version` int(11) NOT NULL DEFAULT '0',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `idx_unique_key` (`unique_key`),
+  KEY `idx_space_verified` (`account`,`store_id`,`space_id`,`verified`)
+) ENGINE=InnoDB AUTO_INCREMENT=1 DEFAULT CHARSET=utf8;
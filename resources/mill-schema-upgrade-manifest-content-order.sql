@@ -0,0 +1,24 @@
+--
+-- Lets a space's manifest items be read in content id order from an index.
+-- Needed by the space comparison of the bit integrity workers, which reads a
+-- space's manifest a page at a time in content id order.
+--
+-- The existing idx_content_id_2 index holds only the first 255 characters of
+-- the content id, so it can't be used to order by content id: each page would
+-- sort the rest of the space. A full length index on the account, store id,
+-- space id and content id columns would exceed InnoDB's limit of 3072 bytes
+-- per index key, so the index below is over two generated columns instead: an
+-- MD5 hash of the account, store id and space id, and the content id's UTF-8
+-- bytes, which order the same way as the utf8_bin collation of content_id.
+-- The latter relies on content ids being no longer than 1024 bytes, which
+-- DuraCloud requires of them. Requires MySQL 5.7 or later; adding the index
+-- reads the whole table, so apply it while the bit integrity workers are
+-- stopped.
+--
+
+ALTER TABLE `manifest_item`
+  ADD COLUMN `space_key` binary(16)
+    GENERATED ALWAYS AS (unhex(md5(concat_ws('/', `account`, `store_id`, `space_id`)))) VIRTUAL,
+  ADD COLUMN `content_key` varbinary(1024)
+    GENERATED ALWAYS AS (cast(`content_id` as binary)) VIRTUAL,
+  ADD KEY `idx_content_order` (`space_key`, `deleted`, `content_key`);
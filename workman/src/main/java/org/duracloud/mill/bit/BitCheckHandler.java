@@ -20,6 +20,7 @@ import org.duracloud.common.retry.Retriable;
 import org.duracloud.common.retry.Retrier;
 import org.duracloud.mill.bitlog.BitIntegrityResult;
 import org.duracloud.mill.bitlog.BitLogStore;
+import org.duracloud.mill.workman.TaskExecutionDeferredException;
 import org.duracloud.mill.workman.TaskExecutionFailedException;
 import org.duracloud.mill.workman.TaskWorker;
 import org.duracloud.storage.domain.StorageProviderType;
@@ -61,7 +62,13 @@ abstract class BitCheckHandler {
 
     public final boolean handle(BitCheckExecutionState bitCheckState) throws TaskExecutionFailedException {
         HandlerResult result = handleImpl(bitCheckState);
-        if (result.isHandled()) {
+        if (result.isRetryDeferred()) {
+            throw new TaskExecutionDeferredException(
+                buildFailureMessage(result.getMessage() == null ? "retry deferred" : result.getMessage(),
+                                    bitCheckState.getTask(),
+                                    bitCheckState.getStorageProviderType()),
+                result.getRetryDelayMs());
+        } else if (result.isHandled()) {
             if (!result.getResult().equals(BitIntegrityResult.IGNORE)) {
 
                 String contentChecksum = null;
@@ -78,6 +85,7 @@ abstract class BitCheckHandler {
                             bitCheckState.getBitLogStore(),
                             bitCheckState.getStorageProviderType(),
                             bitCheckState.getTask(),
+                            getContentSize(bitCheckState),
                             result.getMessage());
             }
             return true;
@@ -154,16 +162,29 @@ abstract class BitCheckHandler {
                              final BitLogStore bitLogStore,
                              final StorageProviderType storageProviderType,
                              final BitIntegrityCheckTask bitTask,
+                             final long contentSize,
                              final String details) throws TaskExecutionFailedException {
         try {
             new Retrier().execute(new Retriable() {
                 @Override
                 public String retry() throws Exception {
+                    if (result == BitIntegrityResult.SUCCESS &&
+                        bitLogStore.summarizeSuccess(bitTask.getAccount(),
+                                                     bitTask.getStoreId(),
+                                                     bitTask.getSpaceId(),
+                                                     bitTask.getRunId(),
+                                                     bitTask.getContentId(),
+                                                     storeChecksum,
+                                                     contentSize)) {
+                        return "summarized";
+                    }
+
                     // Since the checksums match only log one of the checksum
                     // values
                     bitLogStore.write(bitTask.getAccount(),
                                       bitTask.getStoreId(),
                                       bitTask.getSpaceId(),
+                                      bitTask.getRunId(),
                                       bitTask.getContentId(),
                                       new Date(System.currentTimeMillis()),
                                       storageProviderType,
@@ -199,11 +220,49 @@ abstract class BitCheckHandler {
 
         if (result == BitIntegrityResult.SUCCESS) {
             log.info(message);
+            recordVerified(bitLogStore, bitTask);
         } else {
             log.error(message);
         }
     }
 
+    /**
+     * Records the time of the successful check so that the item is not due to
+     * be checked again until the verification interval has passed. A failure
+     * to record it only means that the item is checked again sooner, so it
+     * does not fail the task.
+     *
+     * @param bitLogStore
+     * @param bitTask
+     */
+    private void recordVerified(BitLogStore bitLogStore, BitIntegrityCheckTask bitTask) {
+        try {
+            bitLogStore.recordVerified(bitTask.getAccount(),
+                                       bitTask.getStoreId(),
+                                       bitTask.getSpaceId(),
+                                       bitTask.getContentId(),
+                                       new Date(System.currentTimeMillis()));
+        } catch (Exception e) {
+            log.warn("failed to record verification of account={} storeId={} space={} contentId={}: {}",
+                     bitTask.getAccount(), bitTask.getStoreId(), bitTask.getSpaceId(), bitTask.getContentId(),
+                     e.getMessage());
+        }
+    }
+
+    /**
+     * @param state
+     * @return the size of the content item, or 0 if it is not known
+     */
+    private long getContentSize(BitCheckExecutionState state) {
+        Map<String, String> properties = state.getContentProperties();
+        String size = properties == null ? null : properties.get(StorageProvider.PROPERTIES_CONTENT_SIZE);
+        try {
+            return size == null ? 0 : Long.parseLong(size);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
     /**
      * @param state
      */
@@ -258,4 +317,12 @@ abstract class BitCheckHandler {
         return task.getAttempts() == TaskWorker.MAX_ATTEMPTS - 1;
     }
 
+    /**
+     * @param message
+     * @return a result deferring the final attempt by the penultimate attempt wait time
+     */
+    protected HandlerResult deferFinalAttempt(String message) {
+        return HandlerResult.retryAfter(BitIntegrityCheckTaskProcessor.getPenultimateWaitMS(), message);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,166 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.bit;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.duracloud.common.queue.TaskQueue;
+import org.duracloud.common.queue.task.Task;
+import org.duracloud.common.util.ChecksumUtil;
+import org.duracloud.common.util.ChecksumUtil.Algorithm;
+import org.duracloud.mill.bitlog.BitLogStore;
+import org.duracloud.mill.db.model.ManifestItem;
+import org.duracloud.mill.manifest.ManifestStore;
+import org.duracloud.mill.workman.TaskExecutionDeferredException;
+import org.duracloud.mill.workman.TaskExecutionFailedException;
+import org.duracloud.mill.workman.TaskProcessorBase;
+import org.duracloud.storage.domain.StorageProviderType;
+import org.duracloud.storage.provider.StorageProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Processes a bit integrity check batch task: the manifest entries of all of
+ * the task's content items are read with a single query and each item is then
+ * checked just as a BitIntegrityCheckTask would be, sharing the task's
+ * attempts.
+ *
+ * If any item could not be checked, the task's content ids are narrowed down
+ * to those items before the failure is reported, so that the retried (or dead
+ * lettered) task holds only those. If any of them asked for its final attempt
+ * to be deferred, the whole task is deferred.
+ *
+ * @author Daniel Bernstein
+ */
+public class BitIntegrityCheckBatchTaskProcessor extends TaskProcessorBase {
+
+    private static final Logger log = LoggerFactory.getLogger(BitIntegrityCheckBatchTaskProcessor.class);
+
+    private Task task;
+    private BitIntegrityCheckBatchTask batchTask;
+    private StorageProvider store;
+    private ManifestStore manifestStore;
+    private JpaBitManifestItemRepo manifestItemRepo;
+    private StorageProviderType storageProviderType;
+    private BitLogStore bitLogStore;
+    private TaskQueue bitErrorQueue;
+    private TaskQueue auditTaskQueue;
+
+    /**
+     * @param task      the task as read from the queue; its content ids are
+     *                  updated if some items could not be checked
+     * @param batchTask the task's content
+     */
+    public BitIntegrityCheckBatchTaskProcessor(Task task,
+                                               BitIntegrityCheckBatchTask batchTask,
+                                               StorageProvider store,
+                                               ManifestStore manifestStore,
+                                               JpaBitManifestItemRepo manifestItemRepo,
+                                               StorageProviderType storageProviderType,
+                                               BitLogStore bitLogStore,
+                                               TaskQueue bitErrorQueue,
+                                               TaskQueue auditTaskQueue) {
+        super(batchTask);
+        this.task = task;
+        this.batchTask = batchTask;
+        this.store = store;
+        this.manifestStore = manifestStore;
+        this.manifestItemRepo = manifestItemRepo;
+        this.storageProviderType = storageProviderType;
+        this.bitLogStore = bitLogStore;
+        this.bitErrorQueue = bitErrorQueue;
+        this.auditTaskQueue = auditTaskQueue;
+    }
+
+    @Override
+    protected void executeImpl() throws TaskExecutionFailedException {
+        List<String> contentIds = batchTask.getContentIds();
+        Map<String, String> manifestChecksums = getManifestChecksums(contentIds);
+
+        List<String> remaining = new LinkedList<>();
+        TaskExecutionFailedException failure = null;
+        long deferDelayMs = -1;
+
+        for (String contentId : contentIds) {
+            try {
+                createProcessor(contentId, manifestChecksums.get(contentId)).execute();
+            } catch (TaskExecutionDeferredException e) {
+                remaining.add(contentId);
+                deferDelayMs = Math.max(deferDelayMs, e.getDelayMs());
+            } catch (TaskExecutionFailedException e) {
+                remaining.add(contentId);
+                failure = failure == null ? e : failure;
+            } catch (Exception e) {
+                remaining.add(contentId);
+                failure = failure == null ?
+                          new TaskExecutionFailedException("failed to check " + contentId + ": " + e.getMessage(), e) :
+                          failure;
+            }
+        }
+
+        if (remaining.isEmpty()) {
+            return;
+        }
+
+        BitIntegrityCheckBatchTask.writeContentIds(task, remaining);
+        String message = remaining.size() + " of " + contentIds.size() +
+                         " bit integrity checks could not be completed";
+        log.warn("{}: account={} storeId={} spaceId={} contentIds={}",
+                 message, batchTask.getAccount(), batchTask.getStoreId(), batchTask.getSpaceId(), remaining);
+
+        if (deferDelayMs >= 0) {
+            throw new TaskExecutionDeferredException(message, deferDelayMs);
+        }
+        throw new TaskExecutionFailedException(message + ": " + failure.getMessage(), failure);
+    }
+
+    private BitIntegrityCheckTaskProcessor createProcessor(String contentId, String manifestChecksum) {
+        BitIntegrityCheckTask bitTask = new BitIntegrityCheckTask();
+        bitTask.readTask(task);
+        bitTask.setContentId(contentId);
+
+        BitIntegrityCheckTaskProcessor processor =
+            new BitIntegrityCheckTaskProcessor(bitTask,
+                                               store,
+                                               manifestStore,
+                                               storageProviderType,
+                                               bitLogStore,
+                                               bitErrorQueue,
+                                               auditTaskQueue,
+                                               new ContentChecksumHelper(storageProviderType,
+                                                                         bitTask,
+                                                                         store,
+                                                                         new ChecksumUtil(Algorithm.MD5)));
+        processor.setManifestChecksum(manifestChecksum);
+        return processor;
+    }
+
+    /**
+     * @return the manifest checksums by content id of those items which are in
+     * the manifest
+     */
+    private Map<String, String> getManifestChecksums(List<String> contentIds)
+        throws TaskExecutionFailedException {
+        Map<String, String> checksums = new HashMap<>();
+        try {
+            for (ManifestItem item : manifestItemRepo.findByAccountAndStoreIdAndSpaceIdAndContentIdIn(
+                batchTask.getAccount(), batchTask.getStoreId(), batchTask.getSpaceId(), contentIds)) {
+                checksums.put(item.getContentId(), item.getContentChecksum());
+            }
+        } catch (Exception e) {
+            throw new BitIntegrityCheckTaskExecutionFailedException(
+                "failed to read manifest items of " + contentIds.size() + " content items in account=" +
+                batchTask.getAccount() + " storeId=" + batchTask.getStoreId() + " spaceId=" +
+                batchTask.getSpaceId() + ": " + e.getMessage(), e);
+        }
+        return checksums;
+    }
+}
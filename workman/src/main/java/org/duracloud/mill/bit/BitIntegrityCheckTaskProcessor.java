@@ -53,6 +53,8 @@ public class BitIntegrityCheckTaskProcessor extends TaskProcessorBase {
     private TaskQueue auditTaskQueue;
     private static List<BitCheckHandler> HANDLERS = new LinkedList<>();
     private ContentChecksumHelper checksumHelper;
+    private boolean manifestChecksumKnown = false;
+    private String manifestChecksum;
 
     private static long penultimateAttemptWaitMS = 5 * 60 * 1000;
 
@@ -91,14 +93,6 @@ public class BitIntegrityCheckTaskProcessor extends TaskProcessorBase {
         HANDLERS.add(new NoRecordOfItemHandler());
     }
 
-    protected static void sleep() {
-        try {
-            Thread.sleep(penultimateAttemptWaitMS);
-        } catch (InterruptedException e) {
-            // Exit sleep on interruption
-        }
-    }
-
     @Override
     protected void executeImpl() throws TaskExecutionFailedException {
 
@@ -134,10 +128,24 @@ public class BitIntegrityCheckTaskProcessor extends TaskProcessorBase {
         }
     }
 
+    /**
+     * Supplies the manifest checksum of the content item (null if the item is
+     * not in the manifest) so that it is not looked up by this processor.
+     *
+     * @param manifestChecksum
+     */
+    void setManifestChecksum(String manifestChecksum) {
+        this.manifestChecksum = manifestChecksum;
+        this.manifestChecksumKnown = true;
+    }
+
     /**
      * @return
      */
     private String getManifestChecksum() {
+        if (manifestChecksumKnown) {
+            return manifestChecksum;
+        }
 
         try {
             ManifestItem item =
@@ -222,7 +230,8 @@ public class BitIntegrityCheckTaskProcessor extends TaskProcessorBase {
                         return new HandlerResult(BitIntegrityResult.FAILURE,
                                                  message);
                     } else if (isPenultimateAttempt(state.getTask())) {
-                        sleep();
+                        return deferFinalAttempt("The storage provider's checksum did not match the others: "
+                                                 + "waiting before making final attempt.");
                     }
 
                 }
@@ -291,7 +300,8 @@ public class BitIntegrityCheckTaskProcessor extends TaskProcessorBase {
                     return new HandlerResult(BitIntegrityResult.FAILURE,
                                              message);
                 } else if (isPenultimateAttempt(state.getTask())) {
-                    sleep();
+                    return deferFinalAttempt("The manifest checksum (" + manifestChecksum + ") did not match "
+                                             + "the others: waiting before making final attempt.");
                 }
             }
 
@@ -371,11 +381,11 @@ public class BitIntegrityCheckTaskProcessor extends TaskProcessorBase {
 
                 if (!isLastAttempt(task)) {
                     if (isPenultimateAttempt(task)) {
-                        log.warn(buildFailureMessage(message + "It is possible that content added audit " +
-                                                     "tasks have not propagated through the mill. Waiting a few " +
-                                                     "minutes before making final attempt.",
-                                                     task, storageProviderType));
-                        sleep();
+                        String deferMessage = message + "It is possible that content added audit " +
+                                              "tasks have not propagated through the mill. Waiting a few " +
+                                              "minutes before making final attempt.";
+                        log.warn(buildFailureMessage(deferMessage, task, storageProviderType));
+                        return deferFinalAttempt(deferMessage);
                     }
                 } else {
                     addErrorTask(state,
@@ -447,8 +457,8 @@ public class BitIntegrityCheckTaskProcessor extends TaskProcessorBase {
     }
 
     /**
-     * Sets the number of milliseconds that the processor should wait before
-     * abandoning the task. Default is 5 minutes.
+     * Sets the number of milliseconds that the final attempt of a task should
+     * be deferred by once the penultimate attempt has failed. Default is 5 minutes.
      *
      * @param milliseconds to wait
      */
@@ -456,4 +466,11 @@ public class BitIntegrityCheckTaskProcessor extends TaskProcessorBase {
         penultimateAttemptWaitMS = milliseconds;
     }
 
+    /**
+     * @return the number of milliseconds to wait before the final attempt.
+     */
+    public static long getPenultimateWaitMS() {
+        return penultimateAttemptWaitMS;
+    }
+
 }
@@ -39,19 +39,22 @@ public class BitIntegrityCheckTaskProcessorFactory
     private TaskQueue bitErrorQueue;
     private TaskQueue auditTaskQueue;
     private ManifestStore manifestStore;
+    private JpaBitManifestItemRepo manifestItemRepo;
 
     public BitIntegrityCheckTaskProcessorFactory(CredentialsRepo repo,
                                                  StorageProviderFactory storageProviderFactory,
                                                  BitLogStore bitLogStore,
                                                  TaskQueue bitErrorQueue,
                                                  TaskQueue auditTaskQueue,
-                                                 ManifestStore manifestStore) {
+                                                 ManifestStore manifestStore,
+                                                 JpaBitManifestItemRepo manifestItemRepo) {
         super(repo);
         this.storageProviderFactory = storageProviderFactory;
         this.bitLogStore = bitLogStore;
         this.bitErrorQueue = bitErrorQueue;
         this.auditTaskQueue = auditTaskQueue;
         this.manifestStore = manifestStore;
+        this.manifestItemRepo = manifestItemRepo;
     }
 
     @Override
@@ -63,6 +66,10 @@ public class BitIntegrityCheckTaskProcessorFactory
     protected TaskProcessor createImpl(Task task)
         throws TaskProcessorCreationFailedException {
 
+        if (BitIntegrityCheckBatchTask.isBatch(task)) {
+            return createBatchProcessor(task);
+        }
+
         BitIntegrityCheckTask bitTask = new BitIntegrityCheckTask();
         bitTask.readTask(task);
         String subdomain = bitTask.getAccount();
@@ -90,4 +97,30 @@ public class BitIntegrityCheckTaskProcessorFactory
                 "for subdomain: " + subdomain, e);
         }
     }
+
+    private TaskProcessor createBatchProcessor(Task task) throws TaskProcessorCreationFailedException {
+        BitIntegrityCheckBatchTask batchTask = new BitIntegrityCheckBatchTask();
+        batchTask.readTask(task);
+        String subdomain = batchTask.getAccount();
+
+        try {
+            StorageProviderCredentials credentials =
+                getCredentialRepo().getStorageProviderCredentials(subdomain, batchTask.getStoreId());
+            return new BitIntegrityCheckBatchTaskProcessor(task,
+                                                           batchTask,
+                                                           storageProviderFactory.create(credentials),
+                                                           manifestStore,
+                                                           manifestItemRepo,
+                                                           credentials.getProviderType(),
+                                                           bitLogStore,
+                                                           bitErrorQueue,
+                                                           auditTaskQueue);
+        } catch (Exception e) {
+            log.error("failed to create TaskProcessor: unable to locate" +
+                      " credentials for subdomain: " + e.getMessage(), e);
+            throw new TaskProcessorCreationFailedException(
+                "failed to create TaskProcessor: unable to locate credentials " +
+                "for subdomain: " + subdomain, e);
+        }
+    }
 }
@@ -9,22 +9,20 @@ package org.duracloud.mill.bit;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileWriter;
+import java.io.InputStream;
 import java.text.DateFormat;
 import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Map;
 
 import org.duracloud.common.retry.Retriable;
 import org.duracloud.common.retry.Retrier;
-import org.duracloud.common.util.ChecksumUtil;
-import org.duracloud.common.util.ChecksumUtil.Algorithm;
 import org.duracloud.common.util.DateUtil;
-import org.duracloud.mill.bitlog.BitIntegrityResult;
 import org.duracloud.mill.bitlog.BitLogItem;
+import org.duracloud.mill.bitlog.BitLogRunSummary;
 import org.duracloud.mill.bitlog.BitLogStore;
 import org.duracloud.mill.common.taskproducer.TaskProducerConfigurationManager;
 import org.duracloud.mill.db.model.BitIntegrityReport;
@@ -37,17 +35,30 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Writes a space's bit log items to a report, which is stored in DuraCloud,
+ * and notifies the administrators of any errors. The report is written in a
+ * single pass (see BitIntegrityReportWriter), so neither its size nor the
+ * number of errors in it is limited by memory. Successes which were summarized
+ * rather than logged are not listed; their summary ends the report instead and
+ * is stored in the report's properties as well.
+ *
  * @author Daniel Bernstein
  * Date: May 7, 2014
  */
 public class BitIntegrityReportTaskProcessor extends TaskProcessorBase {
     private static Logger log = LoggerFactory.getLogger(BitIntegrityReportTaskProcessor.class);
+
+    public static final String SUCCESS_COUNT_PROPERTY = "bit-integrity-success-count";
+    public static final String SUCCESS_BYTES_PROPERTY = "bit-integrity-success-bytes";
+    public static final String SUCCESS_DIGEST_PROPERTY = "bit-integrity-success-digest";
+
     private BitIntegrityCheckReportTask task;
     private BitLogStore bitLogStore;
     private StorageProvider store;
     private TaskProducerConfigurationManager config;
 
     private NotificationManager notificationManager;
+    private boolean gzip = false;
 
     /**
      *
@@ -65,6 +76,13 @@ public class BitIntegrityReportTaskProcessor extends TaskProcessorBase {
         this.notificationManager = notificationManager;
     }
 
+    /**
+     * @param gzip true if reports should be gzipped
+     */
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -75,6 +93,7 @@ public class BitIntegrityReportTaskProcessor extends TaskProcessorBase {
         final String account = task.getAccount();
         final String storeId = task.getStoreId();
         final String spaceId = task.getSpaceId();
+        final long runId = task.getRunId();
 
         // open text file
         final File bitLogDir = new File(config.getWorkDirectoryPath()
@@ -89,10 +108,11 @@ public class BitIntegrityReportTaskProcessor extends TaskProcessorBase {
                                              bitLogDir);
 
         try {
-            List<BitLogItem> errors = writeLog(bitLog, account, storeId, spaceId);
-
-            ChecksumUtil util = new ChecksumUtil(Algorithm.MD5);
-            final String checksum = util.generateChecksum(bitLog);
+            final BitLogRunSummary summary = bitLogStore.getRunSummary(account, storeId, spaceId, runId);
+            BitIntegrityReportWriter reportWriter = writeLog(bitLog, account, storeId, spaceId, runId, summary);
+            final Map<String, String> properties = getSummaryProperties(summary);
+            final String checksum = reportWriter.getChecksum();
+            final String mimetype = gzip ? "application/gzip" : "text/tsv";
             // upload to duracloud
             final String reportSpaceId = "x-duracloud-admin";
             final String reportContentId = "bit-integrity/" + spaceId + "/" + storeId + "/"
@@ -117,19 +137,21 @@ public class BitIntegrityReportTaskProcessor extends TaskProcessorBase {
 
                 @Override
                 public Object retry() throws Exception {
-                    return store.addContent(reportSpaceId,
-                                            reportContentId,
-                                            "text/tsv",
-                                            null,
-                                            bitLog.length(),
-                                            checksum,
-                                            new FileInputStream(bitLog));
+                    try (InputStream is = new FileInputStream(bitLog)) {
+                        return store.addContent(reportSpaceId,
+                                                reportContentId,
+                                                mimetype,
+                                                properties,
+                                                bitLog.length(),
+                                                checksum,
+                                                is);
+                    }
                 }
             });
 
             BitIntegrityReportResult result = BitIntegrityReportResult.SUCCESS;
 
-            if (errors.size() > 0) {
+            if (reportWriter.getErrorCount() > 0) {
                 result = BitIntegrityReportResult.FAILURE;
             }
 
@@ -141,24 +163,28 @@ public class BitIntegrityReportTaskProcessor extends TaskProcessorBase {
                                                               result,
                                                               new Date());
 
-            if (errors.size() > 0) {
+            if (reportWriter.getErrorCount() > 0) {
                 log.warn(
-                    "Bit integirty errors: subdomain: {}, storeId: {}, spaceId: {}: ",
-                    account, storeId, spaceId);
+                    "Bit integirty errors: subdomain: {}, storeId: {}, spaceId: {}: {} of {} items",
+                    account, storeId, spaceId, reportWriter.getErrorCount(), reportWriter.getItemCount());
 
-                notifyManagerOfBitIntegrityErrors(report, errors);
+                notifyManagerOfBitIntegrityErrors(report,
+                                                  reportWriter,
+                                                  summary,
+                                                  reportSpaceId + "/" + reportContentId);
             }
 
             try {
-                // delete all bit integrity log items for space.
-                bitLogStore.delete(account, storeId, spaceId);
-                log.info("Deleted Bit Log Items for account: {}, storeId: {}, spaceId: {}: ",
-                         account, storeId, spaceId);
+                // delete all bit integrity log items of the run.
+                bitLogStore.delete(account, storeId, spaceId, runId);
+                log.info("Deleted Bit Log Items for account: {}, storeId: {}, spaceId: {}, runId: {}",
+                         account, storeId, spaceId, runId);
 
             } catch (Exception ex) {
                 log.warn(MessageFormat.format(
-                    "failed to delete bit log items where account={0}, store_id = {1}, space_id = {2} due to: {3}",
-                    account, storeId, spaceId, ex.getMessage()), ex);
+                    "failed to delete bit log items where account={0}, store_id = {1}, space_id = {2}, " +
+                    "run_id = {3} due to: {4}",
+                    account, storeId, spaceId, String.valueOf(runId), ex.getMessage()), ex);
             }
 
         } catch (Exception ex) {
@@ -175,10 +201,14 @@ public class BitIntegrityReportTaskProcessor extends TaskProcessorBase {
 
     /**
      * @param report
-     * @param errors
+     * @param reportWriter
+     * @param summary        the summary of the run's successes, if any
+     * @param reportLocation the report's space and content id in DuraCloud
      */
     private void notifyManagerOfBitIntegrityErrors(BitIntegrityReport report,
-                                                   List<BitLogItem> errors) {
+                                                   BitIntegrityReportWriter reportWriter,
+                                                   BitLogRunSummary summary,
+                                                   String reportLocation) {
 
         String account = report.getAccount();
         String storeId = report.getStoreId();
@@ -187,53 +217,79 @@ public class BitIntegrityReportTaskProcessor extends TaskProcessorBase {
         String host = account + ".duracloud.org";
 
         String subject = "Bit Integrity Report #" + report.getId() + ": errors (count = " +
-                         errors.size() + ")  detected on " + host + ", providerId=" + storeId +
+                         reportWriter.getErrorCount() + ")  detected on " + host + ", providerId=" + storeId +
                          ", spaceId=" + spaceId;
 
         StringBuilder body = new StringBuilder();
 
         body.append(BitIntegrityHelper.getHeader());
-        for (BitLogItem error : errors) {
+        for (BitLogItem error : reportWriter.getErrorSample()) {
             body.append(BitIntegrityHelper.formatLogLine(error) + "\n");
         }
 
+        long omitted = reportWriter.getErrorCount() - reportWriter.getErrorSample().size();
+        if (omitted > 0) {
+            body.append("\n" + omitted + " more errors are listed in the report: " + reportLocation + "\n");
+        }
+
+        if (summary != null && summary.getSuccessCount() > 0) {
+            body.append("\n" + summary.getSuccessCount() + " content items (" + summary.getSuccessBytes() +
+                        " bytes) passed and are summarized at the end of the report.\n");
+        }
+
         this.notificationManager.sendEmail(subject, body.toString());
     }
 
-    private List<BitLogItem> writeLog(File bitLog,
-                                      String account,
-                                      String storeId,
-                                      String spaceId) throws Exception {
-        List<BitLogItem> errors = new LinkedList<>();
-        try (FileWriter writer = new FileWriter(bitLog)) {
-            // for each bit integrity item for space write to file
-            writer.write(BitIntegrityHelper.getHeader());
+    /**
+     * The summary of the successes which were summarized rather than logged is
+     * kept in the report's properties as well as at its end, so that it can be
+     * read without reading the report.
+     *
+     * @param summary
+     * @return the report's properties, or null if there are none
+     */
+    private Map<String, String> getSummaryProperties(BitLogRunSummary summary) {
+        if (summary == null || summary.getSuccessCount() == 0) {
+            return null;
+        }
+
+        log.info("{} successful bit integrity checks ({} bytes, digest {}) summarized for account: {}, " +
+                 "storeId: {}, spaceId: {}", summary.getSuccessCount(), summary.getSuccessBytes(),
+                 summary.getSuccessDigest(), task.getAccount(), task.getStoreId(), task.getSpaceId());
+
+        Map<String, String> properties = new HashMap<>();
+        properties.put(SUCCESS_COUNT_PROPERTY, String.valueOf(summary.getSuccessCount()));
+        properties.put(SUCCESS_BYTES_PROPERTY, String.valueOf(summary.getSuccessBytes()));
+        properties.put(SUCCESS_DIGEST_PROPERTY, Long.toHexString(summary.getSuccessDigest()));
+        return properties;
+    }
+
+    private BitIntegrityReportWriter writeLog(File bitLog,
+                                              String account,
+                                              String storeId,
+                                              String spaceId,
+                                              long runId,
+                                              BitLogRunSummary summary) throws Exception {
+        BitIntegrityReportWriter writer =
+            new BitIntegrityReportWriter(bitLog, gzip, BitIntegrityReportWriter.DEFAULT_MAX_ERROR_SAMPLE);
+        try {
+            // for each bit integrity item of the run write to file
             Iterator<BitLogItem> it = this.bitLogStore.getBitLogItems(account,
                                                                       storeId,
-                                                                      spaceId);
+                                                                      spaceId,
+                                                                      runId);
             while (it.hasNext()) {
-                BitLogItem item = it.next();
-                if (isError(item)) {
-                    errors.add(item);
-                }
-                writer.write(BitIntegrityHelper.formatLogLine(item));
-                if (it.hasNext()) {
-                    writer.write("\n");
-                }
+                writer.write(it.next());
             }
-        }
 
-        return errors;
-    }
+            if (summary != null && summary.getSuccessCount() > 0) {
+                writer.writeSummary(summary);
+            }
+        } finally {
+            writer.close();
+        }
 
-    /**
-     * @param item
-     * @return
-     */
-    private boolean isError(BitLogItem item) {
-        BitIntegrityResult result = item.getResult();
-        return (result.equals(BitIntegrityResult.ERROR) ||
-                result.equals(BitIntegrityResult.FAILURE));
+        return writer;
     }
 
     private File createNewLogFile(String account,
@@ -244,7 +300,7 @@ public class BitIntegrityReportTaskProcessor extends TaskProcessorBase {
 
         File bitLog = new File(bitLogDir, "bit-integrity_" + account
                                           + "_" + storeId + "_" + spaceId + "_"
-                                          + fileDateFormat.format(new Date()) + ".tsv");
+                                          + fileDateFormat.format(new Date()) + (gzip ? ".tsv.gz" : ".tsv"));
         return bitLog;
     }
 
@@ -36,17 +36,20 @@ public class BitIntegrityReportTaskProcessorFactory
     private StorageProviderFactory storageProviderFactory;
     private TaskProducerConfigurationManager workmanConfigurationManager;
     private NotificationManager notificationManager;
+    private boolean gzipReports;
 
     public BitIntegrityReportTaskProcessorFactory(CredentialsRepo repo,
                                                   BitLogStore bitLogStore,
                                                   StorageProviderFactory storageProviderFactory,
                                                   TaskProducerConfigurationManager workmanConfigurationManager,
-                                                  NotificationManager notificationManager) {
+                                                  NotificationManager notificationManager,
+                                                  boolean gzipReports) {
         super(repo);
         this.bitLogStore = bitLogStore;
         this.storageProviderFactory = storageProviderFactory;
         this.workmanConfigurationManager = workmanConfigurationManager;
         this.notificationManager = notificationManager;
+        this.gzipReports = gzipReports;
     }
 
     @Override
@@ -68,11 +71,14 @@ public class BitIntegrityReportTaskProcessorFactory
                 if (creds.isPrimary()) {
                     StorageProvider store = storageProviderFactory.create(creds);
 
-                    return new BitIntegrityReportTaskProcessor(bitTask,
-                                                               bitLogStore,
-                                                               store,
-                                                               workmanConfigurationManager,
-                                                               notificationManager);
+                    BitIntegrityReportTaskProcessor processor =
+                        new BitIntegrityReportTaskProcessor(bitTask,
+                                                            bitLogStore,
+                                                            store,
+                                                            workmanConfigurationManager,
+                                                            notificationManager);
+                    processor.setGzip(gzipReports);
+                    return processor;
 
                 }
             }
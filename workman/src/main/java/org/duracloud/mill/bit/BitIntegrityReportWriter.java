@@ -0,0 +1,179 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.bit;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.duracloud.common.util.ChecksumUtil;
+import org.duracloud.mill.bitlog.BitIntegrityResult;
+import org.duracloud.mill.bitlog.BitLogItem;
+import org.duracloud.mill.bitlog.BitLogRunSummary;
+
+/**
+ * Writes a bit integrity report file in a single pass: the output is
+ * buffered, optionally gzipped, and its MD5 checksum (of the bytes in the
+ * file) is computed as it is written. Rather than every error, only the first
+ * few errors are kept (for the notification) along with the number of items
+ * and errors written. The summary of the successes which were not logged as
+ * items, if any, ends the report.
+ *
+ * @author Daniel Bernstein
+ */
+class BitIntegrityReportWriter implements Closeable {
+
+    public static final int DEFAULT_MAX_ERROR_SAMPLE = 100;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private MessageDigest digest;
+    private Writer writer;
+    private int maxErrorSample;
+
+    private List<BitLogItem> errorSample = new ArrayList<>();
+    private long itemCount = 0;
+    private long errorCount = 0;
+    private boolean lineWritten = false;
+    private String checksum;
+
+    /**
+     * Creates the file and writes the report header to it.
+     *
+     * @param file           the report file
+     * @param gzip           true if the report should be gzipped
+     * @param maxErrorSample the number of errors to keep
+     * @throws IOException
+     */
+    public BitIntegrityReportWriter(File file, boolean gzip, int maxErrorSample) throws IOException {
+        this.maxErrorSample = maxErrorSample;
+        try {
+            this.digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        OutputStream out = new DigestOutputStream(new FileOutputStream(file), digest);
+        try {
+            if (gzip) {
+                out = new GZIPOutputStream(out, BUFFER_SIZE);
+            }
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+            this.writer.write(BitIntegrityHelper.getHeader());
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a line for the item.
+     *
+     * @param item
+     * @throws IOException
+     */
+    public void write(BitLogItem item) throws IOException {
+        if (isError(item)) {
+            errorCount++;
+            if (errorSample.size() < maxErrorSample) {
+                errorSample.add(item);
+            }
+        }
+
+        writeLine(BitIntegrityHelper.formatLogLine(item));
+        itemCount++;
+    }
+
+    /**
+     * Writes the summary of the successes which were summarized rather than
+     * logged as items: their number, total size in bytes and digest, a line
+     * each, marked as comments by a leading "#". Should follow the items.
+     *
+     * @param summary
+     * @throws IOException
+     */
+    public void writeSummary(BitLogRunSummary summary) throws IOException {
+        writeSummaryLine(BitIntegrityReportTaskProcessor.SUCCESS_COUNT_PROPERTY,
+                         String.valueOf(summary.getSuccessCount()));
+        writeSummaryLine(BitIntegrityReportTaskProcessor.SUCCESS_BYTES_PROPERTY,
+                         String.valueOf(summary.getSuccessBytes()));
+        writeSummaryLine(BitIntegrityReportTaskProcessor.SUCCESS_DIGEST_PROPERTY,
+                         Long.toHexString(summary.getSuccessDigest()));
+    }
+
+    private void writeSummaryLine(String name, String value) throws IOException {
+        writeLine("# " + name + "\t" + value);
+    }
+
+    private void writeLine(String line) throws IOException {
+        if (lineWritten) {
+            writer.write("\n");
+        }
+        writer.write(line);
+        lineWritten = true;
+    }
+
+    /**
+     * Completes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (checksum == null) {
+            writer.close();
+            checksum = ChecksumUtil.checksumBytesToString(digest.digest());
+        }
+    }
+
+    /**
+     * @return the MD5 checksum of the file; available once it is closed
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * @return the number of items written
+     */
+    public long getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * @return the number of errors and failures written
+     */
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * @return the first errors and failures written, at most the maximum
+     * sample size of them
+     */
+    public List<BitLogItem> getErrorSample() {
+        return Collections.unmodifiableList(errorSample);
+    }
+
+    private boolean isError(BitLogItem item) {
+        BitIntegrityResult result = item.getResult();
+        return (result.equals(BitIntegrityResult.ERROR) ||
+                result.equals(BitIntegrityResult.FAILURE));
+    }
+}
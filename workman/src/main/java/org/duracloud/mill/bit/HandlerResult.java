@@ -17,10 +17,26 @@ public class HandlerResult {
     private String message;
     private BitIntegrityResult result;
     private boolean handled = false;
+    private long retryDelayMs = -1;
 
     public HandlerResult() {
     }
 
+    /**
+     * Creates a result indicating that the task could not be resolved on this
+     * attempt and should be retried once the specified delay has elapsed.
+     *
+     * @param retryDelayMs
+     * @param message
+     * @return
+     */
+    public static HandlerResult retryAfter(long retryDelayMs, String message) {
+        HandlerResult result = new HandlerResult();
+        result.retryDelayMs = retryDelayMs;
+        result.message = message;
+        return result;
+    }
+
     /**
      * @param result
      * @param message
@@ -63,4 +79,18 @@ public class HandlerResult {
     public boolean isHandled() {
         return handled;
     }
+
+    /**
+     * @return true if the task should be retried after a delay
+     */
+    public boolean isRetryDeferred() {
+        return retryDelayMs >= 0;
+    }
+
+    /**
+     * @return the number of milliseconds to wait before retrying
+     */
+    public long getRetryDelayMs() {
+        return retryDelayMs;
+    }
 }
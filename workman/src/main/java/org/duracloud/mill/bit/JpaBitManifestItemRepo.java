@@ -0,0 +1,92 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.bit;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.duracloud.mill.db.model.ManifestItem;
+import org.duracloud.mill.db.repo.MillJpaRepoConfig;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Looks up manifest items for bit integrity checks: many content items at once
+ * for batched checks and whole spaces in content id order for space
+ * comparisons, whose changes to the items' missing from storage provider flags
+ * are applied in bulk.
+ *
+ * @author Daniel Bernstein
+ */
+@Repository(value = "bitManifestItemRepo")
+public interface JpaBitManifestItemRepo extends JpaRepository<ManifestItem, Long> {
+
+    /**
+     * @param account
+     * @param storeId
+     * @param spaceId
+     * @param contentIds
+     * @return the manifest items (including those flagged as deleted) of those
+     * content items which are in the manifest
+     */
+    public List<ManifestItem> findByAccountAndStoreIdAndSpaceIdAndContentIdIn(String account,
+                                                                               String storeId,
+                                                                               String spaceId,
+                                                                               Collection<String> contentIds);
+
+    /**
+     * Reads a page of a space's manifest in content id order, starting after
+     * the given content id. The query walks the idx_content_order index added
+     * by mill-schema-upgrade-manifest-content-order.sql, which must have been
+     * applied: each page is then read from the index in order rather than by
+     * sorting the rest of the space. Content ids are compared by their UTF-8
+     * bytes, the order of both the content_id column's utf8_bin collation and
+     * the storage provider listings.
+     *
+     * @param account
+     * @param storeId
+     * @param spaceId
+     * @param contentId the last content id of the previous page ("" for the
+     *                  first page)
+     * @param pageSize
+     * @return the next non-deleted manifest items
+     */
+    @Query(value = "select * from manifest_item where " +
+                   "space_key = unhex(md5(concat_ws('/', ?1, ?2, ?3))) and deleted = 0 " +
+                   "and content_key > cast(?4 as binary) order by content_key limit ?5",
+           nativeQuery = true)
+    public List<ManifestItem> findNextInContentIdOrder(String account,
+                                                       String storeId,
+                                                       String spaceId,
+                                                       String contentId,
+                                                       int pageSize);
+
+    /**
+     * Sets the missing from storage provider flag of many content items with a
+     * single update statement.
+     *
+     * @param account
+     * @param storeId
+     * @param spaceId
+     * @param contentIds
+     * @param flag
+     * @return the number of manifest items updated
+     */
+    @Modifying
+    @Transactional(MillJpaRepoConfig.TRANSACTION_MANAGER_BEAN)
+    @Query("update ManifestItem m set m.missingFromStorageProvider = ?5 where m.account = ?1 and m.storeId = ?2 " +
+           "and m.spaceId = ?3 and m.contentId in ?4")
+    public int updateMissingFromStorageProviderFlag(String account,
+                                                    String storeId,
+                                                    String spaceId,
+                                                    Collection<String> contentIds,
+                                                    boolean flag);
+}
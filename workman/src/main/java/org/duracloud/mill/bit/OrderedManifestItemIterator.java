@@ -0,0 +1,90 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.bit;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.duracloud.mill.db.model.ManifestItem;
+
+/**
+ * Iterates through the non-deleted manifest items of a space in content id
+ * order, reading one page at a time so that only a page of items is held in
+ * memory. Each page is read from the idx_content_order index (see
+ * JpaBitManifestItemRepo.findNextInContentIdOrder()), without which every page
+ * would sort the remainder of the space.
+ *
+ * @author Daniel Bernstein
+ */
+class OrderedManifestItemIterator implements Iterator<ManifestItem> {
+
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+
+    private JpaBitManifestItemRepo repo;
+    private String account;
+    private String storeId;
+    private String spaceId;
+    private int pageSize;
+
+    private List<ManifestItem> page;
+    private int index = 0;
+
+    public OrderedManifestItemIterator(JpaBitManifestItemRepo repo,
+                                       String account,
+                                       String storeId,
+                                       String spaceId) {
+        this(repo, account, storeId, spaceId, DEFAULT_PAGE_SIZE);
+    }
+
+    public OrderedManifestItemIterator(JpaBitManifestItemRepo repo,
+                                       String account,
+                                       String storeId,
+                                       String spaceId,
+                                       int pageSize) {
+        this.repo = repo;
+        this.account = account;
+        this.storeId = storeId;
+        this.spaceId = spaceId;
+        this.pageSize = pageSize;
+        this.page = readPage("");
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (index < page.size()) {
+            return true;
+        }
+
+        // a short page is the last one
+        if (page.size() < pageSize) {
+            return false;
+        }
+
+        page = readPage(page.get(page.size() - 1).getContentId());
+        index = 0;
+        return !page.isEmpty();
+    }
+
+    @Override
+    public ManifestItem next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.get(index++);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private List<ManifestItem> readPage(String afterContentId) {
+        return repo.findNextInContentIdOrder(account, storeId, spaceId, afterContentId, pageSize);
+    }
+}
@@ -7,19 +7,16 @@
  */
 package org.duracloud.mill.bit;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 
-import org.duracloud.common.collection.WriteOnlyStringSet;
 import org.duracloud.mill.bitlog.BitIntegrityResult;
+import org.duracloud.mill.bitlog.BitLogItem;
 import org.duracloud.mill.bitlog.BitLogStore;
+import org.duracloud.mill.bitlog.jpa.JpaBitLogItem;
 import org.duracloud.mill.db.model.ManifestItem;
-import org.duracloud.mill.manifest.ManifestStore;
 import org.duracloud.mill.workman.TaskExecutionFailedException;
 import org.duracloud.mill.workman.TaskProcessor;
 import org.duracloud.storage.domain.StorageProviderType;
@@ -31,6 +28,20 @@ import org.slf4j.LoggerFactory;
  * This task processor loops through all the items in the manifest and makes sure that
  * they exist in storage provider.
  *
+ * The manifest is read in content id order and merged with the storage
+ * provider's listing of the space, which is in content id order as well, so
+ * that a single pass over both is needed and only the current item of each is
+ * held in memory, however large the space. Both are ordered by the UTF-8 bytes
+ * of the content ids, so the merge compares content ids the same way rather
+ * than by their UTF-16 chars, which order differently beyond the basic
+ * multilingual plane. A manifest item which the merge does not find in the
+ * listing is missing from the storage provider.
+ *
+ * Changes to the manifest items' missing from storage provider flags and the
+ * bit log errors are collected and applied in batches, each with a single
+ * statement, so that a space which appears to be missing entirely (say, due to
+ * a storage provider outage) does not cost a transaction per item.
+ *
  * @author Daniel Bernstein
  * Date: Oct 21, 2014
  */
@@ -38,31 +49,50 @@ public class SpaceComparisonTaskProcessor implements TaskProcessor {
 
     private static Logger log = LoggerFactory.getLogger(SpaceComparisonTaskProcessor.class);
 
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
     private BitIntegrityCheckReportTask bitTask;
     private BitLogStore bitLogStore;
-    private ManifestStore manifestStore;
     private StorageProvider store;
     private StorageProviderType storageProviderType;
+    private JpaBitManifestItemRepo manifestItemRepo;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    private List<String> foundIds = new ArrayList<>();
+    private List<String> missingIds = new ArrayList<>();
+    private List<BitLogItem> errors = new ArrayList<>();
+    private long compared = 0;
+    private long flagsCleared = 0;
+    private long flagsSet = 0;
+    private long errorsLogged = 0;
 
     /**
      * @param bitTask
      * @param bitLogStore
-     * @param manifestStore
+     * @param manifestItemRepo
      * @param store
      * @param storageProviderType
      */
     public SpaceComparisonTaskProcessor(BitIntegrityCheckReportTask bitTask,
                                         BitLogStore bitLogStore,
-                                        ManifestStore manifestStore,
+                                        JpaBitManifestItemRepo manifestItemRepo,
                                         StorageProvider store,
                                         StorageProviderType storageProviderType) {
         this.bitTask = bitTask;
         this.bitLogStore = bitLogStore;
-        this.manifestStore = manifestStore;
+        this.manifestItemRepo = manifestItemRepo;
         this.storageProviderType = storageProviderType;
         this.store = store;
     }
 
+    /**
+     * @param batchSize the number of flag changes or bit log errors applied
+     *                  with a single statement
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -78,92 +108,145 @@ public class SpaceComparisonTaskProcessor implements TaskProcessor {
                  storeId,
                  spaceId);
 
-        File spaceListing = null;
         try {
+            Iterator<String> listing = store.getSpaceContents(spaceId, null);
+            String listedId = listing.hasNext() ? listing.next() : null;
+            long unmatched = 0;
 
-            //write out space listing to file, counting all the items in the process.
-            spaceListing = File.createTempFile("spaces", ".txt");
-            int count = 0;
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(spaceListing))) {
-                Iterator<String> it = store.getSpaceContents(spaceId, null);
-                while (it.hasNext()) {
-                    if (count > 0) {
-                        writer.write("\n");
-                    }
-                    writer.write(it.next());
-                    count++;
-                }
-                writer.close();
-            }
-
-            //load the set of content ids
-            WriteOnlyStringSet set = new WriteOnlyStringSet(count);
-            try (BufferedReader reader = new BufferedReader(new FileReader(spaceListing))) {
-                String contentId = null;
-                while ((contentId = reader.readLine()) != null) {
-                    set.add(contentId);
-                }
-            }
-
-            // iterate current non-deleted manifest items
+            // iterate current non-deleted manifest items in content id order
             Iterator<ManifestItem> manifestIterator =
-                this.manifestStore.getItems(account, storeId, spaceId, false);
+                new OrderedManifestItemIterator(manifestItemRepo, account, storeId, spaceId);
 
             while (manifestIterator.hasNext()) {
-                // if not in storage provider
                 ManifestItem item = manifestIterator.next();
-
                 String contentId = item.getContentId();
-                if (set.contains(contentId)) {
-                    // reset missingInStorageProvider flag to false if true.
-                    if (item.isMissingFromStorageProvider()) {
-                        manifestStore.updateMissingFromStorageProviderFlag(account,
-                                                                           storeId,
-                                                                           spaceId,
-                                                                           contentId,
-                                                                           false);
-                    }
-                } else {
-                    log.debug("no content found in storage provider for manifest item: {}", item);
-                    if (!item.isDeleted()) {
-                        // is missingInStorageProvider flag true?
-                        if (item.isMissingFromStorageProvider()) {
-                            this.bitLogStore
-                                .write(account,
-                                       storeId,
-                                       spaceId,
-                                       contentId,
-                                       new Date(),
-                                       storageProviderType,
-                                       BitIntegrityResult.ERROR,
-                                       null,
-                                       null,
-                                       item.getContentChecksum(),
-                                       "Content item is in the manifest "
-                                       + "but not in the storage provider in "
-                                       + "the course of the last two bit integrity runs.");
-
-                        } else {
-                            manifestStore
-                                .updateMissingFromStorageProviderFlag(account,
-                                                                      storeId,
-                                                                      spaceId,
-                                                                      contentId,
-                                                                      true);
-                        }
-                    }
 
+                // skip listed items which precede this one: they are not in the
+                // manifest, which is not this processor's concern.
+                while (listedId != null && compareContentIds(listedId, contentId) < 0) {
+                    listedId = listing.hasNext() ? listing.next() : null;
                 }
+
+                boolean inStorageProvider = contentId.equals(listedId);
+                if (inStorageProvider) {
+                    listedId = listing.hasNext() ? listing.next() : null;
+                } else {
+                    unmatched++;
+                }
+
+                compared++;
+                compare(account, storeId, spaceId, contentId, item, inStorageProvider);
             }
+            flush(account, storeId, spaceId, true);
 
+            log.info("completed space comparison where account={} storeId={} spaceId={}: " +
+                     "{} manifest items compared, {} were not in the listing",
+                     account, storeId, spaceId, compared, unmatched);
         } catch (Exception ex) {
             log.error(ex.getMessage(), ex);
             throw new TaskExecutionFailedException("failed to complete task: "
                                                    + ex.getMessage(), ex);
-        } finally {
-            if (spaceListing != null && spaceListing.exists()) {
-                spaceListing.delete();
+        }
+    }
+
+    /**
+     * Compares content ids by their UTF-8 bytes, which is the order in which
+     * both the manifest and the storage provider list them. Comparing code
+     * points gives the same order without encoding either id.
+     */
+    static int compareContentIds(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int cpA = a.codePointAt(i);
+            int cpB = b.codePointAt(j);
+            if (cpA != cpB) {
+                return cpA < cpB ? -1 : 1;
+            }
+            i += Character.charCount(cpA);
+            j += Character.charCount(cpB);
+        }
+        return (a.length() - i) - (b.length() - j);
+    }
+
+    private void compare(String account,
+                         String storeId,
+                         String spaceId,
+                         String contentId,
+                         ManifestItem item,
+                         boolean inStorageProvider) throws Exception {
+        if (inStorageProvider) {
+            // reset missingInStorageProvider flag to false if true.
+            if (item.isMissingFromStorageProvider()) {
+                foundIds.add(contentId);
             }
+        } else {
+            log.debug("no content found in storage provider for manifest item: {}", item);
+            if (!item.isDeleted()) {
+                // is missingInStorageProvider flag true?
+                if (item.isMissingFromStorageProvider()) {
+                    errors.add(createError(account, storeId, spaceId, contentId, item.getContentChecksum()));
+                } else {
+                    missingIds.add(contentId);
+                }
+            }
+        }
+        flush(account, storeId, spaceId, false);
+    }
+
+    private BitLogItem createError(String account,
+                                   String storeId,
+                                   String spaceId,
+                                   String contentId,
+                                   String manifestChecksum) {
+        JpaBitLogItem error = new JpaBitLogItem();
+        error.setAccount(account);
+        error.setStoreId(storeId);
+        error.setSpaceId(spaceId);
+        error.setRunId(bitTask.getRunId());
+        error.setContentId(contentId);
+        error.setModified(new Date());
+        error.setStorageProviderType(storageProviderType);
+        error.setResult(BitIntegrityResult.ERROR);
+        error.setManifestChecksum(manifestChecksum);
+        error.setDetails("Content item is in the manifest "
+                         + "but not in the storage provider in "
+                         + "the course of the last two bit integrity runs.");
+        return error;
+    }
+
+    /**
+     * Applies the collected changes of each kind of which there are a full
+     * batch, or all of them if the comparison is complete.
+     */
+    private void flush(String account, String storeId, String spaceId, boolean complete) throws Exception {
+        boolean flushed = false;
+
+        if (!foundIds.isEmpty() && (complete || foundIds.size() >= batchSize)) {
+            manifestItemRepo.updateMissingFromStorageProviderFlag(account, storeId, spaceId, foundIds, false);
+            flagsCleared += foundIds.size();
+            foundIds = new ArrayList<>();
+            flushed = true;
+        }
+
+        if (!missingIds.isEmpty() && (complete || missingIds.size() >= batchSize)) {
+            manifestItemRepo.updateMissingFromStorageProviderFlag(account, storeId, spaceId, missingIds, true);
+            flagsSet += missingIds.size();
+            missingIds = new ArrayList<>();
+            flushed = true;
+        }
+
+        if (!errors.isEmpty() && (complete || errors.size() >= batchSize)) {
+            bitLogStore.writeAll(errors);
+            errorsLogged += errors.size();
+            errors = new ArrayList<>();
+            flushed = true;
+        }
+
+        if (flushed) {
+            log.info("space comparison progress where account={} storeId={} spaceId={}: {} manifest items " +
+                     "compared, {} missing flags cleared, {} missing flags set, {} errors logged",
+                     account, storeId, spaceId, compared, flagsCleared, flagsSet, errorsLogged);
         }
     }
 }
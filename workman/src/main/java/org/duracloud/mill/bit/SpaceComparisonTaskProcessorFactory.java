@@ -13,7 +13,6 @@ import org.duracloud.mill.bitlog.BitLogStore;
 import org.duracloud.mill.common.storageprovider.StorageProviderFactory;
 import org.duracloud.mill.credentials.CredentialsRepo;
 import org.duracloud.mill.credentials.StorageProviderCredentials;
-import org.duracloud.mill.manifest.ManifestStore;
 import org.duracloud.mill.workman.TaskProcessor;
 import org.duracloud.mill.workman.TaskProcessorCreationFailedException;
 import org.duracloud.mill.workman.TaskProcessorFactoryBase;
@@ -29,8 +28,9 @@ import org.slf4j.LoggerFactory;
 public class SpaceComparisonTaskProcessorFactory extends TaskProcessorFactoryBase {
 
     private BitLogStore bitLogStore;
-    private ManifestStore manifestStore;
+    private JpaBitManifestItemRepo manifestItemRepo;
     private StorageProviderFactory storageProviderFactory;
+    private int batchSize;
 
     private static final Logger log = LoggerFactory.getLogger(SpaceComparisonTaskProcessorFactory.class);
 
@@ -38,11 +38,13 @@ public class SpaceComparisonTaskProcessorFactory extends TaskProcessorFactoryBas
                                                StorageProviderFactory storageProviderFactory,
                                                BitLogStore bitLogStore,
                                                TaskQueue bitErrorQueue,
-                                               ManifestStore manifestStore) {
+                                               JpaBitManifestItemRepo manifestItemRepo,
+                                               int batchSize) {
         super(repo);
         this.bitLogStore = bitLogStore;
-        this.manifestStore = manifestStore;
+        this.manifestItemRepo = manifestItemRepo;
         this.storageProviderFactory = storageProviderFactory;
+        this.batchSize = batchSize;
     }
 
     /*
@@ -64,11 +66,13 @@ public class SpaceComparisonTaskProcessorFactory extends TaskProcessorFactoryBas
             StorageProvider store = storageProviderFactory.create(credentials);
             StorageProviderType storageProviderType = credentials.getProviderType();
 
-            return new SpaceComparisonTaskProcessor(bitTask,
-                                                    bitLogStore,
-                                                    manifestStore,
-                                                    store,
-                                                    storageProviderType);
+            SpaceComparisonTaskProcessor processor = new SpaceComparisonTaskProcessor(bitTask,
+                                                                                      bitLogStore,
+                                                                                      manifestItemRepo,
+                                                                                      store,
+                                                                                      storageProviderType);
+            processor.setBatchSize(batchSize);
+            return processor;
         } catch (Exception e) {
             log.error("failed to create TaskProcessor: " + e.getMessage(), e);
             throw new TaskProcessorCreationFailedException("failed to create TaskProcessor: ", e);
@@ -12,23 +12,28 @@ import static org.duracloud.common.util.ChecksumUtil.Algorithm.MD5;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.text.MessageFormat;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
 import javax.ws.rs.core.HttpHeaders;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.duracloud.common.retry.ExceptionHandler;
 import org.duracloud.common.retry.Retriable;
 import org.duracloud.common.retry.Retrier;
 import org.duracloud.common.util.ChecksumUtil;
+import org.duracloud.mill.common.storageprovider.SpaceExistenceCache;
 import org.duracloud.mill.db.model.ManifestItem;
 import org.duracloud.mill.manifest.ManifestStore;
 import org.duracloud.mill.task.DuplicationTask;
 import org.duracloud.mill.workman.TaskExecutionFailedException;
 import org.duracloud.mill.workman.TaskProcessorBase;
+import org.duracloud.mill.workman.TaskWorker;
 import org.duracloud.storage.error.NotFoundException;
 import org.duracloud.storage.error.StorageStateException;
 import org.duracloud.storage.provider.StorageProvider;
@@ -42,11 +47,35 @@ import org.slf4j.LoggerFactory;
  */
 public class DuplicationTaskProcessor extends TaskProcessorBase {
 
+    /**
+     * Content items no larger than this are duplicated from memory rather
+     * than from a temp file.
+     */
+    public static final long DEFAULT_MAX_IN_MEMORY_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * The most memory held by the content items being duplicated from memory
+     * by all of the workers together.
+     */
+    public static final long DEFAULT_MAX_IN_MEMORY_TOTAL = 256 * 1024 * 1024;
+
+    /**
+     * Content items at least this large are retrieved from the source in
+     * byte ranges which are downloaded in parallel.
+     */
+    public static final long DEFAULT_PARALLEL_DOWNLOAD_THRESHOLD = 1024 * 1024 * 1024;
+
     private DuplicationTask dupTask;
     private StorageProvider sourceStore;
     private StorageProvider destStore;
     private File workDir;
     private ManifestStore manifestStore;
+    private long maxInMemorySize;
+    private long parallelDownloadThreshold;
+    private ServerSideCopier serverSideCopier;
+    private ExecutorService metadataExecutor;
+    private SpaceExistenceCache spaceCache;
+    private Semaphore memoryBudget;
 
     private final Logger log =
         LoggerFactory.getLogger(DuplicationTaskProcessor.class);
@@ -56,19 +85,62 @@ public class DuplicationTaskProcessor extends TaskProcessorBase {
                                     StorageProvider destStore,
                                     File workDir,
                                     ManifestStore manifestStore) {
+        this(dupTask, sourceStore, destStore, workDir, manifestStore,
+             DEFAULT_MAX_IN_MEMORY_SIZE, DEFAULT_PARALLEL_DOWNLOAD_THRESHOLD, null, null,
+             new SpaceExistenceCache());
+    }
+
+    /**
+     * @param maxInMemorySize           the largest item to duplicate from memory
+     * @param parallelDownloadThreshold the smallest item to retrieve in parallel
+     *                                  byte ranges, 0 or less to disable
+     * @param serverSideCopier          copies content directly between the
+     *                                  stores, null if they do not support it
+     * @param metadataExecutor          runs destination metadata calls while
+     *                                  the source is being checked, null to
+     *                                  make the calls one after another
+     * @param spaceCache                destination spaces known to exist
+     */
+    public DuplicationTaskProcessor(DuplicationTask dupTask,
+                                    StorageProvider sourceStore,
+                                    StorageProvider destStore,
+                                    File workDir,
+                                    ManifestStore manifestStore,
+                                    long maxInMemorySize,
+                                    long parallelDownloadThreshold,
+                                    ServerSideCopier serverSideCopier,
+                                    ExecutorService metadataExecutor,
+                                    SpaceExistenceCache spaceCache) {
         super(dupTask);
         this.dupTask = dupTask;
         this.sourceStore = sourceStore;
         this.destStore = destStore;
         this.workDir = workDir;
         this.manifestStore = manifestStore;
+        this.maxInMemorySize = maxInMemorySize;
+        this.parallelDownloadThreshold = parallelDownloadThreshold;
+        this.serverSideCopier = serverSideCopier;
+        this.metadataExecutor = metadataExecutor;
+        this.spaceCache = spaceCache;
+    }
+
+    /**
+     * Sets the budget of bytes shared by the processors duplicating content
+     * from memory. Content which does not fit in what remains of it is
+     * duplicated from the work directory. Without one, each processor may
+     * hold up to the max in memory size.
+     *
+     * @param memoryBudget
+     */
+    public void setMemoryBudget(Semaphore memoryBudget) {
+        this.memoryBudget = memoryBudget;
     }
 
     @Override
     protected void executeImpl() throws TaskExecutionFailedException {
         // Read task
-        String spaceId = dupTask.getSpaceId();
-        String contentId = dupTask.getContentId();
+        final String spaceId = dupTask.getSpaceId();
+        final String contentId = dupTask.getContentId();
 
         // If space ID is missing, fail
         if (null == spaceId || spaceId.equals("")) {
@@ -92,18 +164,32 @@ public class DuplicationTaskProcessor extends TaskProcessorBase {
             return; // With no content ID, nothing else can be done.
         }
 
-        // Check destination space
-        ensureDestSpaceExists(spaceId);
+        // Check destination space and retrieve properties for content items
+        // from both providers. These calls are independent so the destination
+        // calls are made concurrently with the source call.
+        Future<Void> destSpaceCheck = submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                ensureDestSpaceExists(spaceId);
+                return null;
+            }
+        });
+        Future<Map<String, String>> destPropertiesFetch = submit(new Callable<Map<String, String>>() {
+            @Override
+            public Map<String, String> call() throws Exception {
+                return getContentProperties(destStore, spaceId, contentId);
+            }
+        });
 
-        // Retrieve properties for content items from both providers
         Map<String, String> sourceProperties =
             getContentProperties(sourceStore, spaceId, contentId);
-        Map<String, String> destProperties =
-            getContentProperties(destStore, spaceId, contentId);
+        Map<String, String> destProperties = await(destPropertiesFetch);
+        await(destSpaceCheck);
 
         if (null != sourceProperties) { // Item exists in source provider
             String sourceChecksum = sourceProperties.get(
                 StorageProvider.PROPERTIES_CONTENT_CHECKSUM);
+            long sourceSize = getContentSize(sourceProperties);
             cleanProperties(sourceProperties);
 
             if (null != destProperties) { // Item exists in dest provider
@@ -134,7 +220,8 @@ public class DuplicationTaskProcessor extends TaskProcessorBase {
                         duplicateContent(spaceId,
                                          contentId,
                                          sourceChecksum,
-                                         sourceProperties);
+                                         sourceProperties,
+                                         sourceSize);
                     }
                 } else {
                     // Source item properties has no checksum!
@@ -147,7 +234,8 @@ public class DuplicationTaskProcessor extends TaskProcessorBase {
                 duplicateContent(spaceId,
                                  contentId,
                                  sourceChecksum,
-                                 sourceProperties);
+                                 sourceProperties,
+                                 sourceSize);
             }
         } else { // Item does not exist in source, it must have been deleted
             if (null != destProperties) { // Item does exist in dest
@@ -157,6 +245,35 @@ public class DuplicationTaskProcessor extends TaskProcessorBase {
         }
     }
 
+    /**
+     * Runs the call on the metadata executor or, if there is none, on the
+     * calling thread.
+     */
+    private <T> Future<T> submit(Callable<T> call) {
+        if (null != metadataExecutor) {
+            return metadataExecutor.submit(call);
+        }
+        FutureTask<T> task = new FutureTask<>(call);
+        task.run();
+        return task;
+    }
+
+    private <T> T await(Future<T> future) throws TaskExecutionFailedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TaskExecutionFailedException) {
+                throw (TaskExecutionFailedException) e.getCause();
+            }
+            String msg = "Error attempting to retrieve content metadata: " + e.getCause().getMessage();
+            throw new DuplicationTaskExecutionFailedException(buildFailureMessage(msg), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DuplicationTaskExecutionFailedException(
+                buildFailureMessage("Interrupted while retrieving content metadata"), e);
+        }
+    }
+
     /**
      * Determines if a space in the given store exists.
      *
@@ -187,16 +304,34 @@ public class DuplicationTaskProcessor extends TaskProcessorBase {
     }
 
     /**
-     * Ensures the destination space exists
+     * Ensures the destination space exists. Spaces which are already known
+     * to exist are not created again.
      *
      * @param spaceId
      */
     private void ensureDestSpaceExists(final String spaceId) {
+        String account = dupTask.getAccount();
+        String destStoreId = dupTask.getDestStoreId();
+        if (spaceCache.exists(account, destStoreId, spaceId)) {
+            return;
+        }
+
         try {
             destStore.createSpace(spaceId);
         } catch (Exception e) {
             // The space already exists
         }
+        spaceCache.markExists(account, destStoreId, spaceId);
+    }
+
+    /**
+     * Forgets that the destination space exists, so that the next task
+     * for the space will create it if necessary.
+     *
+     * @param spaceId
+     */
+    private void invalidateDestSpace(final String spaceId) {
+        spaceCache.invalidate(dupTask.getAccount(), dupTask.getDestStoreId(), spaceId);
     }
 
     /**
@@ -250,6 +385,7 @@ public class DuplicationTaskProcessor extends TaskProcessorBase {
             throw new DuplicationTaskExecutionFailedException(
                 buildFailureMessage(msg), e);
         }
+        invalidateDestSpace(spaceId);
         log.info("Successfully deleted space " + spaceId +
                  " from dest provider in account " + dupTask.getAccount());
     }
@@ -324,6 +460,9 @@ public class DuplicationTaskProcessor extends TaskProcessorBase {
                     // Set properties
                     try {
                         destStore.setContentProperties(spaceId, contentId, sourceProperties);
+                    } catch (NotFoundException ex) {
+                        invalidateDestSpace(spaceId);
+                        throw ex;
                     } catch (StorageStateException ex) {
                         String message = "Unable to set content properties" +
                                          " on destination store ({0}) for " +
@@ -347,6 +486,22 @@ public class DuplicationTaskProcessor extends TaskProcessorBase {
         }
     }
 
+    /**
+     * @param props content properties
+     * @return the content size in bytes or -1 if it is not known
+     */
+    private long getContentSize(Map<String, String> props) {
+        String size = props.get(StorageProvider.PROPERTIES_CONTENT_SIZE);
+        if (null != size) {
+            try {
+                return Long.parseLong(size.trim());
+            } catch (NumberFormatException e) {
+                log.debug("unable to parse content size: {}", size);
+            }
+        }
+        return -1;
+    }
+
     /**
      * Pull out the system-generated properties, to allow the properties that
      * are added to the duplicated item to be only the user-defined properties.
@@ -373,7 +528,12 @@ public class DuplicationTaskProcessor extends TaskProcessorBase {
     }
 
     /**
-     * Copies a content item from the source store to the destination store
+     * Copies a content item from the source store to the destination store.
+     * The content is read from the source once, with its checksum computed
+     * as it is read. Items no larger than maxInMemorySize are held in memory,
+     * larger items are written to a temp file in the work directory. Items
+     * of at least parallelDownloadThreshold are retrieved in byte ranges
+     * in parallel, resuming from the last checkpoint on retry.
      *
      * @param spaceId
      * @param contentId
@@ -381,27 +541,43 @@ public class DuplicationTaskProcessor extends TaskProcessorBase {
     private void duplicateContent(final String spaceId,
                                   final String contentId,
                                   final String sourceChecksum,
-                                  final Map<String, String> sourceProperties)
+                                  final Map<String, String> sourceProperties,
+                                  final long sourceSize)
         throws TaskExecutionFailedException {
         log.info("Duplicating " + contentId + " in space " + spaceId +
                  " in account " + dupTask.getAccount());
 
-        ChecksumUtil checksumUtil = new ChecksumUtil(MD5);
-        boolean localChecksumMatch = false;
+        if (copyServerSide(spaceId, contentId, sourceChecksum, sourceSize, sourceProperties)) {
+            return;
+        }
+
+        // Skip the in-memory buffer when the item is known to be too large for it,
+        // and hold no more of the memory budget than the item needs when its size is known
+        long memoryLimit = (sourceSize > maxInMemorySize) ? 0 : maxInMemorySize;
+        if (sourceSize >= 0 && memoryLimit > 0) {
+            memoryLimit = sourceSize;
+        }
+        boolean ranged = parallelDownloadThreshold > 0 && sourceSize >= parallelDownloadThreshold;
+        SpooledContent content = null;
         int attempt = 0;
 
-        File localFile = null;
-        while (!localChecksumMatch && attempt < 3) {
-            // Get content stream
-            try (InputStream sourceStream = getSourceContent(spaceId, contentId)) {
-                // Cache content locally
-                localFile = cacheContent(sourceStream);
-                // Check content
-                String localChecksum = checksumUtil.generateChecksum(localFile);
-                if (sourceChecksum.equals(localChecksum)) {
-                    localChecksumMatch = true;
+        while (content == null && attempt < 3) {
+            try {
+                if (ranged) {
+                    // Verified against the source checksum by the destination when it is added
+                    content = downloadContent(spaceId, contentId, sourceChecksum, sourceSize);
                 } else {
-                    cleanup(localFile);
+                    // Get content stream
+                    try (InputStream sourceStream = getSourceContent(spaceId, contentId)) {
+                        // Cache content locally, generating the checksum as it is read
+                        SpooledContent spooled = spoolContent(sourceStream, memoryLimit);
+                        // Check content
+                        if (sourceChecksum.equals(spooled.getChecksum())) {
+                            content = spooled;
+                        } else {
+                            cleanup(spooled);
+                        }
+                    }
                 }
             } catch (Exception e) {
                 log.warn("Error generating checksum for source content: " + e.getMessage(), e);
@@ -410,24 +586,74 @@ public class DuplicationTaskProcessor extends TaskProcessorBase {
         }
 
         // Put content
-        if (localChecksumMatch) {
-            putDestinationContent(spaceId,
-                                  contentId,
-                                  sourceChecksum,
-                                  sourceProperties,
-                                  localFile);
-            log.info(
-                "Successfully duplicated id={} dup_size={} space={} account={}",
-                contentId,
-                localFile.length(),
-                spaceId, dupTask.getAccount());
+        if (content != null) {
+            try {
+                putDestinationContent(spaceId,
+                                      contentId,
+                                      sourceChecksum,
+                                      sourceProperties,
+                                      content);
+                log.info(
+                    "Successfully duplicated id={} dup_size={} in_memory={} space={} account={}",
+                    contentId,
+                    content.getSize(),
+                    content.isInMemory(),
+                    spaceId, dupTask.getAccount());
+            } finally {
+                cleanup(content);
+            }
         } else {
-            cleanup(localFile);
+            if (ranged && dupTask.getAttempts() >= TaskWorker.MAX_ATTEMPTS) {
+                // The task will not be retried, so neither will the download
+                new RangedContentDownloader(sourceStore, workDir).discard(getCheckpointKey(spaceId, contentId));
+            }
             String msg = "Unable to retrieve content which matches the" +
                          " expected source checksum of: " + sourceChecksum;
             throw new DuplicationTaskExecutionFailedException(buildFailureMessage(msg));
         }
-        cleanup(localFile);
+    }
+
+    /**
+     * Attempts to copy the content item with the storage provider's native
+     * copy. The copy is verified in the same way as an upload: the checksum
+     * reported by the destination must match the source checksum.
+     *
+     * @return true if the content was copied, false if it must be copied
+     * through this host
+     */
+    private boolean copyServerSide(final String spaceId,
+                                   final String contentId,
+                                   final String sourceChecksum,
+                                   final long sourceSize,
+                                   final Map<String, String> sourceProperties)
+        throws TaskExecutionFailedException {
+        if (serverSideCopier == null || !serverSideCopier.canCopy(sourceSize)) {
+            return false;
+        }
+
+        try {
+            serverSideCopier.copy(spaceId, contentId, sourceChecksum, sourceSize, sourceProperties);
+        } catch (Exception e) {
+            log.warn("Server side copy failed, copying content through this host instead. " +
+                     "Content id={} space={} account={}: {}",
+                     contentId, spaceId, dupTask.getAccount(), e.getMessage());
+            return false;
+        }
+
+        Map<String, String> destProperties = getContentProperties(destStore, spaceId, contentId);
+        String destChecksum = (null == destProperties) ? null :
+                              destProperties.get(StorageProvider.PROPERTIES_CONTENT_CHECKSUM);
+        if (!sourceChecksum.equals(destChecksum)) {
+            log.warn("Checksum in dest ({}) does not match source ({}) after server side copy, " +
+                     "copying content through this host instead. Content id={} space={} account={}",
+                     destChecksum, sourceChecksum, contentId, spaceId, dupTask.getAccount());
+            return false;
+        }
+
+        serverSideCopier.audit(spaceId, contentId, sourceChecksum, sourceSize, sourceProperties);
+        log.info("Successfully duplicated id={} dup_size={} server_side=true space={} account={}",
+                 contentId, sourceSize, spaceId, dupTask.getAccount());
+        return true;
     }
 
     /*
@@ -451,34 +677,45 @@ public class DuplicationTaskProcessor extends TaskProcessorBase {
     }
 
     /*
-     * Stores a stream as a file on the local file system
+     * Reads a stream into memory or, if it is too large, a file on the
+     * local file system
      */
-    private File cacheContent(InputStream inStream)
+    private SpooledContent spoolContent(InputStream inStream, long memoryLimit)
         throws TaskExecutionFailedException {
-        File localFile = null;
         try {
-            localFile = File.createTempFile("content-item", ".tmp", workDir);
-            try (OutputStream outStream = FileUtils.openOutputStream(localFile)) {
-                IOUtils.copy(inStream, outStream);
-            }
-            inStream.close();
+            return SpooledContent.spool(inStream, memoryLimit, memoryBudget, workDir);
         } catch (IOException e) {
-
-            if (localFile != null) {
-                cleanup(localFile);
-            }
-
             String msg = "Unable to cache content file due to: " + e.getMessage();
             throw new DuplicationTaskExecutionFailedException(buildFailureMessage(msg), e);
         }
-        return localFile;
+    }
+
+    /*
+     * Retrieves a large content item from the source storage provider in
+     * parallel byte ranges
+     */
+    private SpooledContent downloadContent(String spaceId,
+                                           String contentId,
+                                           String sourceChecksum,
+                                           long sourceSize) throws IOException {
+        String checkpointKey = getCheckpointKey(spaceId, contentId);
+        return new RangedContentDownloader(sourceStore, workDir).download(spaceId,
+                                                                          contentId,
+                                                                          sourceSize,
+                                                                          sourceChecksum,
+                                                                          checkpointKey);
+    }
+
+    private String getCheckpointKey(String spaceId, String contentId) {
+        return "dup-" + new ChecksumUtil(MD5).generateChecksum(
+            dupTask.getAccount() + "/" + dupTask.getSourceStoreId() + "/" + spaceId + "/" + contentId);
     }
 
     private void putDestinationContent(final String spaceId,
                                        final String contentId,
                                        final String sourceChecksum,
                                        final Map<String, String> sourceProperties,
-                                       final File file)
+                                       final SpooledContent content)
         throws TaskExecutionFailedException {
         try {
             new Retrier().execute(new Retriable() {
@@ -488,13 +725,13 @@ public class DuplicationTaskProcessor extends TaskProcessorBase {
                         StorageProvider.PROPERTIES_CONTENT_MIMETYPE);
 
                     // Push to destination
-                    try (InputStream destStream = FileUtils.openInputStream(file)) {
+                    try (InputStream destStream = content.openStream()) {
                         String destChecksum =
                             destStore.addContent(spaceId,
                                                  contentId,
                                                  srcMimetype,
                                                  sourceProperties,
-                                                 file.length(),
+                                                 content.getSize(),
                                                  sourceChecksum,
                                                  destStream);
                         if (sourceChecksum.equals(destChecksum)) {
@@ -503,22 +740,25 @@ public class DuplicationTaskProcessor extends TaskProcessorBase {
                             throw new RuntimeException("Checksum in dest " +
                                                        "does not match source");
                         }
+                    } catch (NotFoundException e) {
+                        // The space has gone away, recreate it before retrying
+                        invalidateDestSpace(spaceId);
+                        ensureDestSpaceExists(spaceId);
+                        throw e;
                     }
                 }
             });
         } catch (Exception e) {
-            cleanup(file);
             String msg = "Error attempting to add destination content: " + e.getMessage();
             throw new DuplicationTaskExecutionFailedException(buildFailureMessage(msg), e);
         }
     }
 
-    private void cleanup(File file) {
+    private void cleanup(SpooledContent content) {
         try {
-            FileUtils.forceDelete(file);
+            content.release();
         } catch (IOException e) {
-            log.info("Unable to delete temp file: " + file.getAbsolutePath() +
-                     " due to: " + e.getMessage(), e);
+            log.info("Unable to delete temp file due to: " + e.getMessage(), e);
         }
     }
 
@@ -8,10 +8,22 @@
 package org.duracloud.mill.dup;
 
 import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.duracloud.common.queue.TaskQueue;
 import org.duracloud.common.queue.task.Task;
+import org.duracloud.mill.common.storageprovider.CachingStorageProviderFactory;
+import org.duracloud.mill.common.storageprovider.SpaceExistenceCache;
 import org.duracloud.mill.common.storageprovider.StorageProviderFactory;
+import org.duracloud.mill.config.ConfigConstants;
 import org.duracloud.mill.credentials.CredentialsRepo;
 import org.duracloud.mill.credentials.CredentialsRepoException;
 import org.duracloud.mill.credentials.StorageProviderCredentials;
@@ -20,6 +32,9 @@ import org.duracloud.mill.task.DuplicationTask;
 import org.duracloud.mill.workman.TaskProcessor;
 import org.duracloud.mill.workman.TaskProcessorCreationFailedException;
 import org.duracloud.mill.workman.TaskProcessorFactoryBase;
+import org.duracloud.s3storage.S3ProviderUtil;
+import org.duracloud.s3storage.S3StorageProvider;
+import org.duracloud.storage.domain.StorageProviderType;
 import org.duracloud.storage.provider.StorageProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,19 +48,68 @@ public class DuplicationTaskProcessorFactory extends TaskProcessorFactoryBase {
     private static Logger log =
         LoggerFactory.getLogger(DuplicationTaskProcessorFactory.class);
 
+    public static final int DEFAULT_METADATA_THREADS = 10;
+
     private TaskQueue auditTaskQueue;
     private StorageProviderFactory storageProviderFactory;
     private ManifestStore manifestStore;
+    private SpaceExistenceCache spaceCache;
+    private long maxInMemorySize;
+    private Semaphore memoryBudget;
+    private long parallelDownloadThreshold;
+    private boolean serverSideCopyEnabled;
+    private ConcurrentMap<String, CachedCopier> serverSideCopiers = new ConcurrentHashMap<>();
+    private ExecutorService metadataExecutor;
 
     public DuplicationTaskProcessorFactory(CredentialsRepo repo,
                                            StorageProviderFactory storageProviderFactory,
                                            File workDir,
                                            TaskQueue auditTaskQueue,
-                                           ManifestStore manifestStore) {
+                                           ManifestStore manifestStore,
+                                           SpaceExistenceCache spaceCache) {
         super(repo, workDir);
+        this.spaceCache = spaceCache;
         this.auditTaskQueue = auditTaskQueue;
         this.storageProviderFactory = storageProviderFactory;
         this.manifestStore = manifestStore;
+        this.maxInMemorySize =
+            Long.parseLong(System.getProperty(ConfigConstants.DUPLICATION_MAX_IN_MEMORY_SIZE,
+                                              String.valueOf(DuplicationTaskProcessor.DEFAULT_MAX_IN_MEMORY_SIZE)));
+        long maxInMemoryTotal =
+            Long.parseLong(System.getProperty(ConfigConstants.DUPLICATION_MAX_IN_MEMORY_TOTAL,
+                                              String.valueOf(DuplicationTaskProcessor.DEFAULT_MAX_IN_MEMORY_TOTAL)));
+        this.memoryBudget = new Semaphore((int) Math.min(Math.max(maxInMemoryTotal, 0), Integer.MAX_VALUE));
+        this.parallelDownloadThreshold =
+            Long.parseLong(System.getProperty(ConfigConstants.DUPLICATION_PARALLEL_DOWNLOAD_THRESHOLD,
+                                              String.valueOf(
+                                                  DuplicationTaskProcessor.DEFAULT_PARALLEL_DOWNLOAD_THRESHOLD)));
+        this.serverSideCopyEnabled =
+            Boolean.parseBoolean(System.getProperty(ConfigConstants.DUPLICATION_SERVER_SIDE_COPY, "false"));
+        int metadataThreads =
+            Math.max(1, Integer.getInteger(ConfigConstants.DUPLICATION_METADATA_THREADS, DEFAULT_METADATA_THREADS));
+        this.metadataExecutor = createMetadataExecutor(metadataThreads);
+    }
+
+    /*
+     * When all of the threads are busy the metadata calls are made by the
+     * worker itself, just as they are without an executor.
+     */
+    private ExecutorService createMetadataExecutor(int threads) {
+        log.info("destination metadata calls are made on up to {} threads", threads);
+        return new ThreadPoolExecutor(0, threads, 60, TimeUnit.SECONDS,
+                                      new SynchronousQueue<Runnable>(),
+                                      new ThreadFactory() {
+                                          private AtomicInteger count = new AtomicInteger();
+
+                                          @Override
+                                          public Thread newThread(Runnable r) {
+                                              Thread thread = new Thread(r, "dup-metadata-" +
+                                                                            count.incrementAndGet());
+                                              thread.setDaemon(true);
+                                              return thread;
+                                          }
+                                      },
+                                      new ThreadPoolExecutor.CallerRunsPolicy());
     }
 
     @Override
@@ -62,16 +126,30 @@ public class DuplicationTaskProcessorFactory extends TaskProcessorFactoryBase {
         String subdomain = dtask.getAccount();
 
         try {
+            StorageProviderCredentials sourceCredentials =
+                getCredentials(dtask.getSourceStoreId(), subdomain);
+            StorageProviderCredentials destCredentials =
+                getCredentials(dtask.getDestStoreId(), subdomain);
             StorageProvider sourceStore =
-                createStorageProvider(dtask.getSourceStoreId(),
-                                      subdomain,
-                                      auditTaskQueue);
+                this.storageProviderFactory.createWithAudit(sourceCredentials,
+                                                            subdomain,
+                                                            auditTaskQueue);
             StorageProvider destStore =
-                createStorageProvider(dtask.getDestStoreId(),
-                                      subdomain,
-                                      auditTaskQueue);
-            return new DuplicationTaskProcessor(dtask, sourceStore, destStore,
-                                                getWorkDir(), manifestStore);
+                this.storageProviderFactory.createWithAudit(destCredentials,
+                                                            subdomain,
+                                                            auditTaskQueue);
+            DuplicationTaskProcessor processor =
+                new DuplicationTaskProcessor(dtask, sourceStore, destStore,
+                                             getWorkDir(), manifestStore,
+                                             maxInMemorySize,
+                                             parallelDownloadThreshold,
+                                             getServerSideCopier(sourceCredentials,
+                                                                 destCredentials,
+                                                                 subdomain),
+                                             metadataExecutor,
+                                             spaceCache);
+            processor.setMemoryBudget(memoryBudget);
+            return processor;
         } catch (Exception e) {
             log.error("failed to create task: unable to locate credentials " +
                       "for subdomain: " + e.getMessage(), e);
@@ -86,18 +164,88 @@ public class DuplicationTaskProcessorFactory extends TaskProcessorFactoryBase {
      * @param subdomain
      * @return
      */
-    private StorageProvider createStorageProvider(String storeId,
-                                                  String subdomain,
-                                                  TaskQueue auditTaskQueue) {
+    private StorageProviderCredentials getCredentials(String storeId,
+                                                      String subdomain) {
         try {
-            StorageProviderCredentials credentials =
-                getCredentialRepo().getStorageProviderCredentials(subdomain,
-                                                                  storeId);
-            return this.storageProviderFactory.createWithAudit(credentials,
-                                                               subdomain,
-                                                               auditTaskQueue);
+            return getCredentialRepo().getStorageProviderCredentials(subdomain,
+                                                                     storeId);
         } catch (CredentialsRepoException e) {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * Returns a copier which can copy content directly between the two
+     * stores or null if the stores do not support it. Copiers are reused
+     * across tasks so that a pair of stores found not to support server
+     * side copies is not tried again, and are replaced when the credentials
+     * of either store change.
+     *
+     * @param source
+     * @param dest
+     * @param subdomain
+     * @return
+     */
+    private ServerSideCopier getServerSideCopier(StorageProviderCredentials source,
+                                                 StorageProviderCredentials dest,
+                                                 String subdomain) {
+        if (!serverSideCopyEnabled ||
+            !StorageProviderType.AMAZON_S3.equals(source.getProviderType()) ||
+            !StorageProviderType.AMAZON_S3.equals(dest.getProviderType())) {
+            return null;
+        }
+
+        // store ids are unique across accounts
+        String key = source.getProviderId() + ":" + dest.getProviderId();
+        String fingerprint = CachingStorageProviderFactory.fingerprint(source) + ":" +
+                             CachingStorageProviderFactory.fingerprint(dest);
+        CachedCopier cached = serverSideCopiers.get(key);
+        if (cached != null && cached.fingerprint.equals(fingerprint)) {
+            return cached.copier;
+        }
+
+        synchronized (serverSideCopiers) {
+            cached = serverSideCopiers.get(key);
+            if (cached == null || !cached.fingerprint.equals(fingerprint)) {
+                cached = new CachedCopier(fingerprint, createServerSideCopier(source, dest, subdomain));
+                serverSideCopiers.put(key, cached);
+            }
+            return cached.copier;
+        }
+    }
+
+    /*
+     * Bucket names are resolved by the (cached) providers of the two stores
+     * while the copy itself is made with the destination credentials.
+     */
+    private ServerSideCopier createServerSideCopier(StorageProviderCredentials source,
+                                                    StorageProviderCredentials dest,
+                                                    String subdomain) {
+        StorageProvider sourceProvider = storageProviderFactory.create(source);
+        StorageProvider destProvider = storageProviderFactory.create(dest);
+        if (!(sourceProvider instanceof S3StorageProvider) ||
+            !(destProvider instanceof S3StorageProvider)) {
+            return null;
+        }
+
+        return new S3ServerSideCopier(source,
+                                      dest,
+                                      (S3StorageProvider) sourceProvider,
+                                      (S3StorageProvider) destProvider,
+                                      S3ProviderUtil.getAmazonS3Client(dest.getAccessKey(),
+                                                                       dest.getSecretKey(),
+                                                                       dest.getOptions()),
+                                      subdomain,
+                                      auditTaskQueue);
+    }
+
+    private static class CachedCopier {
+        private String fingerprint;
+        private ServerSideCopier copier;
+
+        CachedCopier(String fingerprint, ServerSideCopier copier) {
+            this.fingerprint = fingerprint;
+            this.copier = copier;
+        }
+    }
 }
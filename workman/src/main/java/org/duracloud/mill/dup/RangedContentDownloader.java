@@ -0,0 +1,341 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.dup;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.duracloud.common.retry.Retriable;
+import org.duracloud.common.retry.Retrier;
+import org.duracloud.storage.provider.StorageProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Downloads a large content item by retrieving byte ranges of it in parallel
+ * and writing each range to its position in a local file. Each completed
+ * range is recorded in a checkpoint file next to the content so that a
+ * retried download only retrieves the ranges which are still missing. The
+ * checkpoint is discarded if the source size or checksum has changed.
+ *
+ * The downloaded content is not read back to verify it: the checksum of the
+ * source is passed along with the content when it is added to the
+ * destination, which rejects content that does not match it.
+ *
+ * Only one download of a checkpoint key may be in progress at a time within
+ * this JVM. Checkpoints which have not been touched for a day, such as those
+ * left behind by a task which moved to another host, are deleted.
+ *
+ * @author Daniel Bernstein
+ */
+class RangedContentDownloader {
+
+    private static final Logger log = LoggerFactory.getLogger(RangedContentDownloader.class);
+
+    public static final long DEFAULT_PART_SIZE = 64 * 1024 * 1024;
+    public static final int DEFAULT_THREADS = 8;
+
+    static final String CONTENT_SUFFIX = ".content";
+    static final String CHECKPOINT_SUFFIX = ".checkpoint";
+    static final long STALE_AGE_MS = 24 * 60 * 60 * 1000L;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long SWEEP_INTERVAL_MS = 60 * 60 * 1000L;
+
+    // ranges of all downloads on this host are retrieved by the same threads
+    private static final ExecutorService SHARED_EXECUTOR =
+        Executors.newFixedThreadPool(DEFAULT_THREADS, new ThreadFactory() {
+            private AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "dup-range-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+    private static final Set<String> activeKeys =
+        Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private static final AtomicLong lastSweep = new AtomicLong();
+
+    private StorageProvider store;
+    private File workDir;
+    private long partSize;
+    private ExecutorService executor;
+
+    RangedContentDownloader(StorageProvider store, File workDir) {
+        this(store, workDir, DEFAULT_PART_SIZE, SHARED_EXECUTOR);
+    }
+
+    RangedContentDownloader(StorageProvider store,
+                            File workDir,
+                            long partSize,
+                            ExecutorService executor) {
+        this.store = store;
+        this.workDir = workDir;
+        this.partSize = partSize;
+        this.executor = executor;
+    }
+
+    /**
+     * Downloads the content item. The caller is responsible for verifying the
+     * content against the expected checksum.
+     *
+     * @param spaceId
+     * @param contentId
+     * @param size          the size of the content item in bytes
+     * @param checksum      the expected MD5 checksum of the content item
+     * @param checkpointKey uniquely identifies the content item across retries
+     * @return the downloaded content
+     * @throws IOException if any range could not be retrieved or the content
+     *                     item is already being downloaded
+     */
+    SpooledContent download(final String spaceId,
+                            final String contentId,
+                            long size,
+                            String checksum,
+                            String checkpointKey) throws IOException {
+        deleteStaleFiles();
+
+        if (!activeKeys.add(checkpointKey)) {
+            throw new IOException("Content item " + contentId + " (space=" + spaceId +
+                                  ") is already being downloaded by another task");
+        }
+
+        try {
+            return doDownload(spaceId, contentId, size, checksum, checkpointKey);
+        } finally {
+            activeKeys.remove(checkpointKey);
+        }
+    }
+
+    private SpooledContent doDownload(String spaceId,
+                                      String contentId,
+                                      long size,
+                                      String checksum,
+                                      String checkpointKey) throws IOException {
+        File contentFile = new File(workDir, checkpointKey + CONTENT_SUFFIX);
+        File checkpointFile = new File(workDir, checkpointKey + CHECKPOINT_SUFFIX);
+        String header = checksum + " " + size + " " + partSize;
+
+        Set<Long> completed = readCheckpoint(checkpointFile, contentFile, header);
+        if (completed == null) {
+            FileUtils.deleteQuietly(contentFile);
+            FileUtils.writeStringToFile(checkpointFile, header + "\n");
+            completed = new HashSet<>();
+        }
+
+        long partCount = (size + partSize - 1) / partSize;
+        log.info("downloading {} (space={}) in {} parts, {} already complete",
+                 contentId, spaceId, partCount, completed.size());
+
+        List<Future<Long>> futures = new ArrayList<>();
+        try (RandomAccessFile raf = new RandomAccessFile(contentFile, "rw");
+             Writer checkpoint = new FileWriter(checkpointFile, true)) {
+            raf.setLength(size);
+            FileChannel channel = raf.getChannel();
+
+            for (long part = 0; part < partCount; part++) {
+                if (!completed.contains(part)) {
+                    futures.add(executor.submit(
+                        new PartDownload(spaceId, contentId, part, size, channel, checkpoint)));
+                }
+            }
+
+            for (Future<Long> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw (cause instanceof IOException) ? (IOException) cause : new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } finally {
+            // parts which have not finished are retrieved by the next attempt
+            for (Future<Long> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        FileUtils.deleteQuietly(checkpointFile);
+        return SpooledContent.fromFile(contentFile, size, checksum);
+    }
+
+    /**
+     * Deletes the partially downloaded content and checkpoint of a content
+     * item which will not be retried, unless it is being downloaded.
+     *
+     * @param checkpointKey
+     */
+    void discard(String checkpointKey) {
+        if (activeKeys.add(checkpointKey)) {
+            try {
+                FileUtils.deleteQuietly(new File(workDir, checkpointKey + CONTENT_SUFFIX));
+                FileUtils.deleteQuietly(new File(workDir, checkpointKey + CHECKPOINT_SUFFIX));
+            } finally {
+                activeKeys.remove(checkpointKey);
+            }
+        }
+    }
+
+    /*
+     * Deletes, at most once an hour, the content and checkpoint files in the
+     * work directory which are not being downloaded and have not been
+     * written to for a day.
+     */
+    private void deleteStaleFiles() {
+        long now = System.currentTimeMillis();
+        long last = lastSweep.get();
+        if (now - last < SWEEP_INTERVAL_MS || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+
+        File[] files = workDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            String key = null;
+            if (name.endsWith(CHECKPOINT_SUFFIX)) {
+                key = name.substring(0, name.length() - CHECKPOINT_SUFFIX.length());
+            } else if (name.endsWith(CONTENT_SUFFIX)) {
+                key = name.substring(0, name.length() - CONTENT_SUFFIX.length());
+            }
+
+            // a missing file has a last modified time of 0
+            if (key != null &&
+                now - new File(workDir, key + CHECKPOINT_SUFFIX).lastModified() > STALE_AGE_MS &&
+                now - new File(workDir, key + CONTENT_SUFFIX).lastModified() > STALE_AGE_MS) {
+                log.info("deleting stale download {} from {}", key, workDir);
+                discard(key);
+            }
+        }
+    }
+
+    /*
+     * Returns the parts recorded in the checkpoint or null if there is no
+     * usable checkpoint.
+     */
+    private Set<Long> readCheckpoint(File checkpointFile, File contentFile, String header) {
+        if (!checkpointFile.exists() || !contentFile.exists()) {
+            return null;
+        }
+
+        Set<Long> completed = new HashSet<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(checkpointFile))) {
+            if (!header.equals(reader.readLine())) {
+                return null;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    completed.add(Long.parseLong(line.trim()));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.warn("ignoring unreadable checkpoint {}: {}", checkpointFile, e.getMessage());
+            return null;
+        }
+        return completed;
+    }
+
+    private class PartDownload implements Callable<Long> {
+        private String spaceId;
+        private String contentId;
+        private long part;
+        private long size;
+        private FileChannel channel;
+        private Writer checkpoint;
+
+        PartDownload(String spaceId,
+                     String contentId,
+                     long part,
+                     long size,
+                     FileChannel channel,
+                     Writer checkpoint) {
+            this.spaceId = spaceId;
+            this.contentId = contentId;
+            this.part = part;
+            this.size = size;
+            this.channel = channel;
+            this.checkpoint = checkpoint;
+        }
+
+        @Override
+        public Long call() throws Exception {
+            final long start = part * partSize;
+            final long end = Math.min(start + partSize, size) - 1;
+
+            new Retrier().execute(new Retriable() {
+                @Override
+                public Long retry() throws Exception {
+                    try (InputStream is = store.getContent(spaceId, contentId, "bytes=" + start + "-" + end)
+                                               .getContentStream()) {
+                        return write(is, start, end);
+                    }
+                }
+            });
+
+            // make sure the part is on disk before it is recorded as complete
+            channel.force(false);
+            synchronized (checkpoint) {
+                checkpoint.write(part + "\n");
+                checkpoint.flush();
+            }
+            return part;
+        }
+
+        private long write(InputStream is, long start, long end) throws IOException {
+            byte[] bytes = new byte[BUFFER_SIZE];
+            long position = start;
+            int read;
+            while ((read = is.read(bytes)) != -1) {
+                if (position + read > end + 1) {
+                    throw new IOException("Received more bytes than requested for range " +
+                                          start + "-" + end);
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, read);
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+            }
+
+            if (position != end + 1) {
+                throw new IOException("Received " + (position - start) + " bytes for range " +
+                                      start + "-" + end);
+            }
+            return position - start;
+        }
+    }
+}
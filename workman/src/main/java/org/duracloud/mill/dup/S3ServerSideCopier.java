@@ -0,0 +1,156 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.dup;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import org.duracloud.audit.task.AuditTask;
+import org.duracloud.audit.task.AuditTask.ActionType;
+import org.duracloud.common.queue.TaskQueue;
+import org.duracloud.mill.credentials.StorageProviderCredentials;
+import org.duracloud.mill.util.SimpleUserUtil;
+import org.duracloud.s3storage.S3StorageProvider;
+import org.duracloud.storage.provider.StorageProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Copies content between two Amazon S3 stores with a bucket to bucket copy
+ * made with the destination store's credentials. This only works when the
+ * destination credentials are allowed to read the source buckets; if S3
+ * denies access the copier disables itself so that callers fall back to
+ * copying the content through this host.
+ *
+ * S3 copies the object's metadata, and with it the content properties, along
+ * with the object. Since the copy bypasses the audited destination storage
+ * provider, audit() adds a COPY_CONTENT audit task for each copied item once
+ * its copy has been verified.
+ *
+ * @author Daniel Bernstein
+ */
+public class S3ServerSideCopier implements ServerSideCopier {
+
+    private static final Logger log = LoggerFactory.getLogger(S3ServerSideCopier.class);
+
+    /**
+     * The largest object S3 will copy in a single request.
+     */
+    public static final long MAX_COPY_SIZE = 5L * 1024 * 1024 * 1024;
+
+    private StorageProviderCredentials sourceCredentials;
+    private StorageProviderCredentials destCredentials;
+    private String account;
+    private TaskQueue auditTaskQueue;
+
+    private AmazonS3 s3Client;
+    private S3StorageProvider sourceProvider;
+    private S3StorageProvider destProvider;
+    private Map<String, String> sourceBuckets = new ConcurrentHashMap<>();
+    private Map<String, String> destBuckets = new ConcurrentHashMap<>();
+    private volatile boolean enabled = true;
+
+    /**
+     * @param sourceCredentials
+     * @param destCredentials
+     * @param sourceProvider    resolves the buckets of the source spaces
+     * @param destProvider      resolves the buckets of the destination spaces
+     * @param s3Client          a client using the destination credentials
+     * @param account
+     * @param auditTaskQueue
+     */
+    public S3ServerSideCopier(StorageProviderCredentials sourceCredentials,
+                              StorageProviderCredentials destCredentials,
+                              S3StorageProvider sourceProvider,
+                              S3StorageProvider destProvider,
+                              AmazonS3 s3Client,
+                              String account,
+                              TaskQueue auditTaskQueue) {
+        this.sourceCredentials = sourceCredentials;
+        this.destCredentials = destCredentials;
+        this.sourceProvider = sourceProvider;
+        this.destProvider = destProvider;
+        this.s3Client = s3Client;
+        this.account = account;
+        this.auditTaskQueue = auditTaskQueue;
+    }
+
+    @Override
+    public boolean canCopy(long size) {
+        return enabled && size >= 0 && size <= MAX_COPY_SIZE;
+    }
+
+    @Override
+    public void copy(String spaceId,
+                     String contentId,
+                     String sourceChecksum,
+                     long sourceSize,
+                     Map<String, String> sourceProperties) throws Exception {
+        try {
+            CopyObjectRequest request =
+                new CopyObjectRequest(getBucketName(sourceProvider, sourceBuckets, spaceId),
+                                      contentId,
+                                      getBucketName(destProvider, destBuckets, spaceId),
+                                      contentId);
+            s3Client.copyObject(request);
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == 403) {
+                enabled = false;
+                log.warn("server side copy from store {} to store {} in account {} is not permitted, " +
+                         "disabling: {}",
+                         sourceCredentials.getProviderId(),
+                         destCredentials.getProviderId(),
+                         account,
+                         e.getMessage());
+            }
+            throw e;
+        }
+    }
+
+    /*
+     * Looking up a bucket lists all buckets, so the result is kept for
+     * the life of the copier.
+     */
+    private String getBucketName(S3StorageProvider provider,
+                                 Map<String, String> buckets,
+                                 String spaceId) {
+        String bucketName = buckets.get(spaceId);
+        if (bucketName == null) {
+            bucketName = provider.getBucketName(spaceId);
+            buckets.put(spaceId, bucketName);
+        }
+        return bucketName;
+    }
+
+    @Override
+    public void audit(String spaceId,
+                      String contentId,
+                      String checksum,
+                      long size,
+                      Map<String, String> properties) {
+        AuditTask task = new AuditTask();
+        task.setAccount(account);
+        task.setStoreId(destCredentials.getProviderId());
+        task.setStoreType(destCredentials.getProviderType().getName());
+        task.setSpaceId(spaceId);
+        task.setContentId(contentId);
+        task.setSourceSpaceId(spaceId);
+        task.setSourceContentId(contentId);
+        task.setContentChecksum(checksum);
+        task.setContentMimetype(properties.get(StorageProvider.PROPERTIES_CONTENT_MIMETYPE));
+        task.setContentSize(String.valueOf(size));
+        task.setContentProperties(properties);
+        task.setUserId(SimpleUserUtil.USER);
+        task.setAction(ActionType.COPY_CONTENT.name());
+        task.setDateTime(String.valueOf(System.currentTimeMillis()));
+        auditTaskQueue.put(task.writeTask());
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.dup;
+
+import java.util.Map;
+
+/**
+ * Copies content items from a source store to a destination store using the
+ * storage provider's native copy, so that the content does not pass through
+ * this host.
+ *
+ * @author Daniel Bernstein
+ */
+public interface ServerSideCopier {
+
+    /**
+     * @param size the size of the content item in bytes, -1 if unknown
+     * @return true if a content item of this size can be copied
+     */
+    boolean canCopy(long size);
+
+    /**
+     * Copies a content item, along with its properties, to the same space and
+     * content ID in the destination store.
+     *
+     * @param spaceId
+     * @param contentId
+     * @param sourceChecksum   the checksum of the source content item
+     * @param sourceSize       the size of the source content item in bytes
+     * @param sourceProperties the user-defined properties of the source content item
+     * @throws Exception if the copy fails
+     */
+    void copy(String spaceId,
+              String contentId,
+              String sourceChecksum,
+              long sourceSize,
+              Map<String, String> sourceProperties) throws Exception;
+
+    /**
+     * Adds the audit task of a content item copied by copy(). Since the copy
+     * bypasses the audited destination storage provider, this is called once
+     * the copy has been verified against the source checksum.
+     *
+     * @param spaceId
+     * @param contentId
+     * @param sourceChecksum   the checksum of the source content item
+     * @param sourceSize       the size of the source content item in bytes
+     * @param sourceProperties the user-defined properties of the source content item
+     */
+    void audit(String spaceId,
+               String contentId,
+               String sourceChecksum,
+               long sourceSize,
+               Map<String, String> sourceProperties);
+}
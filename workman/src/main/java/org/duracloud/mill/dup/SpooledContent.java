@@ -0,0 +1,213 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.dup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Semaphore;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.duracloud.common.util.ChecksumUtil;
+
+/**
+ * Holds a local copy of a content stream along with the MD5 checksum of the
+ * bytes read. The checksum is computed while the stream is being read so the
+ * content only needs to be read once. Content no larger than the in-memory
+ * limit is held in memory; anything larger is spilled to a temp file in the
+ * work directory. The memory used by all spooled content can be capped by a
+ * shared budget of bytes: content which does not fit in what is left of it
+ * goes to the work directory.
+ *
+ * @author Daniel Bernstein
+ */
+class SpooledContent {
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The most bytes held in memory for a single content item, just short of
+     * the largest array the JVM will allocate.
+     */
+    static final long MAX_IN_MEMORY_SIZE = Integer.MAX_VALUE - 8;
+
+    private ExposedByteArrayOutputStream buffer;
+    private Semaphore memoryBudget;
+    private int reserved;
+    private File file;
+    private long size;
+    private String checksum;
+
+    private SpooledContent() {
+    }
+
+    /**
+     * Reads the stream to the end and closes it.
+     *
+     * @param inStream        the content to spool
+     * @param maxInMemorySize the largest number of bytes to hold in memory
+     * @param workDir         where content larger than maxInMemorySize is written
+     * @return the spooled content
+     * @throws IOException
+     */
+    static SpooledContent spool(InputStream inStream,
+                                long maxInMemorySize,
+                                File workDir) throws IOException {
+        return spool(inStream, maxInMemorySize, null, workDir);
+    }
+
+    /**
+     * Reads the stream to the end and closes it.
+     *
+     * @param inStream        the content to spool
+     * @param maxInMemorySize the largest number of bytes to hold in memory
+     * @param memoryBudget    the bytes which may be held in memory by all
+     *                        spooled content, null if there is no cap
+     * @param workDir         where content larger than maxInMemorySize is written
+     * @return the spooled content
+     * @throws IOException
+     */
+    static SpooledContent spool(InputStream inStream,
+                                long maxInMemorySize,
+                                Semaphore memoryBudget,
+                                File workDir) throws IOException {
+        SpooledContent content = new SpooledContent();
+        long limit = Math.min(Math.max(maxInMemorySize, 0), MAX_IN_MEMORY_SIZE);
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        // the whole limit is reserved up front since the size is not known
+        // until the stream has been read; the unused part is returned after.
+        int reserved = 0;
+        if (memoryBudget != null && limit > 0) {
+            if (memoryBudget.tryAcquire((int) limit)) {
+                reserved = (int) limit;
+            } else {
+                limit = 0;
+            }
+        }
+
+        try (InputStream digestStream = new DigestInputStream(inStream, digest)) {
+            ExposedByteArrayOutputStream buffer =
+                new ExposedByteArrayOutputStream((int) Math.min(INITIAL_BUFFER_SIZE, limit) + 1);
+            long read = IOUtils.copyLarge(digestStream, buffer, 0, limit + 1);
+
+            if (read <= limit) {
+                content.buffer = buffer;
+                content.size = read;
+                if (reserved > 0) {
+                    memoryBudget.release(reserved - (int) read);
+                    content.memoryBudget = memoryBudget;
+                    content.reserved = (int) read;
+                    reserved = 0;
+                }
+            } else {
+                content.file = File.createTempFile("content-item", ".tmp", workDir);
+                try (OutputStream outStream = FileUtils.openOutputStream(content.file)) {
+                    buffer.writeTo(outStream);
+                    buffer = null;
+                    content.size = read + IOUtils.copyLarge(digestStream, outStream);
+                } catch (IOException e) {
+                    content.release();
+                    throw e;
+                }
+            }
+        } finally {
+            if (reserved > 0) {
+                memoryBudget.release(reserved);
+            }
+        }
+
+        content.checksum = ChecksumUtil.checksumBytesToString(digest.digest());
+        return content;
+    }
+
+    /**
+     * Wraps content which has already been written to a file.
+     *
+     * @param file     the file holding the content
+     * @param size     the size of the content in bytes
+     * @param checksum the MD5 checksum of the content
+     * @return the spooled content
+     */
+    static SpooledContent fromFile(File file, long size, String checksum) {
+        SpooledContent content = new SpooledContent();
+        content.file = file;
+        content.size = size;
+        content.checksum = checksum;
+        return content;
+    }
+
+    /**
+     * @return the MD5 checksum of the spooled content
+     */
+    String getChecksum() {
+        return checksum;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    boolean isInMemory() {
+        return buffer != null;
+    }
+
+    /**
+     * @return a new stream over the spooled content
+     * @throws IOException
+     */
+    InputStream openStream() throws IOException {
+        if (isInMemory()) {
+            return buffer.toInputStream();
+        }
+        return FileUtils.openInputStream(file);
+    }
+
+    /**
+     * Releases the memory or temp file holding the content.
+     *
+     * @throws IOException if the temp file could not be deleted
+     */
+    void release() throws IOException {
+        buffer = null;
+        if (memoryBudget != null) {
+            memoryBudget.release(reserved);
+            memoryBudget = null;
+        }
+        if (file != null) {
+            File toDelete = file;
+            file = null;
+            FileUtils.forceDelete(toDelete);
+        }
+    }
+
+    /**
+     * Allows the buffered bytes to be read back without copying them.
+     */
+    private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+        ExposedByteArrayOutputStream(int size) {
+            super(size);
+        }
+
+        InputStream toInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.workman;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs workers on a fixed size pool of platform threads.
+ *
+ * @author Daniel Bernstein
+ */
+public class PooledTaskWorkerExecutor implements TaskWorkerExecutor {
+
+    private ThreadPoolExecutor executor;
+
+    public PooledTaskWorkerExecutor(int maxWorkers) {
+        //With a bound pool and unbounded queue, rejection should never occur.
+        this.executor = new ThreadPoolExecutor(maxWorkers,
+                                               maxWorkers,
+                                               0L, TimeUnit.MILLISECONDS,
+                                               new LinkedBlockingQueue<Runnable>());
+
+        this.executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    @Override
+    public void execute(TaskWorker worker) {
+        this.executor.execute(worker);
+    }
+
+    @Override
+    public int getMaxWorkers() {
+        return this.executor.getMaximumPoolSize();
+    }
+
+    @Override
+    public int getActiveCount() {
+        return this.executor.getActiveCount();
+    }
+
+    @Override
+    public int getQueuedCount() {
+        return this.executor.getQueue().size();
+    }
+
+    @Override
+    public long getCompletedCount() {
+        return this.executor.getCompletedTaskCount();
+    }
+
+    @Override
+    public void shutdown() {
+        this.executor.shutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return this.executor.isTerminated();
+    }
+}
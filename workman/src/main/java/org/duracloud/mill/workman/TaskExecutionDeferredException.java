@@ -0,0 +1,34 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.workman;
+
+/**
+ * Thrown by a <code>TaskProcessor</code> when a task cannot be completed yet
+ * and should be attempted again after a delay. Rather than holding the worker
+ * for the duration of the delay, the <code>TaskWorker</code> frees itself and
+ * requeues the task once the delay has elapsed.
+ *
+ * @author Daniel Bernstein
+ */
+public class TaskExecutionDeferredException extends TaskExecutionFailedException {
+
+    private long delayMs;
+
+    public TaskExecutionDeferredException(String message, long delayMs) {
+        super(message);
+        this.delayMs = delayMs;
+    }
+
+    /**
+     * @return the number of milliseconds to wait before the task is retried.
+     */
+    public long getDelayMs() {
+        return delayMs;
+    }
+
+}
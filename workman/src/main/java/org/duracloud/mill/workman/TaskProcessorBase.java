@@ -39,6 +39,9 @@ public abstract class TaskProcessorBase implements TaskProcessor {
         try {
             executeImpl();
             log.info(createMessage("success", System.currentTimeMillis() - startTime));
+        } catch (TaskExecutionDeferredException ex) {
+            log.info(createMessage("deferred", System.currentTimeMillis() - startTime));
+            throw ex;
         } catch (TaskExecutionFailedException ex) {
             log.error(createMessage("failure", System.currentTimeMillis() - startTime));
             throw ex;
@@ -0,0 +1,55 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.workman;
+
+/**
+ * Runs <code>TaskWorker</code>s on behalf of the <code>TaskWorkerManager</code>
+ * and reports on how busy the workers are.
+ *
+ * @author Daniel Bernstein
+ */
+public interface TaskWorkerExecutor {
+
+    /**
+     * Schedules the worker for execution.
+     *
+     * @param worker
+     */
+    void execute(TaskWorker worker);
+
+    /**
+     * @return the maximum number of workers that may run concurrently
+     */
+    int getMaxWorkers();
+
+    /**
+     * @return the number of workers currently running
+     */
+    int getActiveCount();
+
+    /**
+     * @return the number of workers that have been accepted but not yet started
+     */
+    int getQueuedCount();
+
+    /**
+     * @return the number of workers that have finished running
+     */
+    long getCompletedCount();
+
+    /**
+     * Stops accepting new workers. Workers that have already been accepted
+     * will run to completion.
+     */
+    void shutdown();
+
+    /**
+     * @return true if all workers have completed following shutdown.
+     */
+    boolean isTerminated();
+}
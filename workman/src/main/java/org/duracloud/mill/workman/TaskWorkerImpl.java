@@ -32,9 +32,9 @@ public class TaskWorkerImpl implements TaskWorker {
     private TaskProcessorFactory processorFactory;
     private TaskQueue queue;
     private TaskQueue deadLetterQueue;
-    private boolean done = false;
+    private volatile boolean done = false;
     private boolean started = false;
-    private Runnable currentTimerTask;
+    private volatile Runnable currentTimerTask;
     private Task task;
     private boolean initialized = false;
 
@@ -134,6 +134,7 @@ public class TaskWorkerImpl implements TaskWorker {
         }
 
         started = true;
+        boolean deferred = false;
 
         try {
             log.debug("{} dequeued {}", this, this.task);
@@ -148,34 +149,76 @@ public class TaskWorkerImpl implements TaskWorker {
                      "success",
                      System.currentTimeMillis() - startTime);
 
-        } catch (Throwable t) {
+        } catch (TaskExecutionDeferredException e) {
             int attempts = task.getAttempts();
-            log.error(MessageFormat.format("failed to complete:  task_type={0} attempts={1} "
-                                           + "result=failure elapsed_time={2} properties=\"{3}\" "
-                                           + "message=\"{4}\"",
-                                           task.getType().name(),
-                                           attempts,
-                                           System.currentTimeMillis() - startTime,
-                                           task.getProperties(),
-                                           t.getMessage()), t);
-
             if (attempts < TaskWorker.MAX_ATTEMPTS) {
-                requeueTask(this.task);
+                log.info("deferred task:  task_type={} task_class={} attempts={} result={} elapsed_time={} " +
+                         "retry_delay={} message=\"{}\"",
+                         new Object[] {task.getType(),
+                                       task.getClass().getSimpleName(),
+                                       attempts,
+                                       "deferred",
+                                       System.currentTimeMillis() - startTime,
+                                       e.getDelayMs(),
+                                       e.getMessage()});
+                deferred = true;
+                scheduleRequeue(this.task, e.getDelayMs());
             } else {
-                task.addProperty("error", t.getClass().getName() + ":" + t.getMessage());
-                sendToDeadLetterQueue(task);
+                handleFailure(e, startTime);
             }
-
+        } catch (Throwable t) {
+            handleFailure(t, startTime);
         } finally {
-            done = true;
-            if (this.currentTimerTask != null) {
-                this.timer.remove(this.currentTimerTask);
+            if (!deferred) {
+                stopVisibilityTimeoutExtender();
             }
 
             log.debug("task worker finished {}", this.task);
         }
     }
 
+    private void handleFailure(Throwable t, long startTime) {
+        int attempts = task.getAttempts();
+        log.error(MessageFormat.format("failed to complete:  task_type={0} attempts={1} "
+                                       + "result=failure elapsed_time={2} properties=\"{3}\" "
+                                       + "message=\"{4}\"",
+                                       task.getType().name(),
+                                       attempts,
+                                       System.currentTimeMillis() - startTime,
+                                       task.getProperties(),
+                                       t.getMessage()), t);
+
+        if (attempts < TaskWorker.MAX_ATTEMPTS) {
+            requeueTask(this.task);
+        } else {
+            task.addProperty("error", t.getClass().getName() + ":" + t.getMessage());
+            sendToDeadLetterQueue(task);
+        }
+    }
+
+    private void stopVisibilityTimeoutExtender() {
+        done = true;
+        if (this.currentTimerTask != null) {
+            this.timer.remove(this.currentTimerTask);
+        }
+    }
+
+    /**
+     * Requeues the task once the delay has elapsed. The visibility timeout of the
+     * task continues to be extended in the meantime so that it is not redelivered
+     * before the delay is up.
+     */
+    private void scheduleRequeue(final Task task, long delayMs) {
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                stopVisibilityTimeoutExtender();
+                requeueTask(task);
+                log.debug("requeued deferred task {}", task);
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
     private void requeueTask(Task task) {
         try {
             this.queue.requeue(task);
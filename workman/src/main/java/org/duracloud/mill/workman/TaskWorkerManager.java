@@ -8,18 +8,20 @@
 package org.duracloud.mill.workman;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Queue;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.commons.lang.StringUtils;
 import org.duracloud.common.queue.TaskQueue;
 import org.duracloud.common.queue.TimeoutException;
+import org.duracloud.common.queue.task.Task;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,12 +33,19 @@ public class TaskWorkerManager {
 
     public static final int DEFAULT_MAX_WORKERS = 5;
     public static final String MAX_WORKER_PROPERTY_KEY = "max-workers";
+    public static final String EXECUTION_MODE_PROPERTY_KEY = "worker-execution-mode";
+    public static final String EXECUTION_MODE_POOLED = "pooled";
+    public static final String EXECUTION_MODE_VIRTUAL = "virtual";
     public static final String MIN_WAIT_BEFORE_TAKE_KEY = "min-wait-before-take";
     public static final long DEFAULT_MIN_WAIT_BEFORE_TAKE = 15 * 1000;
+    public static final String MAX_PREFETCH_SIZE_KEY = "max-prefetch-size";
+    //SQS will not return more than 10 messages from a single receive
+    public static final int DEFAULT_MAX_PREFETCH_SIZE = 10;
     private static final long DEFAULT_MAX_WAIT_BEFORE_TAKE = 8 * 60 * 1000;
     private Long defaultMinWaitTime = DEFAULT_MIN_WAIT_BEFORE_TAKE;
+    private int maxPrefetchSize = DEFAULT_MAX_PREFETCH_SIZE;
     private TaskWorkerFactory factory;
-    private ThreadPoolExecutor executor;
+    private TaskWorkerExecutor executor;
     private boolean stop = false;
     private Timer timer = new Timer();
     private List<TaskQueueExecutor> taskQueueExecutors;
@@ -87,13 +96,17 @@ public class TaskWorkerManager {
         Integer maxThreadCount = new Integer(System.getProperty(MAX_WORKER_PROPERTY_KEY,
                                                                 String.valueOf(DEFAULT_MAX_WORKERS)));
 
-        //With a bound pool and unbounded queue, rejection should never occur.
-        this.executor = new ThreadPoolExecutor(maxThreadCount,
-                                               maxThreadCount,
-                                               0L, TimeUnit.MILLISECONDS,
-                                               new LinkedBlockingQueue<Runnable>());
+        this.maxPrefetchSize = Math.max(1, new Integer(System.getProperty(MAX_PREFETCH_SIZE_KEY,
+                                                                          String.valueOf(DEFAULT_MAX_PREFETCH_SIZE))));
 
-        this.executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+        String executionMode = System.getProperty(EXECUTION_MODE_PROPERTY_KEY, EXECUTION_MODE_POOLED);
+        if (EXECUTION_MODE_VIRTUAL.equalsIgnoreCase(executionMode.trim())) {
+            this.executor = new VirtualThreadTaskWorkerExecutor(maxThreadCount);
+        } else {
+            this.executor = new PooledTaskWorkerExecutor(maxThreadCount);
+        }
+
+        log.info("task workers will run in {} mode: max_workers={}", executionMode, maxThreadCount);
 
         new Thread(new Runnable() {
             @Override
@@ -114,11 +127,12 @@ public class TaskWorkerManager {
 
                 queueStats.add(formatQueueStat(deadLetterQueue));
 
-                log.info("Status: max_workers={} running_workers={} completed_workers={}" +
-                         queueStats,
+                log.info("Status: max_workers={} running_workers={} completed_workers={} " +
+                         "prefetched_tasks={} {}",
                          new Object[] {getMaxWorkers(),
                                        executor.getActiveCount(),
-                                       executor.getCompletedTaskCount(),
+                                       executor.getCompletedCount(),
+                                       getPrefetchedCount(),
                                        StringUtils.join(queueStats, " ")
                          });
             }
@@ -162,12 +176,20 @@ public class TaskWorkerManager {
         }
     }
 
+    /**
+     * Dispatches tasks from a single queue to the worker pool. Tasks are
+     * received in batches sized to the number of idle workers and held in a
+     * bounded local buffer until a worker is available. A TaskWorker is created
+     * as soon as a task is received so that the visibility timeout of the task
+     * is extended while it waits in the buffer.
+     */
     private class TaskQueueExecutor {
         private TaskQueue taskQueue;
         private long currentWaitBeforeTaskMs;
         private Date nextAttempt = null;
         private long minWaitTime;
         private long maxWaitTime;
+        private Queue<TaskWorker> prefetched = new ConcurrentLinkedQueue<>();
 
         public TaskQueueExecutor(TaskQueue taskQueue, long minWaitTime, long maxWaitTime) {
             this.taskQueue = taskQueue;
@@ -180,25 +202,84 @@ public class TaskWorkerManager {
          * @return true if a task was executed.
          */
         public boolean execute() {
-            if (nextAttempt != null &&
-                nextAttempt.getTime() > System.currentTimeMillis()) {
+            if (prefetched.isEmpty()) {
+                if (nextAttempt != null &&
+                    nextAttempt.getTime() > System.currentTimeMillis()) {
+                    return false;
+                }
+
+                try {
+                    prefetch(Math.min(getIdleWorkerCount(), maxPrefetchSize));
+                    nextAttempt = null;
+                    currentWaitBeforeTaskMs = minWaitTime;
+                } catch (TimeoutException e) {
+                    log.debug("Timeout: {} queue is empty:  message={}", taskQueue.getName(), e.getMessage());
+                    nextAttempt = new Date(System.currentTimeMillis() + currentWaitBeforeTaskMs);
+                    currentWaitBeforeTaskMs = Math.min(currentWaitBeforeTaskMs * 2, maxWaitTime);
+                    return false;
+                }
+            }
+
+            TaskWorker worker = prefetched.poll();
+            if (worker == null) {
                 return false;
             }
 
+            executor.execute(worker);
+            return true;
+        }
+
+        private void prefetch(int maxTasks) throws TimeoutException {
+            Set<Task> tasks;
+            if (maxTasks <= 1) {
+                tasks = Collections.singleton(taskQueue.take());
+            } else {
+                tasks = taskQueue.take(maxTasks);
+            }
+
+            for (Task task : tasks) {
+                try {
+                    //creating the worker starts the extension of the task's visibility timeout
+                    prefetched.add(factory.create(task, taskQueue));
+                } catch (Exception e) {
+                    //the rest of the batch is still executed; this task is put back on the
+                    //queue rather than being left invisible until its timeout expires.
+                    log.error("failed to create worker for task " + task + " from " + taskQueue.getName() +
+                              ": requeueing it", e);
+                    requeue(task);
+                }
+            }
+
+            log.debug("prefetched {} tasks from {} (requested {})",
+                      new Object[] {tasks.size(), taskQueue.getName(), maxTasks});
+        }
+
+        private void requeue(Task task) {
             try {
-                TaskWorker worker = factory.create(taskQueue.take(), taskQueue);
-                executor.execute(worker);
-                nextAttempt = null;
-                currentWaitBeforeTaskMs = minWaitTime;
-                return true;
-            } catch (TimeoutException e) {
-                log.debug("Timeout: {} queue is empty:  message={}", taskQueue.getName(), e.getMessage());
-                nextAttempt = new Date(System.currentTimeMillis() + currentWaitBeforeTaskMs);
-                currentWaitBeforeTaskMs = Math.min(currentWaitBeforeTaskMs * 2, maxWaitTime);
-                return false;
+                taskQueue.requeue(task);
+            } catch (Exception e) {
+                log.error("failed to requeue task " + task + " on " + taskQueue.getName(), e);
             }
         }
 
+        public int getPrefetchedCount() {
+            return prefetched.size();
+        }
+
+    }
+
+    private int getIdleWorkerCount() {
+        return Math.max(0, this.executor.getMaxWorkers()
+                           - this.executor.getActiveCount()
+                           - this.executor.getQueuedCount());
+    }
+
+    private int getPrefetchedCount() {
+        int count = 0;
+        for (TaskQueueExecutor taskQueueExecutor : this.taskQueueExecutors) {
+            count += taskQueueExecutor.getPrefetchedCount();
+        }
+        return count;
     }
 
     /**
@@ -206,8 +287,8 @@ public class TaskWorkerManager {
      */
     private boolean isManagerTooBusy() {
         int active = this.executor.getActiveCount();
-        int maxPoolSize = this.executor.getMaximumPoolSize();
-        int queueSize = this.executor.getQueue().size();
+        int maxPoolSize = this.executor.getMaxWorkers();
+        int queueSize = this.executor.getQueuedCount();
 
         boolean tooBusy = active + queueSize >= maxPoolSize;
 
@@ -220,7 +301,7 @@ public class TaskWorkerManager {
     }
 
     public int getMaxWorkers() {
-        return executor.getMaximumPoolSize();
+        return executor.getMaxWorkers();
     }
 
     private void sleep(long ms) {
@@ -234,6 +315,9 @@ public class TaskWorkerManager {
     public void destroy() {
         stop = true;
         timer.cancel();
+        //prefetched tasks are not deleted and will become visible on
+        //the queue again once their visibility timeouts expire.
+        log.info("releasing {} prefetched tasks", getPrefetchedCount());
         executor.shutdown();
         log.info("terminating...waiting for threads to complete processing...");
         while (!executor.isTerminated()) {
@@ -0,0 +1,118 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.workman;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs each worker on its own thread, using a virtual thread when the JVM
+ * supports them (Java 21+). The number of concurrently running workers is
+ * bounded by a semaphore rather than by the size of a thread pool which makes
+ * it practical to run thousands of I/O bound workers in a single JVM.
+ *
+ * On JVMs without virtual thread support an unbounded pool of platform
+ * threads is used instead; concurrency is still bounded by the semaphore.
+ *
+ * @author Daniel Bernstein
+ */
+public class VirtualThreadTaskWorkerExecutor implements TaskWorkerExecutor {
+
+    private static Logger log = LoggerFactory.getLogger(VirtualThreadTaskWorkerExecutor.class);
+
+    private ExecutorService executor;
+    private Semaphore permits;
+    private int maxWorkers;
+    private AtomicInteger activeCount = new AtomicInteger(0);
+    private AtomicLong completedCount = new AtomicLong(0);
+
+    public VirtualThreadTaskWorkerExecutor(int maxWorkers) {
+        this.maxWorkers = maxWorkers;
+        this.permits = new Semaphore(maxWorkers);
+        this.executor = createExecutor();
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            //looked up reflectively since the code base targets a pre-21 language level.
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            ExecutorService executor = (ExecutorService) method.invoke(null);
+            log.info("running task workers on virtual threads");
+            return executor;
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            log.warn("virtual threads are not supported by this JVM (java.version={}): " +
+                     "running task workers on a cached platform thread pool instead.",
+                     System.getProperty("java.version"));
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    @Override
+    public void execute(final TaskWorker worker) {
+        //the manager only hands over a worker when a permit is available so this
+        //should not block for any appreciable time.
+        permits.acquireUninterruptibly();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    activeCount.incrementAndGet();
+                    try {
+                        worker.run();
+                    } finally {
+                        activeCount.decrementAndGet();
+                        completedCount.incrementAndGet();
+                        permits.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public int getMaxWorkers() {
+        return this.maxWorkers;
+    }
+
+    @Override
+    public int getActiveCount() {
+        return this.activeCount.get();
+    }
+
+    @Override
+    public int getQueuedCount() {
+        //workers that hold a permit but have not yet started running
+        return Math.max(0, this.maxWorkers - this.permits.availablePermits() - this.activeCount.get());
+    }
+
+    @Override
+    public long getCompletedCount() {
+        return this.completedCount.get();
+    }
+
+    @Override
+    public void shutdown() {
+        this.executor.shutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return this.executor.isTerminated();
+    }
+}
@@ -8,11 +8,14 @@
 package org.duracloud.mill.workman.spring;
 
 import java.io.File;
+import java.text.MessageFormat;
 import java.util.LinkedList;
 import java.util.List;
+import javax.sql.DataSource;
 
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
+import org.apache.commons.dbcp2.BasicDataSource;
 import org.duracloud.account.db.repo.DuracloudAccountRepo;
 import org.duracloud.common.model.EmailerType;
 import org.duracloud.common.queue.QueueType;
@@ -26,14 +29,23 @@ import org.duracloud.mill.auditor.AuditLogStore;
 import org.duracloud.mill.auditor.jpa.JpaAuditLogStore;
 import org.duracloud.mill.bit.BitIntegrityCheckTaskProcessorFactory;
 import org.duracloud.mill.bit.BitIntegrityReportTaskProcessorFactory;
+import org.duracloud.mill.bit.JpaBitManifestItemRepo;
+import org.duracloud.mill.bit.SpaceComparisonTaskProcessor;
 import org.duracloud.mill.bit.SpaceComparisonTaskProcessorFactory;
 import org.duracloud.mill.bitlog.BitLogStore;
+import org.duracloud.mill.bitlog.jpa.BatchingBitLogStore;
 import org.duracloud.mill.bitlog.jpa.JpaBitLogItemRepo;
+import org.duracloud.mill.bitlog.jpa.JpaBitLogRunRepo;
 import org.duracloud.mill.bitlog.jpa.JpaBitLogStore;
+import org.duracloud.mill.bitlog.jpa.JpaBitVerifiedItemRepo;
+import org.duracloud.mill.common.storageprovider.CachingStorageProviderFactory;
+import org.duracloud.mill.common.storageprovider.SpaceExistenceCache;
 import org.duracloud.mill.common.storageprovider.StorageProviderFactory;
 import org.duracloud.mill.common.taskproducer.TaskProducerConfigurationManager;
+import org.duracloud.mill.config.ConfigConstants;
 import org.duracloud.mill.config.ConfigurationManager;
 import org.duracloud.mill.credentials.CredentialsRepo;
+import org.duracloud.mill.credentials.impl.CachingCredentialsRepo;
 import org.duracloud.mill.credentials.impl.DefaultCredentialsRepoImpl;
 import org.duracloud.mill.db.repo.JpaAuditLogItemRepo;
 import org.duracloud.mill.db.repo.JpaBitIntegrityReportRepo;
@@ -95,14 +107,16 @@ public class AppConfig {
         @Qualifier("auditTaskProcessorFactory") MultiStepTaskProcessorFactory auditTaskProcessorFactory,
         StorageStatsTaskProcessorFactory storageStatsTaskProcessorFactory,
         TaskProducerConfigurationManager configurationManager,
-        ManifestStore manifestStore) {
+        ManifestStore manifestStore,
+        SpaceExistenceCache spaceExistenceCache) {
 
         RootTaskProcessorFactory factory = new RootTaskProcessorFactory();
         factory.addTaskProcessorFactory(new DuplicationTaskProcessorFactory(repo,
                                                                             storageProviderFactory,
                                                                             workDir,
                                                                             auditQueue(configurationManager),
-                                                                            manifestStore));
+                                                                            manifestStore,
+                                                                            spaceExistenceCache));
         factory.addTaskProcessorFactory(auditTaskProcessorFactory);
         factory.addTaskProcessorFactory(bitCheckTaskProcessorFactory);
         factory.addTaskProcessorFactory(bitReportTaskProcessorFactory);
@@ -120,14 +134,16 @@ public class AppConfig {
         BitLogStore bitLogStore,
         TaskQueue bitErrorQueue,
         TaskQueue auditQueue,
-        ManifestStore manifestStore) {
+        ManifestStore manifestStore,
+        JpaBitManifestItemRepo bitManifestItemRepo) {
 
         return new BitIntegrityCheckTaskProcessorFactory(credentialRepo,
                                                          storageProviderFactory,
                                                          bitLogStore,
                                                          bitErrorQueue,
                                                          auditQueue,
-                                                         manifestStore);
+                                                         manifestStore,
+                                                         bitManifestItemRepo);
     }
 
     @Bean
@@ -146,24 +162,31 @@ public class AppConfig {
     @Bean(name = "bitReportProcessorFactory")
     public MultiStepTaskProcessorFactory bitReportProcessorFactory(
         @Qualifier("credentialsRepo") CredentialsRepo credentialRepo,
-        ManifestStore manifestStore,
         StorageProviderFactory storageProviderFactory,
         BitLogStore bitLogStore,
         TaskQueue bitErrorQueue,
         TaskProducerConfigurationManager config,
-        NotificationManager notificationManager) {
+        NotificationManager notificationManager,
+        JpaBitManifestItemRepo bitManifestItemRepo) {
+
+        int comparisonBatchSize =
+            Integer.parseInt(System.getProperty(ConfigConstants.SPACE_COMPARISON_BATCH_SIZE,
+                                                String.valueOf(SpaceComparisonTaskProcessor.DEFAULT_BATCH_SIZE)));
 
         MultiStepTaskProcessorFactory factory = new MultiStepTaskProcessorFactory();
         factory.addFactory(new SpaceComparisonTaskProcessorFactory(credentialRepo,
                                                                    storageProviderFactory,
                                                                    bitLogStore,
                                                                    bitErrorQueue,
-                                                                   manifestStore));
+                                                                   bitManifestItemRepo,
+                                                                   comparisonBatchSize));
         factory.addFactory(new BitIntegrityReportTaskProcessorFactory(credentialRepo,
                                                                       bitLogStore,
                                                                       storageProviderFactory,
                                                                       config,
-                                                                      notificationManager));
+                                                                      notificationManager,
+                                                                      Boolean.getBoolean(
+                                                                          ConfigConstants.BIT_REPORT_GZIP)));
         return factory;
     }
 
@@ -184,15 +207,24 @@ public class AppConfig {
         return factory;
     }
 
-    @Bean(name = "credentialsRepo")
-    public CredentialsRepo credentialRepo(ConfigurationManager configurationManager,
-                                          DuracloudAccountRepo accountRepo) {
-        return new DefaultCredentialsRepoImpl(accountRepo);
+    @Bean(name = "credentialsRepo", initMethod = "init", destroyMethod = "destroy")
+    public CachingCredentialsRepo credentialRepo(ConfigurationManager configurationManager,
+                                                 DuracloudAccountRepo accountRepo) {
+        return new CachingCredentialsRepo(
+            new DefaultCredentialsRepoImpl(accountRepo),
+            Long.getLong(ConfigConstants.CREDENTIALS_CACHE_TTL_MS, CachingCredentialsRepo.DEFAULT_TIME_TO_LIVE_MS),
+            Long.getLong(ConfigConstants.CREDENTIALS_CACHE_NEGATIVE_TTL_MS,
+                         CachingCredentialsRepo.DEFAULT_NEGATIVE_TIME_TO_LIVE_MS));
     }
 
     @Bean
     StorageProviderFactory storageProviderFactory() {
-        return new StorageProviderFactory();
+        return new CachingStorageProviderFactory();
+    }
+
+    @Bean
+    SpaceExistenceCache spaceExistenceCache() {
+        return new SpaceExistenceCache();
     }
 
     @Bean
@@ -205,9 +237,56 @@ public class AppConfig {
         return new JpaManifestStore(manifestItemRepo);
     }
 
+    // the single connection used by the bit log writer to insert batches of
+    // results; rewriteBatchedStatements has the driver send each batch as a
+    // multi-row insert.
+    @Bean(destroyMethod = "close")
+    public BasicDataSource bitLogDataSource() {
+        BasicDataSource dataSource = new BasicDataSource();
+        dataSource.setDriverClassName("com.mysql.jdbc.Driver");
+        dataSource.setUrl(MessageFormat.format(
+            "jdbc:mysql://{0}:{1}/{2}?characterEncoding=utf8&rewriteBatchedStatements=true",
+            System.getProperty(ConfigConstants.MILL_DB_HOST),
+            System.getProperty(ConfigConstants.MILL_DB_PORT),
+            System.getProperty(ConfigConstants.MILL_DB_NAME)));
+        dataSource.setUsername(System.getProperty(ConfigConstants.MILL_DB_USER));
+        dataSource.setPassword(System.getProperty(ConfigConstants.MILL_DB_PASS));
+        dataSource.setMaxTotal(1);
+        dataSource.setTestOnBorrow(true);
+        dataSource.setValidationQuery("select 1");
+        return dataSource;
+    }
+
+    // the inferred destroy method calls BatchingBitLogStore.shutdown(), which
+    // writes any waiting results; it runs after the task workers, which depend
+    // on this bean, have been destroyed, and before the data source it
+    // depends on is closed.
     @Bean
-    public BitLogStore bitLogStore(JpaBitLogItemRepo bitLogRepo, JpaBitIntegrityReportRepo reportRep) {
-        return new JpaBitLogStore(bitLogRepo, reportRep);
+    public BitLogStore bitLogStore(JpaBitLogItemRepo bitLogRepo,
+                                   JpaBitIntegrityReportRepo reportRep,
+                                   JpaBitLogRunRepo bitLogRunRepo,
+                                   JpaBitVerifiedItemRepo bitVerifiedItemRepo,
+                                   @Qualifier("bitLogDataSource") DataSource bitLogDataSource) {
+        int batchSize = Integer.parseInt(System.getProperty(ConfigConstants.BIT_LOG_BATCH_SIZE,
+                                                            String.valueOf(BatchingBitLogStore.DEFAULT_BATCH_SIZE)));
+        JpaBitLogStore bitLogStore;
+        if (batchSize <= 1) {
+            bitLogStore = new JpaBitLogStore(bitLogRepo, reportRep, bitLogRunRepo, bitVerifiedItemRepo);
+        } else {
+            long maxDelayMs = Long.parseLong(
+                System.getProperty(ConfigConstants.BIT_LOG_BATCH_DELAY_MS,
+                                   String.valueOf(BatchingBitLogStore.DEFAULT_MAX_DELAY_MS)));
+            BatchingBitLogStore batchingStore =
+                new BatchingBitLogStore(bitLogRepo, reportRep, bitLogRunRepo, bitVerifiedItemRepo, batchSize,
+                                        maxDelayMs);
+            batchingStore.setDataSource(bitLogDataSource);
+            bitLogStore = batchingStore;
+        }
+        bitLogStore.setPartitionByRun(Boolean.getBoolean(ConfigConstants.BIT_LOG_PARTITION_BY_RUN));
+        bitLogStore.setSummarizeSuccesses(Boolean.getBoolean(ConfigConstants.BIT_LOG_SUMMARIZE_SUCCESSES));
+        bitLogStore.setRecordVerification(
+            Integer.getInteger(ConfigConstants.BIT_LOG_VERIFICATION_INTERVAL_DAYS, 0) > 0);
+        return bitLogStore;
     }
 
     @Bean
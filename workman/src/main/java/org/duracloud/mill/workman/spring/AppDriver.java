@@ -76,6 +76,7 @@ public class AppDriver extends DriverSupport {
                                                .addSwift()
                                                .addMillDb()
                                                .addMcDb()
+                                               .addCredentialsCacheTtl()
                                                .addDeadLetterQueue()
                                                .addQueueType()
                                                .addRabbitMQConfig()
@@ -91,7 +92,19 @@ public class AppDriver extends DriverSupport {
                                                .addDuplicationPolicyRefreshFrequency()
                                                .addDuplicationHighPriorityQueue()
                                                .addLocalDuplicationDir()
+                                               .addDuplicationMaxInMemorySize()
+                                               .addDuplicationParallelDownloadThreshold()
+                                               .addDuplicationServerSideCopy()
+                                               .addDuplicationMetadataThreads()
+                                               .addBitLogBatchSize()
+                                               .addBitLogBatchDelayMs()
+                                               .addBitLogPartitionByRun()
+                                               .addBitLogSummarizeSuccesses()
+                                               .addBitLogVerificationIntervalDays()
+                                               .addSpaceComparisonBatchSize()
+                                               .addBitReportGzip()
                                                .addMaxWorkers()
+                                               .addWorkerExecutionMode()
                                                .build();
         PropertyVerifier verifier = new PropertyVerifier(defintions);
         verifier.verify(System.getProperties());
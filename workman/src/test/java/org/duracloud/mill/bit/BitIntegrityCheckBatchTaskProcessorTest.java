@@ -0,0 +1,219 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.bit;
+
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.isA;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.duracloud.common.queue.TaskQueue;
+import org.duracloud.common.queue.task.Task;
+import org.duracloud.common.util.DateUtil;
+import org.duracloud.mill.bitlog.BitIntegrityResult;
+import org.duracloud.mill.bitlog.BitLogItem;
+import org.duracloud.mill.bitlog.BitLogStore;
+import org.duracloud.mill.db.model.ManifestItem;
+import org.duracloud.mill.manifest.ManifestStore;
+import org.duracloud.mill.workman.TaskExecutionFailedException;
+import org.duracloud.storage.domain.StorageProviderType;
+import org.duracloud.storage.provider.StorageProvider;
+import org.easymock.EasyMock;
+import org.easymock.EasyMockRunner;
+import org.easymock.EasyMockSupport;
+import org.easymock.Mock;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * @author Daniel Bernstein
+ */
+@RunWith(EasyMockRunner.class)
+public class BitIntegrityCheckBatchTaskProcessorTest extends EasyMockSupport {
+
+    private static final String account = "account-id";
+    private static final String storeId = "store-id";
+    private static final String spaceId = "space-id";
+    private static final long runId = 3L;
+    private static final String checksum = "checksum";
+    private static final StorageProviderType storeType = StorageProviderType.AMAZON_GLACIER;
+
+    @Mock
+    private StorageProvider store;
+    @Mock
+    private ManifestStore manifestStore;
+    @Mock
+    private JpaBitManifestItemRepo manifestItemRepo;
+    @Mock
+    private BitLogStore bitLogStore;
+    @Mock
+    private TaskQueue bitErrorQueue;
+    @Mock
+    private TaskQueue auditQueue;
+
+    @After
+    public void teardown() {
+        verifyAll();
+    }
+
+    private Task createTask(String... contentIds) {
+        BitIntegrityCheckBatchTask batchTask = new BitIntegrityCheckBatchTask();
+        batchTask.setAccount(account);
+        batchTask.setStoreId(storeId);
+        batchTask.setSpaceId(spaceId);
+        batchTask.setRunId(runId);
+        batchTask.setContentIds(Arrays.asList(contentIds));
+        return batchTask.writeTask();
+    }
+
+    @Test
+    public void testSplitContentIdsBySize() {
+        replayAll();
+        char[] chars = new char[1000];
+        Arrays.fill(chars, 'a');
+        String longId = new String(chars);
+        List<String> contentIds = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            contentIds.add(longId + i);
+        }
+
+        List<List<String>> batches = BitIntegrityCheckBatchTask.split(contentIds, 250);
+        assertEquals(2, batches.size());
+        assertEquals(contentIds, concat(batches));
+        for (List<String> batch : batches) {
+            Task task = createTask(batch.toArray(new String[batch.size()]));
+            assertTrue(task.getProperty(BitIntegrityCheckBatchTask.CONTENT_IDS_KEY).length() <=
+                       BitIntegrityCheckBatchTask.MAX_CONTENT_IDS_BYTES);
+        }
+
+        // short content ids are split by count only
+        assertEquals(3, BitIntegrityCheckBatchTask.split(Arrays.asList("a", "b", "c", "d", "e"), 2).size());
+    }
+
+    private List<String> concat(List<List<String>> batches) {
+        List<String> all = new ArrayList<>();
+        for (List<String> batch : batches) {
+            all.addAll(batch);
+        }
+        return all;
+    }
+
+    private BitIntegrityCheckBatchTaskProcessor createTaskProcessor(Task task) {
+        BitIntegrityCheckBatchTask batchTask = new BitIntegrityCheckBatchTask();
+        batchTask.readTask(task);
+        return new BitIntegrityCheckBatchTaskProcessor(task,
+                                                       batchTask,
+                                                       store,
+                                                       manifestStore,
+                                                       manifestItemRepo,
+                                                       storeType,
+                                                       bitLogStore,
+                                                       bitErrorQueue,
+                                                       auditQueue);
+    }
+
+    private void mockManifestItems(Map<String, String> checksums) {
+        List<ManifestItem> items = new ArrayList<>();
+        for (Map.Entry<String, String> entry : checksums.entrySet()) {
+            ManifestItem item = new ManifestItem();
+            item.setContentId(entry.getKey());
+            item.setContentChecksum(entry.getValue());
+            items.add(item);
+        }
+        expect(manifestItemRepo.findByAccountAndStoreIdAndSpaceIdAndContentIdIn(eq(account),
+                                                                                 eq(storeId),
+                                                                                 eq(spaceId),
+                                                                                 EasyMock.<Collection<String>>anyObject()))
+            .andReturn(items);
+    }
+
+    private void mockStoreChecksum(String contentId, String checksum) {
+        Calendar c = Calendar.getInstance();
+        c.add(Calendar.DATE, -1);
+        Map<String, String> props = new HashMap<>();
+        props.put(StorageProvider.PROPERTIES_CONTENT_CHECKSUM, checksum);
+        props.put(StorageProvider.PROPERTIES_CONTENT_MODIFIED, DateUtil.convertToString(c.getTimeInMillis()));
+        expect(store.getContentProperties(spaceId, contentId)).andReturn(props);
+    }
+
+    private void mockSuccessWrite(String contentId) throws Exception {
+        expect(bitLogStore.summarizeSuccess(account, storeId, spaceId, runId, contentId, checksum, 0L))
+            .andReturn(false);
+        expect(bitLogStore.write(eq(account),
+                                 eq(storeId),
+                                 eq(spaceId),
+                                 eq(runId),
+                                 eq(contentId),
+                                 isA(Date.class),
+                                 eq(storeType),
+                                 eq(BitIntegrityResult.SUCCESS),
+                                 EasyMock.<String>isNull(),
+                                 eq(checksum),
+                                 eq(checksum),
+                                 isA(String.class)))
+            .andReturn(EasyMock.createMock(BitLogItem.class));
+        bitLogStore.recordVerified(eq(account), eq(storeId), eq(spaceId), eq(contentId), isA(Date.class));
+        EasyMock.expectLastCall();
+    }
+
+    @Test
+    public void testSuccess() throws Exception {
+        Map<String, String> checksums = new HashMap<>();
+        for (String contentId : Arrays.asList("content-1", "content-2", "content-3")) {
+            checksums.put(contentId, checksum);
+            mockStoreChecksum(contentId, checksum);
+            mockSuccessWrite(contentId);
+        }
+        mockManifestItems(checksums);
+        replayAll();
+
+        Task task = createTask("content-1", "content-2", "content-3");
+        createTaskProcessor(task).execute();
+    }
+
+    @Test
+    public void testFailureNarrowsContentIds() throws Exception {
+        Map<String, String> checksums = new HashMap<>();
+        checksums.put("content-1", checksum);
+        checksums.put("content-2", "bad-checksum");
+        checksums.put("content-3", checksum);
+        mockManifestItems(checksums);
+
+        mockStoreChecksum("content-1", checksum);
+        mockSuccessWrite("content-1");
+        // on the first attempt a mismatched manifest checksum is retried
+        mockStoreChecksum("content-2", checksum);
+        mockStoreChecksum("content-3", checksum);
+        mockSuccessWrite("content-3");
+        replayAll();
+
+        Task task = createTask("content-1", "content-2", "content-3");
+        try {
+            createTaskProcessor(task).execute();
+            fail("execute should have failed");
+        } catch (TaskExecutionFailedException e) {
+            // expected
+        }
+
+        BitIntegrityCheckBatchTask retried = new BitIntegrityCheckBatchTask();
+        retried.readTask(task);
+        assertEquals(Arrays.asList("content-2"), retried.getContentIds());
+    }
+}
@@ -11,7 +11,7 @@ import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.isA;
 import static org.easymock.EasyMock.isNull;
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
@@ -30,6 +30,7 @@ import org.duracloud.mill.bitlog.BitLogStore;
 import org.duracloud.mill.db.model.ManifestItem;
 import org.duracloud.mill.manifest.ManifestItemWriteException;
 import org.duracloud.mill.manifest.ManifestStore;
+import org.duracloud.mill.workman.TaskExecutionDeferredException;
 import org.duracloud.mill.workman.TaskExecutionFailedException;
 import org.duracloud.mill.workman.TaskWorker;
 import org.duracloud.storage.domain.RetrievedContent;
@@ -55,6 +56,7 @@ public class BitIntegrityCheckTaskProcessorTest extends EasyMockSupport {
     private static final String account = "account-id";
     private static final String storeId = "store-id";
     private static final String spaceId = "space-id";
+    private static final long runId = 3L;
     private static final String contentId = "content-id";
     private static final String user = "user";
     private static final String mimetype = "text/plain";
@@ -105,6 +107,7 @@ public class BitIntegrityCheckTaskProcessorTest extends EasyMockSupport {
         task.setAccount(account);
         task.setStoreId(storeId);
         task.setSpaceId(spaceId);
+        task.setRunId(runId);
         task.setContentId(contentId);
         return task;
     }
@@ -180,6 +183,7 @@ public class BitIntegrityCheckTaskProcessorTest extends EasyMockSupport {
         EasyMock.expect(bitLogStore.write(eq(account),
                                           eq(storeId),
                                           eq(spaceId),
+                                          eq(runId),
                                           eq(contentId),
                                           isA(Date.class),
                                           eq(storeType),
@@ -247,6 +251,43 @@ public class BitIntegrityCheckTaskProcessorTest extends EasyMockSupport {
         testSuccess(StorageProviderType.IRODS, false);
     }
 
+    @Test
+    public void testSuccessSummarized() throws Exception {
+        mockManifestValidChecksum();
+        storeMockValidChecksum();
+        mockGetValidContentChecksum();
+
+        // no item is written for a summarized success
+        expectSummarizeSuccess(true);
+
+        this.taskProcessor = createTaskProcessor(StorageProviderType.AMAZON_S3);
+        replayAll();
+        this.taskProcessor.execute();
+    }
+
+    @Test
+    public void testSuccessWhenVerificationNotRecorded() throws Exception {
+        mockManifestValidChecksum();
+        storeMockValidChecksum();
+        mockGetValidContentChecksum();
+
+        EasyMock.expect(bitLogStore.summarizeSuccess(account,
+                                                     storeId,
+                                                     spaceId,
+                                                     runId,
+                                                     contentId,
+                                                     checksum,
+                                                     Long.parseLong(contentSize)))
+                .andReturn(true);
+        // failing to record the verification does not fail the task
+        bitLogStore.recordVerified(eq(account), eq(storeId), eq(spaceId), eq(contentId), isA(Date.class));
+        EasyMock.expectLastCall().andThrow(new RuntimeException("not recorded"));
+
+        this.taskProcessor = createTaskProcessor(StorageProviderType.AMAZON_S3);
+        replayAll();
+        this.taskProcessor.execute();
+    }
+
     @Test
     public void testSourContent() throws Exception {
         StorageProviderType storeType = StorageProviderType.AMAZON_S3;
@@ -325,7 +366,7 @@ public class BitIntegrityCheckTaskProcessorTest extends EasyMockSupport {
         mockGetContentChecksum(checksum);
         this.taskProcessor = createTaskProcessor(storeType);
         replayAll();
-        failAfterWait(penultimateWait);
+        deferredByPenultimateWait();
     }
 
     @Test
@@ -389,6 +430,17 @@ public class BitIntegrityCheckTaskProcessorTest extends EasyMockSupport {
         this.taskProcessor.execute();
     }
 
+    @Test
+    public void testContentNotFoundPenultimateAttempt() throws Exception {
+        StorageProviderType storeType = StorageProviderType.AMAZON_S3;
+        this.task = createBitIntegrityCheckTask(TaskWorker.MAX_ATTEMPTS - 1);
+        storeMockNotFound();
+        mockManifestValidChecksum();
+        this.taskProcessor = createTaskProcessor(storeType);
+        replayAll();
+        deferredByPenultimateWait();
+    }
+
     @Test
     public void testContentNotFound() throws Exception {
         StorageProviderType storeType = StorageProviderType.AMAZON_S3;
@@ -403,16 +455,15 @@ public class BitIntegrityCheckTaskProcessorTest extends EasyMockSupport {
         this.taskProcessor.execute();
     }
 
-    /**
-     * @param penultimateWait
-     */
-    private void failAfterWait(long penultimateWait) {
-        long before = System.currentTimeMillis();
-        taskProcessorExecutionExpectedFailure();
-
-        long after = System.currentTimeMillis();
-
-        assertTrue(after - before >= penultimateWait);
+    private void deferredByPenultimateWait() {
+        try {
+            this.taskProcessor.execute();
+            fail("above invocations should have been deferred.");
+        } catch (TaskExecutionDeferredException ex) {
+            assertEquals(penultimateWait, ex.getDelayMs());
+        } catch (TaskExecutionFailedException ex) {
+            fail("expected the task to be deferred: " + ex.getMessage());
+        }
     }
 
     /**
@@ -465,6 +516,7 @@ public class BitIntegrityCheckTaskProcessorTest extends EasyMockSupport {
     private void bitLogStoreMockValid(StorageProviderType storeType,
                                       String contentChecksum,
                                       String storeChecksum) throws Exception {
+        expectSummarizeSuccess(false);
         bitLogStoreMock(storeType,
                         contentChecksum,
                         storeChecksum,
@@ -472,6 +524,19 @@ public class BitIntegrityCheckTaskProcessorTest extends EasyMockSupport {
                         BitIntegrityResult.SUCCESS);
     }
 
+    private void expectSummarizeSuccess(boolean summarized) {
+        EasyMock.expect(bitLogStore.summarizeSuccess(account,
+                                                     storeId,
+                                                     spaceId,
+                                                     runId,
+                                                     contentId,
+                                                     checksum,
+                                                     Long.parseLong(contentSize)))
+                .andReturn(summarized);
+        bitLogStore.recordVerified(eq(account), eq(storeId), eq(spaceId), eq(contentId), isA(Date.class));
+        EasyMock.expectLastCall();
+    }
+
     private void mockGetValidContentChecksum() throws TaskExecutionFailedException {
         mockGetContentChecksum(checksum);
     }
@@ -58,6 +58,7 @@ public class BitIntegrityReportTaskProcessorTest extends EasyMockSupport {
     private static final String account = "account-id";
     private static final String storeId = "store-id";
     private static final String spaceId = "space-id";
+    private static final long runId = 3L;
 
     @Mock
     private BitIntegrityCheckReportTask task;
@@ -96,6 +97,7 @@ public class BitIntegrityReportTaskProcessorTest extends EasyMockSupport {
         expect(task.getAccount()).andReturn(account).times(2);
         expect(task.getStoreId()).andReturn(storeId).times(2);
         expect(task.getSpaceId()).andReturn(spaceId).times(2);
+        expect(task.getRunId()).andReturn(runId);
         expect(task.getAttempts()).andReturn(2);
 
     }
@@ -127,11 +129,13 @@ public class BitIntegrityReportTaskProcessorTest extends EasyMockSupport {
         Iterator<BitLogItem> it = createMock(Iterator.class);
         expect(it.hasNext()).andReturn(true);
         expect(it.next()).andReturn(item);
-        expect(it.hasNext()).andReturn(false).times(2);
+        expect(it.hasNext()).andReturn(false);
 
         expect(this.bitLogStore.getBitLogItems(eq(account),
                                                eq(storeId),
-                                               eq(spaceId))).andReturn(it);
+                                               eq(spaceId),
+                                               eq(runId))).andReturn(it);
+        expect(bitLogStore.getRunSummary(account, storeId, spaceId, runId)).andReturn(null);
 
         final Capture<InputStream> capture = new Capture<>();
 
@@ -159,7 +163,7 @@ public class BitIntegrityReportTaskProcessorTest extends EasyMockSupport {
                 }
             });
 
-        bitLogStore.delete(account, storeId, spaceId);
+        bitLogStore.delete(account, storeId, spaceId, runId);
         expectLastCall().once();
 
         BitIntegrityReport report = createMock(BitIntegrityReport.class);
@@ -0,0 +1,130 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.bit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Date;
+import java.util.zip.GZIPInputStream;
+
+import org.duracloud.common.util.ChecksumUtil;
+import org.duracloud.common.util.ChecksumUtil.Algorithm;
+import org.duracloud.mill.bitlog.BitIntegrityResult;
+import org.duracloud.mill.bitlog.BitLogRunSummary;
+import org.duracloud.mill.bitlog.jpa.JpaBitLogItem;
+import org.duracloud.storage.domain.StorageProviderType;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Daniel Bernstein
+ */
+public class BitIntegrityReportWriterTest {
+
+    private File file;
+
+    @Before
+    public void setup() throws Exception {
+        file = File.createTempFile("bit-report", ".tsv");
+    }
+
+    @After
+    public void teardown() {
+        file.delete();
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        writeReport(false, 10, 5);
+        assertReport(new FileInputStream(file), 10);
+    }
+
+    @Test
+    public void testWriteGzip() throws Exception {
+        writeReport(true, 10, 5);
+        assertReport(new GZIPInputStream(new FileInputStream(file)), 10);
+    }
+
+    @Test
+    public void testWriteSummary() throws Exception {
+        BitLogRunSummary summary = EasyMock.createMock(BitLogRunSummary.class);
+        EasyMock.expect(summary.getSuccessCount()).andReturn(10L);
+        EasyMock.expect(summary.getSuccessBytes()).andReturn(1000L);
+        EasyMock.expect(summary.getSuccessDigest()).andReturn(255L);
+        EasyMock.replay(summary);
+
+        BitIntegrityReportWriter writer = new BitIntegrityReportWriter(file, false, 5);
+        writer.write(createItem("content0", BitIntegrityResult.FAILURE));
+        writer.writeSummary(summary);
+        writer.close();
+        EasyMock.verify(summary);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+                                                                              "UTF-8"))) {
+            assertEquals(BitIntegrityHelper.getHeader().trim(), reader.readLine());
+            assertEquals("content0", reader.readLine().split("\t")[5]);
+            assertEquals("# " + BitIntegrityReportTaskProcessor.SUCCESS_COUNT_PROPERTY + "\t10",
+                         reader.readLine());
+            assertEquals("# " + BitIntegrityReportTaskProcessor.SUCCESS_BYTES_PROPERTY + "\t1000",
+                         reader.readLine());
+            assertEquals("# " + BitIntegrityReportTaskProcessor.SUCCESS_DIGEST_PROPERTY + "\tff",
+                         reader.readLine());
+            assertNull(reader.readLine());
+        }
+    }
+
+    private void writeReport(boolean gzip, int items, int maxErrorSample) throws Exception {
+        BitIntegrityReportWriter writer = new BitIntegrityReportWriter(file, gzip, maxErrorSample);
+        for (int i = 0; i < items; i++) {
+            // every other item is an error
+            writer.write(createItem("content" + i,
+                                    i % 2 == 0 ? BitIntegrityResult.SUCCESS : BitIntegrityResult.FAILURE));
+        }
+        writer.close();
+
+        assertEquals(items, writer.getItemCount());
+        assertEquals(items / 2, writer.getErrorCount());
+        assertEquals(Math.min(items / 2, maxErrorSample), writer.getErrorSample().size());
+        assertEquals("content1", writer.getErrorSample().get(0).getContentId());
+        assertEquals(new ChecksumUtil(Algorithm.MD5).generateChecksum(file), writer.getChecksum());
+    }
+
+    private void assertReport(InputStream is, int items) throws Exception {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, "UTF-8"))) {
+            assertEquals(BitIntegrityHelper.getHeader().trim(), reader.readLine());
+            for (int i = 0; i < items; i++) {
+                assertEquals("content" + i, reader.readLine().split("\t")[5]);
+            }
+            assertNull(reader.readLine());
+        }
+    }
+
+    private JpaBitLogItem createItem(String contentId, BitIntegrityResult result) {
+        JpaBitLogItem item = new JpaBitLogItem();
+        item.setAccount("account");
+        item.setStoreId("store-id");
+        item.setSpaceId("space-id");
+        item.setContentId(contentId);
+        item.setStorageProviderType(StorageProviderType.AMAZON_S3);
+        item.setResult(result);
+        item.setContentChecksum("checksum");
+        item.setStorageProviderChecksum("checksum");
+        item.setManifestChecksum("checksum");
+        item.setDetails("details");
+        item.setModified(new Date());
+        return item;
+    }
+}
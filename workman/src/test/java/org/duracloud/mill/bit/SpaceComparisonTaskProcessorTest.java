@@ -7,22 +7,27 @@
  */
 package org.duracloud.mill.bit;
 
+import static org.easymock.EasyMock.anyInt;
+import static org.easymock.EasyMock.capture;
 import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
-import static org.easymock.EasyMock.expectLastCall;
-import static org.easymock.EasyMock.isA;
-import static org.easymock.EasyMock.isNull;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Date;
-import java.util.Iterator;
+import java.util.List;
 
 import org.duracloud.mill.bitlog.BitIntegrityResult;
+import org.duracloud.mill.bitlog.BitLogItem;
 import org.duracloud.mill.bitlog.BitLogStore;
 import org.duracloud.mill.db.model.ManifestItem;
-import org.duracloud.mill.manifest.ManifestStore;
 import org.duracloud.storage.domain.StorageProviderType;
 import org.duracloud.storage.provider.StorageProvider;
+import org.easymock.Capture;
+import org.easymock.EasyMock;
 import org.easymock.EasyMockRunner;
 import org.easymock.EasyMockSupport;
 import org.easymock.Mock;
@@ -40,6 +45,7 @@ public class SpaceComparisonTaskProcessorTest extends EasyMockSupport {
     private static final String account = "account-id";
     private static final String storeId = "store-id";
     private static final String spaceId = "space-id";
+    private static final long runId = 3L;
     private String contentId = "contentId";
     private String checksum = "checksum";
 
@@ -55,17 +61,14 @@ public class SpaceComparisonTaskProcessorTest extends EasyMockSupport {
     private StorageProvider store;
 
     @Mock
-    private ManifestStore manifestStore;
-
-    @Mock
-    private ManifestItem manifestItem;
+    private JpaBitManifestItemRepo manifestItemRepo;
 
     private StorageProviderType storageProviderType = StorageProviderType.AMAZON_S3;
 
     private void createTestSubject() {
         taskProcessor = new SpaceComparisonTaskProcessor(task,
                                                          bitLogStore,
-                                                         manifestStore,
+                                                         manifestItemRepo,
                                                          store,
                                                          storageProviderType);
     }
@@ -74,6 +77,7 @@ public class SpaceComparisonTaskProcessorTest extends EasyMockSupport {
         expect(task.getAccount()).andReturn(account);
         expect(task.getStoreId()).andReturn(storeId);
         expect(task.getSpaceId()).andReturn(spaceId);
+        expect(task.getRunId()).andReturn(runId).anyTimes();
     }
 
     @After
@@ -112,9 +116,11 @@ public class SpaceComparisonTaskProcessorTest extends EasyMockSupport {
         ManifestItem manifestItem2 = setupManifestIterator();
         store = setStorageProvider(contentId);
         expect(manifestItem2.isMissingFromStorageProvider()).andReturn(true);
-        manifestStore
-            .updateMissingFromStorageProviderFlag(eq(account), eq(storeId), eq(spaceId), eq(contentId), eq(false));
-        expectLastCall().once();
+        expect(manifestItemRepo.updateMissingFromStorageProviderFlag(eq(account),
+                                                                     eq(storeId),
+                                                                     eq(spaceId),
+                                                                     eq(Arrays.asList(contentId)),
+                                                                     eq(false))).andReturn(1);
         replayAll();
         createTestSubject();
         taskProcessor.execute();
@@ -128,59 +134,98 @@ public class SpaceComparisonTaskProcessorTest extends EasyMockSupport {
         expect(manifestItem2.getContentChecksum()).andReturn(checksum);
         expect(manifestItem2.isDeleted()).andReturn(false);
         expect(manifestItem2.isMissingFromStorageProvider()).andReturn(true);
-        setupMissingContentBitLogWrite();
+        Capture<List<BitLogItem>> capture = setupMissingContentBitLogWrite();
         replayAll();
         createTestSubject();
         taskProcessor.execute();
+        assertMissingContentError(capture);
     }
 
-    private void setupMissingContentBitLogWrite() {
-        expect(bitLogStore.write(eq(account),
-                                 eq(storeId),
-                                 eq(spaceId),
-                                 eq(contentId),
-                                 isA(Date.class),
-                                 eq(storageProviderType),
-                                 eq(BitIntegrityResult.ERROR),
-                                 isNull(String.class),
-                                 isNull(String.class),
-                                 eq(checksum),
-                                 isA(String.class))).andReturn(null);
+    @Test
+    public void testContentMergedInUtf8Order() throws Exception {
+        // U+FF21 precedes U+1F600 in UTF-8 byte order but follows its
+        // surrogate pair in UTF-16 order.
+        String bmpId = "\uFF21";
+        contentId = "\uD83D\uDE00";
+        setupTask();
+        store = setStorageProvider(bmpId, contentId);
+        ManifestItem manifestItem2 = setupManifestIterator();
+        expect(manifestItem2.isMissingFromStorageProvider()).andReturn(false);
+        replayAll();
+        createTestSubject();
+        taskProcessor.execute();
     }
 
-    private ManifestItem setupManifestIterator() {
-        Iterator<ManifestItem> manifestIt = createMock(Iterator.class);
-        expect(manifestIt.hasNext()).andReturn(true);
-        ManifestItem manifestItem2 = createMock(ManifestItem.class);
-        expect(manifestIt.next()).andReturn(manifestItem2);
-        expect(manifestItem2.getContentId()).andReturn(contentId);
+    @Test
+    public void testCompareContentIds() {
+        replayAll();
+        assertTrue(SpaceComparisonTaskProcessor.compareContentIds("\uFF21", "\uD83D\uDE00") < 0);
+        assertTrue(SpaceComparisonTaskProcessor.compareContentIds("\uD83D\uDE00", "\uFF21") > 0);
+        assertTrue(SpaceComparisonTaskProcessor.compareContentIds("a", "ab") < 0);
+        assertTrue(SpaceComparisonTaskProcessor.compareContentIds("b", "ab") > 0);
+        assertEquals(0, SpaceComparisonTaskProcessor.compareContentIds("a/b", "a/b"));
+    }
 
-        expect(manifestIt.hasNext()).andReturn(false);
-        expect(manifestStore.getItems(eq(account), eq(storeId), eq(spaceId), eq(false)))
-            .andReturn(manifestIt);
-        return manifestItem2;
+    @Test
+    public void testMissingFlagsSetInBatches() throws Exception {
+        setupTask();
+        store = setStorageProvider();
+        List<ManifestItem> items = new ArrayList<>();
+        for (String id : Arrays.asList("a", "b", "c")) {
+            ManifestItem item = createMock(ManifestItem.class);
+            expect(item.getContentId()).andReturn(id);
+            expect(item.isDeleted()).andReturn(false);
+            expect(item.isMissingFromStorageProvider()).andReturn(false);
+            items.add(item);
+        }
+        expect(manifestItemRepo
+                   .findNextInContentIdOrder(eq(account), eq(storeId), eq(spaceId), eq(""), anyInt()))
+            .andReturn(items);
+        expect(manifestItemRepo.updateMissingFromStorageProviderFlag(eq(account),
+                                                                     eq(storeId),
+                                                                     eq(spaceId),
+                                                                     eq(Arrays.asList("a", "b")),
+                                                                     eq(true))).andReturn(2);
+        expect(manifestItemRepo.updateMissingFromStorageProviderFlag(eq(account),
+                                                                     eq(storeId),
+                                                                     eq(spaceId),
+                                                                     eq(Arrays.asList("c")),
+                                                                     eq(true))).andReturn(1);
+        replayAll();
+        createTestSubject();
+        taskProcessor.setBatchSize(2);
+        taskProcessor.execute();
     }
 
-    private void setupMissingManifestBitLogWrite() {
-        expect(bitLogStore.write(eq(account),
-                                 eq(storeId),
-                                 eq(spaceId),
-                                 eq(contentId),
-                                 isA(Date.class),
-                                 eq(storageProviderType),
-                                 eq(BitIntegrityResult.ERROR),
-                                 isNull(String.class),
-                                 eq(checksum),
-                                 isNull(String.class),
-                                 isA(String.class))).andReturn(null);
+    private Capture<List<BitLogItem>> setupMissingContentBitLogWrite() {
+        Capture<List<BitLogItem>> capture = new Capture<>();
+        expect(bitLogStore.writeAll(capture(capture))).andReturn(null);
+        return capture;
     }
 
-    private void setupGetManifestItem(boolean returnNull) throws org.duracloud.common.db.error.NotFoundException {
-        expect(this.manifestStore.getItem(eq(account),
-                                          eq(storeId),
-                                          eq(spaceId),
-                                          eq(contentId)))
-            .andReturn(returnNull ? null : manifestItem);
+    private void assertMissingContentError(Capture<List<BitLogItem>> capture) {
+        assertEquals(1, capture.getValue().size());
+        BitLogItem error = capture.getValue().get(0);
+        assertEquals(account, error.getAccount());
+        assertEquals(storeId, error.getStoreId());
+        assertEquals(spaceId, error.getSpaceId());
+        assertEquals(runId, error.getRunId());
+        assertEquals(contentId, error.getContentId());
+        assertEquals(storageProviderType, error.getStoreType());
+        assertEquals(BitIntegrityResult.ERROR, error.getResult());
+        assertNull(error.getContentChecksum());
+        assertNull(error.getStorageProviderChecksum());
+        assertEquals(checksum, error.getManifestChecksum());
+        assertNotNull(error.getDetails());
     }
 
+    private ManifestItem setupManifestIterator() {
+        ManifestItem manifestItem2 = createMock(ManifestItem.class);
+        expect(manifestItem2.getContentId()).andReturn(contentId);
+
+        expect(manifestItemRepo
+                   .findNextInContentIdOrder(eq(account), eq(storeId), eq(spaceId), eq(""), anyInt()))
+            .andReturn(Arrays.asList(manifestItem2));
+        return manifestItem2;
+    }
 }
@@ -14,6 +14,7 @@ import java.util.List;
 
 import org.duracloud.common.queue.TaskQueue;
 import org.duracloud.common.queue.task.Task;
+import org.duracloud.mill.common.storageprovider.SpaceExistenceCache;
 import org.duracloud.mill.common.storageprovider.StorageProviderFactory;
 import org.duracloud.mill.credentials.AccountCredentials;
 import org.duracloud.mill.credentials.CredentialsRepo;
@@ -84,7 +85,8 @@ public class DuplicationTaskProcessorFactoryTest {
                                                 storageProviderFactory,
                                                 new File("workdir"),
                                                 auditQueue,
-                                                manifestStore);
+                                                manifestStore,
+                                                new SpaceExistenceCache());
 
         DuplicationTask dupTask = new DuplicationTask();
         dupTask.setAccount("account");
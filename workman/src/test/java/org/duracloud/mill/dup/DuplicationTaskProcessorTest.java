@@ -17,9 +17,12 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.duracloud.common.util.ChecksumUtil;
 import org.duracloud.common.util.IOUtil;
+import org.duracloud.mill.common.storageprovider.SpaceExistenceCache;
 import org.duracloud.mill.db.model.ManifestItem;
 import org.duracloud.mill.manifest.ManifestStore;
 import org.duracloud.mill.task.DuplicationTask;
@@ -154,11 +157,74 @@ public class DuplicationTaskProcessorTest {
      */
     @Test
     public void testExecuteAvailableInBoth() throws Exception {
-        // Check space
-        destStore.createSpace(spaceId);
-        EasyMock.expectLastCall().once();
+        setupAvailableInBoth();
+        replayMocks();
 
-        // Equal content properties
+        taskProcessor.execute();
+    }
+
+    /**
+     * Verifies that the destination metadata calls can be made on a separate
+     * executor.
+     *
+     * @throws Exception on error
+     */
+    @Test
+    public void testExecuteAvailableInBothConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        DuplicationTask dupTask = new DuplicationTask();
+        dupTask.setAccount(account);
+        dupTask.setSourceStoreId(srcStoreId);
+        dupTask.setDestStoreId(destStoreId);
+        dupTask.setSpaceId(spaceId);
+        dupTask.setContentId(contentId);
+        taskProcessor = new DuplicationTaskProcessor(dupTask,
+                                                     srcStore,
+                                                     destStore,
+                                                     workDir,
+                                                     manifestStore,
+                                                     DuplicationTaskProcessor.DEFAULT_MAX_IN_MEMORY_SIZE,
+                                                     0,
+                                                     null,
+                                                     executor,
+                                                     new SpaceExistenceCache());
+        setupAvailableInBoth();
+        replayMocks();
+
+        try {
+            taskProcessor.execute();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Verifies that a destination space known to exist is not created again.
+     *
+     * @throws Exception on error
+     */
+    @Test
+    public void testExecuteDestSpaceCached() throws Exception {
+        SpaceExistenceCache spaceCache = new SpaceExistenceCache();
+        spaceCache.markExists(account, destStoreId, spaceId);
+        DuplicationTask dupTask = new DuplicationTask();
+        dupTask.setAccount(account);
+        dupTask.setSourceStoreId(srcStoreId);
+        dupTask.setDestStoreId(destStoreId);
+        dupTask.setSpaceId(spaceId);
+        dupTask.setContentId(contentId);
+        taskProcessor = new DuplicationTaskProcessor(dupTask,
+                                                     srcStore,
+                                                     destStore,
+                                                     workDir,
+                                                     manifestStore,
+                                                     DuplicationTaskProcessor.DEFAULT_MAX_IN_MEMORY_SIZE,
+                                                     0,
+                                                     null,
+                                                     null,
+                                                     spaceCache);
+
+        // No call to createSpace is expected
         final String checksum = "checksum";
         Map<String, String> srcProps = new HashMap<>();
         srcProps.put(StorageProvider.PROPERTIES_CONTENT_CHECKSUM, checksum);
@@ -175,6 +241,24 @@ public class DuplicationTaskProcessorTest {
         taskProcessor.execute();
     }
 
+    private void setupAvailableInBoth() throws Exception {
+        // Check space
+        destStore.createSpace(spaceId);
+        EasyMock.expectLastCall().once();
+
+        // Equal content properties
+        final String checksum = "checksum";
+        Map<String, String> srcProps = new HashMap<>();
+        srcProps.put(StorageProvider.PROPERTIES_CONTENT_CHECKSUM, checksum);
+        EasyMock.expect(srcStore.getContentProperties(spaceId, contentId))
+                .andReturn(srcProps);
+
+        Map<String, String> destProps = new HashMap<>();
+        destProps.put(StorageProvider.PROPERTIES_CONTENT_CHECKSUM, checksum);
+        EasyMock.expect(destStore.getContentProperties(spaceId, contentId))
+                .andReturn(destProps);
+    }
+
     /**
      * Verifies the flow of actions that occur when a content item exists in
      * neither the source nor destination stores. No updates are needed.
@@ -593,4 +677,136 @@ public class DuplicationTaskProcessorTest {
         taskProcessor.execute();
     }
 
+    /**
+     * Verifies that content larger than the in-memory limit is duplicated
+     * through a temp file which is removed once the copy is complete.
+     *
+     * @throws Exception on error
+     */
+    @Test
+    public void testExecuteMissingInDestViaWorkDir() throws Exception {
+        DuplicationTask dupTask = new DuplicationTask();
+        dupTask.setAccount(account);
+        dupTask.setSourceStoreId(srcStoreId);
+        dupTask.setDestStoreId(destStoreId);
+        dupTask.setSpaceId(spaceId);
+        dupTask.setContentId(contentId);
+        taskProcessor = new DuplicationTaskProcessor(dupTask,
+                                                     srcStore,
+                                                     destStore,
+                                                     workDir,
+                                                     manifestStore,
+                                                     4,
+                                                     0,
+                                                     null,
+                                                     null,
+                                                     new SpaceExistenceCache());
+
+        destStore.createSpace(EasyMock.eq(spaceId));
+        EasyMock.expectLastCall().once();
+
+        String content = "source-content";
+        ChecksumUtil checksumUtil = new ChecksumUtil(ChecksumUtil.Algorithm.MD5);
+        final String checksum = checksumUtil.generateChecksum(content);
+        final String mimetype = "text/plain";
+
+        Map<String, String> srcProps = new HashMap<>();
+        srcProps.put(StorageProvider.PROPERTIES_CONTENT_CHECKSUM, checksum);
+        srcProps.put(StorageProvider.PROPERTIES_CONTENT_MIMETYPE, mimetype);
+        srcProps.put(StorageProvider.PROPERTIES_CONTENT_SIZE, String.valueOf(content.length()));
+        EasyMock.expect(srcStore.getContentProperties(EasyMock.eq(spaceId),
+                                                      EasyMock.eq(contentId)))
+                .andReturn(srcProps);
+
+        EasyMock.expect(destStore.getContentProperties(EasyMock.eq(spaceId),
+                                                       EasyMock.eq(contentId)))
+                .andThrow(new NotFoundException("")).anyTimes();
+
+        RetrievedContent retrievedContent = new RetrievedContent();
+        retrievedContent.setContentStream(IOUtil.writeStringToStream(content));
+        EasyMock.expect(srcStore.getContent(EasyMock.eq(spaceId),
+                                            EasyMock.eq(contentId)))
+                .andReturn(retrievedContent);
+
+        EasyMock.expect(destStore.addContent(EasyMock.eq(spaceId),
+                                             EasyMock.eq(contentId),
+                                             EasyMock.eq(mimetype),
+                                             EasyMock.eq(srcProps),
+                                             EasyMock.eq((long) content.length()),
+                                             EasyMock.eq(checksum),
+                                             EasyMock.<InputStream>anyObject()))
+                .andReturn(checksum);
+
+        replayMocks();
+
+        taskProcessor.execute();
+
+        assertEquals(0, workDir.list().length);
+    }
+
+    /**
+     * Verifies that a content item is copied with the server side copier,
+     * rather than through this host, when the copier supports it.
+     *
+     * @throws Exception on error
+     */
+    @Test
+    public void testExecuteServerSideCopy() throws Exception {
+        ServerSideCopier copier = EasyMock.createMock(ServerSideCopier.class);
+        DuplicationTask dupTask = new DuplicationTask();
+        dupTask.setAccount(account);
+        dupTask.setSourceStoreId(srcStoreId);
+        dupTask.setDestStoreId(destStoreId);
+        dupTask.setSpaceId(spaceId);
+        dupTask.setContentId(contentId);
+        taskProcessor = new DuplicationTaskProcessor(dupTask,
+                                                     srcStore,
+                                                     destStore,
+                                                     workDir,
+                                                     manifestStore,
+                                                     DuplicationTaskProcessor.DEFAULT_MAX_IN_MEMORY_SIZE,
+                                                     0,
+                                                     copier,
+                                                     null,
+                                                     new SpaceExistenceCache());
+
+        destStore.createSpace(EasyMock.eq(spaceId));
+        EasyMock.expectLastCall().once();
+
+        final String srcChecksum = "source-checksum";
+        final long size = 100;
+        Map<String, String> srcProps = new HashMap<>();
+        srcProps.put(StorageProvider.PROPERTIES_CONTENT_CHECKSUM, srcChecksum);
+        srcProps.put(StorageProvider.PROPERTIES_CONTENT_SIZE, String.valueOf(size));
+        EasyMock.expect(srcStore.getContentProperties(spaceId, contentId))
+                .andReturn(srcProps);
+
+        // Dest content differs before the copy and matches after it
+        Map<String, String> destProps = new HashMap<>();
+        destProps.put(StorageProvider.PROPERTIES_CONTENT_CHECKSUM, "dest-checksum");
+        Map<String, String> copiedProps = new HashMap<>();
+        copiedProps.put(StorageProvider.PROPERTIES_CONTENT_CHECKSUM, srcChecksum);
+        EasyMock.expect(destStore.getContentProperties(spaceId, contentId))
+                .andReturn(destProps)
+                .andReturn(copiedProps);
+
+        EasyMock.expect(copier.canCopy(size)).andReturn(true);
+        copier.copy(EasyMock.eq(spaceId),
+                    EasyMock.eq(contentId),
+                    EasyMock.eq(srcChecksum),
+                    EasyMock.eq(size),
+                    EasyMock.eq(srcProps));
+        EasyMock.expectLastCall();
+        // audited once the copy has been verified
+        copier.audit(spaceId, contentId, srcChecksum, size, srcProps);
+        EasyMock.expectLastCall();
+
+        replayMocks();
+        EasyMock.replay(copier);
+
+        taskProcessor.execute();
+
+        EasyMock.verify(copier);
+    }
+
 }
@@ -0,0 +1,181 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.dup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.duracloud.common.util.ChecksumUtil;
+import org.duracloud.common.util.IOUtil;
+import org.duracloud.storage.domain.RetrievedContent;
+import org.duracloud.storage.provider.StorageProvider;
+import org.easymock.EasyMock;
+import org.easymock.EasyMockRunner;
+import org.easymock.EasyMockSupport;
+import org.easymock.IAnswer;
+import org.easymock.Mock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * @author Daniel Bernstein
+ */
+@RunWith(EasyMockRunner.class)
+public class RangedContentDownloaderTest extends EasyMockSupport {
+
+    private static final String spaceId = "space-id";
+    private static final String contentId = "content-id";
+    private static final String key = "dup-key";
+
+    // 14 bytes: downloaded as parts of 4, 4, 4 and 2 bytes
+    private String content = "source-content";
+    private String checksum;
+    private File workDir;
+    private ExecutorService executor;
+
+    @Mock
+    private StorageProvider store;
+
+    @Before
+    public void setup() {
+        workDir = new File("target", "ranged-content-downloader-test");
+        workDir.mkdirs();
+        executor = Executors.newFixedThreadPool(2);
+        checksum = new ChecksumUtil(ChecksumUtil.Algorithm.MD5).generateChecksum(content);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        verifyAll();
+        executor.shutdownNow();
+        FileUtils.deleteDirectory(workDir);
+    }
+
+    private void expectRange(int start, int end) {
+        RetrievedContent retrieved = new RetrievedContent();
+        retrieved.setContentStream(IOUtil.writeStringToStream(content.substring(start, end + 1)));
+        EasyMock.expect(store.getContent(spaceId, contentId, "bytes=" + start + "-" + end))
+                .andReturn(retrieved);
+    }
+
+    private RangedContentDownloader createDownloader() {
+        return new RangedContentDownloader(store, workDir, 4, executor);
+    }
+
+    private SpooledContent download() throws IOException {
+        return createDownloader().download(spaceId, contentId, content.length(), checksum, key);
+    }
+
+    @Test
+    public void testDownload() throws Exception {
+        expectRange(0, 3);
+        expectRange(4, 7);
+        expectRange(8, 11);
+        expectRange(12, 13);
+        replayAll();
+
+        SpooledContent spooled = download();
+        assertEquals(checksum, spooled.getChecksum());
+        assertEquals(content.length(), spooled.getSize());
+        assertFalse(spooled.isInMemory());
+        try (InputStream is = spooled.openStream()) {
+            assertEquals(content, IOUtils.toString(is));
+        }
+        assertFalse(new File(workDir, key + ".checkpoint").exists());
+        spooled.release();
+        assertEquals(0, workDir.list().length);
+    }
+
+    @Test
+    public void testResumeFromCheckpoint() throws Exception {
+        // parts 0 and 2 were completed by an earlier attempt
+        File contentFile = new File(workDir, key + ".content");
+        FileUtils.writeStringToFile(contentFile, "sour____cont__");
+        FileUtils.writeStringToFile(new File(workDir, key + ".checkpoint"),
+                                    checksum + " " + content.length() + " 4\n0\n2\n");
+
+        expectRange(4, 7);
+        expectRange(12, 13);
+        replayAll();
+
+        SpooledContent spooled = download();
+        try (InputStream is = spooled.openStream()) {
+            assertEquals(content, IOUtils.toString(is));
+        }
+        spooled.release();
+    }
+
+    @Test
+    public void testStaleCheckpointIsIgnored() throws Exception {
+        FileUtils.writeStringToFile(new File(workDir, key + ".content"), "xxxxxxxxxxxxxx");
+        FileUtils.writeStringToFile(new File(workDir, key + ".checkpoint"),
+                                    "old-checksum " + content.length() + " 4\n0\n1\n2\n3\n");
+
+        expectRange(0, 3);
+        expectRange(4, 7);
+        expectRange(8, 11);
+        expectRange(12, 13);
+        replayAll();
+
+        SpooledContent spooled = download();
+        assertEquals(checksum, spooled.getChecksum());
+        spooled.release();
+    }
+
+    @Test
+    public void testConcurrentDownloadOfSameItem() throws Exception {
+        final RetrievedContent retrieved = new RetrievedContent();
+        retrieved.setContentStream(IOUtil.writeStringToStream(content.substring(0, 4)));
+        EasyMock.expect(store.getContent(spaceId, contentId, "bytes=0-3"))
+                .andAnswer(new IAnswer<RetrievedContent>() {
+                    @Override
+                    public RetrievedContent answer() throws Throwable {
+                        try {
+                            download();
+                            fail("expected exception");
+                        } catch (IOException e) {
+                            assertTrue(e.getMessage().contains("already being downloaded"));
+                        }
+                        return retrieved;
+                    }
+                });
+        expectRange(4, 7);
+        expectRange(8, 11);
+        expectRange(12, 13);
+        replayAll();
+
+        SpooledContent spooled = download();
+        try (InputStream is = spooled.openStream()) {
+            assertEquals(content, IOUtils.toString(is));
+        }
+        spooled.release();
+    }
+
+    @Test
+    public void testDiscard() throws Exception {
+        replayAll();
+        FileUtils.writeStringToFile(new File(workDir, key + ".content"), "sour__________");
+        FileUtils.writeStringToFile(new File(workDir, key + ".checkpoint"),
+                                    checksum + " " + content.length() + " 4\n0\n");
+
+        createDownloader().discard(key);
+        assertEquals(0, workDir.list().length);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.dup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.CopyObjectResult;
+import org.duracloud.audit.task.AuditTask;
+import org.duracloud.audit.task.AuditTask.ActionType;
+import org.duracloud.common.queue.TaskQueue;
+import org.duracloud.common.queue.task.Task;
+import org.duracloud.mill.credentials.StorageProviderCredentials;
+import org.duracloud.s3storage.S3StorageProvider;
+import org.duracloud.storage.domain.StorageProviderType;
+import org.duracloud.storage.provider.StorageProvider;
+import org.easymock.Capture;
+import org.easymock.EasyMock;
+import org.easymock.EasyMockRunner;
+import org.easymock.EasyMockSupport;
+import org.easymock.Mock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * @author Daniel Bernstein
+ */
+@RunWith(EasyMockRunner.class)
+public class S3ServerSideCopierTest extends EasyMockSupport {
+
+    private static final String account = "account";
+    private static final String spaceId = "space-id";
+    private static final String contentId = "content-id";
+    private static final String checksum = "checksum";
+    private static final long size = 100;
+
+    @Mock
+    private S3StorageProvider sourceProvider;
+
+    @Mock
+    private S3StorageProvider destProvider;
+
+    @Mock
+    private AmazonS3 s3Client;
+
+    @Mock
+    private TaskQueue auditTaskQueue;
+
+    private Map<String, String> properties;
+    private S3ServerSideCopier copier;
+
+    @Before
+    public void setup() {
+        properties = new HashMap<>();
+        properties.put(StorageProvider.PROPERTIES_CONTENT_MIMETYPE, "text/plain");
+        properties.put("color", "blue");
+
+        StorageProviderCredentials source =
+            new StorageProviderCredentials("0", "source-key", "source-secret",
+                                           StorageProviderType.AMAZON_S3, null, true);
+        StorageProviderCredentials dest =
+            new StorageProviderCredentials("1", "dest-key", "dest-secret",
+                                           StorageProviderType.AMAZON_S3, null, false);
+        copier = new S3ServerSideCopier(source, dest, sourceProvider, destProvider,
+                                        s3Client, account, auditTaskQueue);
+    }
+
+    @After
+    public void tearDown() {
+        verifyAll();
+    }
+
+    private void expectBucketNames() {
+        EasyMock.expect(sourceProvider.getBucketName(spaceId)).andReturn("source-bucket");
+        EasyMock.expect(destProvider.getBucketName(spaceId)).andReturn("dest-bucket");
+    }
+
+    private AmazonS3Exception createException(int statusCode) {
+        AmazonS3Exception e = new AmazonS3Exception("failed");
+        e.setStatusCode(statusCode);
+        return e;
+    }
+
+    @Test
+    public void testCopy() throws Exception {
+        expectBucketNames();
+        Capture<CopyObjectRequest> request = new Capture<>();
+        EasyMock.expect(s3Client.copyObject(EasyMock.capture(request)))
+                .andReturn(new CopyObjectResult()).times(2);
+        replayAll();
+
+        assertTrue(copier.canCopy(size));
+        copier.copy(spaceId, contentId, checksum, size, properties);
+        // bucket names are looked up once
+        copier.copy(spaceId, contentId, checksum, size, properties);
+
+        assertEquals("source-bucket", request.getValue().getSourceBucketName());
+        assertEquals(contentId, request.getValue().getSourceKey());
+        assertEquals("dest-bucket", request.getValue().getDestinationBucketName());
+        assertEquals(contentId, request.getValue().getDestinationKey());
+        // the properties are copied along with the object's metadata
+        assertNull(request.getValue().getNewObjectMetadata());
+    }
+
+    @Test
+    public void testAudit() throws Exception {
+        Capture<Task> auditTask = new Capture<>();
+        auditTaskQueue.put(EasyMock.capture(auditTask));
+        EasyMock.expectLastCall();
+        replayAll();
+
+        copier.audit(spaceId, contentId, checksum, size, properties);
+
+        AuditTask audit = new AuditTask();
+        audit.readTask(auditTask.getValue());
+        assertEquals(ActionType.COPY_CONTENT.name(), audit.getAction());
+        assertEquals(account, audit.getAccount());
+        assertEquals("1", audit.getStoreId());
+        assertEquals(spaceId, audit.getSpaceId());
+        assertEquals(contentId, audit.getContentId());
+        assertEquals(checksum, audit.getContentChecksum());
+        assertEquals(String.valueOf(size), audit.getContentSize());
+        assertEquals("text/plain", audit.getContentMimetype());
+        assertEquals("blue", audit.getContentProperties().get("color"));
+    }
+
+    @Test
+    public void testAccessDeniedDisablesCopier() throws Exception {
+        expectBucketNames();
+        EasyMock.expect(s3Client.copyObject(EasyMock.isA(CopyObjectRequest.class)))
+                .andThrow(createException(403));
+        replayAll();
+
+        try {
+            copier.copy(spaceId, contentId, checksum, size, properties);
+            fail("expected exception");
+        } catch (AmazonS3Exception e) {
+            assertEquals(403, e.getStatusCode());
+        }
+        assertFalse(copier.canCopy(size));
+    }
+
+    @Test
+    public void testOtherFailureKeepsCopierEnabled() throws Exception {
+        expectBucketNames();
+        EasyMock.expect(s3Client.copyObject(EasyMock.isA(CopyObjectRequest.class)))
+                .andThrow(createException(500));
+        replayAll();
+
+        try {
+            copier.copy(spaceId, contentId, checksum, size, properties);
+            fail("expected exception");
+        } catch (AmazonS3Exception e) {
+            assertEquals(500, e.getStatusCode());
+        }
+        assertTrue(copier.canCopy(size));
+    }
+
+    @Test
+    public void testCanCopy() {
+        replayAll();
+        assertTrue(copier.canCopy(0));
+        assertTrue(copier.canCopy(S3ServerSideCopier.MAX_COPY_SIZE));
+        assertFalse(copier.canCopy(S3ServerSideCopier.MAX_COPY_SIZE + 1));
+        assertFalse(copier.canCopy(-1));
+    }
+}
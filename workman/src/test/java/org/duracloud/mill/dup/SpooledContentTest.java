@@ -0,0 +1,128 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.dup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.concurrent.Semaphore;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.duracloud.common.util.ChecksumUtil;
+import org.duracloud.common.util.IOUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Daniel Bernstein
+ */
+public class SpooledContentTest {
+
+    private File workDir;
+    private String content = "source-content";
+    private String checksum;
+
+    @Before
+    public void setup() {
+        workDir = new File("target", "spooled-content-test");
+        workDir.mkdirs();
+        checksum = new ChecksumUtil(ChecksumUtil.Algorithm.MD5).generateChecksum(content);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(workDir);
+    }
+
+    @Test
+    public void testInMemory() throws Exception {
+        SpooledContent spooled = SpooledContent.spool(IOUtil.writeStringToStream(content),
+                                                      content.length(),
+                                                      workDir);
+        verify(spooled);
+        assertTrue(spooled.isInMemory());
+        assertEquals(0, workDir.list().length);
+        spooled.release();
+    }
+
+    @Test
+    public void testSpillToFile() throws Exception {
+        SpooledContent spooled = SpooledContent.spool(IOUtil.writeStringToStream(content),
+                                                      content.length() - 1,
+                                                      workDir);
+        verify(spooled);
+        assertFalse(spooled.isInMemory());
+        assertEquals(1, workDir.list().length);
+        spooled.release();
+        assertEquals(0, workDir.list().length);
+    }
+
+    @Test
+    public void testUnlimitedInMemorySize() throws Exception {
+        SpooledContent spooled = SpooledContent.spool(IOUtil.writeStringToStream(content),
+                                                      Long.MAX_VALUE,
+                                                      workDir);
+        verify(spooled);
+        assertTrue(spooled.isInMemory());
+        spooled.release();
+    }
+
+    @Test
+    public void testMemoryBudget() throws Exception {
+        Semaphore budget = new Semaphore(content.length() * 3 / 2);
+
+        SpooledContent first = SpooledContent.spool(IOUtil.writeStringToStream(content),
+                                                    content.length(),
+                                                    budget,
+                                                    workDir);
+        assertTrue(first.isInMemory());
+        assertEquals(content.length() / 2, budget.availablePermits());
+
+        // what is left of the budget is too little, so the content goes to the work directory
+        SpooledContent second = SpooledContent.spool(IOUtil.writeStringToStream(content),
+                                                     content.length(),
+                                                     budget,
+                                                     workDir);
+        verify(second);
+        assertFalse(second.isInMemory());
+        assertEquals(content.length() / 2, budget.availablePermits());
+
+        first.release();
+        second.release();
+        assertEquals(content.length() * 3 / 2, budget.availablePermits());
+    }
+
+    @Test
+    public void testUnusedBudgetReturned() throws Exception {
+        Semaphore budget = new Semaphore(1000);
+        SpooledContent spooled = SpooledContent.spool(IOUtil.writeStringToStream(content),
+                                                      1000,
+                                                      budget,
+                                                      workDir);
+        assertTrue(spooled.isInMemory());
+        assertEquals(1000 - content.length(), budget.availablePermits());
+        spooled.release();
+        assertEquals(1000, budget.availablePermits());
+    }
+
+    private void verify(SpooledContent spooled) throws Exception {
+        assertEquals(checksum, spooled.getChecksum());
+        assertEquals(content.length(), spooled.getSize());
+        // the content can be read more than once
+        for (int i = 0; i < 2; i++) {
+            try (InputStream is = spooled.openStream()) {
+                assertEquals(content, IOUtils.toString(is));
+            }
+        }
+    }
+}
@@ -11,6 +11,7 @@ import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
 import static org.easymock.EasyMock.isA;
+import static org.junit.Assert.assertTrue;
 
 import java.util.HashMap;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -118,6 +119,29 @@ public class TaskWorkerImplTest {
         runWithProcessorException();
     }
 
+    @Test
+    public void testRunWithDeferredExecution() throws Exception {
+        processor.execute();
+        EasyMock.expectLastCall().andThrow(new TaskExecutionDeferredException("test", 1500));
+        EasyMock.expect(task.getAttempts()).andReturn(2).times(1);
+
+        //the visibility timeout should be extended until the task is requeued
+        queue.extendVisibilityTimeout(EasyMock.isA(Task.class));
+        EasyMock.expectLastCall().times(2, 4);
+        queue.requeue(EasyMock.isA(Task.class));
+        EasyMock.expectLastCall().once();
+
+        replay();
+        TaskWorkerImpl w = createTaskWorkerImpl();
+        w.init();
+        long before = System.currentTimeMillis();
+        w.run();
+        //the worker is released without waiting for the delay
+        assertTrue(System.currentTimeMillis() - before < 1500);
+        // sleep to make sure that the deferred requeue has happened.
+        Thread.sleep(2500);
+    }
+
     @Test
     public void testRunWithProcessorExceptionLastAttempt() throws Exception {
         expect(task.getAttempts()).andReturn(4).times(1);
@@ -8,6 +8,8 @@
 package org.duracloud.mill.workman;
 
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -74,6 +76,8 @@ public class TaskWorkerManagerTest extends EasyMockSupport {
 
         //set max workers
         System.setProperty(TaskWorkerManager.MAX_WORKER_PROPERTY_KEY, times + "");
+        //take one task at a time
+        System.setProperty(TaskWorkerManager.MAX_PREFETCH_SIZE_KEY, "1");
 
         manager.init();
 
@@ -84,6 +88,105 @@ public class TaskWorkerManagerTest extends EasyMockSupport {
         manager.destroy();
     }
 
+    @Test
+    public void testPrefetch() throws Exception {
+        final int times = 4;
+        final CountDownLatch latch = new CountDownLatch(times);
+
+        configureEmptyQueue(highPriorityQueue);
+
+        Set<Task> tasks = new HashSet<>();
+        for (int i = 0; i < times; i++) {
+            Task task = new Task();
+            task.addProperty("id", i + "");
+            tasks.add(task);
+            EasyMock.expect(factory.create(task, lowPriorityQueue)).andReturn(new TaskWorker() {
+                @Override
+                public void run() {
+                    latch.countDown();
+                }
+            });
+        }
+
+        //all idle workers should be filled by a single receive
+        EasyMock.expect(lowPriorityQueue.take(times)).andReturn(tasks);
+        configureEmptyQueue(lowPriorityQueue);
+        EasyMock.expect(deadLetterQueue.getName()).andReturn("dead").anyTimes();
+        EasyMock.expect(deadLetterQueue.size()).andReturn(0).anyTimes();
+
+        replayAll();
+
+        TaskWorkerManager manager = new TaskWorkerManager(Arrays.asList(highPriorityQueue, lowPriorityQueue),
+                                                          deadLetterQueue,
+                                                          factory);
+
+        System.setProperty(TaskWorkerManager.MAX_WORKER_PROPERTY_KEY, times + "");
+        System.setProperty(TaskWorkerManager.MAX_PREFETCH_SIZE_KEY,
+                           TaskWorkerManager.DEFAULT_MAX_PREFETCH_SIZE + "");
+
+        manager.init();
+
+        Assert.assertTrue(latch.await(6000, TimeUnit.MILLISECONDS));
+
+        manager.destroy();
+    }
+
+    @Test
+    public void testPrefetchRequeuesTaskWithoutWorker() throws Exception {
+        final int times = 3;
+        final CountDownLatch latch = new CountDownLatch(times - 1);
+
+        configureEmptyQueue(highPriorityQueue);
+
+        Set<Task> tasks = new HashSet<>();
+        for (int i = 0; i < times; i++) {
+            Task task = new Task();
+            task.addProperty("id", i + "");
+            tasks.add(task);
+            if (i == 1) {
+                EasyMock.expect(factory.create(task, lowPriorityQueue)).andThrow(new RuntimeException("test"));
+                lowPriorityQueue.requeue(task);
+                EasyMock.expectLastCall();
+            } else {
+                EasyMock.expect(factory.create(task, lowPriorityQueue)).andReturn(new TaskWorker() {
+                    @Override
+                    public void run() {
+                        latch.countDown();
+                    }
+                });
+            }
+        }
+
+        //the other tasks of the batch are still executed
+        EasyMock.expect(lowPriorityQueue.take(times)).andReturn(tasks);
+        configureEmptyQueue(lowPriorityQueue);
+        EasyMock.expect(deadLetterQueue.getName()).andReturn("dead").anyTimes();
+        EasyMock.expect(deadLetterQueue.size()).andReturn(0).anyTimes();
+
+        replayAll();
+
+        TaskWorkerManager manager = new TaskWorkerManager(Arrays.asList(highPriorityQueue, lowPriorityQueue),
+                                                          deadLetterQueue,
+                                                          factory);
+
+        System.setProperty(TaskWorkerManager.MAX_WORKER_PROPERTY_KEY, times + "");
+        System.setProperty(TaskWorkerManager.MAX_PREFETCH_SIZE_KEY,
+                           TaskWorkerManager.DEFAULT_MAX_PREFETCH_SIZE + "");
+
+        manager.init();
+
+        Assert.assertTrue(latch.await(6000, TimeUnit.MILLISECONDS));
+
+        manager.destroy();
+    }
+
+    private void configureEmptyQueue(TaskQueue queue) throws TimeoutException {
+        EasyMock.expect(queue.size()).andStubReturn(0);
+        EasyMock.expect(queue.getName()).andStubReturn("test");
+        EasyMock.expect(queue.take()).andStubThrow(new TimeoutException());
+        EasyMock.expect(queue.take(EasyMock.anyInt())).andStubThrow(new TimeoutException());
+    }
+
     private void configureQueue(int times,
                                 final CountDownLatch latch,
                                 Task task,
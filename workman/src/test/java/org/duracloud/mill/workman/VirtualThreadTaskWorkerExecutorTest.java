@@ -0,0 +1,66 @@
+/*
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ *     http://duracloud.org/license/
+ */
+package org.duracloud.mill.workman;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Daniel Bernstein
+ */
+public class VirtualThreadTaskWorkerExecutorTest {
+
+    @Test
+    public void testConcurrencyIsBounded() throws Exception {
+        final int maxWorkers = 3;
+        final int workers = 10;
+        final VirtualThreadTaskWorkerExecutor executor = new VirtualThreadTaskWorkerExecutor(maxWorkers);
+        final AtomicInteger running = new AtomicInteger(0);
+        final AtomicInteger maxRunning = new AtomicInteger(0);
+        final CountDownLatch latch = new CountDownLatch(workers);
+
+        for (int i = 0; i < workers; i++) {
+            executor.execute(new TaskWorker() {
+                @Override
+                public void run() {
+                    int current = running.incrementAndGet();
+                    synchronized (maxRunning) {
+                        maxRunning.set(Math.max(maxRunning.get(), current));
+                    }
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        // Exit sleep on interruption
+                    }
+                    running.decrementAndGet();
+                    latch.countDown();
+                }
+            });
+            Assert.assertTrue(executor.getActiveCount() + executor.getQueuedCount() <= maxWorkers);
+        }
+
+        Assert.assertTrue(latch.await(5000, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(maxRunning.get() <= maxWorkers);
+        Assert.assertEquals(maxWorkers, executor.getMaxWorkers());
+
+        executor.shutdown();
+        long start = System.currentTimeMillis();
+        while (!executor.isTerminated() && System.currentTimeMillis() - start < 5000) {
+            Thread.sleep(10);
+        }
+
+        Assert.assertTrue(executor.isTerminated());
+        Assert.assertEquals(workers, executor.getCompletedCount());
+        Assert.assertEquals(0, executor.getActiveCount());
+    }
+
+}